@@ -0,0 +1,160 @@
+package telephone;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Class which is the recorded audio of a message. The audio stays in its file
+ * and is sent from there, so playing it does not copy it through the heap. The
+ * message that owns the audio holds it, and so does every call that is playing
+ * it. When the message deletes the audio, for instance because it was
+ * compressed into a new file, the file is only deleted once the last call has
+ * let go of it.
+ *
+ * @author James Nguyen
+ *
+ */
+public class AudioClip {
+	private final File file;// the file that holds the audio
+	private final long length;// the number of bytes of audio
+	private final AudioEncoding encoding;// the way the audio is stored
+	private final AtomicInteger holds;// the owner and the calls holding the file, 0 once it is deleted
+	private final AtomicBoolean deleted;// true once the owner gave up its hold
+
+	/***
+	 * Constructor which creates the PCM audio held in a file
+	 * 
+	 * @param file
+	 *            the file that holds the audio
+	 * @param length
+	 *            the number of bytes of audio
+	 */
+	public AudioClip(File file, long length) {
+		this(file, length, AudioEncoding.PCM);
+	}
+
+	/***
+	 * Constructor which creates the audio held in a file
+	 * 
+	 * @param file
+	 *            the file that holds the audio
+	 * @param length
+	 *            the number of bytes of audio
+	 * @param encoding
+	 *            the way the audio is stored
+	 */
+	public AudioClip(File file, long length, AudioEncoding encoding) {
+		this.file = file;
+		this.length = length;
+		this.encoding = encoding;
+		this.holds = new AtomicInteger(1);
+		this.deleted = new AtomicBoolean();
+	}
+
+	/***
+	 * method which returns the file that holds the audio
+	 * 
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/***
+	 * method which returns the number of bytes of audio
+	 * 
+	 * @return the length of the audio
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/***
+	 * method which returns the way the audio is stored
+	 * 
+	 * @return the encoding of the audio
+	 */
+	public AudioEncoding getEncoding() {
+		return encoding;
+	}
+
+	/***
+	 * method which opens the file of the audio for reading. The audio can still
+	 * be read through the channel after the file has been deleted.
+	 * 
+	 * @return the open file
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public FileChannel open() throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+	}
+
+	/***
+	 * method which sends all of the audio to a blocking channel. The file system
+	 * sends it straight to the channel where it can.
+	 * 
+	 * @param target
+	 *            the channel the audio is sent to
+	 * @throws IOException
+	 *             if the audio cannot be read or sent
+	 */
+	public void transferTo(WritableByteChannel target) throws IOException {
+		try (FileChannel channel = open()) {
+			long position = 0;
+			while (position < length) {
+				long sent = channel.transferTo(position, length - position, target);
+				if (sent == 0 && position >= channel.size()) {
+					throw new EOFException("The audio in " + file + " is shorter than " + length + " bytes");
+				}
+				position += sent;
+			}
+		}
+	}
+
+	/***
+	 * method which holds on to the file of the audio, so it is not deleted while
+	 * it is being played. Every successful call must be followed by a release.
+	 * 
+	 * @return true if the audio is held, or false if its file was already deleted
+	 */
+	public boolean retain() {
+		int held;
+		do {
+			held = holds.get();
+			if (held == 0) {
+				return false;
+			}
+		} while (!holds.compareAndSet(held, held + 1));
+		return true;
+	}
+
+	/***
+	 * method which gives up a hold on the file of the audio, and deletes the file
+	 * if nothing holds it any more
+	 */
+	public void release() {
+		int held = holds.decrementAndGet();
+		assert held >= 0 : "The audio has already been released";
+		if (held == 0) {
+			file.delete();
+		}
+	}
+
+	/***
+	 * method which deletes the file of the audio for its owner. The file is
+	 * deleted at once unless a call is still playing it, in which case it is
+	 * deleted when the last call releases it. Deleting it again does nothing.
+	 */
+	public void delete() {
+		if (deleted.compareAndSet(false, true)) {
+			release();
+		}
+	}
+}
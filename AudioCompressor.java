@@ -0,0 +1,225 @@
+package telephone;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Class which compresses the audio of new messages to IMA ADPCM in the
+ * background. It listens to the mail system, and every message left with PCM
+ * audio is handed to a small pool of threads, so the caller who left it does
+ * not wait. The mailbox keeps playing the PCM audio until the compressed copy
+ * is on disk, and then the audio of the message is swapped for the copy and the
+ * PCM file is deleted once no call is still playing it. The queue of waiting messages is bounded, so when the
+ * threads fall behind a message simply keeps its PCM audio.
+ *
+ * @author James Nguyen
+ *
+ */
+public class AudioCompressor implements MailboxListener {
+	private static final int CHUNK_SIZE = 1 << 16;// the bytes of PCM compressed at a time
+	private final AudioStore store;// where the compressed audio is written
+	private final ThreadPoolExecutor workers;// the threads that compress audio
+	// the buffers and codec of each worker thread
+	private final ThreadLocal<Worker> worker;
+	// the counters of what has been compressed
+	private final LongAdder compressed;
+	private final LongAdder skipped;
+	private final LongAdder failed;
+	private final LongAdder pcmBytes;
+	private final LongAdder adpcmBytes;
+
+	/***
+	 * Class which is the buffers and the codec that one worker thread uses again
+	 * for every message
+	 */
+	private static class Worker {
+		private final ByteBuffer pcm = ByteBuffer.allocateDirect(CHUNK_SIZE);// the PCM read from the file
+		private final ByteBuffer adpcm = ByteBuffer.allocateDirect(CHUNK_SIZE / 4 + 1);// the compressed audio
+		private final ImaAdpcmCodec codec = new ImaAdpcmCodec();// the codec of the message
+	}
+
+	/***
+	 * Constructor which creates a compressor with its own threads
+	 * 
+	 * @param store
+	 *            where the compressed audio is written
+	 * @param threads
+	 *            the number of threads that compress audio
+	 * @param queueSize
+	 *            the number of messages that may wait to be compressed
+	 * @precondition threads > 0 && queueSize > 0
+	 */
+	public AudioCompressor(AudioStore store, int threads, int queueSize) {
+		assert threads > 0 && queueSize > 0 : "The compressor needs threads and a queue";
+		this.store = store;
+		AtomicInteger count = new AtomicInteger();
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), runnable -> {
+					Thread thread = new Thread(runnable, "audio-compressor-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				});
+		worker = ThreadLocal.withInitial(Worker::new);
+		compressed = new LongAdder();
+		skipped = new LongAdder();
+		failed = new LongAdder();
+		pcmBytes = new LongAdder();
+		adpcmBytes = new LongAdder();
+	}
+
+	@Override
+	public void messageAdded(Mailbox mailbox, Message message) {
+		AudioClip audio = message.getAudio();
+		if (audio == null || audio.getEncoding() != AudioEncoding.PCM) {
+			return;
+		}
+		try {
+			workers.execute(() -> compress(mailbox, message, audio));
+		} catch (RejectedExecutionException e) {
+			skipped.increment();
+		}
+	}
+
+	/***
+	 * method which compresses the audio of a message and swaps it in, unless the
+	 * message was deleted in the meantime
+	 * 
+	 * @param mailbox
+	 *            the mailbox of the message
+	 * @param message
+	 *            the message
+	 * @param audio
+	 *            the PCM audio of the message
+	 */
+	private void compress(Mailbox mailbox, Message message, AudioClip audio) {
+		AudioClip copy;
+		try {
+			copy = encode(audio);
+		} catch (IOException e) {
+			// the message was deleted or the disk failed, so it keeps its PCM audio
+			failed.increment();
+			return;
+		}
+		boolean replaced;
+		try {
+			replaced = mailbox.replaceAudio(message, audio, copy);
+		} catch (RuntimeException e) {
+			// the change could not be logged, so the message keeps its PCM audio
+			copy.delete();
+			failed.increment();
+			return;
+		}
+		if (replaced) {
+			audio.delete();
+			compressed.increment();
+			pcmBytes.add(audio.getLength());
+			adpcmBytes.add(copy.getLength());
+		} else {
+			copy.delete();
+		}
+	}
+
+	/***
+	 * method which writes a compressed copy of PCM audio
+	 * 
+	 * @param audio
+	 *            the PCM audio
+	 * @return the compressed copy
+	 * @throws IOException
+	 *             if the audio cannot be read or the copy cannot be written
+	 */
+	private AudioClip encode(AudioClip audio) throws IOException {
+		Worker buffers = worker.get();
+		ByteBuffer pcm = buffers.pcm;
+		ByteBuffer adpcm = buffers.adpcm;
+		ImaAdpcmCodec codec = buffers.codec;
+		codec.reset();
+		pcm.clear();
+		AudioRecording recording = store.startRecording(AudioEncoding.IMA_ADPCM);
+		try (FileChannel in = audio.open()) {
+			long position = 0;
+			while (position < audio.getLength()) {
+				int read = in.read(pcm, position);
+				if (read < 0) {
+					throw new IOException("The audio in " + audio.getFile() + " is too short");
+				}
+				position += read;
+				pcm.flip();
+				adpcm.clear();
+				codec.encode(pcm, adpcm);
+				adpcm.flip();
+				recording.append(adpcm);
+				pcm.compact();
+			}
+			pcm.flip();
+			adpcm.clear();
+			codec.finish(pcm, adpcm);
+			adpcm.flip();
+			recording.append(adpcm);
+			return recording.finish();
+		} catch (IOException e) {
+			recording.discard();
+			throw e;
+		}
+	}
+
+	/***
+	 * method which returns the number of messages whose audio was compressed
+	 * 
+	 * @return the number of compressed messages
+	 */
+	public long getCompressedCount() {
+		return compressed.sum();
+	}
+
+	/***
+	 * method which returns the number of messages that were left as PCM because
+	 * too many were waiting
+	 * 
+	 * @return the number of skipped messages
+	 */
+	public long getSkippedCount() {
+		return skipped.sum();
+	}
+
+	/***
+	 * method which returns the number of messages whose audio could not be read,
+	 * written or swapped in
+	 * 
+	 * @return the number of failed messages
+	 */
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/***
+	 * method which returns how many times smaller the compressed audio is than
+	 * the PCM it replaced
+	 * 
+	 * @return the compression ratio, or 0 if nothing was compressed yet
+	 */
+	public double getCompressionRatio() {
+		long compressedBytes = adpcmBytes.sum();
+		return compressedBytes == 0 ? 0 : (double) pcmBytes.sum() / compressedBytes;
+	}
+
+	/***
+	 * method which stops taking messages and waits for the ones already taken to
+	 * be compressed
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void close() throws InterruptedException {
+		workers.shutdown();
+		workers.awaitTermination(1, TimeUnit.MINUTES);
+	}
+}
@@ -0,0 +1,34 @@
+package telephone;
+
+/***
+ * Enum of the ways the audio of a message can be stored. Audio is recorded as
+ * 16 bit little endian PCM and may later be compressed to IMA ADPCM, which
+ * keeps each sample in 4 bits.
+ *
+ * @author James Nguyen
+ *
+ */
+public enum AudioEncoding {
+	PCM(".pcm"), IMA_ADPCM(".adpcm");
+
+	private final String suffix;// the end of the name of every file of the encoding
+
+	/***
+	 * Constructor which creates an encoding whose files end with a suffix
+	 * 
+	 * @param suffix
+	 *            the end of the file names
+	 */
+	private AudioEncoding(String suffix) {
+		this.suffix = suffix;
+	}
+
+	/***
+	 * method which returns the end of the name of every file of the encoding
+	 * 
+	 * @return the suffix of the file names
+	 */
+	public String getSuffix() {
+		return suffix;
+	}
+}
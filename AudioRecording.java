@@ -0,0 +1,89 @@
+package telephone;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * Class which is audio that is still being recorded. Every chunk is written to
+ * the end of the file of the recording as soon as it arrives, and nothing of it
+ * is kept on the heap.
+ *
+ * @author James Nguyen
+ *
+ */
+public class AudioRecording {
+	private final File file;// the file the audio is written to
+	private final FileChannel channel;// the open file
+	private final AudioEncoding encoding;// the way the audio is stored
+	private long length;// the number of bytes recorded so far
+
+	/***
+	 * Constructor which records into a file
+	 * 
+	 * @param file
+	 *            the file the audio is written to
+	 * @param encoding
+	 *            the way the audio is stored
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	AudioRecording(File file, AudioEncoding encoding) throws IOException {
+		this.file = file;
+		this.encoding = encoding;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+	}
+
+	/***
+	 * method which adds a chunk of audio to the end of the recording
+	 * 
+	 * @param chunk
+	 *            the audio, from its position to its limit
+	 * @throws IOException
+	 *             if the audio cannot be written
+	 */
+	public void append(ByteBuffer chunk) throws IOException {
+		while (chunk.hasRemaining()) {
+			length += channel.write(chunk, length);
+		}
+	}
+
+	/***
+	 * method which returns the number of bytes recorded so far
+	 * 
+	 * @return the length of the recording
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/***
+	 * method which ends the recording and makes sure it is on disk
+	 * 
+	 * @return the recorded audio
+	 * @throws IOException
+	 *             if the audio cannot be written
+	 */
+	public AudioClip finish() throws IOException {
+		try {
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+		return new AudioClip(file, length, encoding);
+	}
+
+	/***
+	 * method which ends the recording and throws the audio away
+	 */
+	public void discard() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the file is deleted anyway
+		}
+		file.delete();
+	}
+}
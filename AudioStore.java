@@ -0,0 +1,72 @@
+package telephone;
+
+import java.io.File;
+import java.io.IOException;
+
+/***
+ * Class which keeps the audio of messages in files of a directory. Every
+ * recording is written straight to its own file as it arrives, so a call only
+ * ever holds the chunk it is writing, however long the message is. The audio
+ * is recorded as 16 bit little endian PCM and may be compressed later.
+ *
+ * @author James Nguyen
+ *
+ */
+public class AudioStore {
+	private static final String PREFIX = "audio-";// the start of every audio file name
+	private final File directory;// the directory that holds the audio files
+
+	/***
+	 * Constructor which keeps audio in a directory. The directory is created when
+	 * the first recording is started.
+	 * 
+	 * @param directory
+	 *            the directory that holds the audio files
+	 */
+	public AudioStore(File directory) {
+		this.directory = directory;
+	}
+
+	/***
+	 * Constructor which keeps audio in the directory for temporary files
+	 */
+	public AudioStore() {
+		this(new File(System.getProperty("java.io.tmpdir"), "voicemail-audio"));
+	}
+
+	/***
+	 * method which starts a new PCM recording in a file of its own
+	 * 
+	 * @return the new recording
+	 * @throws IOException
+	 *             if the file cannot be created
+	 */
+	public AudioRecording startRecording() throws IOException {
+		return startRecording(AudioEncoding.PCM);
+	}
+
+	/***
+	 * method which starts a new recording in a file of its own
+	 * 
+	 * @param encoding
+	 *            the way the audio will be stored
+	 * @return the new recording
+	 * @throws IOException
+	 *             if the file cannot be created
+	 */
+	public AudioRecording startRecording(AudioEncoding encoding) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		return new AudioRecording(File.createTempFile(PREFIX, encoding.getSuffix(), directory), encoding);
+	}
+
+	/***
+	 * method which returns the directory that holds the audio files
+	 * 
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+}
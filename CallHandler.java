@@ -0,0 +1,21 @@
+package telephone;
+
+/***
+ * Call handler interface creates the requirements for the menu of one call
+ * state. The control system gives every text entered while a call is in the
+ * state to the handler of the state.
+ *
+ * @author James Nguyen
+ *
+ */
+public interface CallHandler {
+	/***
+	 * method which handles the text that was entered on a call
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	public void handle(CallSession session, DialInput input);
+}
@@ -0,0 +1,252 @@
+package telephone;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/***
+ * Class which counts what the calls of a control system do, so that it can be
+ * watched over JMX. The counters are striped, so calls on many threads can
+ * count at once without waiting on each other. The changes of the mailboxes
+ * are counted by listening to the mail system, and how long each entry takes is
+ * kept in a histogram for every call state. The total number of messages and
+ * the largest mailboxes are read from the ranking the mail system keeps of its
+ * mailboxes, so reading them does not look at every mailbox.
+ *
+ * @author James Nguyen
+ *
+ */
+public class CallMetrics implements CallMetricsMXBean, MailboxListener {
+	private static final int LARGEST = 10;// the number of largest mailboxes that are shown
+	private final MailSystem mailSystem;// the mail system whose mailboxes are looked at
+	private final CallStateTable states;// the table that knows how many calls are in each state
+	private final DialLatency[] latencies;// the time entries took in each state
+	// the counters of what the calls have done
+	private final LongAdder callsStarted;
+	private final LongAdder callsHungUp;
+	private final LongAdder messagesDeposited;
+	private final LongAdder messagesSaved;
+	private final LongAdder messagesDeleted;
+	private final LongAdder messagesRejected;
+	private final LongAdder loginSuccesses;
+	private final LongAdder loginFailures;
+	private final LongAdder mailboxesCreated;
+
+	/***
+	 * Constructor which creates the metrics of the calls to a mail system
+	 * 
+	 * @param mailSystem
+	 *            the mail system whose mailboxes are looked at
+	 * @param states
+	 *            the table that knows how many calls are in each state
+	 */
+	public CallMetrics(MailSystem mailSystem, CallStateTable states) {
+		this.mailSystem = mailSystem;
+		this.states = states;
+		latencies = new DialLatency[CallState.values().length];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new DialLatency();
+		}
+		callsStarted = new LongAdder();
+		callsHungUp = new LongAdder();
+		messagesDeposited = new LongAdder();
+		messagesSaved = new LongAdder();
+		messagesDeleted = new LongAdder();
+		messagesRejected = new LongAdder();
+		loginSuccesses = new LongAdder();
+		loginFailures = new LongAdder();
+		mailboxesCreated = new LongAdder();
+	}
+
+	/***
+	 * method which registers the metrics and the histogram of every call state
+	 * with an MBean server
+	 * 
+	 * @param server
+	 *            the MBean server
+	 * @throws JMException
+	 *             if the metrics cannot be registered
+	 */
+	public void register(MBeanServer server) throws JMException {
+		server.registerMBean(this, new ObjectName("telephone:type=CallMetrics"));
+		for (CallState state : CallState.values()) {
+			server.registerMBean(latencies[state.ordinal()],
+					new ObjectName("telephone:type=DialLatency,state=" + state.name()));
+		}
+	}
+
+	/***
+	 * method which counts a call that was started
+	 */
+	public void callStarted() {
+		callsStarted.increment();
+	}
+
+	/***
+	 * method which counts a call that was hung up
+	 */
+	public void callHungUp() {
+		callsHungUp.increment();
+	}
+
+	/***
+	 * method which counts a login to a mailbox
+	 */
+	public void loginSucceeded() {
+		loginSuccesses.increment();
+	}
+
+	/***
+	 * method which counts a passcode that did not match the mailbox
+	 */
+	public void loginFailed() {
+		loginFailures.increment();
+	}
+
+	/***
+	 * method which counts a message that was not left because the mailbox was
+	 * full
+	 */
+	public void messageRejected() {
+		messagesRejected.increment();
+	}
+
+	/***
+	 * method which records how long an entry took
+	 * 
+	 * @param state
+	 *            the state the call was in when the entry was dialed
+	 * @param nanos
+	 *            the nanoseconds the entry took
+	 */
+	public void dialed(CallState state, long nanos) {
+		latencies[state.ordinal()].record(nanos);
+	}
+
+	/***
+	 * method which returns the histogram of how long the entries of a state took
+	 * 
+	 * @param state
+	 *            the call state
+	 * @return the histogram of the state
+	 */
+	public DialLatency getDialLatency(CallState state) {
+		return latencies[state.ordinal()];
+	}
+
+	@Override
+	public void mailboxAdded(Mailbox mailbox) {
+		mailboxesCreated.increment();
+	}
+
+	@Override
+	public void messageAdded(Mailbox mailbox, Message message) {
+		messagesDeposited.increment();
+	}
+
+	@Override
+	public void messageSaved(Mailbox mailbox, Message message) {
+		messagesSaved.increment();
+	}
+
+	@Override
+	public void messageDeleted(Mailbox mailbox, Message message) {
+		messagesDeleted.increment();
+	}
+
+	@Override
+	public long getCallsStarted() {
+		return callsStarted.sum();
+	}
+
+	@Override
+	public long getCallsHungUp() {
+		return callsHungUp.sum();
+	}
+
+	@Override
+	public long getMessagesDeposited() {
+		return messagesDeposited.sum();
+	}
+
+	@Override
+	public long getMessagesSaved() {
+		return messagesSaved.sum();
+	}
+
+	@Override
+	public long getMessagesDeleted() {
+		return messagesDeleted.sum();
+	}
+
+	@Override
+	public long getMessagesRejected() {
+		return messagesRejected.sum();
+	}
+
+	@Override
+	public long getLoginSuccesses() {
+		return loginSuccesses.sum();
+	}
+
+	@Override
+	public long getLoginFailures() {
+		return loginFailures.sum();
+	}
+
+	@Override
+	public long getMailboxesCreated() {
+		return mailboxesCreated.sum();
+	}
+
+	@Override
+	public long getTotalMessages() {
+		return mailSystem.getRanking().getTotalMessages();
+	}
+
+	@Override
+	public Map<String, Long> getCallsByState() {
+		Map<String, Long> calls = new LinkedHashMap<String, Long>();
+		for (CallState state : CallState.values()) {
+			calls.put(state.name(), states.getCallCount(state));
+		}
+		return calls;
+	}
+
+	@Override
+	public List<MailboxDepth> getLargestMailboxes() {
+		return depths(mailSystem.getRanking().getBusiest(LARGEST));
+	}
+
+	@Override
+	public List<MailboxDepth> getMailboxesOver(int messages) {
+		return depths(mailSystem.getRanking().getOver(messages));
+	}
+
+	/***
+	 * method which reads how many new and saved messages some mailboxes hold
+	 * 
+	 * @param extensions
+	 *            the extensions of the mailboxes
+	 * @return the depth of each mailbox that exists, in the same order
+	 */
+	private List<MailboxDepth> depths(int[] extensions) {
+		List<MailboxDepth> depths = new ArrayList<MailboxDepth>(extensions.length);
+		for (int extension : extensions) {
+			Mailbox mailbox = mailSystem.findMailbox(extension);
+			if (mailbox == null) {
+				continue;
+			}
+			synchronized (mailbox) {
+				depths.add(new MailboxDepth(extension, mailbox.getNewSize(), mailbox.getSavedSize()));
+			}
+		}
+		return depths;
+	}
+}
@@ -0,0 +1,109 @@
+package telephone;
+
+import java.util.List;
+import java.util.Map;
+
+/***
+ * Call metrics MXBean interface creates the requirements for reading what the
+ * calls of a control system have done and how full the mailboxes are
+ *
+ * @author James Nguyen
+ *
+ */
+public interface CallMetricsMXBean {
+	/***
+	 * method which returns the number of calls that were started
+	 * 
+	 * @return the number of calls started
+	 */
+	public long getCallsStarted();
+
+	/***
+	 * method which returns the number of times a call was hung up
+	 * 
+	 * @return the number of hang ups
+	 */
+	public long getCallsHungUp();
+
+	/***
+	 * method which returns the number of messages callers left
+	 * 
+	 * @return the number of messages deposited
+	 */
+	public long getMessagesDeposited();
+
+	/***
+	 * method which returns the number of messages that were saved
+	 * 
+	 * @return the number of messages saved
+	 */
+	public long getMessagesSaved();
+
+	/***
+	 * method which returns the number of messages that were deleted
+	 * 
+	 * @return the number of messages deleted
+	 */
+	public long getMessagesDeleted();
+
+	/***
+	 * method which returns the number of messages that were not left because the
+	 * mailbox was full
+	 * 
+	 * @return the number of messages turned away
+	 */
+	public long getMessagesRejected();
+
+	/***
+	 * method which returns the number of times the owner of a mailbox logged in
+	 * 
+	 * @return the number of logins
+	 */
+	public long getLoginSuccesses();
+
+	/***
+	 * method which returns the number of four digit passcodes that did not match
+	 * the mailbox
+	 * 
+	 * @return the number of failed logins
+	 */
+	public long getLoginFailures();
+
+	/***
+	 * method which returns the number of mailboxes that were created
+	 * 
+	 * @return the number of mailboxes created
+	 */
+	public long getMailboxesCreated();
+
+	/***
+	 * method which returns the number of new and saved messages in every mailbox
+	 * 
+	 * @return the number of messages
+	 */
+	public long getTotalMessages();
+
+	/***
+	 * method which returns the number of calls in each call state
+	 * 
+	 * @return the number of calls by the name of the state
+	 */
+	public Map<String, Long> getCallsByState();
+
+	/***
+	 * method which returns the mailboxes that hold the most messages, largest first
+	 * 
+	 * @return the largest mailboxes
+	 */
+	public List<MailboxDepth> getLargestMailboxes();
+
+	/***
+	 * method which returns the mailboxes that hold more than some messages, largest
+	 * first
+	 * 
+	 * @param messages
+	 *            the number of messages the mailboxes hold more than
+	 * @return the mailboxes over the number of messages
+	 */
+	public List<MailboxDepth> getMailboxesOver(int messages);
+}
@@ -0,0 +1,72 @@
+package telephone;
+
+/***
+ * Call output interface creates the requirements for anything that can present
+ * the prompts of the control system to a caller. The Swing phone is one
+ * implementation, but a call may also be answered by a headless client.
+ *
+ * @author James Nguyen
+ *
+ */
+public interface CallOutput {
+	/***
+	 * method which speaks the prompt to the caller
+	 * 
+	 * @param text
+	 *            the text of the prompt
+	 */
+	public void speak(String text);
+
+	/***
+	 * method which gives the size that the prompt area would like to have. Outputs
+	 * without a window may ignore it.
+	 * 
+	 * @param width
+	 *            the width of the prompt area
+	 * @param height
+	 *            the height of the prompt area
+	 */
+	public void setSize(int width, int height);
+
+	/***
+	 * method which shows a notice to the caller that is separate from the prompt
+	 * 
+	 * @param title
+	 *            the title of the notice
+	 * @param text
+	 *            the text of the notice
+	 */
+	public void showPopUp(String title, String text);
+
+	/***
+	 * method which shows the caller the text of a message, which may be too long
+	 * for a notice. Outputs that have nowhere else to show it show it as a
+	 * notice.
+	 * 
+	 * @param text
+	 *            the text of the message
+	 */
+	public default void showMessage(String text) {
+		showPopUp("Message", text);
+	}
+
+	/***
+	 * method which shows the caller all the new and saved messages of a mailbox,
+	 * numbered starting from 1 with the new messages first
+	 * 
+	 * @param mailbox
+	 *            the mailbox whose messages will be shown
+	 */
+	public void showMessages(Mailbox mailbox);
+
+	/***
+	 * method which plays the recorded audio of a message to the caller. Outputs
+	 * that cannot play audio may only tell the caller that there is audio. The
+	 * file of the clip is only held while this method runs, so an output that
+	 * sends the audio later must open the file before it returns.
+	 * 
+	 * @param clip
+	 *            the audio that will be played
+	 */
+	public void play(AudioClip clip);
+}
@@ -0,0 +1,193 @@
+package telephone;
+
+/***
+ * Class which holds everything the control system needs to remember about a
+ * single call. Every call gets its own session, so many calls can share one
+ * control system and mail system at the same time.
+ *
+ * @author James Nguyen
+ *
+ */
+public class CallSession {
+	private final CallOutput output;// where the prompts of the call are sent
+	private CallState state;// the state the call is currently in
+	private Mailbox currentMailbox;// the mailbox the call is connected to
+	private final RecordingBuffer currentMessage;// the message that is being recorded
+	private final DialInput input;// the last text entered on the call
+	private AudioRecording recording;// the audio that is being recorded, or null if there is none
+
+	/***
+	 * Constructor which creates a session that sends its prompts to the output
+	 * 
+	 * @param output
+	 *            the output of the call
+	 */
+	public CallSession(CallOutput output) {
+		this(output, new RecordingBuffer());
+	}
+
+	/***
+	 * Constructor which creates a session that sends its prompts to the output and
+	 * records messages into a buffer
+	 * 
+	 * @param output
+	 *            the output of the call
+	 * @param currentMessage
+	 *            the buffer the messages of the call are recorded into
+	 */
+	public CallSession(CallOutput output, RecordingBuffer currentMessage) {
+		this.output = output;
+		this.currentMessage = currentMessage;
+		this.input = new DialInput();
+	}
+
+	/***
+	 * method which returns the output of the call
+	 * 
+	 * @return the output of the call
+	 */
+	public CallOutput getOutput() {
+		return output;
+	}
+
+	/***
+	 * method which returns the state the call is currently in
+	 * 
+	 * @return the state of the call, or null if the call has not started
+	 */
+	public CallState getState() {
+		return state;
+	}
+
+	/***
+	 * method which sets the state of the call
+	 * 
+	 * @param state
+	 *            the new state of the call
+	 */
+	public void setState(CallState state) {
+		this.state = state;
+	}
+
+	/***
+	 * method which returns the mailbox the call is connected to
+	 * 
+	 * @return the current mailbox or null if there is none
+	 */
+	public Mailbox getCurrentMailbox() {
+		return currentMailbox;
+	}
+
+	/***
+	 * method which sets the mailbox the call is connected to
+	 * 
+	 * @param currentMailbox
+	 *            the new current mailbox
+	 */
+	public void setCurrentMailbox(Mailbox currentMailbox) {
+		this.currentMailbox = currentMailbox;
+	}
+
+	/***
+	 * method which returns the buffer holding the message that has been recorded
+	 * so far
+	 * 
+	 * @return the current message
+	 */
+	public RecordingBuffer getCurrentMessage() {
+		return currentMessage;
+	}
+
+	/***
+	 * method which returns the audio that is being recorded on the call
+	 * 
+	 * @return the recording, or null if no audio has been sent
+	 */
+	public AudioRecording getRecording() {
+		return recording;
+	}
+
+	/***
+	 * method which sets the audio that is being recorded on the call
+	 * 
+	 * @param recording
+	 *            the new recording, or null if there is none
+	 */
+	public void setRecording(AudioRecording recording) {
+		this.recording = recording;
+	}
+
+	/***
+	 * method which returns the input that each text entered on the call is read
+	 * into
+	 * 
+	 * @return the input of the call
+	 */
+	public DialInput getInput() {
+		return input;
+	}
+
+	/***
+	 * method which speaks the prompt to the caller
+	 * 
+	 * @param text
+	 *            the text of the prompt
+	 */
+	public void speak(String text) {
+		output.speak(text);
+	}
+
+	/***
+	 * method which gives the size that the prompt area would like to have
+	 * 
+	 * @param width
+	 *            the width of the prompt area
+	 * @param height
+	 *            the height of the prompt area
+	 */
+	public void setSize(int width, int height) {
+		output.setSize(width, height);
+	}
+
+	/***
+	 * method which shows a notice to the caller
+	 * 
+	 * @param title
+	 *            the title of the notice
+	 * @param text
+	 *            the text of the notice
+	 */
+	public void showPopUp(String title, String text) {
+		output.showPopUp(title, text);
+	}
+
+	/***
+	 * method which shows the caller the text of a message
+	 * 
+	 * @param text
+	 *            the text of the message
+	 */
+	public void showMessage(String text) {
+		output.showMessage(text);
+	}
+
+	/***
+	 * method which shows the caller the messages of a mailbox
+	 * 
+	 * @param mailbox
+	 *            the mailbox whose messages will be shown
+	 */
+	public void showMessages(Mailbox mailbox) {
+		output.showMessages(mailbox);
+	}
+
+	/***
+	 * method which plays the recorded audio of a message to the caller
+	 * 
+	 * @param clip
+	 *            the audio that will be played
+	 */
+	public void play(AudioClip clip) {
+		output.play(clip);
+	}
+}
@@ -0,0 +1,25 @@
+package telephone;
+
+/***
+ * Enum of the different states a call can be in. The control system keeps a
+ * handler for every state and the states each state may move on to.
+ *
+ * @author James Nguyen
+ *
+ */
+public enum CallState {
+	CONNECTED, // waiting for a mailbox number
+	RECORDING, // recording a message or waiting for the passcode of the mailbox
+	ADMIN_MENU, // in the admin menu
+	GREETING_MENU, // in the greeting menu
+	MAILBOX_MENU, // in the mailbox menu
+	MESSAGE_MENU, // in the message menu
+	ADMIN_CHANGE_PASSCODE, // waiting for the passcode the admin is giving a mailbox
+	ADMIN_FIND_MAILBOX, // waiting for the mailbox whose passcode the admin will change
+	ADMIN_RESET_PASSCODE, // waiting for the mailbox whose passcode the admin will reset
+	CHANGE_PASSCODE, // waiting for the new passcode of the mailbox
+	SELECTED_MESSAGE, // waiting for the message that will be deleted
+	SELECTED_GREETING, // waiting for the greeting that will be chosen
+	CHANGE_CURRENT_GREETING, // waiting for the new text of the current greeting
+	CREATE_GREETING // waiting for the text of a new greeting
+}
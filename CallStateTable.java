@@ -0,0 +1,194 @@
+package telephone;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Class which is the table of the states of a call. Every state has a handler
+ * that is given the text entered in that state, and the states it may move on
+ * to. Finding the handler of a state and checking a move are both a single
+ * lookup by the state, however many states there are. A move that was not
+ * declared is refused, and every move is counted so the busy menus can be seen.
+ * The table also counts the calls that are in each state right now. Moving back
+ * to the first state is allowed from every state, since a call can be hung up
+ * at any time.
+ *
+ * @author James Nguyen
+ *
+ */
+public class CallStateTable {
+	private static final CallState[] STATES = CallState.values();// every state, by its ordinal
+	private final CallState start;// the state every call starts in
+	private final CallHandler[] handlers;// the handler of each state
+	private final EnumMap<CallState, EnumSet<CallState>> transitions;// the states each state may move on to
+	private final LongAdder[][] counts;// the number of moves from each state to each state
+	private final LongAdder[] calls;// the number of calls in each state
+
+	/***
+	 * Constructor which creates a table with no handlers
+	 * 
+	 * @param start
+	 *            the state every call starts in and returns to when hung up
+	 */
+	public CallStateTable(CallState start) {
+		this.start = start;
+		handlers = new CallHandler[STATES.length];
+		transitions = new EnumMap<CallState, EnumSet<CallState>>(CallState.class);
+		counts = new LongAdder[STATES.length][STATES.length];
+		calls = new LongAdder[STATES.length];
+		for (int i = 0; i < STATES.length; i++) {
+			transitions.put(STATES[i], EnumSet.noneOf(CallState.class));
+			calls[i] = new LongAdder();
+			for (int j = 0; j < STATES.length; j++) {
+				counts[i][j] = new LongAdder();
+			}
+		}
+	}
+
+	/***
+	 * method which sets the handler of a state and the states it may move on to
+	 * 
+	 * @param state
+	 *            the state
+	 * @param handler
+	 *            the handler that is given the text entered in the state
+	 * @param next
+	 *            the states the state may move on to
+	 * @precondition handler != null
+	 */
+	public void register(CallState state, CallHandler handler, CallState... next) {
+		assert handler != null : "There is no handler";
+		handlers[state.ordinal()] = handler;
+		EnumSet<CallState> allowed = EnumSet.noneOf(CallState.class);
+		for (CallState to : next) {
+			allowed.add(to);
+		}
+		transitions.put(state, allowed);
+	}
+
+	/***
+	 * method which gives the entered text to the handler of the state the call is
+	 * in
+	 * 
+	 * @param session
+	 *            the call the text was entered on
+	 * @param input
+	 *            the text entered by the user
+	 * @throws IllegalStateException
+	 *             if the state of the call has no handler
+	 */
+	public void dispatch(CallSession session, DialInput input) {
+		CallHandler handler = handlers[session.getState().ordinal()];
+		if (handler == null) {
+			throw new IllegalStateException("No handler for " + session.getState());
+		}
+		handler.handle(session, input);
+	}
+
+	/***
+	 * method which moves a call on to another state
+	 * 
+	 * @param session
+	 *            the call that is moved
+	 * @param to
+	 *            the state the call moves on to
+	 * @throws IllegalStateException
+	 *             if the state of the call may not move on to the state
+	 */
+	public void transition(CallSession session, CallState to) {
+		CallState from = session.getState();
+		if (!transitions.get(from).contains(to)) {
+			throw new IllegalStateException("Cannot move from " + from + " to " + to);
+		}
+		counts[from.ordinal()][to.ordinal()].increment();
+		calls[from.ordinal()].decrement();
+		calls[to.ordinal()].increment();
+		session.setState(to);
+	}
+
+	/***
+	 * method which moves a call back to the first state. This is allowed from
+	 * every state. A call that has no state yet is only put in the first state.
+	 * 
+	 * @param session
+	 *            the call that is moved
+	 */
+	public void restart(CallSession session) {
+		CallState from = session.getState();
+		if (from != null) {
+			counts[from.ordinal()][start.ordinal()].increment();
+			calls[from.ordinal()].decrement();
+		}
+		calls[start.ordinal()].increment();
+		session.setState(start);
+	}
+
+	/***
+	 * method which forgets a call that has ended for good, so it is no longer
+	 * counted in its state
+	 * 
+	 * @param session
+	 *            the call that ended
+	 */
+	public void end(CallSession session) {
+		CallState from = session.getState();
+		if (from != null) {
+			calls[from.ordinal()].decrement();
+			session.setState(null);
+		}
+	}
+
+	/***
+	 * method which returns the number of calls that are in a state right now
+	 * 
+	 * @param state
+	 *            the state
+	 * @return the number of calls in the state
+	 */
+	public long getCallCount(CallState state) {
+		return calls[state.ordinal()].sum();
+	}
+
+	/***
+	 * method which returns whether a state may move on to another state
+	 * 
+	 * @param from
+	 *            the state that is left
+	 * @param to
+	 *            the state that is entered
+	 * @return true if the move is allowed
+	 */
+	public boolean isAllowed(CallState from, CallState to) {
+		return to == start || transitions.get(from).contains(to);
+	}
+
+	/***
+	 * method which returns the number of times calls moved from one state to
+	 * another
+	 * 
+	 * @param from
+	 *            the state that was left
+	 * @param to
+	 *            the state that was entered
+	 * @return the number of moves
+	 */
+	public long getTransitionCount(CallState from, CallState to) {
+		return counts[from.ordinal()][to.ordinal()].sum();
+	}
+
+	/***
+	 * method which returns the number of times calls moved out of a state
+	 * 
+	 * @param from
+	 *            the state that was left
+	 * @return the number of moves out of the state
+	 */
+	public long getTransitionCount(CallState from) {
+		long total = 0;
+		for (LongAdder count : counts[from.ordinal()]) {
+			total += count.sum();
+		}
+		return total;
+	}
+}
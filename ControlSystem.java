@@ -1,562 +1,781 @@
-package telephone;
-
-import java.awt.FlowLayout;
-import java.awt.GridLayout;
-
-import javax.swing.JFrame;
-import javax.swing.JLabel;
-
-/***
- * Class which is in charge on controlling the different classes in order for
- * the phone to work. The Class will process the different inputs from the phone
- * and perform actions based on the state.
- * 
- * @author James Nguyen
- *
- */
-public class ControlSystem {
-	private final MailSystem mailSystem;// the mail system
-	private final Phone phone;// the phone that will be used
-	private Mailbox currentMailbox;// the currentMailbox that is found
-	private String currentMessage;// the currentMessage that is found
-	// the different strings for the distinct menus used
-	private static final String ADMIN_CHOICE = "<html><body>Enter 1 to create a new user.<br>Enter 2 to change a users passcode.<br>Enter 3 to reset a users passcode.</body></html>";
-	private static final String MAILBOX_CHOICE = "<html><body>Enter 1 to retrieve your messages.<br>Enter 2 to change your passcode.<br>Enter 3 to change your greeting.</body></html>";
-	private static final String MESSAGE_CHOICE = "<html><body>Enter 1 to listen to your current new message. <br>Enter 2 to save and move on to the next message.<br>Enter 3 to delete and move on to the next message.<br>Enter 4 to select a new or saved message to delete.<br>Enter 5 to go back to the Mailbox Menu.</body></html>";
-	private static final String GREETING_CHOICE = "<html><body>Enter 1 to choose a saved greeting.<br>Enter 2 to change the current greeting.<br>Enter 3 to create a new saved greeting.<br>Enter 4 to return to the Mailbox Menu.</body></html>";
-	// the different states the control system will be in
-	private static final int CONNECTED = 1;
-	private static final int RECORDING = 2;
-	private static final int ADMIN_MENU = 3;
-	private static final int GREETING_MENU = 4;
-	private static final int MAILBOX_MENU = 5;
-	private static final int MESSAGE_MENU = 6;
-	private static final int ADMIN_CHANGE_PASSCODE = 7;
-	private static final int ADMIN_FIND_MAILBOX = 8;
-	private static final int ADMIN_RESET_PASSCODE = 9;
-	private static final int CHANGE_PASSCODE = 10;
-	private static final int SELECTED_MESSAGE = 11;
-	private static final int SELECTED_GREETING = 12;
-	private static final int CHANGE_CURRENT_GREETING = 13;
-	private static final int CREATE_GREETING = 14;
-	private int state = 0; // intialize the state to 0
-
-	/***
-	 * Constructor which connects the control system to the phone and initializes
-	 * the mail System, phone, and reset the connection
-	 * 
-	 * @param phone
-	 */
-	public ControlSystem(Phone phone) {
-		mailSystem = new MailSystem();
-		this.phone = phone;
-		resetConnection();
-		currentMessage = "";
-	}
-
-	/***
-	 * method which will perform multiple types of actions on the inputted string
-	 * depending on the state that the control system is currently in
-	 * 
-	 * @param entered
-	 *            the inputted string that is sent from the phone
-	 */
-	public void dial(String entered) {
-		if (state == CONNECTED) {
-			connect(entered);
-		} else if (state == RECORDING) {
-			login(entered);
-		} else if (state == ADMIN_MENU) {
-			adminMenu(entered);
-		} else if (state == ADMIN_FIND_MAILBOX) {
-			adminMenuFind(entered);
-		} else if (state == ADMIN_RESET_PASSCODE) {
-			adminMenuFind(entered);
-		} else if (state == ADMIN_CHANGE_PASSCODE) {
-			changePasscode(entered);
-		} else if (state == GREETING_MENU) {
-			greetingMenu(entered);
-		} else if (state == CHANGE_PASSCODE) {
-			changePasscode(entered);
-		} else if (state == MAILBOX_MENU) {
-			mailboxMenu(entered);
-		} else if (state == MESSAGE_MENU) {
-			messageMenu(entered);
-		} else if (state == SELECTED_MESSAGE) {
-			deleteMessage(entered);
-		} else if (state == SELECTED_GREETING) {
-			chooseGreeting(entered);
-		} else if (state == CHANGE_CURRENT_GREETING) {
-			changeGreeting(entered);
-		} else if (state == CREATE_GREETING) {
-			createGreeting(entered);
-		}
-	}
-
-	/***
-	 * method which will create a simple pop up window which will contain a title
-	 * and message
-	 * 
-	 * @param title
-	 *            the title of the window
-	 * @param text
-	 *            the text of the window
-	 */
-	private void createPopUpWindow(String title, String text) {
-		JFrame popUpWindow = new JFrame(title);
-		JLabel label = new JLabel(text);
-		popUpWindow.add(label);
-		popUpWindow.setLayout(new FlowLayout());
-		popUpWindow.pack();
-		popUpWindow.setVisible(true);
-	}
-
-	/***
-	 * Method which connects the phone to a mailbox or the admin menu based on what
-	 * is entered into the text box. It will enter the admin menu if the entered number is '0#'
-	 * 
-	 * @param entered
-	 *            the text that was sent into the text box
-	 */
-	private void connect(String entered) {
-		if (!(entered.indexOf('#') >= 1)) {
-			phone.speak("Invalid mailbox number. Try again and enter a mailbox number.");
-		} else {
-			if ((!(entered.substring(0, entered.indexOf('#')).matches("^[0-9]*$"))) || (entered.length() > 9)) {
-				phone.speak("Invalid mailbox number. Try again and enter a mailbox number.");
-			} else {
-				int number = Integer.parseInt(entered.substring(0, entered.indexOf('#')));
-				if (number == 0) {
-					state = ADMIN_MENU;
-					phone.speak(ADMIN_CHOICE);
-					phone.setSize(400, 150);
-				} else {
-					currentMailbox = mailSystem.findMailbox(number);
-					if (currentMailbox == null) {
-						phone.speak("Invalid mailbox number. Try again and enter a mailbox number.");
-					} else {
-						state = RECORDING;
-						phone.speak("<html><body>" + currentMailbox.getCurrentGreeting()
-								+ "<br>  Enter the passcode to access the mailbox. </body></html>");
-					}
-				}
-
-			}
-		}
-
-	}
-
-	/***
-	 * method which will login the user if the entered text matches the passcode or
-	 * will record the text that the user enters as a message
-	 * 
-	 * @param entered
-	 *            what the user enters
-	 */
-	private void login(String entered) {
-		if (currentMailbox.checkPasscode(currentMessage + entered)) {
-			state = MAILBOX_MENU;
-			phone.speak(MAILBOX_CHOICE);
-			phone.setSize(350, 200);
-		} else {
-			currentMessage = currentMessage + entered;
-		}
-	}
-
-	/**
-	 * Method which will perform different actions based on what the user enters for
-	 * the admin menu. The method will check if the text matches the preconditions
-	 * of the different methods that will be called.
-	 * 
-	 * @param entered
-	 *            what the user enters for the admin menu
-	 */
-	private void adminMenu(String entered) {
-		if (entered.matches("^[0-9]*$") && (entered.trim().length() != 0) && entered.length() <= 9) {
-			int choice = Integer.parseInt(entered);
-			if (choice >= 1 && choice <= 3) {
-				if (choice == 1) {
-					createNewUser();
-				} else if (choice == 2) {
-					if (mailSystem.isEmpty()) {
-						createPopUpWindow("Error", "There are no mailboxes. Create a new User or hang up.");
-					} else {
-						phone.speak("Enter the extension number of the user to change the password.");
-						state = ADMIN_FIND_MAILBOX;
-					}
-
-				} else if (choice == 3) {
-					if (mailSystem.isEmpty()) {
-						createPopUpWindow("Error", "There are no mailboxes. Create a new User or hang up.");
-					} else {
-						phone.speak("Enter the extension number of the user to reset the password.");
-						state = ADMIN_RESET_PASSCODE;
-					}
-				}
-			} else {
-				createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-			}
-		} else {
-			createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-		}
-	}
-
-	/***
-	 * Method which will perform different actions based on what the user enters on
-	 * the greeting menu. The method will check if the text matches the
-	 * preconditions of the different methods that will be called.
-	 * 
-	 * @param event
-	 *            what the user enters for the greeting menu
-	 */
-	private void greetingMenu(String entered) {
-		if (entered.matches("^[0-9]*$") && (entered.trim().length() != 0) && entered.length() <= 9) {
-			int choice = Integer.parseInt(entered);
-			if (choice >= 1 && choice <= 4) {
-				if (choice == 1) {
-					if (currentMailbox.numOfGreetings() == 1) {
-						createPopUpWindow("Error",
-								"You cannot choose another greeting since there is only 1 greeting.");
-					} else {
-						state = SELECTED_GREETING;
-						String greetings = "<html><body>Choose the greeting by entering the number corresponding to the greeting. ";
-						for (int i = 0; i < currentMailbox.numOfGreetings(); i++) {
-							greetings = greetings + "<br>" + (i + 1) + ". " + currentMailbox.getGreeting(i);
-						}
-						phone.setSize(700, 200);
-						greetings = greetings + "</body></html>";
-						phone.speak(greetings);
-					}
-				} else if (choice == 2) {
-					state = CHANGE_CURRENT_GREETING;
-					phone.setSize(600, 135);
-					phone.speak(
-							"Enter to the machine what you would like current greeting in used to be followed by the '#' sign.");
-				} else if (choice == 3) {
-					if (currentMailbox.greetingIsFull()) {
-						createPopUpWindow("Error",
-								"Max amount of greetings reached. Change the current greeting or choose a different greeting to change");
-					} else {
-						phone.speak("Enter the new greeting you would like to have followed by the '#' sign.");
-						state = CREATE_GREETING;
-						phone.setSize(600, 150);
-					}
-				} else if (choice == 4) {
-					state = MAILBOX_MENU;
-					phone.speak(MAILBOX_CHOICE);
-					phone.setSize(350, 200);
-				}
-			} else {
-				createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-			}
-		} else {
-			createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-		}
-	}
-
-	/***
-	 * Method which will allow the user to choose a saved greeting they would like.
-	 * The method will check to make sure the methods are called with the
-	 * preconditions met
-	 * 
-	 * @param entered
-	 *            the text entered by the user
-	 */
-	private void chooseGreeting(String entered) {
-		if (entered.matches("^[0-9]*$") && (entered.trim().length() != 0) && entered.length() <= 9) {
-			int choice = Integer.parseInt(entered);
-			if (choice >= 1 && choice <= currentMailbox.numOfGreetings()) {
-				currentMailbox.chooseCurrentGreeting(choice - 1);
-				state = GREETING_MENU;
-				phone.speak(GREETING_CHOICE);
-				phone.setSize(350, 200);
-				createPopUpWindow("Sucess", "The Greeting has been chosen");
-			} else {
-				createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-			}
-		} else {
-			createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-		}
-	}
-
-	/***
-	 * Method which will allow the user to create a saved greeting they would like.
-	 * The method will check to make sure the methods are called with the
-	 * preconditions met
-	 * 
-	 * @param entered
-	 *            the text entered by the user
-	 */
-	private void createGreeting(String entered) {
-		if (!(entered.trim().indexOf('#') >= 1)) {
-			phone.speak("Invalid greeting. Make sure there is a '#' sign. Try again.");
-			phone.setSize(350, 200);
-		} else {
-			String greeting = entered.substring(0, entered.indexOf('#'));
-			currentMailbox.addGreeting(greeting);
-			currentMailbox.chooseCurrentGreeting(currentMailbox.numOfGreetings() - 1);
-			state = GREETING_MENU;
-			phone.speak(GREETING_CHOICE);
-			phone.setSize(350, 200);
-			createPopUpWindow("Sucess", "The Greeting has been created and set as the current greeting.");
-
-		}
-
-	}
-
-	/***
-	 * Method which will allow the user to change the current greeting. The method
-	 * will check to make sure the methods are called with the preconditions met
-	 * 
-	 * @param entered
-	 *            the text entered by the user
-	 */
-	private void changeGreeting(String entered) {
-		if (!(entered.trim().indexOf('#') >= 1)) {
-			phone.speak("Invalid greeting. Make sure there is a '#' sign. Try again.");
-			phone.setSize(350, 200);
-		} else {
-			String greeting = entered.substring(0, entered.indexOf('#'));
-			currentMailbox.changeCurrentGreeting(greeting);
-			state = GREETING_MENU;
-			phone.speak(GREETING_CHOICE);
-			phone.setSize(350, 200);
-			createPopUpWindow("Sucess", "The current greeting has been changed");
-
-		}
-
-	}
-
-	/***
-	 * method which will create a new user and print out a pop window confirming
-	 * that it is created
-	 */
-	private void createNewUser() {
-		mailSystem.addNewMailbox();
-		createPopUpWindow("Success", "User has been created with Mailbox Extension Number "
-				+ mailSystem.getLastMailboxNumber() + " with default pasccode '0000'");
-	}
-
-	/***
-	 * Method which will allow the user to change the passcode. The method will
-	 * check to make sure the methods are called with the preconditions met
-	 * 
-	 * @param entered
-	 *            the text entered by the user
-	 */
-	private void changePasscode(String entered) {
-		if (entered.matches("^[0-9]*$") && entered.length() == 4) {
-			currentMailbox.setPasscode(entered);
-			createPopUpWindow("Success", "The Mailbox Passcode has been set to " + entered);
-			if (state == ADMIN_CHANGE_PASSCODE) {
-				state = ADMIN_MENU;
-				phone.speak(ADMIN_CHOICE);
-			} else {
-				state = MAILBOX_MENU;
-				phone.speak(MAILBOX_CHOICE);
-				phone.setSize(350, 200);
-			}
-		} else {
-			phone.speak("Passcode must be numerical and is four digits. Try Again");
-		}
-	}
-
-	/***
-	 * Method which will find a mailbox while the Control system is in the admin
-	 * state.The method will check to make sure the methods are called with the
-	 * preconditions met
-	 * 
-	 * @param entered
-	 *            the text entered by the user
-	 */
-	private void adminMenuFind(String entered) {
-		if (!(entered.indexOf('#') >= 1)) {
-			phone.speak("Invalid mailbox number. Try again and enter a mailbox number.");
-		} else {
-			if (!(entered.substring(0, entered.indexOf('#')).matches("^[0-9]*$"))) {
-				phone.speak("Invalid mailbox number. Try again and enter a mailbox number.");
-			} else {
-				int number = Integer.parseInt(entered.substring(0, entered.indexOf('#')));
-				currentMailbox = mailSystem.findMailbox(number);
-				if (currentMailbox == null) {
-					phone.speak("Invalid mailbox number. Try again and enter a mailbox number.");
-				} else {
-					if (state == ADMIN_RESET_PASSCODE) {
-						currentMailbox.resetPasscode();
-						createPopUpWindow("Success", "The Mailbox Passcode has been reset to '0000'");
-						phone.speak(ADMIN_CHOICE);
-						state = ADMIN_MENU;
-
-					} else {
-						state = ADMIN_CHANGE_PASSCODE;
-						phone.speak("Enter the passcode you would like Mailbox " + number + " to have");
-					}
-				}
-			}
-
-		}
-	}
-
-	/***
-	 * Method which will perform different actions based on what the user enters on
-	 * the mailbox menu. The method will check if the text matches the preconditions
-	 * of the different methods that will be called.
-	 * 
-	 * @param event
-	 *            what the user enters for the greeting menu
-	 */
-	private void mailboxMenu(String entered) {
-		if (entered.matches("^[0-9]*$") && (entered.trim().length() != 0) && entered.length() <= 9) {
-			int choice = Integer.parseInt(entered);
-			if (choice >= 1 && choice <= 3) {
-				if (choice == 1) {
-
-					state = MESSAGE_MENU;
-					phone.speak(MESSAGE_CHOICE);
-					phone.setSize(350, 215);
-
-				} else if (choice == 2) {
-					phone.speak("Enter the passcode you would like the Mailbox to have");
-					state = CHANGE_PASSCODE;
-					phone.setSize(350, 150);
-
-				} else if (choice == 3) {
-					state = GREETING_MENU;
-					phone.speak(GREETING_CHOICE);
-					phone.setSize(350, 200);
-				}
-			} else {
-				createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-			}
-		} else {
-			createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-		}
-	}
-
-	/***
-	 * Method which creates a window containing all the messages
-	 */
-	private void createMessageWindow() {
-		int messageNumber = 1;
-		JFrame messageWindow = new JFrame("Your Messages");
-		messageWindow.setLayout(new GridLayout(currentMailbox.getNewSize() + currentMailbox.getSavedSize(), 1));
-		for (int i = 0; i < currentMailbox.getNewSize(); i++) {
-			JLabel message = new JLabel(messageNumber + ". " + currentMailbox.getNewMessage(i).getText(),
-					JLabel.CENTER);
-			messageNumber++;
-			messageWindow.add(message);
-		}
-		for (int i = 0; i < currentMailbox.getSavedSize(); i++) {
-			JLabel message = new JLabel(messageNumber + ". " + currentMailbox.getSavedMessage(i).getText(),
-					JLabel.CENTER);
-			messageNumber++;
-			messageWindow.add(message);
-		}
-		messageWindow.pack();
-		messageWindow.setVisible(true);
-	}
-
-	/***
-	 * Method which will delete the message based on the integer entered by the
-	 * user. The method will check if the text matches the preconditions of the
-	 * different methods that will be called.
-	 * 
-	 * @param entered
-	 *            the integer entered
-	 */
-	private void deleteMessage(String entered) {
-		if (entered.matches("^[0-9]*$") && (entered.trim().length() != 0) && entered.length() <= 9) {
-			int choice = Integer.parseInt(entered);
-			if (choice <= currentMailbox.getNewSize() + currentMailbox.getSavedSize() && choice != 0) {
-				if (currentMailbox.newMessageisEmpty()) {
-					currentMailbox.removeSavedMessage(choice - 1);
-				} else if (choice > currentMailbox.getNewSize()) {
-					currentMailbox.removeSavedMessage(choice - 1 - currentMailbox.getNewSize());
-				} else {
-					currentMailbox.removeNewMessage(choice - 1);
-				}
-				createPopUpWindow("Sucess", "The selected message has been deleted");
-				state = MESSAGE_MENU;
-				phone.speak(MESSAGE_CHOICE);
-				phone.setSize(350, 215);
-			} else {
-				createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-			}
-		} else {
-			createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-		}
-
-	}
-
-	/***
-	 * Method which will perform different actions based on what the user enters on
-	 * the message menu. The method will check if the text matches the preconditions
-	 * of the different methods that will be called.
-	 * 
-	 * @param event
-	 *            what the user enters for the greeting menu
-	 */
-	public void messageMenu(String entered) {
-		if (entered.matches("^[0-9]*$") && (entered.trim().length() != 0) && entered.length() <= 9) {
-			int choice = Integer.parseInt(entered);
-			if (choice >= 1 && choice <= 5) {
-				if (currentMailbox.newMessageisEmpty() && (choice == 1 || choice == 2 || choice == 3)) {
-					createPopUpWindow("Message", "There are currently no new messsage");
-				} else {
-					if (choice == 1) {
-						createPopUpWindow("Message", currentMailbox.getCurrentMessage().getText());
-					} else if (choice == 2) {
-						currentMailbox.saveMessage(currentMailbox.removeCurrentMessage());
-						createPopUpWindow("Message", "The new message has been saved.");
-					} else if (choice == 3) {
-						currentMailbox.removeCurrentMessage();
-						createPopUpWindow("Message", "The message has been removed.");
-					} else if (choice == 4) {
-						if (currentMailbox.newMessageisEmpty() && currentMailbox.savedMessageisEmpty()) {
-							createPopUpWindow("Message", "There are no saved or new messages to view.");
-						} else {
-							state = SELECTED_MESSAGE;
-							phone.speak(
-									"Select a Message to delete by providing the number corresponding to the message.");
-							phone.setSize(500, 150);
-							createMessageWindow();
-						}
-					} else if (choice == 5) {
-						state = MAILBOX_MENU;
-						phone.speak(MAILBOX_CHOICE);
-						phone.setSize(350, 200);
-					}
-				}
-			} else {
-				createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-			}
-		} else {
-			createPopUpWindow("Error", "Invalid choice. Choose a valid choice or hang up.");
-		}
-	}
-
-	/***
-	 * method which will essentially hang up the phone and reset the connection and
-	 * state of the phone
-	 */
-	public void hangUp() {
-		if (state == RECORDING) {
-			if (currentMessage != null && currentMessage.trim().length() != 0) {
-				currentMailbox.addMessage(new Message(currentMessage));
-			}
-		}
-		resetConnection();
-		createPopUpWindow("Hanged Up", "You have hanged up");
-	}
-
-	/***
-	 * method which resets the connection by restarting the state and clearing the
-	 * current message
-	 */
-	private void resetConnection() {
-		state = CONNECTED;
-		currentMessage = "";
-		phone.speak("Enter numbers followed by the '#' sign to go to a specific Mailbox Number");
-		phone.setSize(500, 150);
-	}
-}
+package telephone;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/***
+ * Class which is in charge on controlling the different classes in order for
+ * the phone to work. The Class will process the different inputs from the phone
+ * and perform actions based on the state. The state of each call is kept in its
+ * own call session, so one control system can serve many calls at once. A
+ * caller leaving a message may also send audio, which is written to a file as
+ * it arrives instead of being kept in memory.
+ * 
+ * @author James Nguyen
+ *
+ */
+public class ControlSystem {
+	private final MailSystem mailSystem;// the mail system shared by every call
+	private final CallStateTable states;// the handler and the next states of every state
+	private final CallMetrics metrics;// what the calls have done, for JMX
+	private final AudioStore audioStore;// where the audio of messages is recorded
+	private final GreetingPrompts greetings;// the prompts built from the greetings of each mailbox
+	private volatile int maxMessageBytes = RecordingBuffer.MAX_BYTES;// the largest length of a recorded message
+	private volatile long maxMessageMillis = RecordingBuffer.MAX_MILLIS;// the longest time a message may be recorded for
+	// the different strings for the distinct menus used
+	private static final String ADMIN_CHOICE = PromptTemplate.page("Enter 1 to create a new user.",
+			"Enter 2 to change a user’s passcode.", "Enter 3 to reset a user’s passcode.");
+	private static final String MAILBOX_CHOICE = PromptTemplate.page("Enter 1 to retrieve your messages.",
+			"Enter 2 to change your passcode.", "Enter 3 to change your greeting.");
+	private static final String MESSAGE_CHOICE = PromptTemplate.page("Enter 1 to listen to your current new message. ",
+			"Enter 2 to save and move on to the next message.", "Enter 3 to delete and move on to the next message.",
+			"Enter 4 to select a new or saved message to delete.", "Enter 5 to go back to the Mailbox Menu.");
+	private static final String GREETING_CHOICE = PromptTemplate.page("Enter 1 to choose a saved greeting.",
+			"Enter 2 to change the current greeting.", "Enter 3 to create a new saved greeting.",
+			"Enter 4 to return to the Mailbox Menu.");
+	/***
+	 * Constructor which initializes the control system with a new mail system
+	 */
+	public ControlSystem() {
+		this(new MailSystem());
+	}
+
+	/***
+	 * Constructor which initializes the control system with a mail system that
+	 * may be shared with other control systems
+	 * 
+	 * @param mailSystem
+	 *            the mail system that will be used
+	 */
+	public ControlSystem(MailSystem mailSystem) {
+		this(mailSystem, new AudioStore());
+	}
+
+	/***
+	 * Constructor which initializes the control system with a mail system and the
+	 * place the audio of messages is recorded
+	 * 
+	 * @param mailSystem
+	 *            the mail system that will be used
+	 * @param audioStore
+	 *            the store the audio of messages is recorded in
+	 */
+	public ControlSystem(MailSystem mailSystem, AudioStore audioStore) {
+		this.mailSystem = mailSystem;
+		this.audioStore = audioStore;
+		this.states = new CallStateTable(CallState.CONNECTED);
+		states.register(CallState.CONNECTED, this::connect, CallState.ADMIN_MENU, CallState.RECORDING);
+		states.register(CallState.RECORDING, this::login, CallState.MAILBOX_MENU);
+		states.register(CallState.ADMIN_MENU, this::adminMenu, CallState.ADMIN_FIND_MAILBOX,
+				CallState.ADMIN_RESET_PASSCODE);
+		states.register(CallState.ADMIN_FIND_MAILBOX, this::adminMenuFind, CallState.ADMIN_CHANGE_PASSCODE);
+		states.register(CallState.ADMIN_RESET_PASSCODE, this::adminMenuFind, CallState.ADMIN_MENU);
+		states.register(CallState.ADMIN_CHANGE_PASSCODE, this::changePasscode, CallState.ADMIN_MENU);
+		states.register(CallState.GREETING_MENU, this::greetingMenu, CallState.SELECTED_GREETING,
+				CallState.CHANGE_CURRENT_GREETING, CallState.CREATE_GREETING, CallState.MAILBOX_MENU);
+		states.register(CallState.CHANGE_PASSCODE, this::changePasscode, CallState.MAILBOX_MENU);
+		states.register(CallState.MAILBOX_MENU, this::mailboxMenu, CallState.MESSAGE_MENU,
+				CallState.CHANGE_PASSCODE, CallState.GREETING_MENU);
+		states.register(CallState.MESSAGE_MENU, this::messageMenu, CallState.SELECTED_MESSAGE,
+				CallState.MAILBOX_MENU);
+		states.register(CallState.SELECTED_MESSAGE, this::deleteMessage, CallState.MESSAGE_MENU);
+		states.register(CallState.SELECTED_GREETING, this::chooseGreeting, CallState.GREETING_MENU);
+		states.register(CallState.CHANGE_CURRENT_GREETING, this::changeGreeting, CallState.GREETING_MENU);
+		states.register(CallState.CREATE_GREETING, this::createGreeting, CallState.GREETING_MENU);
+		this.metrics = new CallMetrics(mailSystem, states);
+		mailSystem.addMailboxListener(metrics);
+		this.greetings = new GreetingPrompts();
+		mailSystem.addMailboxListener(greetings);
+	}
+
+	/***
+	 * method which returns the mail system that the calls are connected to
+	 * 
+	 * @return the mail system
+	 */
+	public MailSystem getMailSystem() {
+		return mailSystem;
+	}
+
+	/***
+	 * method which returns the table of the states of a call, which also counts
+	 * how often calls move between states
+	 * 
+	 * @return the state table
+	 */
+	public CallStateTable getStateTable() {
+		return states;
+	}
+
+	/***
+	 * method which returns the metrics of the calls, which can be registered with
+	 * JMX
+	 * 
+	 * @return the call metrics
+	 */
+	public CallMetrics getMetrics() {
+		return metrics;
+	}
+
+	/***
+	 * method which starts a new call that will send its prompts to the output
+	 * 
+	 * @param output
+	 *            the output of the call
+	 * @return the session of the new call
+	 */
+	public CallSession openSession(CallOutput output) {
+		CallSession session = new CallSession(output, new RecordingBuffer(maxMessageBytes,
+				Math.min(maxMessageBytes, RecordingBuffer.SPILL_BYTES), maxMessageMillis));
+		resetConnection(session);
+		metrics.callStarted();
+		return session;
+	}
+
+	/***
+	 * method which sets how long the messages of calls started afterwards may be
+	 * 
+	 * @param maxBytes
+	 *            the largest length of a message in bytes
+	 * @param maxMillis
+	 *            the longest time a message may be recorded for, in milliseconds
+	 * @precondition maxBytes > 0 && maxMillis > 0
+	 */
+	public void setMessageLimits(int maxBytes, long maxMillis) {
+		assert maxBytes > 0 && maxMillis > 0 : "The limits must be positive";
+		this.maxMessageBytes = maxBytes;
+		this.maxMessageMillis = maxMillis;
+	}
+
+	/***
+	 * method which ends a call for good after it has been hung up or its line was
+	 * lost, so it is no longer counted as a call in progress. The audio and the
+	 * text of a message that was being left are thrown away.
+	 * 
+	 * @param session
+	 *            the call that ended
+	 */
+	public void closeSession(CallSession session) {
+		states.end(session);
+		discardRecording(session);
+		session.getCurrentMessage().clear();
+	}
+
+	/***
+	 * method which will perform multiple types of actions on the inputted string
+	 * depending on the state that the call is currently in. The string is read
+	 * once into the input of the session and given to the handler of the state,
+	 * or the call is hung up if the string is 'H'.
+	 * 
+	 * @param session
+	 *            the call that the string was entered on
+	 * @param entered
+	 *            the inputted string that is sent from the phone
+	 */
+	public void dial(CallSession session, String entered) {
+		CallState state = session.getState();
+		long start = System.nanoTime();
+		DialInput input = session.getInput();
+		input.parse(entered);
+		if (input.isHangUp()) {
+			hangUp(session);
+		} else {
+			states.dispatch(session, input);
+		}
+		metrics.dialed(state, System.nanoTime() - start);
+	}
+
+	/***
+	 * method which records a chunk of audio sent by the caller. Audio is only
+	 * recorded while a message is being left, and is otherwise ignored. The chunk
+	 * is written to the file of the recording right away, so a long message does
+	 * not have to fit in memory.
+	 * 
+	 * @param session
+	 *            the call that sent the audio
+	 * @param chunk
+	 *            the bytes of audio, which are all consumed
+	 * @throws UncheckedIOException
+	 *             if the audio cannot be written
+	 */
+	public void record(CallSession session, ByteBuffer chunk) {
+		if (session.getState() != CallState.RECORDING) {
+			chunk.position(chunk.limit());
+			return;
+		}
+		try {
+			AudioRecording recording = session.getRecording();
+			if (recording == null) {
+				recording = audioStore.startRecording();
+				session.setRecording(recording);
+			}
+			recording.append(chunk);
+		} catch (IOException e) {
+			discardRecording(session);
+			throw new UncheckedIOException("Cannot record the audio", e);
+		}
+	}
+
+	/***
+	 * Method which connects the phone to a mailbox or the admin menu based on what
+	 * is entered into the text box. It will enter the admin menu if the entered number is '0#'
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void connect(CallSession session, DialInput input) {
+		if (!(input.getTerminator() >= 1)) {
+			session.speak("Invalid mailbox number. Try again and enter a mailbox number.");
+		} else {
+			if (!input.isTerminatedNumber() || (input.getLength() > 9)) {
+				session.speak("Invalid mailbox number. Try again and enter a mailbox number.");
+			} else {
+				int number = input.getNumber();
+				if (number == 0) {
+					states.transition(session, CallState.ADMIN_MENU);
+					session.speak(ADMIN_CHOICE);
+					session.setSize(400, 150);
+				} else {
+					Mailbox currentMailbox = mailSystem.findMailbox(number);
+					session.setCurrentMailbox(currentMailbox);
+					if (currentMailbox == null) {
+						session.speak("Invalid mailbox number. Try again and enter a mailbox number.");
+					} else {
+						states.transition(session, CallState.RECORDING);
+						session.speak(greetings.getArrival(currentMailbox));
+					}
+				}
+
+			}
+		}
+
+	}
+
+	/***
+	 * method which will login the user if the entered text matches the passcode or
+	 * will record the text that the user enters as a message
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void login(CallSession session, DialInput input) {
+		Mailbox currentMailbox = session.getCurrentMailbox();
+		RecordingBuffer recorded = session.getCurrentMessage();
+		// the passcode is only checked when what was entered is as long as it
+		boolean checked = recorded.length() + input.getLength() == currentMailbox.getPasscode().length();
+		if (checked && currentMailbox.checkPasscode(recorded + input.getText())) {
+			discardRecording(session);
+			metrics.loginSucceeded();
+			states.transition(session, CallState.MAILBOX_MENU);
+			session.speak(MAILBOX_CHOICE);
+			session.setSize(350, 200);
+		} else {
+			if (checked) {
+				metrics.loginFailed();
+			}
+			if (!recorded.isFull() && !recorded.append(input.getText())) {
+				session.showPopUp("Message Too Long", "The message is too long, so the rest of it was not recorded.");
+			}
+		}
+	}
+
+	/**
+	 * Method which will perform different actions based on what the user enters for
+	 * the admin menu. The method will check if the text matches the preconditions
+	 * of the different methods that will be called.
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void adminMenu(CallSession session, DialInput input) {
+		if (input.isNumber()) {
+			int choice = input.getNumber();
+			if (choice >= 1 && choice <= 3) {
+				if (choice == 1) {
+					createNewUser(session);
+				} else if (choice == 2) {
+					if (mailSystem.isEmpty()) {
+						session.showPopUp("Error", "There are no mailboxes. Create a new User or hang up.");
+					} else {
+						session.speak("Enter the extension number of the user to change the password.");
+						states.transition(session, CallState.ADMIN_FIND_MAILBOX);
+					}
+
+				} else if (choice == 3) {
+					if (mailSystem.isEmpty()) {
+						session.showPopUp("Error", "There are no mailboxes. Create a new User or hang up.");
+					} else {
+						session.speak("Enter the extension number of the user to reset the password.");
+						states.transition(session, CallState.ADMIN_RESET_PASSCODE);
+					}
+				}
+			} else {
+				session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+			}
+		} else {
+			session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+		}
+	}
+
+	/***
+	 * Method which will perform different actions based on what the user enters on
+	 * the greeting menu. The method will check if the text matches the
+	 * preconditions of the different methods that will be called.
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void greetingMenu(CallSession session, DialInput input) {
+		Mailbox currentMailbox = session.getCurrentMailbox();
+		if (input.isNumber()) {
+			int choice = input.getNumber();
+			if (choice >= 1 && choice <= 4) {
+				if (choice == 1) {
+					if (currentMailbox.numOfGreetings() == 1) {
+						session.showPopUp("Error",
+								"You cannot choose another greeting since there is only 1 greeting.");
+					} else {
+						states.transition(session, CallState.SELECTED_GREETING);
+						session.setSize(700, 200);
+						session.speak(greetings.getGreetingList(currentMailbox));
+					}
+				} else if (choice == 2) {
+					states.transition(session, CallState.CHANGE_CURRENT_GREETING);
+					session.setSize(600, 135);
+					session.speak(
+							"Enter to the machine what you would like current greeting in used to be followed by the '#' sign.");
+				} else if (choice == 3) {
+					if (currentMailbox.greetingIsFull()) {
+						session.showPopUp("Error",
+								"Max amount of greetings reached. Change the current greeting or choose a different greeting to change");
+					} else {
+						session.speak("Enter the new greeting you would like to have followed by the '#' sign.");
+						states.transition(session, CallState.CREATE_GREETING);
+						session.setSize(600, 150);
+					}
+				} else if (choice == 4) {
+					states.transition(session, CallState.MAILBOX_MENU);
+					session.speak(MAILBOX_CHOICE);
+					session.setSize(350, 200);
+				}
+			} else {
+				session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+			}
+		} else {
+			session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+		}
+	}
+
+	/***
+	 * Method which will allow the user to choose a saved greeting they would like.
+	 * The method will check to make sure the methods are called with the
+	 * preconditions met
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void chooseGreeting(CallSession session, DialInput input) {
+		Mailbox currentMailbox = session.getCurrentMailbox();
+		if (input.isNumber()) {
+			int choice = input.getNumber();
+			if (choice >= 1 && choice <= currentMailbox.numOfGreetings()) {
+				currentMailbox.chooseCurrentGreeting(choice - 1);
+				states.transition(session, CallState.GREETING_MENU);
+				session.speak(GREETING_CHOICE);
+				session.setSize(350, 200);
+				session.showPopUp("Sucess", "The Greeting has been chosen");
+			} else {
+				session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+			}
+		} else {
+			session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+		}
+	}
+
+	/***
+	 * Method which will allow the user to create a saved greeting they would like.
+	 * The method will check to make sure the methods are called with the
+	 * preconditions met
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void createGreeting(CallSession session, DialInput input) {
+		Mailbox currentMailbox = session.getCurrentMailbox();
+		if (!input.isTerminatedText()) {
+			session.speak("Invalid greeting. Make sure there is a '#' sign. Try again.");
+			session.setSize(350, 200);
+		} else {
+			String greeting = input.getTerminatedText();
+			currentMailbox.addGreeting(greeting);
+			currentMailbox.chooseCurrentGreeting(currentMailbox.numOfGreetings() - 1);
+			states.transition(session, CallState.GREETING_MENU);
+			session.speak(GREETING_CHOICE);
+			session.setSize(350, 200);
+			session.showPopUp("Sucess", "The Greeting has been created and set as the current greeting.");
+
+		}
+
+	}
+
+	/***
+	 * Method which will allow the user to change the current greeting. The method
+	 * will check to make sure the methods are called with the preconditions met
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void changeGreeting(CallSession session, DialInput input) {
+		Mailbox currentMailbox = session.getCurrentMailbox();
+		if (!input.isTerminatedText()) {
+			session.speak("Invalid greeting. Make sure there is a '#' sign. Try again.");
+			session.setSize(350, 200);
+		} else {
+			String greeting = input.getTerminatedText();
+			currentMailbox.changeCurrentGreeting(greeting);
+			states.transition(session, CallState.GREETING_MENU);
+			session.speak(GREETING_CHOICE);
+			session.setSize(350, 200);
+			session.showPopUp("Sucess", "The current greeting has been changed");
+
+		}
+
+	}
+
+	/***
+	 * method which will create a new user and print out a pop window confirming
+	 * that it is created
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 */
+	private void createNewUser(CallSession session) {
+		int extension = mailSystem.addNewMailbox();
+		session.showPopUp("Success", "User has been created with Mailbox Extension Number "
+				+ extension + " with default pasccode '0000'");
+	}
+
+	/***
+	 * Method which will allow the user to change the passcode. The method will
+	 * check to make sure the methods are called with the preconditions met
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void changePasscode(CallSession session, DialInput input) {
+		Mailbox currentMailbox = session.getCurrentMailbox();
+		if (input.isNumber(4)) {
+			String passcode = input.getText();
+			currentMailbox.setPasscode(passcode);
+			session.showPopUp("Success", "The Mailbox Passcode has been set to " + passcode);
+			if (session.getState() == CallState.ADMIN_CHANGE_PASSCODE) {
+				states.transition(session, CallState.ADMIN_MENU);
+				session.speak(ADMIN_CHOICE);
+			} else {
+				states.transition(session, CallState.MAILBOX_MENU);
+				session.speak(MAILBOX_CHOICE);
+				session.setSize(350, 200);
+			}
+		} else {
+			session.speak("Passcode must be numerical and is four digits. Try Again");
+		}
+	}
+
+	/***
+	 * Method which will find a mailbox while the Control system is in the admin
+	 * state.The method will check to make sure the methods are called with the
+	 * preconditions met
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void adminMenuFind(CallSession session, DialInput input) {
+		if (!(input.getTerminator() >= 1)) {
+			session.speak("Invalid mailbox number. Try again and enter a mailbox number.");
+		} else {
+			if (!input.isTerminatedNumber()) {
+				session.speak("Invalid mailbox number. Try again and enter a mailbox number.");
+			} else {
+				int number = input.getNumber();
+				Mailbox currentMailbox = mailSystem.findMailbox(number);
+				session.setCurrentMailbox(currentMailbox);
+				if (currentMailbox == null) {
+					session.speak("Invalid mailbox number. Try again and enter a mailbox number.");
+				} else {
+					if (session.getState() == CallState.ADMIN_RESET_PASSCODE) {
+						currentMailbox.resetPasscode();
+						session.showPopUp("Success", "The Mailbox Passcode has been reset to '0000'");
+						session.speak(ADMIN_CHOICE);
+						states.transition(session, CallState.ADMIN_MENU);
+
+					} else {
+						states.transition(session, CallState.ADMIN_CHANGE_PASSCODE);
+						session.speak("Enter the passcode you would like Mailbox " + number + " to have");
+					}
+				}
+			}
+
+		}
+	}
+
+	/***
+	 * Method which will perform different actions based on what the user enters on
+	 * the mailbox menu. The method will check if the text matches the preconditions
+	 * of the different methods that will be called.
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void mailboxMenu(CallSession session, DialInput input) {
+		if (input.isNumber()) {
+			int choice = input.getNumber();
+			if (choice >= 1 && choice <= 3) {
+				if (choice == 1) {
+
+					states.transition(session, CallState.MESSAGE_MENU);
+					session.speak(MESSAGE_CHOICE);
+					session.setSize(350, 215);
+
+				} else if (choice == 2) {
+					session.speak("Enter the passcode you would like the Mailbox to have");
+					states.transition(session, CallState.CHANGE_PASSCODE);
+					session.setSize(350, 150);
+
+				} else if (choice == 3) {
+					states.transition(session, CallState.GREETING_MENU);
+					session.speak(GREETING_CHOICE);
+					session.setSize(350, 200);
+				}
+			} else {
+				session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+			}
+		} else {
+			session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+		}
+	}
+
+	/***
+	 * Method which will delete the message based on the integer entered by the
+	 * user. The number is checked and the message deleted in one step of the
+	 * mailbox, since another call may delete or save messages meanwhile.
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void deleteMessage(CallSession session, DialInput input) {
+		Mailbox currentMailbox = session.getCurrentMailbox();
+		if (input.isNumber()) {
+			int choice = input.getNumber();
+			if (currentMailbox.removeMessage(choice)) {
+				session.showPopUp("Sucess", "The selected message has been deleted");
+				states.transition(session, CallState.MESSAGE_MENU);
+				session.speak(MESSAGE_CHOICE);
+				session.setSize(350, 215);
+			} else {
+				session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+			}
+		} else {
+			session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+		}
+
+	}
+
+	/***
+	 * Method which will perform different actions based on what the user enters on
+	 * the message menu. The method will check if the text matches the preconditions
+	 * of the different methods that will be called.
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 * @param input
+	 *            the text entered by the user
+	 */
+	private void messageMenu(CallSession session, DialInput input) {
+		Mailbox currentMailbox = session.getCurrentMailbox();
+		if (input.isNumber()) {
+			int choice = input.getNumber();
+			if (choice >= 1 && choice <= 5) {
+				if (currentMailbox.newMessageisEmpty() && (choice == 1 || choice == 2 || choice == 3)) {
+					session.showPopUp("Message", "There are currently no new messsage");
+				} else {
+					if (choice == 1) {
+						// the message is read under the lock, since another call may delete it
+						Message message;
+						AudioClip audio = null;
+						String text = null;
+						synchronized (currentMailbox) {
+							message = currentMailbox.getCurrentMessage();
+							if (message != null) {
+								audio = message.getAudio();
+								// held, so compressing or deleting the message does not delete the file while it plays
+								if (audio != null && !audio.retain()) {
+									audio = null;
+								}
+								text = audio == null ? message.getText() : null;
+							}
+						}
+						if (message == null) {
+							session.showPopUp("Message", "There are currently no new messsage");
+						} else if (audio != null) {
+							try {
+								session.play(audio);
+							} finally {
+								audio.release();
+							}
+						} else {
+							session.showMessage(text);
+						}
+					} else if (choice == 2) {
+						// another call may have taken the message since it was checked
+						if (currentMailbox.saveCurrentMessage() == null) {
+							session.showPopUp("Message", "There are currently no new messsage");
+						} else {
+							session.showPopUp("Message", "The new message has been saved.");
+						}
+					} else if (choice == 3) {
+						if (currentMailbox.deleteCurrentMessage() == null) {
+							session.showPopUp("Message", "There are currently no new messsage");
+						} else {
+							session.showPopUp("Message", "The message has been removed.");
+						}
+					} else if (choice == 4) {
+						if (currentMailbox.newMessageisEmpty() && currentMailbox.savedMessageisEmpty()) {
+							session.showPopUp("Message", "There are no saved or new messages to view.");
+						} else {
+							states.transition(session, CallState.SELECTED_MESSAGE);
+							session.speak(
+									"Select a Message to delete by providing the number corresponding to the message.");
+							session.setSize(500, 150);
+							session.showMessages(currentMailbox);
+						}
+					} else if (choice == 5) {
+						states.transition(session, CallState.MAILBOX_MENU);
+						session.speak(MAILBOX_CHOICE);
+						session.setSize(350, 200);
+					}
+				}
+			} else {
+				session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+			}
+		} else {
+			session.showPopUp("Error", "Invalid choice. Choose a valid choice or hang up.");
+		}
+	}
+
+	/***
+	 * method which will essentially hang up the phone and reset the connection and
+	 * state of the phone. A message being left is deposited with its audio, if any
+	 * was sent, and the caller is told if the mailbox was too full to take it. If
+	 * the mailbox fails to take the message, the message is thrown away and the
+	 * call is still hung up before the failure is passed on.
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 */
+	public void hangUp(CallSession session) {
+		Message message = null;
+		if (session.getState() == CallState.RECORDING) {
+			RecordingBuffer currentMessage = session.getCurrentMessage();
+			boolean hasText = currentMessage.hasText();
+			AudioRecording recording = session.getRecording();
+			if (recording != null) {
+				session.setRecording(null);
+				AudioClip clip;
+				try {
+					clip = recording.finish();
+				} catch (IOException e) {
+					recording.discard();
+					throw new UncheckedIOException("Cannot finish the audio", e);
+				}
+				message = hasText ? new Message(currentMessage, clip) : new Message("Audio message", clip);
+			} else if (hasText) {
+				message = new Message(currentMessage, null);
+			}
+		}
+		boolean rejected;
+		try {
+			rejected = message != null && !session.getCurrentMailbox().addMessage(message);
+		} catch (RuntimeException e) {
+			discardMessage(message);
+			resetConnection(session);
+			throw e;
+		}
+		if (rejected) {
+			discardMessage(message);
+			metrics.messageRejected();
+		}
+		resetConnection(session);
+		metrics.callHungUp();
+		if (rejected) {
+			session.showPopUp("Mailbox Full", "The mailbox is full, so your message was not left.");
+		}
+		session.showPopUp("Hanged Up", "You have hanged up");
+	}
+
+	/***
+	 * method which resets the connection by restarting the state and clearing the
+	 * current message
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 */
+	private void resetConnection(CallSession session) {
+		states.restart(session);
+		discardRecording(session);
+		session.getCurrentMessage().clear();
+		session.speak("Enter numbers followed by the '#' sign to go to a specific Mailbox Number");
+		session.setSize(500, 150);
+	}
+
+	/***
+	 * method which throws away a message that was not left in a mailbox, with its
+	 * audio
+	 * 
+	 * @param message
+	 *            the message
+	 */
+	private void discardMessage(Message message) {
+		if (message.getAudio() != null) {
+			message.getAudio().delete();
+		}
+		message.release();
+	}
+
+	/***
+	 * method which throws away the audio recorded on a call that was not left as a
+	 * message
+	 * 
+	 * @param session
+	 *            the call that is being handled
+	 */
+	private void discardRecording(CallSession session) {
+		AudioRecording recording = session.getRecording();
+		if (recording != null) {
+			session.setRecording(null);
+			recording.discard();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package telephone;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/***
+ * Class which lets a snapshot wait for the messages that are being left while
+ * it starts. A message is written to the mail log before it is put in the inbox
+ * of its mailbox, so a message written to the log just before the log moves on
+ * to a new segment may not be in its mailbox yet when the mailbox is copied.
+ * Callers leaving a message enter the fence before it is written and leave it
+ * once it is in the inbox. Waiting on the fence starts a new epoch and waits
+ * until every caller that entered in the old epoch has left; callers that
+ * enter meanwhile are not waited for. Entering and leaving only add to
+ * counters of their epoch, so callers never wait for each other.
+ *
+ * @author James Nguyen
+ *
+ */
+public class DepositFence {
+	private static final long PAUSE_NANOS = 50_000;// the time waited between looks at the counters
+	private final LongAdder[] entered;// the callers that entered in each of the last two epochs
+	private final LongAdder[] left;// the callers that left in each of the last two epochs
+	private volatile long epoch;// the current epoch
+
+	/***
+	 * constructor which creates a fence with nobody inside
+	 */
+	public DepositFence() {
+		entered = new LongAdder[] { new LongAdder(), new LongAdder() };
+		left = new LongAdder[] { new LongAdder(), new LongAdder() };
+	}
+
+	/***
+	 * method which enters the fence before a message is written to the log. It is
+	 * safe to call from many threads at once.
+	 *
+	 * @return the epoch that must be given back when leaving
+	 */
+	public long enter() {
+		while (true) {
+			long current = epoch;
+			int i = (int) current & 1;
+			entered[i].increment();
+			if (epoch == current) {
+				return current;
+			}
+			// a waiter started a new epoch before it could see this caller, so enter that one instead
+			left[i].increment();
+		}
+	}
+
+	/***
+	 * method which leaves the fence once the message is in its mailbox
+	 *
+	 * @param epoch
+	 *            the epoch that entering returned
+	 */
+	public void exit(long epoch) {
+		left[(int) epoch & 1].increment();
+	}
+
+	/***
+	 * method which waits until every caller that was inside the fence when it was
+	 * called has left it. Only one caller waits at a time.
+	 */
+	public synchronized void await() {
+		long current = epoch;
+		int i = (int) current & 1;
+		epoch = current + 1;
+		// what left is counted first, and only goes up, so an equal count means nobody is inside
+		while (left[i].sum() != entered[i].sum()) {
+			LockSupport.parkNanos(PAUSE_NANOS);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package telephone;
+
+/***
+ * Class which reads the text that a caller entered on the phone once, so that
+ * the menus of the control system do not have to search and cut the text again
+ * for every check. It finds the number at the start of the text, the first '#'
+ * sign and whether the caller asked to hang up. Every call keeps one of these
+ * and reads each new entry into it, so reading an entry creates no objects.
+ *
+ * @author James Nguyen
+ *
+ */
+public class DialInput {
+	private static final int MAX_DIGITS = 9;// the most digits a number may have
+	private String text;// the text that was entered
+	private int length;// the number of characters that were entered
+	private int digits;// the number of digits at the start of the text
+	private int number;// the value of the digits at the start of the text
+	private int terminator;// the index of the first '#' sign, or -1 if there is none
+	private int firstText;// the index of the first character that is not a space
+	private boolean hangUp;// whether the caller asked to hang up
+
+	/***
+	 * constructor which creates an input that has not read any text yet
+	 */
+	public DialInput() {
+		parse("");
+	}
+
+	/***
+	 * method which reads the text that a caller entered, replacing what was read
+	 * before
+	 * 
+	 * @param entered
+	 *            the text that was entered
+	 * @precondition entered != null
+	 */
+	public void parse(String entered) {
+		assert entered != null : "Nothing was entered";
+		text = entered;
+		length = entered.length();
+		digits = 0;
+		number = 0;
+		terminator = -1;
+		firstText = length;
+		boolean leading = true;
+		for (int i = 0; i < length; i++) {
+			char c = entered.charAt(i);
+			if (leading && c >= '0' && c <= '9') {
+				if (digits < MAX_DIGITS) {
+					number = number * 10 + (c - '0');
+				}
+				digits++;
+			} else {
+				leading = false;
+			}
+			if (firstText == length && c > ' ') {
+				firstText = i;
+			}
+			if (c == '#') {
+				terminator = i;
+				break;
+			}
+		}
+		hangUp = length == 1 && (entered.charAt(0) == 'H' || entered.charAt(0) == 'h');
+	}
+
+	/***
+	 * method which returns whether the text is only a number of at most 9 digits
+	 * 
+	 * @return true if the text is a number
+	 */
+	public boolean isNumber() {
+		return length != 0 && digits == length && length <= MAX_DIGITS;
+	}
+
+	/***
+	 * method which returns whether the text is only a number of exactly some
+	 * digits
+	 * 
+	 * @param size
+	 *            the number of digits
+	 * @return true if the text is a number with that many digits
+	 */
+	public boolean isNumber(int size) {
+		return digits == length && length == size;
+	}
+
+	/***
+	 * method which returns whether the text starts with a number of at most 9
+	 * digits that is followed right away by a '#' sign
+	 * 
+	 * @return true if the text is a number followed by a '#' sign
+	 */
+	public boolean isTerminatedNumber() {
+		return terminator >= 1 && digits == terminator && digits <= MAX_DIGITS;
+	}
+
+	/***
+	 * method which returns the number that was entered
+	 * 
+	 * @return the number
+	 * @precondition isNumber() || isTerminatedNumber()
+	 */
+	public int getNumber() {
+		assert digits <= MAX_DIGITS : "The number has too many digits";
+		return number;
+	}
+
+	/***
+	 * method which returns whether there is text that is not a space before the
+	 * first '#' sign
+	 * 
+	 * @return true if there is text followed by a '#' sign
+	 */
+	public boolean isTerminatedText() {
+		return terminator > firstText;
+	}
+
+	/***
+	 * method which returns the text before the first '#' sign
+	 * 
+	 * @return the text before the '#' sign
+	 * @precondition isTerminatedText()
+	 */
+	public String getTerminatedText() {
+		assert terminator >= 0 : "There is no '#' sign";
+		return text.substring(0, terminator);
+	}
+
+	/***
+	 * method which returns the index of the first '#' sign
+	 * 
+	 * @return the index of the '#' sign, or -1 if there is none
+	 */
+	public int getTerminator() {
+		return terminator;
+	}
+
+	/***
+	 * method which returns the number of characters that were entered
+	 * 
+	 * @return the length of the text
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/***
+	 * method which returns whether the caller asked to hang up by entering 'H'
+	 * 
+	 * @return true if the caller asked to hang up
+	 */
+	public boolean isHangUp() {
+		return hangUp;
+	}
+
+	/***
+	 * method which returns the text that was entered
+	 * 
+	 * @return the text
+	 */
+	public String getText() {
+		return text;
+	}
+}
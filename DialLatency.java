@@ -0,0 +1,143 @@
+package telephone;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Class which is a histogram of how long the control system took to handle the
+ * entries dialed in one call state. Every power of two of nanoseconds is split
+ * into eight buckets, so a percentile is within an eighth of the real value.
+ * Each bucket is a striped counter, so calls on many threads can record at once
+ * without waiting on each other.
+ *
+ * @author James Nguyen
+ *
+ */
+public class DialLatency implements DialLatencyMXBean {
+	private static final int SUB_BITS = 3;// the bits of the buckets within a power of two
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;// the buckets within a power of two
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;// the buckets for every long
+	private final LongAdder[] buckets;// the number of entries in each bucket
+	private final LongAdder count;// the number of entries
+	private final LongAdder total;// the nanoseconds of all entries together
+	private final LongAccumulator max;// the largest latency
+
+	/***
+	 * constructor which creates an empty histogram
+	 */
+	public DialLatency() {
+		buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+		count = new LongAdder();
+		total = new LongAdder();
+		max = new LongAccumulator(Math::max, 0);
+	}
+
+	/***
+	 * method which records how long an entry took
+	 * 
+	 * @param nanos
+	 *            the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets[bucket(nanos)].increment();
+		count.increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public long getMeanNanos() {
+		long entries = count.sum();
+		return entries == 0 ? 0 : total.sum() / entries;
+	}
+
+	@Override
+	public long getP50Nanos() {
+		return getPercentile(50);
+	}
+
+	@Override
+	public long getP99Nanos() {
+		return getPercentile(99);
+	}
+
+	@Override
+	public long getP999Nanos() {
+		return getPercentile(99.9);
+	}
+
+	@Override
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	/***
+	 * method which returns the latency that a percent of the entries took at most
+	 * 
+	 * @param percent
+	 *            the percent of the entries
+	 * @return the largest latency of the bucket the percentile falls in
+	 * @precondition percent > 0 && percent <= 100
+	 */
+	public long getPercentile(double percent) {
+		assert percent > 0 && percent <= 100 : "Invalid percent";
+		long[] counts = new long[BUCKETS];
+		long entries = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			entries += counts[i];
+		}
+		long rank = (long) Math.ceil(entries * percent / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && seen > 0) {
+				return Math.min(highest(i), max.get());
+			}
+		}
+		return 0;
+	}
+
+	/***
+	 * method which finds the bucket of a latency
+	 * 
+	 * @param nanos
+	 *            the latency
+	 * @return the index of the bucket
+	 */
+	private static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/***
+	 * method which finds the largest latency of a bucket
+	 * 
+	 * @param bucket
+	 *            the index of the bucket
+	 * @return the largest latency that falls in the bucket
+	 */
+	private static long highest(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+	}
+}
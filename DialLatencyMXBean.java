@@ -0,0 +1,54 @@
+package telephone;
+
+/***
+ * Dial latency MXBean interface creates the requirements for reading how long
+ * the control system took to handle the entries dialed in one call state. The
+ * latencies are in nanoseconds and the percentiles are within an eighth of the
+ * real value.
+ *
+ * @author James Nguyen
+ *
+ */
+public interface DialLatencyMXBean {
+	/***
+	 * method which returns the number of entries that were timed
+	 * 
+	 * @return the number of entries
+	 */
+	public long getCount();
+
+	/***
+	 * method which returns the average time an entry took
+	 * 
+	 * @return the average latency in nanoseconds
+	 */
+	public long getMeanNanos();
+
+	/***
+	 * method which returns the time half of the entries took at most
+	 * 
+	 * @return the median latency in nanoseconds
+	 */
+	public long getP50Nanos();
+
+	/***
+	 * method which returns the time 99 percent of the entries took at most
+	 * 
+	 * @return the 99th percentile latency in nanoseconds
+	 */
+	public long getP99Nanos();
+
+	/***
+	 * method which returns the time 99.9 percent of the entries took at most
+	 * 
+	 * @return the 99.9th percentile latency in nanoseconds
+	 */
+	public long getP999Nanos();
+
+	/***
+	 * method which returns the longest time an entry took
+	 * 
+	 * @return the largest latency in nanoseconds
+	 */
+	public long getMaxNanos();
+}
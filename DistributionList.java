@@ -0,0 +1,82 @@
+package telephone;
+
+import java.util.Arrays;
+
+/***
+ * Class which is a named list of mailboxes that an announcement can be sent to
+ * at once. The extensions of the members are kept sorted and only once, and
+ * the list never changes after it is created, so it can be read by many
+ * threads while a message is being delivered to its members.
+ *
+ * @author James Nguyen
+ *
+ */
+public class DistributionList {
+	private final String name;// the name of the list
+	private final int[] members;// the sorted extensions of the members
+
+	/***
+	 * Constructor which creates a list of mailboxes
+	 * 
+	 * @param name
+	 *            the name of the list
+	 * @param extensions
+	 *            the extensions of the members, in any order
+	 * @precondition name != null
+	 */
+	public DistributionList(String name, int... extensions) {
+		assert name != null : "The list has no name";
+		this.name = name;
+		int[] sorted = extensions.clone();
+		Arrays.sort(sorted);
+		int size = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (sorted[i] > 0 && (size == 0 || sorted[size - 1] != sorted[i])) {
+				sorted[size++] = sorted[i];
+			}
+		}
+		members = Arrays.copyOf(sorted, size);
+	}
+
+	/***
+	 * method which returns the name of the list
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/***
+	 * method which returns the number of members of the list
+	 * 
+	 * @return the number of members
+	 */
+	public int size() {
+		return members.length;
+	}
+
+	/***
+	 * method which returns the extension of a member
+	 * 
+	 * @param i
+	 *            the index of the member
+	 * @return the extension of the member
+	 * @precondition i>=0 && i<size()
+	 */
+	public int getMember(int i) {
+		assert i >= 0 && i < members.length : "Index is out of bounds";
+		return members[i];
+	}
+
+	/***
+	 * method which checks if a mailbox is a member of the list
+	 * 
+	 * @param extension
+	 *            the extension of the mailbox
+	 * @return true if the mailbox is a member
+	 */
+	public boolean contains(int extension) {
+		return Arrays.binarySearch(members, extension) >= 0;
+	}
+}
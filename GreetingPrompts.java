@@ -0,0 +1,181 @@
+package telephone;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***
+ * Class which keeps the prompts built from the greetings of each mailbox, so a
+ * call reaching a mailbox is greeted with a prompt that was built before
+ * instead of building it again. The prompts of a mailbox are built the first
+ * time they are needed and are forgotten when the greetings of the mailbox are
+ * changed. They are built while the lock of the mailbox is held, and the
+ * greetings are only changed while that lock is held, so prompts built from
+ * old greetings are never kept. The prompts are kept in a fixed number of
+ * slots chosen by the extension number of the mailbox, and a mailbox whose
+ * prompts are built takes the slot over from any other mailbox in it, so
+ * however many mailboxes are reached the cache never holds more than its
+ * slots.
+ *
+ * @author James Nguyen
+ *
+ */
+public class GreetingPrompts implements MailboxListener {
+	private static final PromptTemplate ARRIVAL = new PromptTemplate(
+			"<html><body>{0}<br>  Enter the passcode to access the mailbox. </body></html>");// the prompt of a call reaching a mailbox
+	private static final PromptTemplate ARRIVAL_FULL = new PromptTemplate(
+			"<html><body>{0}<br>  The mailbox is full and cannot take messages.<br>  Enter the passcode to access the mailbox. </body></html>");// the prompt of a call reaching a full mailbox
+	private static final PromptTemplate CHOICES = new PromptTemplate(
+			"<html><body>Choose the greeting by entering the number corresponding to the greeting. ");// the start of the list of greetings
+	private static final PromptTemplate CHOICE = new PromptTemplate("<br>{0}. {1}");// a greeting in the list of greetings
+	private static final int DEFAULT_CAPACITY = 4096;// the slots of a cache created without a size
+	private final AtomicReferenceArray<Prompts> prompts;// the prompts of the mailbox last built in each slot
+
+	/***
+	 * constructor which creates a cache with no prompts and the default number of
+	 * slots
+	 */
+	public GreetingPrompts() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/***
+	 * constructor which creates a cache with no prompts
+	 * 
+	 * @param capacity
+	 *            the most mailboxes whose prompts are kept at once
+	 * @precondition capacity > 0 && (capacity & (capacity - 1)) == 0
+	 */
+	public GreetingPrompts(int capacity) {
+		assert capacity > 0 && (capacity & (capacity - 1)) == 0 : "The capacity must be a power of two";
+		prompts = new AtomicReferenceArray<Prompts>(capacity);
+	}
+
+	/***
+	 * method which returns the prompt spoken to a call that reaches a mailbox
+	 * 
+	 * @param mailbox
+	 *            the mailbox that was reached
+	 * @return the current greeting of the mailbox followed by the passcode prompt
+	 */
+	public String getArrival(Mailbox mailbox) {
+		Prompts built = get(mailbox);
+		return mailbox.isFull() ? built.arrivalFull : built.arrival;
+	}
+
+	/***
+	 * method which returns the prompt that lists the greetings of a mailbox to
+	 * choose from
+	 * 
+	 * @param mailbox
+	 *            the mailbox
+	 * @return the numbered list of the greetings
+	 */
+	public String getGreetingList(Mailbox mailbox) {
+		return get(mailbox).greetingList;
+	}
+
+	@Override
+	public void greetingsChanged(Mailbox mailbox) {
+		int slot = slotOf(mailbox);
+		Prompts built = prompts.get(slot);
+		if (built != null && built.mailbox == mailbox) {
+			// another mailbox may have taken the slot over meanwhile, and its prompts are kept
+			prompts.compareAndSet(slot, built, null);
+		}
+	}
+
+	/***
+	 * method which returns the number of mailboxes whose prompts are kept
+	 * 
+	 * @return the number of mailboxes
+	 */
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < prompts.length(); i++) {
+			if (prompts.get(i) != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/***
+	 * method which finds the prompts of a mailbox, building them if they are not
+	 * kept
+	 * 
+	 * @param mailbox
+	 *            the mailbox
+	 * @return the prompts of the mailbox
+	 */
+	private Prompts get(Mailbox mailbox) {
+		int slot = slotOf(mailbox);
+		Prompts built = prompts.get(slot);
+		if (built == null || built.mailbox != mailbox) {
+			synchronized (mailbox) {
+				built = prompts.get(slot);
+				if (built == null || built.mailbox != mailbox) {
+					built = build(mailbox);
+					prompts.set(slot, built);
+				}
+			}
+		}
+		return built;
+	}
+
+	/***
+	 * method which finds the slot the prompts of a mailbox are kept in
+	 * 
+	 * @param mailbox
+	 *            the mailbox
+	 * @return the slot
+	 */
+	private int slotOf(Mailbox mailbox) {
+		return mailbox.getExtension() & (prompts.length() - 1);
+	}
+
+	/***
+	 * method which builds the prompts of a mailbox from its greetings
+	 * 
+	 * @param mailbox
+	 *            the mailbox, whose lock is held
+	 * @return the prompts of the mailbox
+	 */
+	private static Prompts build(Mailbox mailbox) {
+		String greeting = mailbox.getCurrentGreeting();
+		StringBuilder list = new StringBuilder();
+		CHOICES.appendTo(list);
+		for (int i = 0; i < mailbox.numOfGreetings(); i++) {
+			CHOICE.appendTo(list, Integer.toString(i + 1), mailbox.getGreeting(i));
+		}
+		list.append("</body></html>");
+		return new Prompts(mailbox, ARRIVAL.render(greeting), ARRIVAL_FULL.render(greeting), list.toString());
+	}
+
+	/***
+	 * Class which holds the prompts built from the greetings of a mailbox
+	 */
+	private static class Prompts {
+		private final Mailbox mailbox;// the mailbox the prompts were built for
+		private final String arrival;// the prompt of a call reaching the mailbox
+		private final String arrivalFull;// the prompt of a call reaching the mailbox when it is full
+		private final String greetingList;// the numbered list of the greetings
+
+		/***
+		 * constructor which holds the prompts of a mailbox
+		 * 
+		 * @param mailbox
+		 *            the mailbox the prompts were built for
+		 * @param arrival
+		 *            the prompt of a call reaching the mailbox
+		 * @param arrivalFull
+		 *            the prompt of a call reaching the mailbox when it is full
+		 * @param greetingList
+		 *            the numbered list of the greetings
+		 */
+		Prompts(Mailbox mailbox, String arrival, String arrivalFull, String greetingList) {
+			this.mailbox = mailbox;
+			this.arrival = arrival;
+			this.arrivalFull = arrivalFull;
+			this.greetingList = greetingList;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package telephone;
+
+import java.nio.ByteBuffer;
+
+/***
+ * Class which turns 16 bit little endian PCM into IMA ADPCM and back. Every
+ * sample is kept as the 4 bit difference from a prediction of it, so the audio
+ * takes a quarter of the space. Two samples are packed into each byte, the
+ * first in the low 4 bits. The codec remembers its prediction between calls, so
+ * audio can be passed through it in chunks of any size, but one codec must only
+ * be used for one stream of audio at a time.
+ *
+ * @author James Nguyen
+ *
+ */
+public class ImaAdpcmCodec {
+	// the size of the steps of the differences
+	private static final int[] STEPS = { 7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41,
+			45, 50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307, 337, 371,
+			408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066, 2272,
+			2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487,
+			12635, 13899, 15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767 };
+	private static final int[] INDEX_CHANGES = { -1, -1, -1, -1, 2, 4, 6, 8 };// how each difference moves the step
+	private int predictor;// the prediction of the next sample
+	private int index;// the index of the current step
+
+	/***
+	 * method which forgets the prediction, so that a new stream of audio can be
+	 * passed through the codec
+	 */
+	public void reset() {
+		predictor = 0;
+		index = 0;
+	}
+
+	/***
+	 * method which compresses as many pairs of samples as there are in the PCM and
+	 * room for in the output. A sample that is left over stays in the PCM.
+	 * 
+	 * @param pcm
+	 *            the 16 bit little endian samples, from the position to the limit
+	 * @param adpcm
+	 *            the buffer the compressed audio is written to
+	 */
+	public void encode(ByteBuffer pcm, ByteBuffer adpcm) {
+		while (pcm.remaining() >= 4 && adpcm.hasRemaining()) {
+			int low = encodeSample(getSample(pcm));
+			int high = encodeSample(getSample(pcm));
+			adpcm.put((byte) (low | high << 4));
+		}
+	}
+
+	/***
+	 * method which compresses the last sample of the audio, if there is one left
+	 * over, by repeating it
+	 * 
+	 * @param pcm
+	 *            the samples that are left, which is 2 bytes or none
+	 * @param adpcm
+	 *            the buffer the compressed audio is written to
+	 */
+	public void finish(ByteBuffer pcm, ByteBuffer adpcm) {
+		if (pcm.remaining() >= 2 && adpcm.hasRemaining()) {
+			int sample = getSample(pcm);
+			int low = encodeSample(sample);
+			adpcm.put((byte) (low | encodeSample(sample) << 4));
+		}
+	}
+
+	/***
+	 * method which expands as many bytes of compressed audio as there is room for
+	 * in the output
+	 * 
+	 * @param adpcm
+	 *            the compressed audio, from the position to the limit
+	 * @param pcm
+	 *            the buffer the 16 bit little endian samples are written to
+	 */
+	public void decode(ByteBuffer adpcm, ByteBuffer pcm) {
+		while (adpcm.hasRemaining() && pcm.remaining() >= 4) {
+			int pair = adpcm.get();
+			putSample(pcm, decodeSample(pair & 0xf));
+			putSample(pcm, decodeSample(pair >> 4 & 0xf));
+		}
+	}
+
+	/***
+	 * method which finds the 4 bit difference of a sample from its prediction and
+	 * moves the prediction on
+	 * 
+	 * @param sample
+	 *            the sample
+	 * @return the 4 bit difference
+	 */
+	private int encodeSample(int sample) {
+		int step = STEPS[index];
+		int difference = sample - predictor;
+		int nibble = 0;
+		if (difference < 0) {
+			nibble = 8;
+			difference = -difference;
+		}
+		int delta = step >> 3;
+		if (difference >= step) {
+			nibble |= 4;
+			difference -= step;
+			delta += step;
+		}
+		step >>= 1;
+		if (difference >= step) {
+			nibble |= 2;
+			difference -= step;
+			delta += step;
+		}
+		step >>= 1;
+		if (difference >= step) {
+			nibble |= 1;
+			delta += step;
+		}
+		move(nibble, delta);
+		return nibble;
+	}
+
+	/***
+	 * method which finds a sample from its 4 bit difference and moves the
+	 * prediction on
+	 * 
+	 * @param nibble
+	 *            the 4 bit difference
+	 * @return the sample
+	 */
+	private int decodeSample(int nibble) {
+		int step = STEPS[index];
+		int delta = step >> 3;
+		if ((nibble & 4) != 0) {
+			delta += step;
+		}
+		if ((nibble & 2) != 0) {
+			delta += step >> 1;
+		}
+		if ((nibble & 1) != 0) {
+			delta += step >> 2;
+		}
+		move(nibble, delta);
+		return predictor;
+	}
+
+	/***
+	 * method which moves the prediction and the step on after a difference
+	 * 
+	 * @param nibble
+	 *            the 4 bit difference
+	 * @param delta
+	 *            the size of the difference
+	 */
+	private void move(int nibble, int delta) {
+		predictor += (nibble & 8) != 0 ? -delta : delta;
+		if (predictor > Short.MAX_VALUE) {
+			predictor = Short.MAX_VALUE;
+		} else if (predictor < Short.MIN_VALUE) {
+			predictor = Short.MIN_VALUE;
+		}
+		index += INDEX_CHANGES[nibble & 7];
+		if (index < 0) {
+			index = 0;
+		} else if (index >= STEPS.length) {
+			index = STEPS.length - 1;
+		}
+	}
+
+	/***
+	 * method which reads a 16 bit little endian sample
+	 * 
+	 * @param pcm
+	 *            the samples
+	 * @return the sample
+	 */
+	private static int getSample(ByteBuffer pcm) {
+		int low = pcm.get() & 0xff;
+		return (short) (low | pcm.get() << 8);
+	}
+
+	/***
+	 * method which writes a 16 bit little endian sample
+	 * 
+	 * @param pcm
+	 *            the buffer the sample is written to
+	 * @param sample
+	 *            the sample
+	 */
+	private static void putSample(ByteBuffer pcm, int sample) {
+		pcm.put((byte) sample);
+		pcm.put((byte) (sample >> 8));
+	}
+}
@@ -0,0 +1,642 @@
+package telephone;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***
+ * Class which lets telephone lines connect to the control system over TCP. Every
+ * connection is one call with its own call session. A line sends one entry per
+ * line of text, the same way the phone sends the text of its text field, and
+ * sends 'H' to hang up. While leaving a message a line may send audio as a
+ * line with the number of bytes followed by the bytes themselves. The prompts
+ * are sent back one per line, and the audio of a message is sent the same way:
+ *
+ * <pre>
+ * AUDIO count
+ * bytes
+ * </pre>
+ *
+ * <pre>
+ * SPEAK text
+ * POPUP title|text
+ * MESSAGES count
+ * 1. text
+ * ...
+ * PLAY count encoding
+ * bytes
+ * </pre>
+ *
+ * Audio is sent by the line as 16 bit little endian PCM. It is played back as
+ * PCM or IMA_ADPCM, since the audio of a message may have been compressed after
+ * it was left. Audio is copied out of the read buffer once, in the chunks it
+ * arrives in, and is sent from its file straight to the socket.
+ *
+ * All lines are read by a single selector thread, so an idle line only costs
+ * its socket and session and not a thread. The calls themselves run on a small
+ * pool of worker threads, since they wait for the disk: every line runs its
+ * entries, its audio and its writes one at a time and in order on one worker at
+ * a time. A line that has many entries waiting is not read until the worker has
+ * caught up. A line whose call fails is disconnected on its own, and the other
+ * lines carry on.
+ *
+ * @author James Nguyen
+ *
+ */
+public class LineServer implements Runnable {
+	private static final int MAX_LINE_LENGTH = 4096;// the longest entry a line may send
+	private static final String AUDIO = "AUDIO ";// the start of a line that is followed by audio
+	private static final int MAX_QUEUED = 64;// the tasks a line may have waiting before it is no longer read
+	private static final long CLOSE_MILLIS = 60_000;// the longest closing waits for the calls to end
+	private final ControlSystem controlSystem;// control system that the lines call
+	private final ByteBuffer readBuffer;// buffer shared by every line for reading
+	private final ExecutorService workers;// the threads that run the calls and write to the lines
+	private final ConcurrentLinkedQueue<Line> changed;// the lines the selector has to look at again
+	private Selector selector;// selector which waits on every line
+	private ServerSocketChannel serverChannel;// the channel that accepts new lines
+	private Thread thread;// the thread that runs the selector
+	private volatile boolean running;// true until the server is closed
+	private int openLines;// the number of lines currently connected
+
+	/***
+	 * Constructor which creates a line server for the control system with two
+	 * worker threads for every processor, and at least four
+	 * 
+	 * @param controlSystem
+	 *            the control system the lines will call
+	 */
+	public LineServer(ControlSystem controlSystem) {
+		this(controlSystem, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+	}
+
+	/***
+	 * Constructor which creates a line server for the control system
+	 * 
+	 * @param controlSystem
+	 *            the control system the lines will call
+	 * @param threads
+	 *            the number of worker threads that run the calls
+	 * @precondition threads > 0
+	 */
+	public LineServer(ControlSystem controlSystem, int threads) {
+		assert threads > 0 : "The server needs worker threads";
+		this.controlSystem = controlSystem;
+		this.readBuffer = ByteBuffer.allocateDirect(8192);
+		AtomicInteger count = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "line-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.changed = new ConcurrentLinkedQueue<Line>();
+	}
+
+	/***
+	 * method which binds the server to the local port and starts answering lines
+	 * 
+	 * @param port
+	 *            the port to listen on, or 0 to choose any free port
+	 * @throws IOException
+	 *             if the port cannot be opened
+	 */
+	public void start(int port) throws IOException {
+		assert thread == null : "The server has already been started";
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		running = true;
+		thread = new Thread(this, "line-server");
+		thread.start();
+	}
+
+	/***
+	 * method which returns the port that the server is listening on
+	 * 
+	 * @return the local port of the server
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/***
+	 * method which returns the number of lines that are currently connected
+	 * 
+	 * @return the number of connected lines
+	 */
+	public synchronized int getOpenLines() {
+		return openLines;
+	}
+
+	/***
+	 * method which stops the server, disconnects every line and waits for the
+	 * calls to end. The workers are only stopped once every line has ended its
+	 * call, since the tasks of a line are handed to the workers a batch at a time.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the selector thread or the
+	 *             workers
+	 */
+	public void close() throws InterruptedException {
+		running = false;
+		selector.wakeup();
+		thread.join();
+		long end = System.currentTimeMillis() + CLOSE_MILLIS;
+		synchronized (this) {
+			long left;
+			while (openLines > 0 && (left = end - System.currentTimeMillis()) > 0) {
+				wait(left);
+			}
+		}
+		workers.shutdown();
+		workers.awaitTermination(Math.max(1, end - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+	}
+
+	/***
+	 * method which runs the selector loop until the server is closed
+	 */
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+				Line line;
+				while ((line = changed.poll()) != null) {
+					line.update();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						line = (Line) key.attachment();
+						try {
+							if (key.isReadable()) {
+								line.read();
+							}
+							if (key.isValid() && key.isWritable()) {
+								line.writable();
+							}
+						} catch (IOException | RuntimeException e) {
+							line.disconnect();
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Line server stopped", e);
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof Line) {
+					((Line) key.attachment()).disconnect();
+				}
+			}
+			try {
+				serverChannel.close();
+				selector.close();
+			} catch (IOException e) {
+				// nothing left to release
+			}
+		}
+	}
+
+	/***
+	 * method which accepts every line that is waiting to connect
+	 * 
+	 * @throws IOException
+	 *             if the server channel fails
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			Line line = new Line(channel, key);
+			key.attach(line);
+			synchronized (this) {
+				openLines++;
+			}
+			line.open();
+		}
+	}
+
+	/***
+	 * Class which is a single connected line. It is the output of its call and
+	 * keeps the part of an entry that has not been ended yet. The selector thread
+	 * reads the line and hands every entry to the call of the line as a task; the
+	 * tasks run in order on the workers, and only they use the session and write
+	 * to the socket. The workers tell the selector when the line has to be read,
+	 * written or disconnected again by putting it on the changed lines.
+	 */
+	private class Line implements CallOutput {
+		private final SocketChannel channel;// the socket of the line
+		private final SelectionKey key;// the key of the line in the selector
+		private final OrderedExecutor call;// the tasks of the call, run in the order they were read
+		private final AtomicInteger queued;// the entries and audio waiting to be run
+		private final ArrayDeque<Object> pending;// prompts and audio transfers waiting to be written, only used by the tasks
+		private volatile boolean writing;// true while the socket did not take everything that is pending
+		private volatile boolean broken;// true once a task of the call threw, so the tasks left are not run
+		private volatile boolean lost;// true once the socket failed, so nothing more is written
+		private byte[] partial;// bytes of an entry that has not been ended yet
+		private int partialLength;// the number of bytes in partial
+		private long audioRemaining;// the bytes of audio the line has still to send
+		private CallSession session;// the call of the line, only used by the tasks
+
+		/***
+		 * Constructor which creates the line for a connected socket
+		 * 
+		 * @param channel
+		 *            the socket of the line
+		 * @param key
+		 *            the key of the line in the selector
+		 */
+		Line(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+			this.call = new OrderedExecutor(workers);
+			this.queued = new AtomicInteger();
+			this.pending = new ArrayDeque<Object>(2);
+		}
+
+		/***
+		 * method which starts the call of the line
+		 */
+		void open() {
+			submit(() -> session = controlSystem.openSession(this));
+		}
+
+		/***
+		 * method which reads what the line sent and hands every complete entry to
+		 * the call. The line is no longer read while too many entries are waiting.
+		 * 
+		 * @throws IOException
+		 *             if the socket fails
+		 */
+		void read() throws IOException {
+			readBuffer.clear();
+			int read = channel.read(readBuffer);
+			if (read < 0) {
+				submit(() -> controlSystem.hangUp(session));
+				disconnect();
+				return;
+			}
+			readBuffer.flip();
+			while (readBuffer.hasRemaining() && key.isValid()) {
+				if (audioRemaining > 0) {
+					record();
+					continue;
+				}
+				byte b = readBuffer.get();
+				if (b == '\n') {
+					handle();
+				} else if (partialLength == MAX_LINE_LENGTH) {
+					disconnect();
+				} else {
+					if (partial == null) {
+						partial = new byte[64];
+					} else if (partialLength == partial.length) {
+						byte[] grown = new byte[Math.min(partial.length * 2, MAX_LINE_LENGTH)];
+						System.arraycopy(partial, 0, grown, 0, partialLength);
+						partial = grown;
+					}
+					partial[partialLength++] = b;
+				}
+			}
+			if (key.isValid() && queued.get() >= MAX_QUEUED) {
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			}
+		}
+
+		/***
+		 * method which copies the audio in the read buffer and gives it to the call
+		 */
+		private void record() {
+			int length = (int) Math.min(readBuffer.remaining(), audioRemaining);
+			ByteBuffer chunk = ByteBuffer.allocate(length);
+			chunk.put(readBuffer.slice().limit(length)).flip();
+			readBuffer.position(readBuffer.position() + length);
+			audioRemaining -= length;
+			submit(() -> {
+				try {
+					controlSystem.record(session, chunk);
+				} catch (UncheckedIOException e) {
+					showPopUp("Error", "The audio could not be recorded.");
+				}
+			});
+		}
+
+		/***
+		 * method which gives one complete entry to the call, or starts reading audio
+		 * if the entry announces it
+		 */
+		private void handle() {
+			int length = partialLength;
+			if (length > 0 && partial[length - 1] == '\r') {
+				length--;
+			}
+			String entered = length == 0 ? "" : new String(partial, 0, length, StandardCharsets.UTF_8);
+			partialLength = 0;
+			if (partial != null && partial.length > 64) {
+				partial = null;
+			}
+			if (entered.startsWith(AUDIO)) {
+				try {
+					audioRemaining = Long.parseLong(entered.substring(AUDIO.length()).trim());
+				} catch (NumberFormatException e) {
+					disconnect();
+				}
+				if (audioRemaining < 0) {
+					disconnect();
+				}
+				return;
+			}
+			submit(() -> controlSystem.dial(session, entered));
+		}
+
+		/***
+		 * method which runs a task of the call on the workers, unless a task of the
+		 * call has thrown by then. A task that throws disconnects the line, and the
+		 * exception is handed on to the handler of the worker. The tasks still run
+		 * if only the socket was lost, so the entries that were read are not lost.
+		 * 
+		 * @param task
+		 *            the task
+		 */
+		private void submit(Runnable task) {
+			queued.incrementAndGet();
+			call.execute(() -> {
+				try {
+					if (!broken) {
+						task.run();
+					}
+				} catch (RuntimeException e) {
+					broken = true;
+					changed();
+					throw e;
+				} finally {
+					if (queued.decrementAndGet() == MAX_QUEUED - 1) {
+						changed();
+					}
+				}
+			});
+		}
+
+		/***
+		 * method which asks a worker to write what is pending, once the socket can
+		 * take more. It is only called by the selector thread.
+		 */
+		void writable() {
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+			call.execute(this::write);
+		}
+
+		/***
+		 * method which makes the selector look at the line again
+		 */
+		private void changed() {
+			LineServer.this.changed.add(this);
+			selector.wakeup();
+		}
+
+		/***
+		 * method which reads or writes the line again, or disconnects it, as the
+		 * workers asked. It is only called by the selector thread.
+		 */
+		void update() {
+			if (broken || lost) {
+				disconnect();
+				return;
+			}
+			if (!key.isValid()) {
+				return;
+			}
+			int ops = queued.get() < MAX_QUEUED ? SelectionKey.OP_READ : 0;
+			if (writing) {
+				ops |= SelectionKey.OP_WRITE;
+			}
+			key.interestOps(ops);
+		}
+
+		/***
+		 * method which writes as many waiting prompts as the socket will take, and
+		 * has the selector wait until it will take the rest
+		 */
+		private void write() {
+			if (lost) {
+				return;
+			}
+			try {
+				while (!pending.isEmpty()) {
+					Object next = pending.peek();
+					boolean done;
+					if (next instanceof Transfer) {
+						done = ((Transfer) next).send(channel);
+					} else {
+						ByteBuffer buffer = (ByteBuffer) next;
+						channel.write(buffer);
+						done = !buffer.hasRemaining();
+					}
+					if (!done) {
+						writing = true;
+						changed();
+						return;
+					}
+					pending.poll();
+				}
+				writing = false;
+			} catch (IOException e) {
+				lost = true;
+				changed();
+			}
+		}
+
+		/***
+		 * method which stops reading the line and has the call ended once the tasks
+		 * that were already read have run. It is only called by the selector thread.
+		 */
+		void disconnect() {
+			if (!key.isValid()) {
+				return;
+			}
+			key.cancel();
+			call.execute(this::close);
+		}
+
+		/***
+		 * method which closes the socket of the line and ends its call, after every
+		 * other task of the call
+		 */
+		private void close() {
+			for (Object next : pending) {
+				if (next instanceof Transfer) {
+					((Transfer) next).close();
+				}
+			}
+			pending.clear();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// the line is already gone
+			}
+			try {
+				if (session != null) {
+					controlSystem.closeSession(session);
+				}
+			} finally {
+				synchronized (LineServer.this) {
+					openLines--;
+					LineServer.this.notifyAll();
+				}
+			}
+		}
+
+		/***
+		 * method which queues one line of output and tries to write it
+		 * 
+		 * @param text
+		 *            the line of output without the line break
+		 */
+		private void send(String text) {
+			if (lost) {
+				return;
+			}
+			pending.add(ByteBuffer.wrap((text.replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8)));
+			write();
+		}
+
+		@Override
+		public void play(AudioClip clip) {
+			if (lost) {
+				return;
+			}
+			FileChannel file;
+			try {
+				file = clip.open();
+			} catch (IOException e) {
+				showPopUp("Error", "The audio of the message is missing.");
+				return;
+			}
+			pending.add(ByteBuffer.wrap(("PLAY " + clip.getLength() + " " + clip.getEncoding() + "\n").getBytes(StandardCharsets.UTF_8)));
+			pending.add(new Transfer(file, clip.getLength()));
+			write();
+		}
+
+		@Override
+		public void speak(String text) {
+			send("SPEAK " + text);
+		}
+
+		@Override
+		public void setSize(int width, int height) {
+			// a line has no window to size
+		}
+
+		@Override
+		public void showPopUp(String title, String text) {
+			send("POPUP " + title + "|" + text);
+		}
+
+		@Override
+		public void showMessages(Mailbox mailbox) {
+			// the messages are read under the lock, since another call may delete them
+			List<String> rows = new ArrayList<String>();
+			synchronized (mailbox) {
+				int newSize = mailbox.getNewSize();
+				int savedSize = mailbox.getSavedSize();
+				for (int i = 0; i < newSize; i++) {
+					rows.add((i + 1) + ". " + mailbox.getNewMessage(i).getText());
+				}
+				for (int i = 0; i < savedSize; i++) {
+					rows.add((newSize + i + 1) + ". " + mailbox.getSavedMessage(i).getText());
+				}
+			}
+			send("MESSAGES " + rows.size());
+			for (String row : rows) {
+				send(row);
+			}
+		}
+	}
+
+	/***
+	 * Class which is audio that is being sent from its file to a line. The file
+	 * is handed to the socket by the operating system, so the audio does not pass
+	 * through the heap.
+	 */
+	private static class Transfer {
+		private final FileChannel file;// the open file of the audio
+		private final long length;// the number of bytes of audio
+		private long position;// the number of bytes already sent
+
+		/***
+		 * Constructor which creates the transfer of an open file
+		 * 
+		 * @param file
+		 *            the open file of the audio
+		 * @param length
+		 *            the number of bytes of audio
+		 */
+		Transfer(FileChannel file, long length) {
+			this.file = file;
+			this.length = length;
+		}
+
+		/***
+		 * method which sends as much of the audio as the socket will take, and
+		 * closes the file when all of it was sent
+		 * 
+		 * @param channel
+		 *            the socket of the line
+		 * @return true if all of the audio was sent
+		 * @throws IOException
+		 *             if the file or the socket fails
+		 */
+		boolean send(SocketChannel channel) throws IOException {
+			while (position < length) {
+				long sent = file.transferTo(position, length - position, channel);
+				if (sent == 0) {
+					if (position >= file.size()) {
+						close();
+						throw new IOException("The audio file is shorter than " + length + " bytes");
+					}
+					return false;
+				}
+				position += sent;
+			}
+			close();
+			return true;
+		}
+
+		/***
+		 * method which closes the file of the audio
+		 */
+		void close() {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// nothing left to release
+			}
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package telephone;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
+/*
+ * Class which will run the voice mail system for telephone lines
+ */
+public class LineServerRunner {
+	private static final long SNAPSHOT_INTERVAL = 5 * 60 * 1000;// the milliseconds between mail snapshots
+	private static final int COMPRESSION_QUEUE = 1024;// the messages that may wait to be compressed
+	private static final int MAX_MESSAGES = 500;// the most messages a mailbox may hold
+	private static final long MAX_BYTES = 256L << 20;// the most bytes of text and audio a mailbox may hold
+	private static final long NEW_RETENTION = TimeUnit.DAYS.toMillis(30);// how long new messages are kept
+	private static final long SAVED_RETENTION = TimeUnit.DAYS.toMillis(60);// how long saved messages are kept
+
+	/***
+	 * main method to run the line server. The first argument is the port to listen
+	 * on, and the second is the directory of the mail log, the mail snapshots and
+	 * the audio of messages. Without a directory the mailboxes are only kept in
+	 * memory and audio is kept in the directory for temporary files. The audio of
+	 * new messages is compressed in the background by half of the processors.
+	 * Every mailbox has a quota, and old messages are deleted once they expire. The metrics of
+	 * the calls and the index of the text of messages are registered with the
+	 * platform MBean server.
+	 */
+	public static void main(String[] args) throws IOException, JMException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 5060;
+		MailSystem mailSystem;
+		AudioStore audioStore;
+		if (args.length > 1) {
+			MailLog log = new MailLog(new File(args[1], "log"));
+			MailSnapshot snapshot = new MailSnapshot(new File(args[1], "snapshots"));
+			mailSystem = new MailSystem(log, snapshot);
+			snapshot.start(mailSystem, log, SNAPSHOT_INTERVAL);
+			audioStore = new AudioStore(new File(args[1], "audio"));
+		} else {
+			mailSystem = new MailSystem();
+			audioStore = new AudioStore();
+		}
+		mailSystem.setQuota(new MailboxQuota(MAX_MESSAGES, MAX_BYTES));
+		MessageRetention retention = new MessageRetention(NEW_RETENTION, SAVED_RETENTION);
+		mailSystem.addMailboxListener(retention);
+		retention.scheduleAll(mailSystem);
+		retention.start();
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		mailSystem.addMailboxListener(new AudioCompressor(audioStore, threads, COMPRESSION_QUEUE));
+		MessageIndex index = new MessageIndex(mailSystem);
+		mailSystem.addMailboxListener(index);
+		index.indexAll();
+		index.register(ManagementFactory.getPlatformMBeanServer());
+		ControlSystem controlSystem = new ControlSystem(mailSystem, audioStore);
+		controlSystem.getMetrics().register(ManagementFactory.getPlatformMBeanServer());
+		LineServer server = new LineServer(controlSystem);
+		server.start(port);
+		System.out.println("Listening for lines on port " + server.getPort());
+	}
+}
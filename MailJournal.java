@@ -0,0 +1,358 @@
+package telephone;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Class which writes every change of the mailboxes of a mail system to a mail
+ * log, and which rebuilds the mailboxes from the log when the mail system is
+ * started again. Messages are written with their id, so saving and deleting a
+ * message can be replayed even when other messages arrived in between. A
+ * record that may already be part of a mail snapshot is replayed so that it is
+ * not applied twice. A message with audio is written with the path, length and
+ * encoding of its audio file, not with the audio itself. Records of audio
+ * written before audio could be compressed have no encoding and are PCM. Every
+ * message is written with the time it was left; a message written before that
+ * is taken to have been left when it is read back. An announcement sent to a
+ * distribution list writes its text once per segment of the log, and the
+ * record of each copy only names the text it shares, so replaying the copies
+ * shares a single body again.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailJournal implements MailboxListener, MailLog.Reader {
+	// the different types of records in the log
+	private static final byte MAILBOX_ADDED = 1;
+	private static final byte MESSAGE_ADDED = 2;
+	private static final byte MESSAGE_SAVED = 3;
+	private static final byte MESSAGE_DELETED = 4;
+	private static final byte PASSCODE_CHANGED = 5;
+	private static final byte GREETINGS_CHANGED = 6;
+	private static final byte MESSAGE_ADDED_AUDIO = 7;
+	private static final byte MESSAGE_SAVED_AUDIO = 8;
+	private static final byte AUDIO_CHANGED = 9;
+	private static final byte PAYLOAD = 10;
+	private static final byte MESSAGE_SHARED = 11;
+	private final MailSystem mailSystem;// the mail system that is written and rebuilt
+	private final MailLog log;// the log the changes are written to
+	private final Map<Message, Payload> payloads;// the text records of the announcements being delivered
+	private final Map<Long, Message> restoredPayloads;// the texts read back by id while recovering
+	private long lastSnapshotId;// the largest message id that may be in the mail snapshot
+
+	/***
+	 * Class which is the text record of an announcement that is being delivered,
+	 * and the segment of the log it was last written to
+	 */
+	private static class Payload {
+		private final byte[] record;// the bytes of the record
+		private long segment = -1;// the segment the record was last written to, or -1 if it was not written
+
+		/***
+		 * Constructor which creates the text record of an announcement
+		 * 
+		 * @param origin
+		 *            the message whose text the copies share
+		 */
+		private Payload(Message origin) {
+			byte[] text = origin.getText().getBytes(StandardCharsets.UTF_8);
+			ByteBuffer buffer = ByteBuffer.allocate(25 + text.length).put(PAYLOAD).putInt(0);
+			record = putString(buffer.putLong(origin.getId()), text).putLong(origin.getTime()).array();
+		}
+	}
+
+	/***
+	 * Constructor which creates a journal of the mail system that uses the log
+	 * 
+	 * @param mailSystem
+	 *            the mail system that is written and rebuilt
+	 * @param log
+	 *            the log the changes are written to
+	 */
+	public MailJournal(MailSystem mailSystem, MailLog log) {
+		this.mailSystem = mailSystem;
+		this.log = log;
+		payloads = new ConcurrentHashMap<Message, Payload>();
+		restoredPayloads = new HashMap<Long, Message>();
+	}
+
+	/***
+	 * method which rebuilds the mailboxes of the mail system from every record in
+	 * the log, starting from a segment
+	 * 
+	 * @param fromSegment
+	 *            the number of the first segment to read
+	 * @param lastSnapshotId
+	 *            the largest message id that may already be in the mailboxes
+	 *            from a mail snapshot, or 0 if there was no snapshot
+	 * @throws IOException
+	 *             if the log cannot be read
+	 */
+	public void recover(long fromSegment, long lastSnapshotId) throws IOException {
+		this.lastSnapshotId = lastSnapshotId;
+		try {
+			log.read(fromSegment, this);
+		} finally {
+			for (Message payload : restoredPayloads.values()) {
+				payload.release();
+			}
+			restoredPayloads.clear();
+		}
+	}
+
+	@Override
+	public void read(ByteBuffer record) throws IOException {
+		byte type = record.get();
+		if (type == PAYLOAD) {
+			record.getInt();
+			long id = record.getLong();
+			Message old = restoredPayloads.put(id, getMessage(id, false, record));
+			if (old != null) {
+				old.release();
+			}
+			return;
+		}
+		Mailbox mailbox = mailSystem.restoreMailbox(record.getInt());
+		if (type == MESSAGE_SHARED) {
+			long id = record.getLong();
+			Message payload = restoredPayloads.get(record.getLong());
+			if (payload == null) {
+				throw new IOException("The text of message " + id + " is missing from the mail log");
+			}
+			mailbox.restoreMessage(new Message(id, payload, record.getLong()), id <= lastSnapshotId);
+		} else if (type == MESSAGE_ADDED || type == MESSAGE_ADDED_AUDIO) {
+			long id = record.getLong();
+			mailbox.restoreMessage(getMessage(id, type == MESSAGE_ADDED_AUDIO, record), id <= lastSnapshotId);
+		} else if (type == MESSAGE_SAVED || type == MESSAGE_SAVED_AUDIO) {
+			long id = record.getLong();
+			mailbox.restoreSavedMessage(getMessage(id, type == MESSAGE_SAVED_AUDIO, record),
+					id <= lastSnapshotId);
+		} else if (type == AUDIO_CHANGED) {
+			long id = record.getLong();
+			mailbox.restoreAudio(id, getAudio(record));
+		} else if (type == MESSAGE_DELETED) {
+			mailbox.restoreDeletedMessage(record.getLong());
+		} else if (type == PASSCODE_CHANGED) {
+			mailbox.restorePasscode(getString(record));
+		} else if (type == GREETINGS_CHANGED) {
+			int current = record.getInt();
+			int count = record.getInt();
+			List<String> greetings = new ArrayList<String>(count);
+			for (int i = 0; i < count; i++) {
+				greetings.add(getString(record));
+			}
+			mailbox.restoreGreetings(greetings, current);
+		}
+	}
+
+	@Override
+	public void mailboxAdded(Mailbox mailbox) {
+		append(record(MAILBOX_ADDED, mailbox, 0));
+	}
+
+	@Override
+	public void messageAdded(Mailbox mailbox, Message message) {
+		Message origin = message.getOrigin();
+		if (origin == null || message.getAudio() != null) {
+			append(messageRecord(MESSAGE_ADDED, MESSAGE_ADDED_AUDIO, mailbox, message));
+			return;
+		}
+		Payload payload = payloads.computeIfAbsent(origin, Payload::new);
+		ByteBuffer record = record(MESSAGE_SHARED, mailbox, 24).putLong(message.getId());
+		record.putLong(origin.getId()).putLong(message.getTime());
+		synchronized (payload) {
+			try {
+				payload.segment = log.append(record.array(), payload.record, payload.segment);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot write to the mail log", e);
+			}
+		}
+	}
+
+	@Override
+	public void messageSaved(Mailbox mailbox, Message message) {
+		append(messageRecord(MESSAGE_SAVED, MESSAGE_SAVED_AUDIO, mailbox, message));
+	}
+
+	@Override
+	public void messageDeleted(Mailbox mailbox, Message message) {
+		append(record(MESSAGE_DELETED, mailbox, 8).putLong(message.getId()));
+	}
+
+	@Override
+	public void audioChanged(Mailbox mailbox, Message message) {
+		AudioClip audio = message.getAudio();
+		if (audio == null) {
+			return;
+		}
+		byte[] path = audio.getFile().getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = record(AUDIO_CHANGED, mailbox, 21 + path.length).putLong(message.getId());
+		append(putAudio(record, path, audio));
+	}
+
+	@Override
+	public void broadcastDelivered(Message payload) {
+		payloads.remove(payload);
+	}
+
+	@Override
+	public void passcodeChanged(Mailbox mailbox, String passcode) {
+		byte[] text = passcode.getBytes(StandardCharsets.UTF_8);
+		append(putString(record(PASSCODE_CHANGED, mailbox, 4 + text.length), text));
+	}
+
+	@Override
+	public void greetingsChanged(Mailbox mailbox) {
+		byte[][] greetings = new byte[mailbox.numOfGreetings()][];
+		int length = 8;
+		for (int i = 0; i < greetings.length; i++) {
+			greetings[i] = mailbox.getGreeting(i).getBytes(StandardCharsets.UTF_8);
+			length += 4 + greetings[i].length;
+		}
+		ByteBuffer record = record(GREETINGS_CHANGED, mailbox, length);
+		record.putInt(mailbox.getCurrentGreetingIndex()).putInt(greetings.length);
+		for (byte[] greeting : greetings) {
+			putString(record, greeting);
+		}
+		append(record);
+	}
+
+	/***
+	 * method which creates a record that holds a message, and the path, length and
+	 * encoding of its audio if it has any. The audio is read once, since it may
+	 * be replaced at any time.
+	 * 
+	 * @param type
+	 *            the type of the record if the message has no audio
+	 * @param audioType
+	 *            the type of the record if the message has audio
+	 * @param mailbox
+	 *            the mailbox of the message
+	 * @param message
+	 *            the message
+	 * @return the record
+	 */
+	private static ByteBuffer messageRecord(byte type, byte audioType, Mailbox mailbox, Message message) {
+		byte[] text = message.getText().getBytes(StandardCharsets.UTF_8);
+		AudioClip audio = message.getAudio();
+		if (audio == null) {
+			ByteBuffer record = record(type, mailbox, 20 + text.length).putLong(message.getId());
+			return putString(record, text).putLong(message.getTime());
+		}
+		byte[] path = audio.getFile().getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = record(audioType, mailbox, 33 + text.length + path.length).putLong(message.getId());
+		return putAudio(putString(record, text), path, audio).putLong(message.getTime());
+	}
+
+	/***
+	 * method which writes the path, length and encoding of audio into a record
+	 * 
+	 * @param record
+	 *            the record
+	 * @param path
+	 *            the bytes of the path of the audio file
+	 * @param audio
+	 *            the audio
+	 * @return the record
+	 */
+	private static ByteBuffer putAudio(ByteBuffer record, byte[] path, AudioClip audio) {
+		return putString(record, path).putLong(audio.getLength()).put((byte) audio.getEncoding().ordinal());
+	}
+
+	/***
+	 * method which reads the path, length and encoding of audio. Audio written
+	 * without an encoding is PCM.
+	 * 
+	 * @param record
+	 *            the record
+	 * @return the audio
+	 */
+	private static AudioClip getAudio(ByteBuffer record) {
+		File file = new File(getString(record));
+		long length = record.getLong();
+		AudioEncoding encoding = record.hasRemaining() ? AudioEncoding.values()[record.get()] : AudioEncoding.PCM;
+		return new AudioClip(file, length, encoding);
+	}
+
+	/***
+	 * method which reads the text of a message, the audio if it has any, and the
+	 * time it was left
+	 * 
+	 * @param id
+	 *            the id of the message
+	 * @param hasAudio
+	 *            whether the record holds audio
+	 * @param record
+	 *            the record
+	 * @return the message
+	 */
+	private static Message getMessage(long id, boolean hasAudio, ByteBuffer record) {
+		String text = getString(record);
+		AudioClip audio = hasAudio ? getAudio(record) : null;
+		long time = record.remaining() >= 8 ? record.getLong() : System.currentTimeMillis();
+		return new Message(id, text, audio, time);
+	}
+
+	/***
+	 * method which creates a record with its type and mailbox already written
+	 * 
+	 * @param type
+	 *            the type of the record
+	 * @param mailbox
+	 *            the mailbox that changed
+	 * @param length
+	 *            the number of bytes that will follow
+	 * @return the record
+	 */
+	private static ByteBuffer record(byte type, Mailbox mailbox, int length) {
+		return ByteBuffer.allocate(5 + length).put(type).putInt(mailbox.getExtension());
+	}
+
+	/***
+	 * method which writes text with its length into a record
+	 * 
+	 * @param record
+	 *            the record
+	 * @param text
+	 *            the bytes of the text
+	 * @return the record
+	 */
+	private static ByteBuffer putString(ByteBuffer record, byte[] text) {
+		return record.putInt(text.length).put(text);
+	}
+
+	/***
+	 * method which reads text that was written with its length
+	 * 
+	 * @param record
+	 *            the record
+	 * @return the text
+	 */
+	private static String getString(ByteBuffer record) {
+		byte[] text = new byte[record.getInt()];
+		record.get(text);
+		return new String(text, StandardCharsets.UTF_8);
+	}
+
+	/***
+	 * method which appends a record to the log
+	 * 
+	 * @param record
+	 *            the record, completely written
+	 */
+	private void append(ByteBuffer record) {
+		try {
+			log.append(record.array());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write to the mail log", e);
+		}
+	}
+}
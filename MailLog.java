@@ -0,0 +1,403 @@
+package telephone;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/***
+ * Class which keeps an append only log of records on disk. The log is split
+ * into segment files of a fixed size that are written through memory mapping.
+ * Every record is written as its length, the CRC32 of its bytes and then its
+ * bytes. Records are forced to disk in groups by a background thread: after a
+ * number of records have been appended, or after an interval, whichever comes
+ * first, so appending a record never waits for the disk. A segment is forced
+ * completely before the next one is started. When the log is opened again,
+ * reading stops at the first record of the last segment that is missing or does
+ * not match its CRC, which is where the last run stopped writing. Any other
+ * segment was complete on disk, so a damaged record in it fails the read
+ * instead of silently losing the records after it.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailLog {
+	private static final String SEGMENT_PREFIX = "segment-";// the start of every segment file name
+	private static final String SEGMENT_SUFFIX = ".log";// the end of every segment file name
+	private static final int HEADER_SIZE = 8;// the bytes written before every record
+	private final File directory;// the directory that holds the segments
+	private final int segmentSize;// the size of every segment file
+	private final int syncBatch;// the number of records appended before they are forced to disk
+	private final CRC32 crc;// the CRC that is used for every record
+	private final Thread syncer;// the thread that forces records to disk
+	private final Object syncLock;// the lock held while records are forced to disk
+	private long segment;// the number of the segment that is being written
+	private MappedByteBuffer buffer;// the segment that is being written
+	private int unsynced;// the number of records not yet forced to disk
+	private boolean closed;// true after the log has been closed
+
+	/***
+	 * Constructor which opens the log in a directory, creating the directory if
+	 * it does not exist
+	 * 
+	 * @param directory
+	 *            the directory that holds the segments
+	 * @param segmentSize
+	 *            the size of every segment file in bytes
+	 * @param syncBatch
+	 *            the number of records appended before they are forced to disk
+	 * @param syncInterval
+	 *            the most milliseconds a record waits before it is forced to disk,
+	 *            or 0 to only force full batches
+	 * @throws IOException
+	 *             if the directory or a segment cannot be opened
+	 * @precondition segmentSize > 8 && syncBatch > 0 && syncInterval >= 0
+	 */
+	public MailLog(File directory, int segmentSize, int syncBatch, long syncInterval) throws IOException {
+		assert segmentSize > HEADER_SIZE && syncBatch > 0 && syncInterval >= 0 : "Invalid log settings";
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.syncBatch = syncBatch;
+		this.crc = new CRC32();
+		this.syncLock = new Object();
+		long[] segments = segments();
+		if (segments.length == 0) {
+			openSegment(1);
+		} else {
+			openSegment(segments[segments.length - 1]);
+			buffer.position(validLength(buffer));
+			for (int i = buffer.position(); i < buffer.limit(); i++) {
+				if (buffer.get(i) != 0) {
+					buffer.put(i, (byte) 0);
+				}
+			}
+		}
+		syncer = new Thread(() -> syncEvery(syncInterval), "mail-log-sync");
+		syncer.setDaemon(true);
+		syncer.start();
+	}
+
+	/***
+	 * Constructor which opens the log with segments of 64 MB that are forced to
+	 * disk every 256 records or every 10 milliseconds
+	 * 
+	 * @param directory
+	 *            the directory that holds the segments
+	 * @throws IOException
+	 *             if the directory or a segment cannot be opened
+	 */
+	public MailLog(File directory) throws IOException {
+		this(directory, 64 << 20, 256, 10);
+	}
+
+	/***
+	 * method which appends a record to the log. The record is forced to disk
+	 * later by the background thread.
+	 * 
+	 * @param record
+	 *            the bytes of the record
+	 * @throws IOException
+	 *             if a new segment cannot be opened
+	 * @precondition record.length > 0 && record.length <= segmentSize - 8
+	 */
+	public synchronized void append(byte[] record) throws IOException {
+		assert record.length > 0 && record.length <= segmentSize - HEADER_SIZE : "Invalid record length";
+		assert !closed : "The log is closed";
+		if (buffer.remaining() < HEADER_SIZE + record.length) {
+			roll();
+		}
+		crc.reset();
+		crc.update(record, 0, record.length);
+		int start = buffer.position();
+		buffer.position(start + 4);
+		buffer.putInt((int) crc.getValue());
+		buffer.put(record);
+		buffer.putInt(start, record.length);
+		if (++unsynced == syncBatch) {
+			notifyAll();
+		}
+	}
+
+	/***
+	 * method which appends a record that needs another record before it in the
+	 * same segment, such as a message that shares the text written by the other
+	 * record. The other record is appended first unless it was already appended
+	 * to the segment that is being written and the record still fits in it, so
+	 * reading any segment that holds the record also reads the other one first.
+	 * 
+	 * @param record
+	 *            the bytes of the record
+	 * @param first
+	 *            the bytes of the record it needs
+	 * @param firstSegment
+	 *            the segment the record it needs was last appended to, or -1 if
+	 *            it was not appended yet
+	 * @return the segment both records are in, to be given as firstSegment the
+	 *         next time
+	 * @throws IOException
+	 *             if a new segment cannot be opened
+	 * @precondition first.length + record.length <= segmentSize - 16
+	 */
+	public synchronized long append(byte[] record, byte[] first, long firstSegment) throws IOException {
+		assert first.length + record.length <= segmentSize - 2 * HEADER_SIZE : "Invalid record length";
+		if (firstSegment != segment || buffer.remaining() < HEADER_SIZE + record.length) {
+			if (buffer.remaining() < 2 * HEADER_SIZE + first.length + record.length) {
+				roll();
+			}
+			append(first);
+		}
+		append(record);
+		return segment;
+	}
+
+	/***
+	 * method which forces every appended record to disk. Records may be appended
+	 * while they are forced, since the lock of the log is not held meanwhile.
+	 */
+	public void sync() {
+		synchronized (syncLock) {
+			MappedByteBuffer written;
+			synchronized (this) {
+				if (unsynced == 0 || closed) {
+					return;
+				}
+				written = buffer;
+				unsynced = 0;
+			}
+			written.force();
+		}
+	}
+
+	/***
+	 * method which forces the segment that is being written to disk and starts
+	 * writing a new segment
+	 * 
+	 * @return the number of the new segment
+	 * @throws IOException
+	 *             if the new segment cannot be opened
+	 */
+	public synchronized long roll() throws IOException {
+		buffer.force();
+		unsynced = 0;
+		openSegment(segment + 1);
+		return segment;
+	}
+
+	/***
+	 * method which reads every record of the log, starting from a segment, in the
+	 * order they were appended. It stops at the first record of the last segment
+	 * that was not completely written.
+	 * 
+	 * @param fromSegment
+	 *            the number of the first segment to read
+	 * @param reader
+	 *            the reader that is given every record
+	 * @throws IOException
+	 *             if a segment cannot be read, or a segment before the last one
+	 *             is damaged
+	 */
+	public void read(long fromSegment, Reader reader) throws IOException {
+		long[] segments = segments();
+		for (long number : segments) {
+			if (number < fromSegment) {
+				continue;
+			}
+			try (FileChannel channel = FileChannel.open(segmentFile(number).toPath())) {
+				ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				int end = validLength(records);
+				if (number != segments[segments.length - 1]) {
+					for (int i = end; i < records.limit(); i++) {
+						if (records.get(i) != 0) {
+							throw new IOException("Segment " + number + " of the log is damaged at byte " + end);
+						}
+					}
+				}
+				while (records.position() < end) {
+					int length = records.getInt();
+					records.getInt();
+					ByteBuffer record = records.slice();
+					record.limit(length);
+					reader.read(record);
+					records.position(records.position() + length);
+				}
+			}
+		}
+	}
+
+	/***
+	 * method which reads every record of the log in the order they were appended
+	 * 
+	 * @param reader
+	 *            the reader that is given every record
+	 * @throws IOException
+	 *             if a segment cannot be read
+	 */
+	public void read(Reader reader) throws IOException {
+		read(0, reader);
+	}
+
+	/***
+	 * method which deletes every segment before a segment. Those records must
+	 * not be needed any more.
+	 * 
+	 * @param beforeSegment
+	 *            the number of the first segment that is kept
+	 */
+	public synchronized void deleteSegmentsBefore(long beforeSegment) {
+		for (long number : segments()) {
+			if (number < beforeSegment && number != segment) {
+				segmentFile(number).delete();
+			}
+		}
+	}
+
+	/***
+	 * method which forces every record to disk and stops the log
+	 */
+	public void close() {
+		sync();
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			syncer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/***
+	 * method which forces the records to disk whenever a batch of them has been
+	 * appended, and after every interval, until the log is closed
+	 * 
+	 * @param interval
+	 *            the milliseconds between forcing, or 0 to only force full
+	 *            batches
+	 */
+	private void syncEvery(long interval) {
+		while (true) {
+			synchronized (this) {
+				if (!closed && unsynced < syncBatch) {
+					try {
+						wait(interval);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed) {
+					return;
+				}
+			}
+			sync();
+		}
+	}
+
+	/***
+	 * method which finds the length of the records at the start of a segment that
+	 * were completely written
+	 * 
+	 * @param records
+	 *            the bytes of the segment, positioned at the start
+	 * @return the length of the complete records
+	 */
+	private static int validLength(ByteBuffer records) {
+		CRC32 check = new CRC32();
+		int position = records.position();
+		int limit = records.limit();
+		while (position + HEADER_SIZE <= limit) {
+			int length = records.getInt(position);
+			if (length <= 0 || length > limit - position - HEADER_SIZE) {
+				break;
+			}
+			ByteBuffer record = records.duplicate();
+			record.position(position + HEADER_SIZE).limit(position + HEADER_SIZE + length);
+			check.reset();
+			check.update(record);
+			if ((int) check.getValue() != records.getInt(position + 4)) {
+				break;
+			}
+			position += HEADER_SIZE + length;
+		}
+		return position;
+	}
+
+	/***
+	 * method which maps a segment file for writing, creating it if it does not
+	 * exist. A segment that already exists keeps the size it was created with.
+	 * 
+	 * @param number
+	 *            the number of the segment
+	 * @throws IOException
+	 *             if the segment cannot be opened
+	 */
+	private void openSegment(long number) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(segmentFile(number), "rw")) {
+			if (file.length() == 0) {
+				file.setLength(segmentSize);
+			}
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+		}
+		segment = number;
+	}
+
+	/***
+	 * method which finds the numbers of every segment in the directory
+	 * 
+	 * @return the numbers of the segments from oldest to newest
+	 */
+	private long[] segments() {
+		String[] names = directory.list();
+		List<Long> numbers = new ArrayList<Long>();
+		if (names != null) {
+			for (String name : names) {
+				if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+					numbers.add(Long.parseLong(
+							name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+				}
+			}
+		}
+		long[] sorted = new long[numbers.size()];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = numbers.get(i);
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/***
+	 * method which finds the file of a segment
+	 * 
+	 * @param number
+	 *            the number of the segment
+	 * @return the file of the segment
+	 */
+	private File segmentFile(long number) {
+		return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+	}
+
+	/***
+	 * Reader interface creates the requirements for anything that reads the
+	 * records of a log
+	 */
+	public interface Reader {
+		/***
+		 * method which reads one record
+		 * 
+		 * @param record
+		 *            the bytes of the record, from its position to its limit
+		 * @throws IOException
+		 *             if the record cannot be used
+		 */
+		public void read(ByteBuffer record) throws IOException;
+	}
+}
@@ -0,0 +1,509 @@
+package telephone;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/***
+ * Class which writes compact snapshots of every mailbox of a mail system, so
+ * that starting the mail system only has to read the newest snapshot and the
+ * part of the mail log written after it. Before a snapshot is written the log is
+ * moved on to a new segment, and the snapshot waits for the messages that were
+ * being left at that moment, since a message is written to the log before it
+ * is put in its mailbox. Each mailbox is then copied while holding only its own
+ * lock, so calls keep working while the snapshot is written. Every change in
+ * the older segments is then in the copy, a change made while the snapshot was
+ * being written is in the new log segments, and replaying it on a mailbox that
+ * already has it changes nothing. After a
+ * snapshot and its name are safely on disk the older snapshots and log segments
+ * are deleted. A snapshot written in the background that fails is kept as the
+ * last failure, and the next one is still written.
+ * Messages with audio are written with the path, length and encoding of their
+ * audio file, and with the time they were left. The copies of an announcement
+ * name the text they share, which is only written with the first of them, so
+ * loading them shares one body again. Snapshots written before any of these
+ * were kept can still be loaded.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailSnapshot {
+	private static final String SNAPSHOT_PREFIX = "snapshot-";// the start of every snapshot file name
+	private static final String SNAPSHOT_SUFFIX = ".snap";// the end of every snapshot file name
+	private static final long MAGIC = 0x564d534e41503031L;// the first bytes of a snapshot without audio
+	private static final long MAGIC_AUDIO = 0x564d534e41503032L;// the first bytes of a snapshot with PCM audio
+	private static final long MAGIC_ENCODED = 0x564d534e41503033L;// the first bytes of a snapshot with encoded audio
+	private static final long MAGIC_TIMED = 0x564d534e41503034L;// the first bytes of a snapshot with times
+	private static final long MAGIC_SHARED = 0x564d534e41503035L;// the first bytes of a snapshot with shared texts
+	// the ways the text of a message is written in a snapshot with shared texts
+	private static final byte TEXT_OWN = 0;
+	private static final byte TEXT_FIRST_SHARED = 1;
+	private static final byte TEXT_SHARED = 2;
+	private final File directory;// the directory that holds the snapshots
+	private ScheduledExecutorService writer;// the thread that writes snapshots in the background
+	private long logSegment;// the log segment that follows the loaded snapshot
+	private long lastMessageId;// the largest message id that may be in the loaded snapshot
+	private volatile Exception lastFailure;// why the last background snapshot failed, or null if it did not
+	private volatile long failureCount;// the number of background snapshots that failed, only written by the writer
+
+	/***
+	 * Constructor which keeps snapshots in a directory, creating the directory if
+	 * it does not exist
+	 * 
+	 * @param directory
+	 *            the directory that holds the snapshots
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public MailSnapshot(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		this.directory = directory;
+	}
+
+	/***
+	 * method which returns the first log segment that must be replayed after the
+	 * loaded snapshot
+	 * 
+	 * @return the log segment, or 0 if no snapshot was loaded
+	 */
+	public long getLogSegment() {
+		return logSegment;
+	}
+
+	/***
+	 * method which returns the largest message id that may be in the loaded
+	 * snapshot
+	 * 
+	 * @return the message id, or 0 if no snapshot was loaded
+	 */
+	public long getLastMessageId() {
+		return lastMessageId;
+	}
+
+	/***
+	 * method which returns why the last snapshot written in the background failed
+	 * 
+	 * @return the failure, or null if the last snapshot was written
+	 */
+	public Exception getLastFailure() {
+		return lastFailure;
+	}
+
+	/***
+	 * method which returns the number of snapshots written in the background that
+	 * failed
+	 * 
+	 * @return the number of failed snapshots
+	 */
+	public long getFailureCount() {
+		return failureCount;
+	}
+
+	/***
+	 * method which puts the mailboxes of the newest snapshot into the mail system.
+	 * The snapshot file is memory mapped and checked against its CRC before it is
+	 * read.
+	 * 
+	 * @param mailSystem
+	 *            the empty mail system the mailboxes are put into
+	 * @throws IOException
+	 *             if the snapshot cannot be read or is damaged
+	 */
+	public void load(MailSystem mailSystem) throws IOException {
+		File file = newest();
+		if (file == null) {
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath())) {
+			ByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			ByteBuffer body = snapshot.duplicate();
+			body.limit(snapshot.limit() - 4);
+			CRC32 crc = new CRC32();
+			crc.update(body.duplicate());
+			if (snapshot.limit() < 32 || (int) crc.getValue() != snapshot.getInt(snapshot.limit() - 4)) {
+				throw new IOException("Damaged snapshot " + file);
+			}
+			long magic = body.getLong();
+			if (magic != MAGIC && magic != MAGIC_AUDIO && magic != MAGIC_ENCODED && magic != MAGIC_TIMED
+					&& magic != MAGIC_SHARED) {
+				throw new IOException("Damaged snapshot " + file);
+			}
+			long segment = body.getLong();
+			Map<Long, Message> payloads = new HashMap<Long, Message>();
+			try {
+				loadMailboxes(mailSystem, body, magic, payloads);
+			} finally {
+				for (Message payload : payloads.values()) {
+					payload.release();
+				}
+			}
+			logSegment = segment;
+			lastMessageId = body.getLong();
+		}
+	}
+
+	/***
+	 * method which puts every mailbox of a snapshot into the mail system
+	 * 
+	 * @param mailSystem
+	 *            the empty mail system the mailboxes are put into
+	 * @param body
+	 *            the bytes of the snapshot, from the first mailbox on
+	 * @param magic
+	 *            the first bytes of the snapshot
+	 * @param payloads
+	 *            the shared texts read so far, by their id
+	 * @throws IOException
+	 *             if a message shares a text that was not read
+	 */
+	private static void loadMailboxes(MailSystem mailSystem, ByteBuffer body, long magic, Map<Long, Message> payloads)
+			throws IOException {
+		int extension;
+		while ((extension = body.getInt()) != 0) {
+			Mailbox mailbox = mailSystem.restoreMailbox(extension);
+			mailbox.restorePasscode(getString(body));
+			int current = body.getInt();
+			List<String> greetings = new ArrayList<String>();
+			for (int i = body.getInt(); i > 0; i--) {
+				greetings.add(getString(body));
+			}
+			mailbox.restoreGreetings(greetings, current);
+			for (int i = body.getInt(); i > 0; i--) {
+				mailbox.restoreMessage(getMessage(body, magic, payloads), false);
+			}
+			for (int i = body.getInt(); i > 0; i--) {
+				mailbox.restoreSavedMessage(getMessage(body, magic, payloads), false);
+			}
+		}
+	}
+
+	/***
+	 * method which writes a snapshot of every mailbox of the mail system, and then
+	 * deletes the older snapshots and the log segments the snapshot replaces
+	 * 
+	 * @param mailSystem
+	 *            the mail system that is written
+	 * @param log
+	 *            the log of the mail system
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public synchronized void write(MailSystem mailSystem, MailLog log) throws IOException {
+		long segment = log.roll();
+		// a message logged to the old segment must be in its mailbox before the mailbox is copied
+		mailSystem.awaitDeposits();
+		File temporary = new File(directory, SNAPSHOT_PREFIX + segment + ".tmp");
+		CRC32 crc = new CRC32();
+		try (FileOutputStream file = new FileOutputStream(temporary)) {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+			out.writeLong(MAGIC_SHARED);
+			out.writeLong(segment);
+			int lastExtension = mailSystem.getLastMailboxNumber();
+			List<String> greetings = new ArrayList<String>();
+			List<Message> newMessages = new ArrayList<Message>();
+			List<Message> savedMessages = new ArrayList<Message>();
+			Set<Long> payloads = new HashSet<Long>();
+			for (int extension = 1; extension <= lastExtension; extension++) {
+				Mailbox mailbox = mailSystem.findMailbox(extension);
+				if (mailbox == null) {
+					continue;
+				}
+				greetings.clear();
+				newMessages.clear();
+				savedMessages.clear();
+				String passcode;
+				int current;
+				synchronized (mailbox) {
+					passcode = mailbox.getPasscode();
+					current = mailbox.getCurrentGreetingIndex();
+					for (int i = 0; i < mailbox.numOfGreetings(); i++) {
+						greetings.add(mailbox.getGreeting(i));
+					}
+					for (int i = mailbox.getNewSize() - 1; i >= 0; i--) {
+						Message message = mailbox.getNewMessage(i);
+						message.retain();
+						newMessages.add(message);
+					}
+					for (int i = mailbox.getSavedSize() - 1; i >= 0; i--) {
+						Message message = mailbox.getSavedMessage(i);
+						message.retain();
+						savedMessages.add(message);
+					}
+				}
+				out.writeInt(extension);
+				putString(out, passcode);
+				out.writeInt(current);
+				out.writeInt(greetings.size());
+				for (String greeting : greetings) {
+					putString(out, greeting);
+				}
+				putMessages(out, newMessages, payloads);
+				putMessages(out, savedMessages, payloads);
+			}
+			out.writeInt(0);
+			out.writeLong(Message.getLastId());
+			out.flush();
+			out.writeInt((int) crc.getValue());
+			out.flush();
+			file.getFD().sync();
+		}
+		File snapshot = new File(directory, SNAPSHOT_PREFIX + segment + SNAPSHOT_SUFFIX);
+		Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory();
+		for (File old : snapshots()) {
+			if (!old.equals(snapshot)) {
+				old.delete();
+			}
+		}
+		log.deleteSegmentsBefore(segment);
+	}
+
+	/***
+	 * method which forces the names in the directory to disk, so the rename of a
+	 * new snapshot survives a crash before the files it replaces are deleted
+	 * 
+	 * @throws IOException
+	 *             if the directory cannot be forced to disk
+	 */
+	private void syncDirectory() throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+		} catch (IOException e) {
+			// a directory cannot be opened on every platform, and there the rename is as safe as it gets
+			return;
+		}
+		try (channel) {
+			channel.force(true);
+		}
+	}
+
+	/***
+	 * method which writes a snapshot of the mail system in the background after
+	 * every interval. A snapshot that fails is kept as the last failure.
+	 * 
+	 * @param mailSystem
+	 *            the mail system that is written
+	 * @param log
+	 *            the log of the mail system
+	 * @param interval
+	 *            the milliseconds between snapshots
+	 */
+	public synchronized void start(MailSystem mailSystem, MailLog log, long interval) {
+		assert writer == null : "Snapshots are already being written";
+		writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "mail-snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+		writer.scheduleWithFixedDelay(() -> {
+			try {
+				write(mailSystem, log);
+				lastFailure = null;
+			} catch (IOException | RuntimeException e) {
+				lastFailure = e;
+				failureCount++;
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/***
+	 * method which stops writing snapshots in the background
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a snapshot to finish
+	 */
+	public void close() throws InterruptedException {
+		ScheduledExecutorService stopping;
+		synchronized (this) {
+			stopping = writer;
+			writer = null;
+		}
+		if (stopping != null) {
+			stopping.shutdown();
+			stopping.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	/***
+	 * method which writes messages with their ids, texts, audio and times, oldest
+	 * first, and then gives up the hold the snapshot had on them. A message
+	 * without audio is written with an empty path. A message that shares the text
+	 * of an announcement names the text, and the text itself is only written with
+	 * the first message that shares it.
+	 * 
+	 * @param out
+	 *            the stream the messages are written to
+	 * @param messages
+	 *            the messages, oldest first
+	 * @param payloads
+	 *            the ids of the shared texts already written
+	 * @throws IOException
+	 *             if the messages cannot be written
+	 */
+	private static void putMessages(DataOutputStream out, List<Message> messages, Set<Long> payloads)
+			throws IOException {
+		out.writeInt(messages.size());
+		for (Message message : messages) {
+			out.writeLong(message.getId());
+			Message origin = message.getOrigin();
+			if (origin == null || message.getAudio() != null) {
+				out.writeByte(TEXT_OWN);
+				putString(out, message.getText());
+			} else if (payloads.add(origin.getId())) {
+				out.writeByte(TEXT_FIRST_SHARED);
+				out.writeLong(origin.getId());
+				putString(out, message.getText());
+			} else {
+				out.writeByte(TEXT_SHARED);
+				out.writeLong(origin.getId());
+			}
+			AudioClip audio = message.getAudio();
+			putString(out, audio == null ? "" : audio.getFile().getAbsolutePath());
+			out.writeLong(audio == null ? 0 : audio.getLength());
+			out.writeByte(audio == null ? 0 : audio.getEncoding().ordinal());
+			out.writeLong(message.getTime());
+			message.release();
+		}
+	}
+
+	/***
+	 * method which reads a message that was written with its id
+	 * 
+	 * @param snapshot
+	 *            the bytes of the snapshot
+	 * @param magic
+	 *            the first bytes of the snapshot, which tell what is written with
+	 *            each message
+	 * @param payloads
+	 *            the shared texts read so far, by their id
+	 * @return the message
+	 * @throws IOException
+	 *             if the message shares a text that was not read
+	 */
+	private static Message getMessage(ByteBuffer snapshot, long magic, Map<Long, Message> payloads)
+			throws IOException {
+		long id = snapshot.getLong();
+		byte kind = magic == MAGIC_SHARED ? snapshot.get() : TEXT_OWN;
+		long originId = kind == TEXT_OWN ? 0 : snapshot.getLong();
+		String text = kind == TEXT_SHARED ? null : getString(snapshot);
+		AudioClip audio = null;
+		if (magic != MAGIC) {
+			String path = getString(snapshot);
+			long length = snapshot.getLong();
+			AudioEncoding encoding = AudioEncoding.PCM;
+			if (magic == MAGIC_ENCODED || magic == MAGIC_TIMED || magic == MAGIC_SHARED) {
+				encoding = AudioEncoding.values()[snapshot.get()];
+			}
+			if (!path.isEmpty()) {
+				audio = new AudioClip(new File(path), length, encoding);
+			}
+		}
+		boolean timed = magic == MAGIC_TIMED || magic == MAGIC_SHARED;
+		long time = timed ? snapshot.getLong() : System.currentTimeMillis();
+		if (kind == TEXT_OWN) {
+			return new Message(id, text, audio, time);
+		}
+		if (kind == TEXT_FIRST_SHARED) {
+			Message old = payloads.put(originId, new Message(originId, text, null, time));
+			if (old != null) {
+				old.release();
+			}
+		}
+		Message payload = payloads.get(originId);
+		if (payload == null) {
+			throw new IOException("The text of message " + id + " is missing from the snapshot");
+		}
+		return new Message(id, payload, time);
+	}
+
+	/***
+	 * method which writes text with its length
+	 * 
+	 * @param out
+	 *            the stream the text is written to
+	 * @param text
+	 *            the text
+	 * @throws IOException
+	 *             if the text cannot be written
+	 */
+	private static void putString(DataOutputStream out, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/***
+	 * method which reads text that was written with its length
+	 * 
+	 * @param snapshot
+	 *            the bytes of the snapshot
+	 * @return the text
+	 */
+	private static String getString(ByteBuffer snapshot) {
+		byte[] text = new byte[snapshot.getInt()];
+		snapshot.get(text);
+		return new String(text, StandardCharsets.UTF_8);
+	}
+
+	/***
+	 * method which finds the newest snapshot in the directory
+	 * 
+	 * @return the newest snapshot, or null if there is none
+	 */
+	private File newest() {
+		File newest = null;
+		long newestSegment = -1;
+		for (File file : snapshots()) {
+			String name = file.getName();
+			long segment = Long.parseLong(
+					name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+			if (segment > newestSegment) {
+				newest = file;
+				newestSegment = segment;
+			}
+		}
+		return newest;
+	}
+
+	/***
+	 * method which finds every snapshot in the directory
+	 * 
+	 * @return the snapshot files
+	 */
+	private List<File> snapshots() {
+		List<File> snapshots = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+					snapshots.add(file);
+				}
+			}
+		}
+		return snapshots;
+	}
+}
@@ -1,80 +1,384 @@
-package telephone;
-
-import java.util.ArrayList;
-import java.util.Comparator;
-
-/***
- * The class will be used to create a Mail System to hold multiple mailboxes of
- * different users
- * 
- * @author James Nguyen
- *
- */
-public class MailSystem {
-	private ArrayList<Mailbox> mailboxes;// the array of mailboxes
-	private static final String DEFAULT_PASSCODE = "0000";// the default passcode of the mailboxes
-
-	/***
-	 * constructor which initializes the mailbox array
-	 */
-	public MailSystem() {
-		mailboxes = new ArrayList<Mailbox>();
-	}
-
-	/***
-	 * method which will find a mailbox at the specified index
-	 * 
-	 * @param i
-	 *            the index of the mailbox
-	 * @return null if there is no mailbox found and the mailbox if its found
-	 * @precondition i>0
-	 */
-	public Mailbox findMailbox(int i) {
-		assert i>0: "No Negative Index";
-		if (i > mailboxes.size() || (mailboxes.size() == 0 && i == 0)) {
-			return null;
-		} else {
-			return mailboxes.get(i - 1);
-		}
-	}
-
-	/***
-	 * method which will add a new mailbox with a default passcode to the system
-	 */
-	public void addNewMailbox() {
-		Mailbox mailbox = new Mailbox(DEFAULT_PASSCODE);
-		mailboxes.add(mailbox);
-
-	}
-
-	/**
-	 * method which checks if the mailbox system is empty
-	 * 
-	 * @return true if the mailbox system is empty
-	 */
-	public boolean isEmpty() {
-		return mailboxes.isEmpty();
-	}
-
-	/***
-	 * method which finds the last mailbox number of the mail system
-	 * 
-	 * @return the last mailbox number of the mail system
-	 */
-	public int getLastMailboxNumber() {
-		return mailboxes.size();
-	}
-	/***
-	 * Method which returns a comparator which allows the message to compare itself
-	 * with other messages based on the text
-	 * 
-	 * @return comparator to compare the mailboxes based on the messsages
-	 */
-	public static Comparator<MailSystem> comparatorByMailboxes() {
-		return new Comparator<MailSystem>() {
-			public int compare(MailSystem mailSystem1, MailSystem mailSystem2) {
-				return ((new Integer(mailSystem1.getLastMailboxNumber())).compareTo(new Integer(mailSystem2.getLastMailboxNumber())));
-			}
-		};
-	}
-}
+package telephone;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***
+ * The class will be used to create a Mail System to hold multiple mailboxes of
+ * different users. The mailboxes are kept in shards of a fixed number of
+ * extensions, and a shard is only created when its first mailbox is added.
+ * Extension numbers are handed out atomically, and finding a mailbox never
+ * takes a lock, so calls can look up mailboxes while new ones are being added.
+ * Every change to a mailbox is reported to the mailbox listeners of the mail
+ * system, which is how the mail system is written to a mail log. Every mailbox
+ * is given the quota of the mail system when it is added. The mailboxes are
+ * ranked by their number of messages as the messages change. An announcement
+ * can be sent to every mailbox of a distribution list at once; it is delivered
+ * in batches on threads of its own, one per processor, and all of its copies
+ * share one text.
+ * Distribution lists are only kept in memory.
+ * 
+ * @author James Nguyen
+ *
+ */
+public class MailSystem {
+	private static final String DEFAULT_PASSCODE = "0000";// the default passcode of the mailboxes
+	private static final int SHARD_BITS = 12;// the number of bits of an extension used inside a shard
+	private static final int SHARD_SIZE = 1 << SHARD_BITS;// the number of extensions in a shard
+	private static final int MAX_SHARDS = 1 << 15;// the number of shards the mail system can hold
+	private static final int BROADCAST_BATCH = 1024;// the mailboxes one task delivers an announcement to
+	private static final long BROADCAST_IDLE_SECONDS = 60;// the time an idle broadcast thread is kept
+	private final AtomicReferenceArray<AtomicReferenceArray<Mailbox>> shards;// the shards of mailboxes
+	private final AtomicInteger lastExtension;// the last extension number handed out
+	private final MailboxListeners listeners;// the listeners told of every change to a mailbox
+	private final DepositFence fence;// passed by every message being left in a mailbox
+	private volatile MailboxQuota quota;// the quota of every mailbox
+	private final MailboxRanking ranking;// the mailboxes ranked by their number of messages
+	private final ConcurrentHashMap<String, DistributionList> distributionLists;// the lists, by their name
+	private final ThreadPoolExecutor broadcaster;// the threads that deliver announcements
+
+	/***
+	 * constructor which initializes the mailbox shards
+	 */
+	public MailSystem() {
+		shards = new AtomicReferenceArray<AtomicReferenceArray<Mailbox>>(MAX_SHARDS);
+		lastExtension = new AtomicInteger();
+		listeners = new MailboxListeners();
+		fence = new DepositFence();
+		quota = MailboxQuota.UNLIMITED;
+		ranking = new MailboxRanking();
+		listeners.add(ranking);
+		distributionLists = new ConcurrentHashMap<String, DistributionList>();
+		int threads = Runtime.getRuntime().availableProcessors();
+		AtomicInteger count = new AtomicInteger();
+		broadcaster = new ThreadPoolExecutor(threads, threads, BROADCAST_IDLE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), runnable -> {
+					Thread thread = new Thread(runnable, "mail-broadcast-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		broadcaster.allowCoreThreadTimeOut(true);
+	}
+
+	/***
+	 * constructor which rebuilds the mailboxes from a mail log and then writes
+	 * every change to the log
+	 * 
+	 * @param log
+	 *            the log the mail system is kept in
+	 * @throws IOException
+	 *             if the log cannot be read
+	 */
+	public MailSystem(MailLog log) throws IOException {
+		this();
+		MailJournal journal = new MailJournal(this, log);
+		journal.recover(0, 0);
+		ranking.rankAll(this);
+		listeners.add(journal);
+	}
+
+	/***
+	 * constructor which rebuilds the mailboxes from the newest mail snapshot and
+	 * the part of the mail log written after it, and then writes every change to
+	 * the log
+	 * 
+	 * @param log
+	 *            the log the mail system is kept in
+	 * @param snapshot
+	 *            the snapshots of the mail system
+	 * @throws IOException
+	 *             if the snapshot or the log cannot be read
+	 */
+	public MailSystem(MailLog log, MailSnapshot snapshot) throws IOException {
+		this();
+		snapshot.load(this);
+		MailJournal journal = new MailJournal(this, log);
+		journal.recover(snapshot.getLogSegment(), snapshot.getLastMessageId());
+		ranking.rankAll(this);
+		listeners.add(journal);
+	}
+
+	/***
+	 * method which sets the quota of every mailbox, including the mailboxes added
+	 * later. A mailbox may be given a quota of its own afterwards.
+	 * 
+	 * @param quota
+	 *            the most messages and bytes each mailbox may hold
+	 */
+	public void setQuota(MailboxQuota quota) {
+		this.quota = quota;
+		int last = lastExtension.get();
+		for (int extension = 1; extension <= last; extension++) {
+			Mailbox mailbox = findMailbox(extension);
+			if (mailbox != null) {
+				mailbox.setQuota(quota);
+			}
+		}
+	}
+
+	/***
+	 * method which returns the ranking of the mailboxes by their number of
+	 * messages
+	 * 
+	 * @return the ranking of the mailboxes
+	 */
+	public MailboxRanking getRanking() {
+		return ranking;
+	}
+
+	/***
+	 * method which adds a listener that will be told of every change to a mailbox
+	 * 
+	 * @param listener
+	 *            the listener that will be added
+	 */
+	public void addMailboxListener(MailboxListener listener) {
+		listeners.add(listener);
+	}
+
+	/***
+	 * method which removes a listener that was told of every change to a mailbox
+	 * 
+	 * @param listener
+	 *            the listener that will be removed
+	 */
+	public void removeMailboxListener(MailboxListener listener) {
+		listeners.remove(listener);
+	}
+
+	/***
+	 * method which will find a mailbox at the specified index
+	 * 
+	 * @param i
+	 *            the index of the mailbox
+	 * @return null if there is no mailbox found and the mailbox if its found
+	 * @precondition i>0
+	 */
+	public Mailbox findMailbox(int i) {
+		assert i>0: "No Negative Index";
+		if (i <= 0 || i > lastExtension.get()) {
+			return null;
+		}
+		AtomicReferenceArray<Mailbox> shard = shards.get((i - 1) >>> SHARD_BITS);
+		return shard == null ? null : shard.get((i - 1) & (SHARD_SIZE - 1));
+	}
+
+	/***
+	 * method which will add a new mailbox with a default passcode to the system
+	 * 
+	 * @return the extension number of the new mailbox
+	 */
+	public int addNewMailbox() {
+		int extension = lastExtension.incrementAndGet();
+		if (extension > MAX_SHARDS * SHARD_SIZE || extension <= 0) {
+			lastExtension.decrementAndGet();
+			throw new IllegalStateException("The mail system cannot hold any more mailboxes");
+		}
+		Mailbox mailbox = new Mailbox(extension, DEFAULT_PASSCODE, listeners, fence);
+		mailbox.setQuota(quota);
+		shardOf(extension).set((extension - 1) & (SHARD_SIZE - 1), mailbox);
+		listeners.mailboxAdded(mailbox);
+		return extension;
+	}
+
+	/***
+	 * method which waits until every message that was being left when it was
+	 * called is in its mailbox, so a message already written to the mail log
+	 * can be seen by copying the mailboxes
+	 */
+	void awaitDeposits() {
+		fence.await();
+	}
+
+	/***
+	 * method which finds the mailbox with the extension number that was read back
+	 * from storage, adding it with the default passcode if it does not exist yet
+	 * 
+	 * @param extension
+	 *            the extension number of the mailbox
+	 * @return the mailbox with the extension number
+	 * @precondition extension > 0
+	 */
+	Mailbox restoreMailbox(int extension) {
+		assert extension > 0 && extension <= MAX_SHARDS * SHARD_SIZE : "Invalid extension number";
+		lastExtension.accumulateAndGet(extension, Math::max);
+		AtomicReferenceArray<Mailbox> shard = shardOf(extension);
+		int slot = (extension - 1) & (SHARD_SIZE - 1);
+		Mailbox mailbox = shard.get(slot);
+		if (mailbox == null) {
+			Mailbox restored = new Mailbox(extension, DEFAULT_PASSCODE, listeners, fence);
+			restored.setQuota(quota);
+			shard.compareAndSet(slot, null, restored);
+			mailbox = shard.get(slot);
+		}
+		return mailbox;
+	}
+
+	/***
+	 * method which adds a distribution list, replacing any list with the same name
+	 * 
+	 * @param list
+	 *            the distribution list
+	 */
+	public void addDistributionList(DistributionList list) {
+		distributionLists.put(list.getName(), list);
+	}
+
+	/***
+	 * method which finds a distribution list by its name
+	 * 
+	 * @param name
+	 *            the name of the list
+	 * @return the list, or null if there is no list with the name
+	 */
+	public DistributionList findDistributionList(String name) {
+		return distributionLists.get(name);
+	}
+
+	/***
+	 * method which removes a distribution list
+	 * 
+	 * @param name
+	 *            the name of the list
+	 * @return the list that was removed, or null if there was no list with the
+	 *         name
+	 */
+	public DistributionList removeDistributionList(String name) {
+		return distributionLists.remove(name);
+	}
+
+	/***
+	 * method which leaves an announcement as a new message in every mailbox of a
+	 * distribution list. The members are split into batches that are delivered by
+	 * the broadcast threads of the mail system, one per processor, since leaving a
+	 * message waits for the mail log. Every mailbox gets its own message, but all
+	 * of them share one copy of the text. A member that does not exist or whose
+	 * mailbox is full is skipped. The listeners are told once every copy is left.
+	 * 
+	 * @param list
+	 *            the distribution list
+	 * @param text
+	 *            the text of the announcement
+	 * @return the number of mailboxes the announcement was left in
+	 * @precondition text.trim().length !=0
+	 */
+	public int broadcast(DistributionList list, String text) {
+		Message payload = new Message(text);
+		try {
+			int batches = (list.size() + BROADCAST_BATCH - 1) / BROADCAST_BATCH;
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(batches);
+			for (int batch = 0; batch < batches; batch++) {
+				int number = batch;
+				tasks.add(() -> deliver(list, payload, number));
+			}
+			int delivered = 0;
+			for (Future<Integer> task : broadcaster.invokeAll(tasks)) {
+				delivered += task.get();
+			}
+			return delivered;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while sending an announcement", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Cannot send an announcement", e.getCause());
+		} finally {
+			listeners.broadcastDelivered(payload);
+			payload.release();
+		}
+	}
+
+	/***
+	 * method which leaves an announcement in the mailboxes of one batch of a
+	 * distribution list
+	 * 
+	 * @param list
+	 *            the distribution list
+	 * @param payload
+	 *            the message whose text is shared by every copy
+	 * @param batch
+	 *            the number of the batch
+	 * @return the number of mailboxes the announcement was left in
+	 */
+	private int deliver(DistributionList list, Message payload, int batch) {
+		int delivered = 0;
+		int end = Math.min(list.size(), (batch + 1) * BROADCAST_BATCH);
+		for (int i = batch * BROADCAST_BATCH; i < end; i++) {
+			int extension = list.getMember(i);
+			Mailbox mailbox = findMailbox(extension);
+			if (mailbox == null) {
+				continue;
+			}
+			Message message = payload.share();
+			if (mailbox.addMessage(message)) {
+				delivered++;
+			} else {
+				message.release();
+			}
+		}
+		return delivered;
+	}
+
+	/***
+	 * method which finds the shard that holds the extension and creates it if it
+	 * does not exist yet
+	 * 
+	 * @param extension
+	 *            the extension number
+	 * @return the shard of the extension
+	 */
+	private AtomicReferenceArray<Mailbox> shardOf(int extension) {
+		int index = (extension - 1) >>> SHARD_BITS;
+		AtomicReferenceArray<Mailbox> shard = shards.get(index);
+		if (shard == null) {
+			shards.compareAndSet(index, null, new AtomicReferenceArray<Mailbox>(SHARD_SIZE));
+			shard = shards.get(index);
+		}
+		return shard;
+	}
+
+	/**
+	 * method which checks if the mailbox system is empty
+	 * 
+	 * @return true if the mailbox system is empty
+	 */
+	public boolean isEmpty() {
+		return lastExtension.get() == 0;
+	}
+
+	/***
+	 * method which finds the last mailbox number of the mail system
+	 * 
+	 * @return the last mailbox number of the mail system
+	 */
+	public int getLastMailboxNumber() {
+		return lastExtension.get();
+	}
+
+	/***
+	 * Method which returns a comparator which allows the message to compare itself
+	 * with other messages based on the text
+	 * 
+	 * @return comparator to compare the mailboxes based on the messsages
+	 */
+	public static Comparator<MailSystem> comparatorByMailboxes() {
+		return new Comparator<MailSystem>() {
+			public int compare(MailSystem mailSystem1, MailSystem mailSystem2) {
+				return Integer.compare(mailSystem1.getLastMailboxNumber(), mailSystem2.getLastMailboxNumber());
+			}
+		};
+	}
+}
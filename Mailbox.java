@@ -1,295 +1,833 @@
-package telephone;
-
-import java.util.ArrayList;
-import java.util.Comparator;
-
-/***
- * Class in which users are able to create a Mailbox which will store the
- * messages of the users and up to three greetings
- * 
- * @author James Nguyen
- *
- */
-public class Mailbox implements MailboxInterface {
-	private int currentGreeting;// the index of the current greeting
-	private String passcode;// the passcode of the mailbox
-	private ArrayList<String> greetings;// the array to keep the different
-	private MessageQueue savedQueue;// Messsage Queue to keep the saved messages
-	private MessageQueue newQueue; // Message Queue to keep the new messages
-
-	/***
-	 * Constructor which allows users to create a Mailbox based on an entered
-	 * passcode, and sets the greeting to a default greeting.
-	 * 
-	 * @param passcode
-	 *            the passcode of the Mailbox that is created
-	 * @precondition passcode.matches("^[0-9]*$") && passcode.length() == 4
-	 */
-	public Mailbox(String passcode) {
-		assert passcode.matches("^[0-9]*$") && passcode.length() == 4 : "Passcode must be four digits long";
-		this.passcode = passcode;
-		this.currentGreeting = 0;
-		greetings = new ArrayList<String>();
-		greetings.add("Please leave a messsage for the Mailbox.");
-		savedQueue = new MessageQueue();
-		newQueue = new MessageQueue();
-	}
-
-	/***
-	 * Method which checks if the new message queue is empty
-	 * 
-	 * @return true if the new message queue is empty
-	 */
-	public boolean newMessageisEmpty() {
-		return newQueue.isEmpty();
-	}
-
-	/***
-	 * Method which checks if the saved message queue is empty
-	 * 
-	 * @return true if the saved message queue
-	 */
-	public boolean savedMessageisEmpty() {
-		return savedQueue.isEmpty();
-	}
-
-	@Override
-	/**
-	 * method which checks the entered passcode
-	 * 
-	 * @param passcode
-	 *            the entered passcode
-	 * @return true if the entered passcode matches
-	 */
-	public boolean checkPasscode(String passcode) {
-		return this.passcode.equals(passcode);
-	}
-
-	/***
-	 * method which add a new greeting to be saved
-	 * 
-	 * @param greeting
-	 *            the new greeting that will be saved
-	 * @precondition !greetingIsFull()
-	 */
-	public void addGreeting(String greeting) {
-		assert !greetingIsFull() : "There are already three greetings.";
-		greetings.add(greeting);
-	}
-
-	@Override
-	/***
-	 * method which adds the message as a new message to the mailbox
-	 * 
-	 * @param a
-	 *            the message that will be added
-	 */
-	public void addMessage(Message message) {
-		newQueue.addMessage(message);
-
-	}
-
-	/***
-	 * method which saves the message to the mailbox
-	 * 
-	 * @param a
-	 *            the message that will be added
-	 */
-	public void saveMessage(Message message) {
-		savedQueue.addMessage(message);
-	}
-
-	/***
-	 * method which resets the passcode to the default passcode of 0000
-	 */
-	public void resetPasscode() {
-		passcode = "0000";
-	}
-
-	@Override
-	/***
-	 * method which gets the current new message of the mailbox
-	 * 
-	 * @return the current new message of the mailbox
-	 */
-	public Message getCurrentMessage() {
-		return newQueue.peek();
-	}
-
-	@Override
-	/***
-	 * method which removes the current message of the mailbox
-	 * 
-	 * @return the current message
-	 * 
-	 */
-	public Message removeCurrentMessage() {
-		return newQueue.remove();
-
-	}
-
-	@Override
-	/***
-	 * method which sets the passcode to the entered passcode
-	 * 
-	 * @param passcode
-	 *            the new passcode
-	 * @precondition passcode.matches("^[0-9]*$") && passcode.length() == 4
-	 * 
-	 */
-	public void setPasscode(String passcode) {
-		assert passcode.matches("^[0-9]*$") && passcode.length() == 4 : "Passcode must be four digits long";
-		this.passcode = passcode;
-
-	}
-
-	/***
-	 * method which gets the current greeting from the array that has the saved
-	 * greetings
-	 * 
-	 * @return the current greeting
-	 */
-	public String getCurrentGreeting() {
-		return greetings.get(currentGreeting);
-	}
-
-	@Override
-	/**
-	 * method which returns the number of greetings that are currently saved
-	 */
-	public int numOfGreetings() {
-		return greetings.size();
-	}
-
-	/***
-	 * method which gets the saved greeting based on index
-	 * 
-	 * @param i
-	 *            the index of the saved greeting
-	 * @return the saved greeting at the index
-	 * @precondition i>=0 && i<greetings.size()
-	 */
-	public String getGreeting(int i) {
-		assert i < greetings.size() && i >= 0 : "Index is out of bounds";
-		return greetings.get(i);
-	}
-
-	/***
-	 * method which gets the saved message based on the index
-	 * 
-	 * @param i
-	 *            the index of the saved message
-	 * @return the saved message at the index
-	 * @precondition i<savedQueue.getSize() && i>=0
-	 */
-	public Message getSavedMessage(int i) {
-		assert i < savedQueue.getSize() && i >= 0 : "Index is out of bounds";
-		return savedQueue.getMessage(i);
-	}
-
-	/***
-	 * method which get the new message based on the index
-	 * 
-	 * @param i
-	 *            the index of the new message
-	 * @return the new message at the index
-	 * @precondition i<newQueue.getSize() && i>=0
-	 */
-	public Message getNewMessage(int i) {
-		assert i < newQueue.getSize() && i >= 0 : "Index is out of bounds";
-		return newQueue.getMessage(i);
-	}
-
-	/***
-	 * method which removes a saved message based on the index
-	 * 
-	 * @param i
-	 *            the index of the saved message
-	 * @precondition i<savedQueue.getSize() && i>=0
-	 */
-	public void removeSavedMessage(int i) {
-		assert i < savedQueue.getSize() && i >= 0 : "Index is out of bounds";
-		savedQueue.remove(i);
-	}
-
-	/***
-	 * method which removes a new message based on the index
-	 * 
-	 * @param i
-	 *            the index of the new message
-	 * @precondition i<newQueue.getSize() && i>=0
-	 */
-	public void removeNewMessage(int i) {
-		assert i < newQueue.getSize() && i >= 0 : "Index is out of bounds";
-		newQueue.remove(i);
-	}
-
-	/***
-	 * method which returns the size of the savedQueue
-	 * 
-	 * @return the size of the saved queue
-	 */
-	public int getSavedSize() {
-		return savedQueue.getSize();
-	}
-
-	/***
-	 * method whihc returns the size of the newQueue
-	 * 
-	 * @return the size of the new Queue
-	 */
-	public int getNewSize() {
-		return newQueue.getSize();
-	}
-
-	@Override
-	/***
-	 * method which changes the current greeting to a new greeting
-	 * 
-	 * @param greeting
-	 *            the new greeting
-	 * @precondition greeting.trim().length() !=0
-	 */
-	public void changeCurrentGreeting(String greeting) {
-		assert greeting.trim().length() != 0;
-		greetings.set(currentGreeting, greeting);
-
-	}
-
-	@Override
-	/**
-	 * method which changes the current greeting to another saved greeting
-	 * 
-	 * @precondition i>=0 && i<greetings.size()
-	 */
-	public void chooseCurrentGreeting(int i) {
-		assert i >= 0 && i < greetings.size() : "Index is out of bounds";
-		currentGreeting = i;
-
-	}
-
-	/***
-	 * Method which returns a compartor which allows the Mailbox to compare itself
-	 * with other mailboxes based on the number of messages
-	 * 
-	 * @return comparator to compare the mailboxes based on number of messsages
-	 */
-	public static Comparator<Mailbox> comparatorByMessage() {
-		return new Comparator<Mailbox>() {
-			public int compare(Mailbox mailbox1, Mailbox mailbox2) {
-				return (new Integer (mailbox1.getNewSize() + mailbox1.getSavedSize()))
-						.compareTo(new Integer (mailbox2.getNewSize() + mailbox2.getSavedSize()));
-			}
-		};
-	}
-
-	/***
-	 * method which checks if the number of saved greetings is full
-	 * 
-	 * @return true if the number of greetings is full
-	 */
-	public boolean greetingIsFull() {
-		return greetings.size() == 3;
-	}
-
-}
+package telephone;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Class in which users are able to create a Mailbox which will store the
+ * messages of the users and up to three greetings. Callers may leave messages
+ * from many threads at once; their messages wait in a lock free inbox until the
+ * owner of the mailbox next looks at the new messages. Every method the owner
+ * uses to read or change the messages holds the lock of the mailbox, so the
+ * owner always sees a consistent view. Every change is reported to the mailbox
+ * listener of the mailbox, which writes it to the mail log. A message is only
+ * taken out after its delete was reported, and a change the listener fails to
+ * take is undone, so the mailbox never holds less than the log says. The messages and bytes of
+ * text and audio in the mailbox are counted as they come and go, so a caller
+ * can be turned away from a full mailbox without looking at its messages.
+ * 
+ * @author James Nguyen
+ *
+ */
+public class Mailbox implements MailboxInterface {
+	private final int extension;// the extension number of the mailbox
+	private final MailboxListener listener;// the listener that is told of every change
+	private final DepositFence fence;// what callers pass while their message is logged but not yet in the inbox
+	private int currentGreeting;// the index of the current greeting
+	private volatile String passcode;// the passcode of the mailbox
+	private ArrayList<String> greetings;// the array to keep the different
+	private MessageQueue savedQueue;// Messsage Queue to keep the saved messages
+	private MessageQueue newQueue; // Message Queue to keep the new messages
+	private final MessageInbox inbox;// new messages that the owner has not seen yet
+	private volatile MailboxQuota quota;// the most messages and bytes the mailbox may hold
+	private final AtomicInteger messageCount;// the number of messages in the mailbox, counting the inbox
+	private final AtomicLong byteCount;// the bytes of text and audio of those messages
+
+	/***
+	 * Constructor which allows users to create a Mailbox based on an entered
+	 * passcode, and sets the greeting to a default greeting.
+	 * 
+	 * @param passcode
+	 *            the passcode of the Mailbox that is created
+	 * @precondition passcode.matches("^[0-9]*$") && passcode.length() == 4
+	 */
+	public Mailbox(String passcode) {
+		this(0, passcode, new MailboxListeners(), new DepositFence());
+	}
+
+	/***
+	 * Constructor which creates a Mailbox of a mail system with an extension number
+	 * and a listener that will be told of every change
+	 * 
+	 * @param extension
+	 *            the extension number of the Mailbox
+	 * @param passcode
+	 *            the passcode of the Mailbox that is created
+	 * @param listener
+	 *            the listener that is told of every change
+	 * @param fence
+	 *            the fence of the mail system that callers leaving a message pass
+	 * @precondition passcode.matches("^[0-9]*$") && passcode.length() == 4
+	 */
+	Mailbox(int extension, String passcode, MailboxListener listener, DepositFence fence) {
+		assert passcode.matches("^[0-9]*$") && passcode.length() == 4 : "Passcode must be four digits long";
+		this.extension = extension;
+		this.listener = listener;
+		this.fence = fence;
+		this.passcode = passcode;
+		this.currentGreeting = 0;
+		greetings = new ArrayList<String>();
+		greetings.add("Please leave a messsage for the Mailbox.");
+		savedQueue = new MessageQueue();
+		newQueue = new MessageQueue();
+		inbox = new MessageInbox();
+		quota = MailboxQuota.UNLIMITED;
+		messageCount = new AtomicInteger();
+		byteCount = new AtomicLong();
+	}
+
+	/***
+	 * method which returns the extension number of the mailbox
+	 * 
+	 * @return the extension number, or 0 if the mailbox is not part of a mail
+	 *         system
+	 */
+	public int getExtension() {
+		return extension;
+	}
+
+	/***
+	 * Method which checks if the new message queue is empty
+	 * 
+	 * @return true if the new message queue is empty
+	 */
+	public synchronized boolean newMessageisEmpty() {
+		drainInbox();
+		return newQueue.isEmpty();
+	}
+
+	/***
+	 * Method which checks if the saved message queue is empty
+	 * 
+	 * @return true if the saved message queue
+	 */
+	public synchronized boolean savedMessageisEmpty() {
+		return savedQueue.isEmpty();
+	}
+
+	@Override
+	/**
+	 * method which checks the entered passcode
+	 * 
+	 * @param passcode
+	 *            the entered passcode
+	 * @return true if the entered passcode matches
+	 */
+	public boolean checkPasscode(String passcode) {
+		return this.passcode.equals(passcode);
+	}
+
+	/***
+	 * method which add a new greeting to be saved
+	 * 
+	 * @param greeting
+	 *            the new greeting that will be saved
+	 * @precondition !greetingIsFull()
+	 */
+	public synchronized void addGreeting(String greeting) {
+		assert !greetingIsFull() : "There are already three greetings.";
+		greetings.add(greeting);
+		listener.greetingsChanged(this);
+	}
+
+	@Override
+	/***
+	 * method which adds the message as a new message to the mailbox, unless it
+	 * would go over the quota of the mailbox. A message that was not added still
+	 * belongs to the caller. The listener is told before the owner can see the
+	 * message, so it hears of the message before it can be deleted. If the
+	 * listener fails the message is not added and no longer counted, and it
+	 * still belongs to the caller. The fence of the mailbox is held from before
+	 * the listener is told until the message is in the inbox, so a snapshot can
+	 * wait for messages that were logged but not yet added.
+	 * 
+	 * @param a
+	 *            the message that will be added
+	 * @return true if the message was added, or false if the mailbox is full
+	 */
+	public boolean addMessage(Message message) {
+		if (!reserve(message)) {
+			return false;
+		}
+		long epoch = fence.enter();
+		try {
+			listener.messageAdded(this, message);
+			inbox.offer(message);
+		} catch (RuntimeException e) {
+			count(message, message.getAudio(), -1);
+			throw e;
+		} finally {
+			fence.exit(epoch);
+		}
+		listener.messageCountChanged(this);
+		return true;
+	}
+
+	/***
+	 * method which sets the most messages and bytes the mailbox may hold. Messages
+	 * already in the mailbox are kept even if they go over the new quota.
+	 * 
+	 * @param quota
+	 *            the new quota
+	 */
+	public void setQuota(MailboxQuota quota) {
+		this.quota = quota;
+	}
+
+	/***
+	 * method which returns the most messages and bytes the mailbox may hold
+	 * 
+	 * @return the quota
+	 */
+	public MailboxQuota getQuota() {
+		return quota;
+	}
+
+	/***
+	 * method which returns the number of new and saved messages in the mailbox
+	 * 
+	 * @return the number of messages
+	 */
+	public int getMessageCount() {
+		return messageCount.get();
+	}
+
+	/***
+	 * method which returns the bytes of text and audio of the messages in the
+	 * mailbox
+	 * 
+	 * @return the number of bytes
+	 */
+	public long getByteCount() {
+		return byteCount.get();
+	}
+
+	/***
+	 * method which checks if the mailbox cannot take another message
+	 * 
+	 * @return true if the mailbox holds as many messages or bytes as its quota
+	 */
+	public boolean isFull() {
+		MailboxQuota limit = quota;
+		return messageCount.get() >= limit.getMaxMessages() || byteCount.get() >= limit.getMaxBytes();
+	}
+
+	/***
+	 * method which replaces the audio of a message in the mailbox, unless the
+	 * message has been deleted, taken out of the mailbox or had its audio replaced
+	 * since it was read. Calls may keep playing the old audio until the audio is
+	 * replaced. If the listener fails the message gets its old audio back and the
+	 * failure is passed on, so the caller still owns the new audio.
+	 * 
+	 * @param message
+	 *            the message
+	 * @param expected
+	 *            the audio the message is expected to have
+	 * @param replacement
+	 *            the new audio
+	 * @return true if the audio was replaced
+	 */
+	public synchronized boolean replaceAudio(Message message, AudioClip expected, AudioClip replacement) {
+		if (findMessage(message.getId()) != message || !message.replaceAudio(expected, replacement)) {
+			return false;
+		}
+		try {
+			listener.audioChanged(this, message);
+		} catch (RuntimeException e) {
+			message.replaceAudio(replacement, expected);
+			throw e;
+		}
+		byteCount.addAndGet(replacement.getLength() - expected.getLength());
+		return true;
+	}
+
+	/***
+	 * method which saves a message that does not belong to the mailbox, such as one
+	 * taken out of it by removeCurrentMessage, to the mailbox. The mailbox owns
+	 * the message afterwards and counts it, even over the quota. If the listener
+	 * fails the message is taken out again and still belongs to the caller.
+	 * 
+	 * @param a
+	 *            the message that will be added
+	 */
+	public synchronized void saveMessage(Message message) {
+		count(message, message.getAudio(), 1);
+		savedQueue.addMessage(message);
+		try {
+			listener.messageSaved(this, message);
+		} catch (RuntimeException e) {
+			savedQueue.remove();
+			count(message, message.getAudio(), -1);
+			throw e;
+		}
+		listener.messageCountChanged(this);
+	}
+
+	/***
+	 * method which moves the current new message to the saved messages. Whether
+	 * there is one is checked under the same lock, since another call may have
+	 * taken it. If the listener fails the message is moved back.
+	 * 
+	 * @return the message that was saved, or null if there are no new messages
+	 */
+	public synchronized Message saveCurrentMessage() {
+		drainInbox();
+		if (newQueue.isEmpty()) {
+			return null;
+		}
+		Message message = newQueue.remove();
+		savedQueue.addMessage(message);
+		try {
+			listener.messageSaved(this, message);
+		} catch (RuntimeException e) {
+			savedQueue.remove();
+			newQueue.addMessage(message);
+			throw e;
+		}
+		return message;
+	}
+
+	/***
+	 * method which deletes the current new message. Its text must not be read
+	 * afterwards.
+	 * 
+	 * @return the message that was deleted, or null if there are no new messages
+	 */
+	public synchronized Message deleteCurrentMessage() {
+		Message message = removeCurrentMessage();
+		if (message == null) {
+			return null;
+		}
+		AudioClip audio = message.takeAudio();
+		if (audio != null) {
+			audio.delete();
+		}
+		message.release();
+		return message;
+	}
+
+	/***
+	 * method which resets the passcode to the default passcode of 0000
+	 */
+	public synchronized void resetPasscode() {
+		passcode = "0000";
+		listener.passcodeChanged(this, passcode);
+	}
+
+	@Override
+	/***
+	 * method which gets the current new message of the mailbox
+	 * 
+	 * @return the current new message of the mailbox
+	 */
+	public synchronized Message getCurrentMessage() {
+		drainInbox();
+		return newQueue.peek();
+	}
+
+	@Override
+	/***
+	 * method which removes the current message of the mailbox. The message is no
+	 * longer counted, and belongs to the caller with its text and audio, which
+	 * the caller must release, delete or save to a mailbox again.
+	 * 
+	 * @return the current message, or null if there are no new messages
+	 */
+	public synchronized Message removeCurrentMessage() {
+		drainInbox();
+		if (newQueue.isEmpty()) {
+			return null;
+		}
+		Message message = newQueue.peek();
+		listener.messageDeleted(this, message);
+		newQueue.remove();
+		count(message, message.getAudio(), -1);
+		listener.messageCountChanged(this);
+		return message;
+	}
+
+	@Override
+	/***
+	 * method which sets the passcode to the entered passcode
+	 * 
+	 * @param passcode
+	 *            the new passcode
+	 * @precondition passcode.matches("^[0-9]*$") && passcode.length() == 4
+	 * 
+	 */
+	public synchronized void setPasscode(String passcode) {
+		assert passcode.matches("^[0-9]*$") && passcode.length() == 4 : "Passcode must be four digits long";
+		this.passcode = passcode;
+		listener.passcodeChanged(this, passcode);
+	}
+
+	/***
+	 * method which gets the current greeting from the array that has the saved
+	 * greetings
+	 * 
+	 * @return the current greeting
+	 */
+	public synchronized String getCurrentGreeting() {
+		return greetings.get(currentGreeting);
+	}
+
+	@Override
+	/**
+	 * method which returns the number of greetings that are currently saved
+	 */
+	public synchronized int numOfGreetings() {
+		return greetings.size();
+	}
+
+	/***
+	 * method which gets the saved greeting based on index
+	 * 
+	 * @param i
+	 *            the index of the saved greeting
+	 * @return the saved greeting at the index
+	 * @precondition i>=0 && i<greetings.size()
+	 */
+	public synchronized String getGreeting(int i) {
+		assert i < greetings.size() && i >= 0 : "Index is out of bounds";
+		return greetings.get(i);
+	}
+
+	/***
+	 * method which gets the saved message based on the index
+	 * 
+	 * @param i
+	 *            the index of the saved message
+	 * @return the saved message at the index
+	 * @precondition i<savedQueue.getSize() && i>=0
+	 */
+	public synchronized Message getSavedMessage(int i) {
+		assert i < savedQueue.getSize() && i >= 0 : "Index is out of bounds";
+		return savedQueue.getMessage(i);
+	}
+
+	/***
+	 * method which get the new message based on the index
+	 * 
+	 * @param i
+	 *            the index of the new message
+	 * @return the new message at the index
+	 * @precondition i<newQueue.getSize() && i>=0
+	 */
+	public synchronized Message getNewMessage(int i) {
+		drainInbox();
+		assert i < newQueue.getSize() && i >= 0 : "Index is out of bounds";
+		return newQueue.getMessage(i);
+	}
+
+	/***
+	 * method which deletes a message by the number it is listed with, the new
+	 * messages first and then the saved ones, both starting from 1. The number is
+	 * checked against the messages under the same lock the message is deleted
+	 * with, so a message taken by another call meanwhile is never confused with
+	 * an empty slot.
+	 * 
+	 * @param number
+	 *            the number of the message in the list
+	 * @return true if the message was deleted, or false if there is no message
+	 *         with the number
+	 */
+	public synchronized boolean removeMessage(int number) {
+		drainInbox();
+		if (number < 1 || number > newQueue.getSize() + savedQueue.getSize()) {
+			return false;
+		}
+		if (number <= newQueue.getSize()) {
+			removeNewMessage(number - 1);
+		} else {
+			removeSavedMessage(number - 1 - newQueue.getSize());
+		}
+		return true;
+	}
+
+	/***
+	 * method which removes a saved message based on the index
+	 * 
+	 * @param i
+	 *            the index of the saved message
+	 * @precondition i<savedQueue.getSize() && i>=0
+	 */
+	public synchronized void removeSavedMessage(int i) {
+		Message message = savedQueue.getMessage(i);
+		listener.messageDeleted(this, message);
+		savedQueue.remove(i);
+		discard(message);
+	}
+
+	/***
+	 * method which removes a new message based on the index
+	 * 
+	 * @param i
+	 *            the index of the new message
+	 * @precondition i<newQueue.getSize() && i>=0
+	 */
+	public synchronized void removeNewMessage(int i) {
+		drainInbox();
+		Message message = newQueue.getMessage(i);
+		listener.messageDeleted(this, message);
+		newQueue.remove(i);
+		discard(message);
+	}
+
+	/***
+	 * method which finds a new or saved message of the mailbox by its id. Its text
+	 * must not be read after it is deleted.
+	 * 
+	 * @param id
+	 *            the id of the message
+	 * @return the message, or null if the mailbox does not hold it
+	 */
+	public synchronized Message findMessage(long id) {
+		drainInbox();
+		int i = newQueue.indexOf(id);
+		if (i >= 0) {
+			return newQueue.getMessage(i);
+		}
+		i = savedQueue.indexOf(id);
+		return i >= 0 ? savedQueue.getMessage(i) : null;
+	}
+
+	/***
+	 * method which returns the size of the savedQueue
+	 * 
+	 * @return the size of the saved queue
+	 */
+	public synchronized int getSavedSize() {
+		return savedQueue.getSize();
+	}
+
+	/***
+	 * method whihc returns the size of the newQueue
+	 * 
+	 * @return the size of the new Queue
+	 */
+	public synchronized int getNewSize() {
+		drainInbox();
+		return newQueue.getSize();
+	}
+
+	@Override
+	/***
+	 * method which changes the current greeting to a new greeting
+	 * 
+	 * @param greeting
+	 *            the new greeting
+	 * @precondition greeting.trim().length() !=0
+	 */
+	public synchronized void changeCurrentGreeting(String greeting) {
+		assert greeting.trim().length() != 0;
+		greetings.set(currentGreeting, greeting);
+		listener.greetingsChanged(this);
+	}
+
+	@Override
+	/**
+	 * method which changes the current greeting to another saved greeting
+	 * 
+	 * @precondition i>=0 && i<greetings.size()
+	 */
+	public synchronized void chooseCurrentGreeting(int i) {
+		assert i >= 0 && i < greetings.size() : "Index is out of bounds";
+		currentGreeting = i;
+		listener.greetingsChanged(this);
+	}
+
+	/***
+	 * method which returns the index of the current greeting
+	 * 
+	 * @return the index of the current greeting
+	 */
+	public synchronized int getCurrentGreetingIndex() {
+		return currentGreeting;
+	}
+
+	/***
+	 * Method which returns a compartor which allows the Mailbox to compare itself
+	 * with other mailboxes based on the number of messages
+	 * 
+	 * @return comparator to compare the mailboxes based on number of messsages
+	 */
+	public static Comparator<Mailbox> comparatorByMessage() {
+		return new Comparator<Mailbox>() {
+			public int compare(Mailbox mailbox1, Mailbox mailbox2) {
+				return Integer.compare(mailbox1.getNewSize() + mailbox1.getSavedSize(),
+						mailbox2.getNewSize() + mailbox2.getSavedSize());
+			}
+		};
+	}
+
+	/***
+	 * method which puts a message that was read back from storage into the new
+	 * messages without telling the listener
+	 * 
+	 * @param message
+	 *            the message that will be put back
+	 * @param mayExist
+	 *            true if the message may already be in the mailbox, in which case
+	 *            it is not put back twice
+	 */
+	synchronized void restoreMessage(Message message, boolean mayExist) {
+		drainInbox();
+		if (mayExist && (newQueue.indexOf(message.getId()) >= 0 || savedQueue.indexOf(message.getId()) >= 0)) {
+			message.release();
+			return;
+		}
+		count(message, message.getAudio(), 1);
+		newQueue.addMessage(message);
+	}
+
+	/***
+	 * method which puts a message that was read back from storage into the saved
+	 * messages without telling the listener. If the message is still a new message
+	 * it is taken out of the new messages first.
+	 * 
+	 * @param message
+	 *            the message that will be put back
+	 * @param mayExist
+	 *            true if the message may already be saved, in which case it is not
+	 *            saved twice
+	 */
+	synchronized void restoreSavedMessage(Message message, boolean mayExist) {
+		drainInbox();
+		int i = newQueue.indexOf(message.getId());
+		if (i >= 0) {
+			Message copy = newQueue.getMessage(i);
+			count(copy, copy.getAudio(), -1);
+			copy.release();
+			newQueue.remove(i);
+		}
+		if (!mayExist || savedQueue.indexOf(message.getId()) < 0) {
+			count(message, message.getAudio(), 1);
+			savedQueue.addMessage(message);
+		} else {
+			message.release();
+		}
+	}
+
+	/***
+	 * method which takes a message that was deleted out of the mailbox without
+	 * telling the listener
+	 * 
+	 * @param id
+	 *            the id of the message that was deleted
+	 */
+	synchronized void restoreDeletedMessage(long id) {
+		drainInbox();
+		int i = newQueue.indexOf(id);
+		if (i >= 0) {
+			discard(newQueue.getMessage(i));
+			newQueue.remove(i);
+		} else if ((i = savedQueue.indexOf(id)) >= 0) {
+			discard(savedQueue.getMessage(i));
+			savedQueue.remove(i);
+		}
+	}
+
+	/***
+	 * method which replaces the audio of a message with audio that was read back
+	 * from storage without telling the listener. The old audio file is deleted if
+	 * it was left behind.
+	 * 
+	 * @param id
+	 *            the id of the message
+	 * @param audio
+	 *            the stored audio
+	 */
+	synchronized void restoreAudio(long id, AudioClip audio) {
+		drainInbox();
+		int i = newQueue.indexOf(id);
+		Message message;
+		if (i >= 0) {
+			message = newQueue.getMessage(i);
+		} else if ((i = savedQueue.indexOf(id)) >= 0) {
+			message = savedQueue.getMessage(i);
+		} else {
+			return;
+		}
+		AudioClip old = message.getAudio();
+		message.replaceAudio(old, audio);
+		byteCount.addAndGet(audio.getLength() - (old == null ? 0 : old.getLength()));
+		if (old != null && !old.getFile().equals(audio.getFile())) {
+			old.delete();
+		}
+	}
+
+	/***
+	 * method which deletes the new messages left before one time and the saved
+	 * messages left before another. The new messages are kept oldest last, so
+	 * only the expired ones are looked at, while every saved message is looked at.
+	 * 
+	 * @param newBefore
+	 *            the time before which new messages have expired
+	 * @param savedBefore
+	 *            the time before which saved messages have expired
+	 * @return the number of messages that were deleted
+	 */
+	synchronized int expireMessages(long newBefore, long savedBefore) {
+		drainInbox();
+		int deleted = 0;
+		for (int i = newQueue.getSize() - 1; i >= 0 && newQueue.getMessage(i).getTime() < newBefore; i--) {
+			Message message = newQueue.getMessage(i);
+			listener.messageDeleted(this, message);
+			newQueue.remove(i);
+			discard(message);
+			deleted++;
+		}
+		for (int i = savedQueue.getSize() - 1; i >= 0; i--) {
+			Message message = savedQueue.getMessage(i);
+			if (message.getTime() < savedBefore) {
+				listener.messageDeleted(this, message);
+				savedQueue.remove(i);
+				discard(message);
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+
+	/***
+	 * method which finds the time the next message of the mailbox expires
+	 * 
+	 * @param newRetention
+	 *            the milliseconds new messages are kept
+	 * @param savedRetention
+	 *            the milliseconds saved messages are kept
+	 * @return the time the next message expires, or MessageRetention.FOREVER if
+	 *         no message will expire
+	 */
+	synchronized long getNextExpiry(long newRetention, long savedRetention) {
+		drainInbox();
+		long next = MessageRetention.FOREVER;
+		if (!newQueue.isEmpty()) {
+			next = MessageRetention.expiry(newQueue.getMessage(newQueue.getSize() - 1).getTime(), newRetention);
+		}
+		for (int i = 0; i < savedQueue.getSize(); i++) {
+			next = Math.min(next, MessageRetention.expiry(savedQueue.getMessage(i).getTime(), savedRetention));
+		}
+		return next;
+	}
+
+	/***
+	 * method which returns the passcode of the mailbox
+	 * 
+	 * @return the passcode
+	 */
+	String getPasscode() {
+		return passcode;
+	}
+
+	/***
+	 * method which sets the passcode that was read back from storage without
+	 * telling the listener
+	 * 
+	 * @param passcode
+	 *            the stored passcode
+	 */
+	synchronized void restorePasscode(String passcode) {
+		this.passcode = passcode;
+	}
+
+	/***
+	 * method which sets the greetings that were read back from storage without
+	 * telling the listener
+	 * 
+	 * @param greetings
+	 *            the stored greetings
+	 * @param currentGreeting
+	 *            the index of the current greeting
+	 */
+	synchronized void restoreGreetings(List<String> greetings, int currentGreeting) {
+		this.greetings.clear();
+		this.greetings.addAll(greetings);
+		this.currentGreeting = currentGreeting;
+	}
+
+	/***
+	 * method which throws away a message that was deleted. Its audio is taken
+	 * away and deleted, it is no longer counted, and its text is released.
+	 * 
+	 * @param message
+	 *            the message that was deleted
+	 */
+	private void discard(Message message) {
+		AudioClip audio = message.takeAudio();
+		count(message, audio, -1);
+		listener.messageCountChanged(this);
+		if (audio != null) {
+			audio.delete();
+		}
+		message.release();
+	}
+
+	/***
+	 * method which counts a message that was added to the mailbox, unless it would
+	 * go over the quota
+	 * 
+	 * @param message
+	 *            the message
+	 * @return true if the message was counted, or false if the mailbox is full
+	 */
+	private boolean reserve(Message message) {
+		MailboxQuota limit = quota;
+		AudioClip audio = message.getAudio();
+		long size = message.getSize() + (audio == null ? 0 : audio.getLength());
+		int messages;
+		do {
+			messages = messageCount.get();
+			if (messages >= limit.getMaxMessages()) {
+				return false;
+			}
+		} while (!messageCount.compareAndSet(messages, messages + 1));
+		long bytes;
+		do {
+			bytes = byteCount.get();
+			if (size > limit.getMaxBytes() - bytes) {
+				messageCount.decrementAndGet();
+				return false;
+			}
+		} while (!byteCount.compareAndSet(bytes, bytes + size));
+		return true;
+	}
+
+	/***
+	 * method which counts a message that came into or left the mailbox
+	 * 
+	 * @param message
+	 *            the message
+	 * @param audio
+	 *            the audio of the message when it was counted
+	 * @param sign
+	 *            1 if the message came in, or -1 if it left
+	 */
+	private void count(Message message, AudioClip audio, int sign) {
+		messageCount.addAndGet(sign);
+		byteCount.addAndGet(sign * (message.getSize() + (audio == null ? 0 : audio.getLength())));
+	}
+
+	/***
+	 * method which moves the messages waiting in the inbox into the new message
+	 * queue. It must be called while holding the lock of the mailbox.
+	 */
+	private void drainInbox() {
+		if (!inbox.isEmpty()) {
+			inbox.drainTo(newQueue);
+		}
+	}
+
+	/***
+	 * method which checks if the number of saved greetings is full
+	 * 
+	 * @return true if the number of greetings is full
+	 */
+	public synchronized boolean greetingIsFull() {
+		return greetings.size() == 3;
+	}
+
+}
@@ -0,0 +1,65 @@
+package telephone;
+
+/***
+ * Class which holds how many messages a mailbox had when it was looked at
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailboxDepth {
+	private final int extension;// the extension number of the mailbox
+	private final int newMessages;// the number of new messages
+	private final int savedMessages;// the number of saved messages
+
+	/***
+	 * Constructor which creates the depth of a mailbox
+	 * 
+	 * @param extension
+	 *            the extension number of the mailbox
+	 * @param newMessages
+	 *            the number of new messages
+	 * @param savedMessages
+	 *            the number of saved messages
+	 */
+	public MailboxDepth(int extension, int newMessages, int savedMessages) {
+		this.extension = extension;
+		this.newMessages = newMessages;
+		this.savedMessages = savedMessages;
+	}
+
+	/***
+	 * method which returns the extension number of the mailbox
+	 * 
+	 * @return the extension number
+	 */
+	public int getExtension() {
+		return extension;
+	}
+
+	/***
+	 * method which returns the number of new messages
+	 * 
+	 * @return the number of new messages
+	 */
+	public int getNewMessages() {
+		return newMessages;
+	}
+
+	/***
+	 * method which returns the number of saved messages
+	 * 
+	 * @return the number of saved messages
+	 */
+	public int getSavedMessages() {
+		return savedMessages;
+	}
+
+	/***
+	 * method which returns the number of new and saved messages
+	 * 
+	 * @return the number of messages
+	 */
+	public int getMessages() {
+		return newMessages + savedMessages;
+	}
+}
@@ -0,0 +1,115 @@
+package telephone;
+
+/***
+ * Mailbox listener interface creates the requirements for anything that would
+ * like to be told when a mailbox of the mail system changes. Every method does
+ * nothing by default, so a listener only has to write the methods it needs.
+ * Changes made by the owner of a mailbox are reported while the lock of the
+ * mailbox is held, while new messages from callers may be reported from many
+ * threads at once. The text of a message that has been deleted may be freed as
+ * soon as the listeners have been told, so a listener that keeps a message
+ * after it returns must retain the message and release it when it is done.
+ *
+ * @author James Nguyen
+ *
+ */
+public interface MailboxListener {
+	/***
+	 * method which is called after a new mailbox has been added to the mail system
+	 * 
+	 * @param mailbox
+	 *            the new mailbox
+	 */
+	public default void mailboxAdded(Mailbox mailbox) {
+	}
+
+	/***
+	 * method which is called after a caller has left a new message in the mailbox
+	 * 
+	 * @param mailbox
+	 *            the mailbox the message was left in
+	 * @param message
+	 *            the new message
+	 */
+	public default void messageAdded(Mailbox mailbox, Message message) {
+	}
+
+	/***
+	 * method which is called after a message has been put in the saved messages of
+	 * the mailbox. If the message was a new message it is no longer one.
+	 * 
+	 * @param mailbox
+	 *            the mailbox the message was saved in
+	 * @param message
+	 *            the saved message
+	 */
+	public default void messageSaved(Mailbox mailbox, Message message) {
+	}
+
+	/***
+	 * method which is called after a new or saved message has been taken out of
+	 * the mailbox
+	 * 
+	 * @param mailbox
+	 *            the mailbox the message was taken out of
+	 * @param message
+	 *            the message that was taken out
+	 */
+	public default void messageDeleted(Mailbox mailbox, Message message) {
+	}
+
+	/***
+	 * method which is called after the number of messages of the mailbox has
+	 * changed. Changes from many threads may be reported in any order, so a
+	 * listener should read the number from the mailbox rather than count the calls.
+	 * 
+	 * @param mailbox
+	 *            the mailbox whose number of messages changed
+	 */
+	public default void messageCountChanged(Mailbox mailbox) {
+	}
+
+	/***
+	 * method which is called after the audio of a message in the mailbox has been
+	 * replaced, such as by a compressed copy of it
+	 * 
+	 * @param mailbox
+	 *            the mailbox of the message
+	 * @param message
+	 *            the message, which already has its new audio
+	 */
+	public default void audioChanged(Mailbox mailbox, Message message) {
+	}
+
+	/***
+	 * method which is called after the passcode of the mailbox has been changed
+	 * 
+	 * @param mailbox
+	 *            the mailbox whose passcode changed
+	 * @param passcode
+	 *            the new passcode
+	 */
+	public default void passcodeChanged(Mailbox mailbox, String passcode) {
+	}
+
+	/***
+	 * method which is called after a greeting of the mailbox has been added or
+	 * changed, or another greeting has been chosen as the current greeting
+	 * 
+	 * @param mailbox
+	 *            the mailbox whose greetings changed
+	 */
+	public default void greetingsChanged(Mailbox mailbox) {
+	}
+
+	/***
+	 * method which is called after an announcement was left in every mailbox of
+	 * a distribution list, so the message the copies shared their text with is
+	 * not needed any more
+	 * 
+	 * @param payload
+	 *            the message whose text the copies share
+	 */
+	public default void broadcastDelivered(Message payload) {
+	}
+}
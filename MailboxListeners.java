@@ -0,0 +1,104 @@
+package telephone;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/***
+ * Class which passes every change of a mailbox on to a list of mailbox
+ * listeners. Listeners may be added while calls are changing mailboxes.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailboxListeners implements MailboxListener {
+	private final CopyOnWriteArrayList<MailboxListener> listeners;// the listeners that are told of changes
+
+	/***
+	 * constructor which creates an empty list of listeners
+	 */
+	public MailboxListeners() {
+		listeners = new CopyOnWriteArrayList<MailboxListener>();
+	}
+
+	/***
+	 * method which adds a listener to the list
+	 * 
+	 * @param listener
+	 *            the listener that will be added
+	 */
+	public void add(MailboxListener listener) {
+		listeners.add(listener);
+	}
+
+	/***
+	 * method which removes a listener from the list
+	 * 
+	 * @param listener
+	 *            the listener that will be removed
+	 */
+	public void remove(MailboxListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public void mailboxAdded(Mailbox mailbox) {
+		for (MailboxListener listener : listeners) {
+			listener.mailboxAdded(mailbox);
+		}
+	}
+
+	@Override
+	public void messageAdded(Mailbox mailbox, Message message) {
+		for (MailboxListener listener : listeners) {
+			listener.messageAdded(mailbox, message);
+		}
+	}
+
+	@Override
+	public void messageSaved(Mailbox mailbox, Message message) {
+		for (MailboxListener listener : listeners) {
+			listener.messageSaved(mailbox, message);
+		}
+	}
+
+	@Override
+	public void messageDeleted(Mailbox mailbox, Message message) {
+		for (MailboxListener listener : listeners) {
+			listener.messageDeleted(mailbox, message);
+		}
+	}
+
+	@Override
+	public void messageCountChanged(Mailbox mailbox) {
+		for (MailboxListener listener : listeners) {
+			listener.messageCountChanged(mailbox);
+		}
+	}
+
+	@Override
+	public void audioChanged(Mailbox mailbox, Message message) {
+		for (MailboxListener listener : listeners) {
+			listener.audioChanged(mailbox, message);
+		}
+	}
+
+	@Override
+	public void passcodeChanged(Mailbox mailbox, String passcode) {
+		for (MailboxListener listener : listeners) {
+			listener.passcodeChanged(mailbox, passcode);
+		}
+	}
+
+	@Override
+	public void greetingsChanged(Mailbox mailbox) {
+		for (MailboxListener listener : listeners) {
+			listener.greetingsChanged(mailbox);
+		}
+	}
+
+	@Override
+	public void broadcastDelivered(Message payload) {
+		for (MailboxListener listener : listeners) {
+			listener.broadcastDelivered(payload);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package telephone;
+
+/***
+ * Class which is the most a mailbox may hold, counted both in messages and in
+ * bytes of text and audio. A caller cannot leave a message that would go over
+ * either limit.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailboxQuota {
+	public static final MailboxQuota UNLIMITED = new MailboxQuota(Integer.MAX_VALUE, Long.MAX_VALUE);// no limits
+	private final int maxMessages;// the most messages a mailbox may hold
+	private final long maxBytes;// the most bytes of text and audio a mailbox may hold
+
+	/***
+	 * Constructor which creates a quota
+	 * 
+	 * @param maxMessages
+	 *            the most messages a mailbox may hold
+	 * @param maxBytes
+	 *            the most bytes of text and audio a mailbox may hold
+	 * @precondition maxMessages > 0 && maxBytes > 0
+	 */
+	public MailboxQuota(int maxMessages, long maxBytes) {
+		assert maxMessages > 0 && maxBytes > 0 : "A quota must allow a message";
+		this.maxMessages = maxMessages;
+		this.maxBytes = maxBytes;
+	}
+
+	/***
+	 * method which returns the most messages a mailbox may hold
+	 * 
+	 * @return the largest number of messages
+	 */
+	public int getMaxMessages() {
+		return maxMessages;
+	}
+
+	/***
+	 * method which returns the most bytes of text and audio a mailbox may hold
+	 * 
+	 * @return the largest number of bytes
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+}
@@ -0,0 +1,275 @@
+package telephone;
+
+import java.util.Arrays;
+
+/***
+ * Class which ranks the mailboxes of a mail system by their number of
+ * messages, and keeps the ranking up to date as messages are added and
+ * removed, so that the busiest mailboxes can be read without looking at every
+ * mailbox. The mailboxes with the same number of messages are kept in a
+ * bucket, and the buckets are linked from the most messages to the fewest. A
+ * mailbox whose number of messages changes by one moves to the bucket next to
+ * its own, so every change takes the same time however many mailboxes there
+ * are, and the top K mailboxes are read by walking K mailboxes down from the top
+ * bucket. Empty mailboxes are not ranked.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailboxRanking implements MailboxListener {
+	private int[] counts;// the number of messages of each extension
+	private Bucket[] bucketOf;// the bucket of each extension, or null if it is not ranked
+	private int[] next;// the extension after each extension in its bucket, or 0
+	private int[] previous;// the extension before each extension in its bucket, or 0
+	private Bucket highest;// the bucket with the most messages, or null if no mailbox is ranked
+	private Bucket lowest;// the bucket with the fewest messages, or null if no mailbox is ranked
+	private long totalMessages;// the number of messages of every ranked mailbox
+
+	/***
+	 * constructor which creates an empty ranking
+	 */
+	public MailboxRanking() {
+		counts = new int[64];
+		bucketOf = new Bucket[64];
+		next = new int[64];
+		previous = new int[64];
+	}
+
+	/***
+	 * method which ranks every mailbox that is already in the mail system, such as
+	 * after it was read back from storage
+	 * 
+	 * @param mailSystem
+	 *            the mail system
+	 */
+	public void rankAll(MailSystem mailSystem) {
+		int lastExtension = mailSystem.getLastMailboxNumber();
+		for (int extension = 1; extension <= lastExtension; extension++) {
+			Mailbox mailbox = mailSystem.findMailbox(extension);
+			if (mailbox != null) {
+				messageCountChanged(mailbox);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void messageCountChanged(Mailbox mailbox) {
+		move(mailbox.getExtension(), mailbox.getMessageCount());
+	}
+
+	/***
+	 * method which returns the mailboxes with the most messages
+	 * 
+	 * @param k
+	 *            the most mailboxes that are returned
+	 * @return the extensions of the mailboxes, the most messages first
+	 */
+	public synchronized int[] getBusiest(int k) {
+		int[] busiest = new int[k];
+		int size = 0;
+		for (Bucket bucket = highest; bucket != null && size < k; bucket = bucket.lower) {
+			for (int extension = bucket.first; extension != 0 && size < k; extension = next[extension]) {
+				busiest[size++] = extension;
+			}
+		}
+		return size == k ? busiest : Arrays.copyOf(busiest, size);
+	}
+
+	/***
+	 * method which returns the mailboxes with more messages than a threshold
+	 * 
+	 * @param threshold
+	 *            the number of messages the mailboxes must have more than
+	 * @return the extensions of the mailboxes, the most messages first
+	 */
+	public synchronized int[] getOver(int threshold) {
+		int size = 0;
+		for (Bucket bucket = highest; bucket != null && bucket.count > threshold; bucket = bucket.lower) {
+			size += bucket.size;
+		}
+		int[] over = new int[size];
+		int i = 0;
+		for (Bucket bucket = highest; i < size; bucket = bucket.lower) {
+			for (int extension = bucket.first; extension != 0; extension = next[extension]) {
+				over[i++] = extension;
+			}
+		}
+		return over;
+	}
+
+	/***
+	 * method which returns the number of messages a mailbox had when it was last
+	 * ranked
+	 * 
+	 * @param extension
+	 *            the extension of the mailbox
+	 * @return the number of messages
+	 */
+	public synchronized int getMessageCount(int extension) {
+		return extension < counts.length ? counts[extension] : 0;
+	}
+
+	/***
+	 * method which returns the number of messages of every mailbox
+	 * 
+	 * @return the total number of messages
+	 */
+	public synchronized long getTotalMessages() {
+		return totalMessages;
+	}
+
+	/***
+	 * method which moves a mailbox to the bucket of its number of messages. The
+	 * new bucket is searched for from the old one, so a change of one message
+	 * only looks at the bucket next to it.
+	 * 
+	 * @param extension
+	 *            the extension of the mailbox
+	 * @param count
+	 *            the number of messages the mailbox has now
+	 */
+	private void move(int extension, int count) {
+		if (extension >= counts.length) {
+			grow(extension);
+		}
+		int old = counts[extension];
+		if (old == count) {
+			return;
+		}
+		counts[extension] = count;
+		totalMessages += count - old;
+		Bucket higher = null;
+		Bucket lower = null;
+		Bucket bucket = bucketOf[extension];
+		if (bucket != null) {
+			higher = bucket.higher;
+			lower = bucket.lower;
+			unlink(extension, bucket);
+			if (bucket.size != 0) {
+				if (count > old) {
+					lower = bucket;
+				} else {
+					higher = bucket;
+				}
+			}
+		} else {
+			higher = lowest;
+		}
+		if (count == 0) {
+			bucketOf[extension] = null;
+			return;
+		}
+		while (higher != null && higher.count <= count) {
+			lower = higher;
+			higher = higher.higher;
+		}
+		while (lower != null && lower.count > count) {
+			higher = lower;
+			lower = lower.lower;
+		}
+		Bucket target = lower != null && lower.count == count ? lower : null;
+		if (target == null) {
+			target = new Bucket(count);
+			target.higher = higher;
+			target.lower = lower;
+			if (higher != null) {
+				higher.lower = target;
+			} else {
+				highest = target;
+			}
+			if (lower != null) {
+				lower.higher = target;
+			} else {
+				lowest = target;
+			}
+		}
+		link(extension, target);
+	}
+
+	/***
+	 * method which puts a mailbox at the front of a bucket
+	 * 
+	 * @param extension
+	 *            the extension of the mailbox
+	 * @param bucket
+	 *            the bucket
+	 */
+	private void link(int extension, Bucket bucket) {
+		next[extension] = bucket.first;
+		previous[extension] = 0;
+		if (bucket.first != 0) {
+			previous[bucket.first] = extension;
+		}
+		bucket.first = extension;
+		bucket.size++;
+		bucketOf[extension] = bucket;
+	}
+
+	/***
+	 * method which takes a mailbox out of its bucket, and takes the bucket out of
+	 * the ranking if it is left empty
+	 * 
+	 * @param extension
+	 *            the extension of the mailbox
+	 * @param bucket
+	 *            the bucket of the mailbox
+	 */
+	private void unlink(int extension, Bucket bucket) {
+		if (previous[extension] != 0) {
+			next[previous[extension]] = next[extension];
+		} else {
+			bucket.first = next[extension];
+		}
+		if (next[extension] != 0) {
+			previous[next[extension]] = previous[extension];
+		}
+		bucket.size--;
+		if (bucket.size == 0) {
+			if (bucket.higher != null) {
+				bucket.higher.lower = bucket.lower;
+			} else {
+				highest = bucket.lower;
+			}
+			if (bucket.lower != null) {
+				bucket.lower.higher = bucket.higher;
+			} else {
+				lowest = bucket.higher;
+			}
+		}
+	}
+
+	/***
+	 * method which makes room for an extension
+	 * 
+	 * @param extension
+	 *            the largest extension
+	 */
+	private void grow(int extension) {
+		int length = Math.max(counts.length * 2, extension + 1);
+		counts = Arrays.copyOf(counts, length);
+		bucketOf = Arrays.copyOf(bucketOf, length);
+		next = Arrays.copyOf(next, length);
+		previous = Arrays.copyOf(previous, length);
+	}
+
+	/***
+	 * Class which is a bucket of the mailboxes with the same number of messages
+	 */
+	private static class Bucket {
+		private final int count;// the number of messages of the mailboxes in the bucket
+		private int first;// the extension of the first mailbox in the bucket, or 0
+		private int size;// the number of mailboxes in the bucket
+		private Bucket higher;// the bucket with the next most messages
+		private Bucket lower;// the bucket with the next fewest messages
+
+		/***
+		 * constructor which creates an empty bucket
+		 * 
+		 * @param count
+		 *            the number of messages of the mailboxes in the bucket
+		 */
+		Bucket(int count) {
+			this.count = count;
+		}
+	}
+}
@@ -1,46 +1,336 @@
-package telephone;
-
-import java.util.Comparator;
-
-/***
- * Class which allows users to create a message that can be stored into a
- * mailbox
- * 
- * @author James Nguyen
- *
- */
-public class Message {
-	private final String text; // the text of the message
-
-	/***
-	 * constructor which creates a message with a specific text
-	 * 
-	 * @param text
-	 *            the text of the message
-	 * @precondition text.trim().length !=0
-	 */
-	public Message(String text) {
-		assert text.trim().length() !=0: "The text is empty";
-		this.text = text;
-	}
-	/***
-	 * method which returns the text of the message
-	 * @return
-	 */
-	public String getText() {
-		return text;
-	}
-	/***
-	 * Method which returns a comparator which allows the message to compare itself
-	 * with other messages based on the text
-	 * 
-	 * @return comparator to compare the mailboxes based on the messsages
-	 */
-	public static Comparator<Message> comparatorByMessage() {
-		return new Comparator<Message>() {
-			public int compare(Message message1, Message message2) {
-				return message1.getText().compareTo(message2.getText());
-			}
-		};
-	}
-}
+package telephone;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Class which allows users to create a message that can be stored into a
+ * mailbox. Every message has an id that no other message has, so a message can
+ * be found again after it has been written to the mail log. The text of a
+ * message is not kept on the heap but in the message arena, and is only turned
+ * back into a String when it is asked for. A mailbox releases a message when it
+ * deletes it, which lets the arena use its slot again once nothing else holds
+ * the message. The text of a message that was released for good cannot be
+ * read any more, so a deleted message never shows the text that took its slot
+ * afterwards. A message may also
+ * carry recorded audio, in which case the text describes the audio. The audio
+ * may be replaced once by a compressed copy while the message is in a mailbox,
+ * so the audio of a message can change while it is being read. Every message
+ * remembers the time it was left, so it can expire. A message sent to many
+ * mailboxes at once is one message for each mailbox, but they all share the
+ * same text in the arena, which is freed when the last of them is deleted.
+ * Each of them remembers the message it was shared from, so the text can also
+ * be written to storage once for all of them.
+ * 
+ * @author James Nguyen
+ *
+ */
+public class Message {
+	private static final AtomicLong LAST_ID = new AtomicLong();// the last id given to a message
+	private static final MessageArena ARENA = new MessageArena();// the arena that holds the text of every message
+	private final long id; // the id of the message
+	private final long body; // the handle of the text of the message in the arena
+	private final int size; // the number of bytes of the text
+	private static final VarHandle AUDIO;// the handle used to replace the audio atomically
+	private volatile AudioClip audio; // the recorded audio of the message, or null if it has none
+	private static final VarHandle REFERENCES;// the handle used to count the holds atomically
+	private volatile int references; // the holds on the text of the message, 0 once it was released
+	private final long time; // the time the message was left, in milliseconds
+	private final Message origin; // the message whose text this one shares, or null if it has its own
+
+	static {
+		try {
+			AUDIO = MethodHandles.lookup().findVarHandle(Message.class, "audio", AudioClip.class);
+			REFERENCES = MethodHandles.lookup().findVarHandle(Message.class, "references", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/***
+	 * constructor which creates a message with a specific text
+	 * 
+	 * @param text
+	 *            the text of the message
+	 * @precondition text.trim().length !=0
+	 */
+	public Message(String text) {
+		this(text, null);
+	}
+
+	/***
+	 * constructor which creates a message with recorded audio
+	 * 
+	 * @param text
+	 *            the text of the message
+	 * @param audio
+	 *            the recorded audio, or null if there is none
+	 * @precondition text.trim().length !=0
+	 */
+	public Message(String text, AudioClip audio) {
+		assert text.trim().length() !=0: "The text is empty";
+		this.id = LAST_ID.incrementAndGet();
+		this.body = ARENA.allocate(text);
+		this.size = ARENA.getLength(body);
+		this.audio = audio;
+		this.references = 1;
+		this.time = System.currentTimeMillis();
+		this.origin = null;
+	}
+
+	/***
+	 * constructor which creates a message from text that was recorded on a call.
+	 * The text is copied from the recording into the arena once, so the recording
+	 * can be cleared afterwards.
+	 * 
+	 * @param text
+	 *            the recorded text of the message
+	 * @param audio
+	 *            the recorded audio, or null if there is none
+	 * @precondition text.hasText()
+	 */
+	public Message(RecordingBuffer text, AudioClip audio) {
+		assert text.hasText() : "The text is empty";
+		this.id = LAST_ID.incrementAndGet();
+		this.body = ARENA.allocate(text);
+		this.size = ARENA.getLength(body);
+		this.audio = audio;
+		this.references = 1;
+		this.time = System.currentTimeMillis();
+		this.origin = null;
+	}
+
+	/***
+	 * constructor which recreates a message that was stored with an id. Messages
+	 * created afterwards get larger ids.
+	 * 
+	 * @param id
+	 *            the id of the message
+	 * @param text
+	 *            the text of the message
+	 * @param audio
+	 *            the recorded audio, or null if there is none
+	 * @param time
+	 *            the time the message was left, in milliseconds
+	 */
+	Message(long id, String text, AudioClip audio, long time) {
+		this.id = id;
+		this.body = ARENA.allocate(text);
+		this.size = ARENA.getLength(body);
+		this.audio = audio;
+		this.references = 1;
+		this.time = time;
+		this.origin = null;
+		LAST_ID.accumulateAndGet(id, Math::max);
+	}
+
+	/***
+	 * constructor which creates a message with a new id that shares the text and
+	 * the time of another message
+	 * 
+	 * @param shared
+	 *            the message whose text is shared
+	 */
+	private Message(Message shared) {
+		this.id = LAST_ID.incrementAndGet();
+		this.body = shared.body;
+		this.size = shared.size;
+		ARENA.retain(body);
+		this.references = 1;
+		this.time = shared.time;
+		this.origin = shared.origin != null ? shared.origin : shared;
+	}
+
+	/***
+	 * constructor which recreates a message that was stored with an id and that
+	 * shares the text of a message read back before it
+	 * 
+	 * @param id
+	 *            the id of the message
+	 * @param shared
+	 *            the message whose text is shared
+	 * @param time
+	 *            the time the message was left, in milliseconds
+	 */
+	Message(long id, Message shared, long time) {
+		this.id = id;
+		this.body = shared.body;
+		this.size = shared.size;
+		ARENA.retain(body);
+		this.references = 1;
+		this.time = time;
+		this.origin = shared.origin != null ? shared.origin : shared;
+		LAST_ID.accumulateAndGet(id, Math::max);
+	}
+
+	/***
+	 * method which creates a message for another mailbox that shares the text of
+	 * this message without copying it. The audio is not shared, since each
+	 * mailbox deletes the audio of its messages. The new message holds the text
+	 * until it is released, however long this message is kept.
+	 * 
+	 * @return the new message
+	 */
+	Message share() {
+		return new Message(this);
+	}
+
+	/***
+	 * method which returns the message whose text this message shares
+	 * 
+	 * @return the message it was shared from, or null if it has its own text
+	 */
+	Message getOrigin() {
+		return origin;
+	}
+
+	/***
+	 * method which returns the largest id that has been given to a message
+	 * 
+	 * @return the last id
+	 */
+	static long getLastId() {
+		return LAST_ID.get();
+	}
+
+	/***
+	 * method which returns the id of the message
+	 * 
+	 * @return the id of the message
+	 */
+	public long getId() {
+		return id;
+	}
+	/***
+	 * method which returns the text of the message
+	 * @return the text of the message
+	 * @throws IllegalStateException
+	 *             if the message was deleted and released for good
+	 */
+	public String getText() {
+		if (!tryRetain()) {
+			throw new IllegalStateException("Message " + id + " has been deleted");
+		}
+		try {
+			return ARENA.getText(body);
+		} finally {
+			release();
+		}
+	}
+
+	/***
+	 * method which returns the time the message was left
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/***
+	 * method which returns the recorded audio of the message
+	 * 
+	 * @return the audio, or null if the message has none
+	 */
+	public AudioClip getAudio() {
+		return audio;
+	}
+
+	/***
+	 * method which replaces the audio of the message, unless it has been replaced
+	 * or taken away since it was read
+	 * 
+	 * @param expected
+	 *            the audio the message is expected to have
+	 * @param replacement
+	 *            the new audio
+	 * @return true if the audio was replaced
+	 */
+	boolean replaceAudio(AudioClip expected, AudioClip replacement) {
+		return AUDIO.compareAndSet(this, expected, replacement);
+	}
+
+	/***
+	 * method which takes the audio away from a message that was deleted, so that
+	 * it cannot be replaced afterwards
+	 * 
+	 * @return the audio the message had, or null if it had none
+	 */
+	AudioClip takeAudio() {
+		return (AudioClip) AUDIO.getAndSet(this, (AudioClip) null);
+	}
+
+	/***
+	 * method which returns the size of the text of the message
+	 * 
+	 * @return the number of bytes of the text
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/***
+	 * method which keeps the text of the message until it is released one more
+	 * time. Anything that holds on to a message after it may have been deleted
+	 * must retain it first, while it is known not to be deleted.
+	 * 
+	 * @precondition the message has not been released for good
+	 */
+	void retain() {
+		int before = (int) REFERENCES.getAndAdd(this, 1);
+		assert before > 0 : "The message has already been released";
+	}
+
+	/***
+	 * method which keeps the text of the message until it is released one more
+	 * time, unless it has already been released for good
+	 * 
+	 * @return true if the message was retained
+	 */
+	boolean tryRetain() {
+		int references;
+		do {
+			references = this.references;
+			if (references == 0) {
+				return false;
+			}
+		} while (!REFERENCES.compareAndSet(this, references, references + 1));
+		return true;
+	}
+
+	/***
+	 * method which gives up one hold on the text of the message. When the last
+	 * hold is given up the text is freed in the arena and cannot be read again.
+	 */
+	void release() {
+		int before = (int) REFERENCES.getAndAdd(this, -1);
+		assert before > 0 : "The message has already been released";
+		if (before == 1) {
+			ARENA.release(body);
+		}
+	}
+
+	/***
+	 * method which returns the arena that holds the text of every message
+	 * 
+	 * @return the message arena
+	 */
+	static MessageArena getArena() {
+		return ARENA;
+	}
+	/***
+	 * Method which returns a comparator which allows the message to compare itself
+	 * with other messages based on the text
+	 * 
+	 * @return comparator to compare the mailboxes based on the messsages
+	 */
+	public static Comparator<Message> comparatorByMessage() {
+		return new Comparator<Message>() {
+			public int compare(Message message1, Message message2) {
+				return message1.getText().compareTo(message2.getText());
+			}
+		};
+	}
+}
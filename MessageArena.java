@@ -0,0 +1,305 @@
+package telephone;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/***
+ * Class which stores the bodies of messages outside of the Java heap. Bodies
+ * are kept in slabs of direct memory, and each slab is cut into slots of one
+ * size class, a power of two from 16 bytes to 64 KB. A slot holds a reference
+ * count, the length of the body and then the body as UTF-8. When the reference
+ * count of a slot drops to 0 the slot is put on the free list of its size class
+ * and is used again for the next body of that size. Bodies larger than the
+ * largest size class get a slab of their own, which is dropped when they are
+ * freed. A body is found by a handle that holds the number of its slab and the
+ * offset of its slot.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageArena {
+	private static final int HEADER_SIZE = 8;// the bytes before every body
+	private static final int MIN_CLASS_BITS = 4;// the size of the smallest class is 1 << 4
+	private static final int MAX_CLASS_BITS = 16;// the size of the largest class is 1 << 16
+	private static final int SLAB_SIZE = 1 << 20;// the size of a slab of slots
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+			ByteOrder.nativeOrder());// the view used to count references atomically
+	private volatile ByteBuffer[] slabs;// the slabs, by their number, only copied when it grows
+	private int slabCount;// the number of slab numbers used so far
+	private final int[] nextSlab;// the slab each size class is cutting slots from
+	private final int[] nextOffset;// the offset of the next slot never used in each size class
+	private final long[][] free;// the free slots of each size class
+	private final int[] freeCount;// the number of free slots of each size class
+	private int[] freeSlabs;// the numbers of slabs that were dropped
+	private int freeSlabCount;// the number of slabs that were dropped
+	private long usedBytes;// the bytes of the slots that hold bodies
+	private long reservedBytes;// the bytes of direct memory of every slab
+
+	/***
+	 * constructor which creates an empty arena
+	 */
+	public MessageArena() {
+		int classes = MAX_CLASS_BITS - MIN_CLASS_BITS + 1;
+		slabs = new ByteBuffer[16];
+		nextSlab = new int[classes];
+		nextOffset = new int[classes];
+		free = new long[classes][];
+		freeCount = new int[classes];
+		freeSlabs = new int[4];
+		for (int i = 0; i < classes; i++) {
+			nextSlab[i] = -1;
+			free[i] = new long[16];
+		}
+	}
+
+	/***
+	 * method which stores a body in the arena with a reference count of 1
+	 * 
+	 * @param text
+	 *            the body
+	 * @return the handle of the body
+	 */
+	public long allocate(String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		return allocate(bytes, 0, bytes.length);
+	}
+
+	/***
+	 * method which stores a body that is already encoded as UTF-8 in the arena
+	 * with a reference count of 1
+	 * 
+	 * @param bytes
+	 *            the array that holds the body
+	 * @param offset
+	 *            the index of the first byte of the body
+	 * @param length
+	 *            the number of bytes of the body
+	 * @return the handle of the body
+	 */
+	public long allocate(byte[] bytes, int offset, int length) {
+		long handle = reserve(length);
+		ByteBuffer slab = slabs[slab(handle)];
+		int slot = offset(handle);
+		slab.putInt(slot + 4, length);
+		slab.put(slot + HEADER_SIZE, bytes, offset, length);
+		INTS.setRelease(slab, slot, 1);
+		return handle;
+	}
+
+	/***
+	 * method which stores the text of a message that is being recorded in the
+	 * arena with a reference count of 1. The text is copied straight from the
+	 * recording into its slot, without being turned into a String first.
+	 * 
+	 * @param text
+	 *            the recorded text
+	 * @return the handle of the body
+	 */
+	public long allocate(RecordingBuffer text) {
+		int length = text.length();
+		long handle = reserve(length);
+		ByteBuffer slab = slabs[slab(handle)];
+		int slot = offset(handle);
+		slab.putInt(slot + 4, length);
+		text.copyTo(slab.duplicate().position(slot + HEADER_SIZE));
+		INTS.setRelease(slab, slot, 1);
+		return handle;
+	}
+
+	/***
+	 * method which reads a body back as text
+	 * 
+	 * @param handle
+	 *            the handle of the body
+	 * @return the text of the body
+	 */
+	public String getText(long handle) {
+		ByteBuffer slab = slabs[slab(handle)];
+		int slot = offset(handle);
+		byte[] bytes = new byte[slab.getInt(slot + 4)];
+		slab.get(slot + HEADER_SIZE, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/***
+	 * method which returns the number of bytes of a body
+	 * 
+	 * @param handle
+	 *            the handle of the body
+	 * @return the length of the body in bytes
+	 */
+	public int getLength(long handle) {
+		return slabs[slab(handle)].getInt(offset(handle) + 4);
+	}
+
+	/***
+	 * method which adds a reference to a body, so that it is kept until it is
+	 * released one more time
+	 * 
+	 * @param handle
+	 *            the handle of the body
+	 */
+	public void retain(long handle) {
+		int before = (int) INTS.getAndAdd(slabs[slab(handle)], offset(handle), 1);
+		assert before > 0 : "The body has already been freed";
+	}
+
+	/***
+	 * method which removes a reference to a body and frees its slot when no
+	 * references are left
+	 * 
+	 * @param handle
+	 *            the handle of the body
+	 */
+	public void release(long handle) {
+		int before = (int) INTS.getAndAdd(slabs[slab(handle)], offset(handle), -1);
+		assert before > 0 : "The body has already been freed";
+		if (before == 1) {
+			free(handle);
+		}
+	}
+
+	/***
+	 * method which returns the number of bytes of direct memory held by the arena
+	 * 
+	 * @return the reserved bytes
+	 */
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	/***
+	 * method which returns the number of bytes of the slots that hold bodies
+	 * 
+	 * @return the used bytes
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/***
+	 * method which finds a free slot that can hold a body
+	 * 
+	 * @param length
+	 *            the number of bytes of the body
+	 * @return the handle of the slot
+	 */
+	private synchronized long reserve(int length) {
+		int size = HEADER_SIZE + length;
+		if (size > 1 << MAX_CLASS_BITS) {
+			int number = newSlab(size);
+			usedBytes += size;
+			return handle(number, 0);
+		}
+		int sizeClass = Math.max(0, 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_BITS);
+		int slotSize = 1 << (sizeClass + MIN_CLASS_BITS);
+		usedBytes += slotSize;
+		if (freeCount[sizeClass] > 0) {
+			return free[sizeClass][--freeCount[sizeClass]];
+		}
+		if (nextSlab[sizeClass] < 0 || nextOffset[sizeClass] + slotSize > SLAB_SIZE) {
+			nextSlab[sizeClass] = newSlab(SLAB_SIZE);
+			nextOffset[sizeClass] = 0;
+		}
+		long handle = handle(nextSlab[sizeClass], nextOffset[sizeClass]);
+		nextOffset[sizeClass] += slotSize;
+		return handle;
+	}
+
+	/***
+	 * method which puts a slot back on the free list of its size class, or drops
+	 * the slab of a large body
+	 * 
+	 * @param handle
+	 *            the handle of the slot
+	 */
+	private synchronized void free(long handle) {
+		int size = HEADER_SIZE + getLength(handle);
+		if (size > 1 << MAX_CLASS_BITS) {
+			int number = slab(handle);
+			ByteBuffer[] current = slabs;
+			reservedBytes -= current[number].capacity();
+			// no handle of the slab is left, so nothing reads its slot
+			current[number] = null;
+			if (freeSlabCount == freeSlabs.length) {
+				freeSlabs = Arrays.copyOf(freeSlabs, freeSlabCount * 2);
+			}
+			freeSlabs[freeSlabCount++] = number;
+			usedBytes -= size;
+			return;
+		}
+		int sizeClass = Math.max(0, 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_BITS);
+		usedBytes -= 1 << (sizeClass + MIN_CLASS_BITS);
+		if (freeCount[sizeClass] == free[sizeClass].length) {
+			free[sizeClass] = Arrays.copyOf(free[sizeClass], freeCount[sizeClass] * 2);
+		}
+		free[sizeClass][freeCount[sizeClass]++] = handle;
+	}
+
+	/***
+	 * method which allocates a new slab of direct memory. The slabs are only
+	 * copied when there is no room for the number of the slab; the slab is
+	 * otherwise put in its place, and is seen by every reader of one of its
+	 * handles since the handle is handed out after the slabs are written again.
+	 * 
+	 * @param size
+	 *            the size of the slab
+	 * @return the number of the slab
+	 */
+	private int newSlab(int size) {
+		ByteBuffer slab = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		reservedBytes += size;
+		int number;
+		if (freeSlabCount > 0) {
+			number = freeSlabs[--freeSlabCount];
+		} else {
+			number = slabCount++;
+		}
+		ByteBuffer[] current = slabs;
+		if (number >= current.length) {
+			current = Arrays.copyOf(current, current.length * 2);
+		}
+		current[number] = slab;
+		slabs = current;
+		return number;
+	}
+
+	/***
+	 * method which creates the handle of a slot
+	 * 
+	 * @param slab
+	 *            the number of the slab
+	 * @param offset
+	 *            the offset of the slot in the slab
+	 * @return the handle
+	 */
+	private static long handle(int slab, int offset) {
+		return ((long) slab << 32) | offset;
+	}
+
+	/***
+	 * method which finds the number of the slab of a handle
+	 * 
+	 * @param handle
+	 *            the handle
+	 * @return the number of the slab
+	 */
+	private static int slab(long handle) {
+		return (int) (handle >>> 32);
+	}
+
+	/***
+	 * method which finds the offset of the slot of a handle
+	 * 
+	 * @param handle
+	 *            the handle
+	 * @return the offset of the slot
+	 */
+	private static int offset(long handle) {
+		return (int) handle;
+	}
+}
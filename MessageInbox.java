@@ -0,0 +1,89 @@
+package telephone;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/***
+ * Class which accepts new messages for a mailbox from any number of callers at
+ * the same time without locking. Callers push their message onto a linked stack
+ * with a single compare and set, and the owner of the mailbox later moves every
+ * waiting message into its message queue at once.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageInbox {
+	private final AtomicReference<Node> top;// the newest message that is waiting
+
+	/***
+	 * constructor which creates an empty inbox
+	 */
+	public MessageInbox() {
+		top = new AtomicReference<Node>();
+	}
+
+	/***
+	 * method which adds a message to the inbox. It is safe to call from many
+	 * threads at once.
+	 * 
+	 * @param message
+	 *            the message that will be added
+	 */
+	public void offer(Message message) {
+		Node node = new Node(message);
+		Node current;
+		do {
+			current = top.get();
+			node.next = current;
+		} while (!top.compareAndSet(current, node));
+	}
+
+	/***
+	 * method which checks if there are messages waiting in the inbox
+	 * 
+	 * @return true if no messages are waiting
+	 */
+	public boolean isEmpty() {
+		return top.get() == null;
+	}
+
+	/***
+	 * method which moves every waiting message into the queue, oldest first, so
+	 * the newest message ends up at the top of the queue. Only one thread may
+	 * drain the inbox at a time.
+	 * 
+	 * @param queue
+	 *            the queue the messages will be added to
+	 */
+	public void drainTo(MessageQueue queue) {
+		Node node = top.getAndSet(null);
+		Node oldest = null;
+		while (node != null) {
+			Node next = node.next;
+			node.next = oldest;
+			oldest = node;
+			node = next;
+		}
+		while (oldest != null) {
+			queue.addMessage(oldest.message);
+			oldest = oldest.next;
+		}
+	}
+
+	/***
+	 * Class which links a waiting message to the message that was waiting before it
+	 */
+	private static class Node {
+		private final Message message;// the waiting message
+		private Node next;// the message that was waiting before this one
+
+		/***
+		 * constructor which creates a node for the message
+		 * 
+		 * @param message
+		 *            the waiting message
+		 */
+		Node(Message message) {
+			this.message = message;
+		}
+	}
+}
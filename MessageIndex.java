@@ -0,0 +1,667 @@
+package telephone;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/***
+ * Class which is an inverted index of the words of every message in a mail
+ * system, so messages can be searched without reading them. It listens to the
+ * mail system and indexes a message when it is left or saved and forgets it
+ * when it is deleted. Every word has a posting list of the ids of the messages
+ * that contain it, and every mailbox has a posting list of its own messages, so
+ * searching one mailbox is the same as searching for one more word. A search
+ * returns the messages that contain every word of the query, newest first.
+ * Deleted messages are only marked as deleted, and are taken out of the
+ * posting lists once as many messages were deleted as are left. Admins search
+ * every mailbox, or one mailbox, over JMX.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageIndex implements MessageIndexMXBean, MailboxListener {
+	private static final char MAILBOX_PREFIX = '#';// the start of the word of a mailbox, which no word has
+	private final MailSystem mailSystem;// the mail system whose messages are indexed
+	private final Map<String, PostingList> postings;// the posting list of every word and mailbox
+	private final IdTable messages;// the extension of the mailbox of every indexed message
+	private long deletedSinceCompaction;// the messages deleted since the posting lists were cleaned
+	private volatile Words lastWords;// the text that was cut into words last, and its words
+
+	/***
+	 * constructor which creates an empty index of the messages of a mail system
+	 * 
+	 * @param mailSystem
+	 *            the mail system whose messages are indexed
+	 */
+	public MessageIndex(MailSystem mailSystem) {
+		this.mailSystem = mailSystem;
+		postings = new HashMap<String, PostingList>();
+		messages = new IdTable();
+	}
+
+	/***
+	 * method which indexes every message that is already in the mail system, such
+	 * as after it was read back from storage
+	 */
+	public void indexAll() {
+		int lastExtension = mailSystem.getLastMailboxNumber();
+		for (int extension = 1; extension <= lastExtension; extension++) {
+			Mailbox mailbox = mailSystem.findMailbox(extension);
+			if (mailbox == null) {
+				continue;
+			}
+			synchronized (mailbox) {
+				for (int i = mailbox.getNewSize() - 1; i >= 0; i--) {
+					add(mailbox, mailbox.getNewMessage(i));
+				}
+				for (int i = mailbox.getSavedSize() - 1; i >= 0; i--) {
+					add(mailbox, mailbox.getSavedMessage(i));
+				}
+			}
+		}
+	}
+
+	/***
+	 * method which registers the index with an MBean server
+	 * 
+	 * @param server
+	 *            the MBean server
+	 * @throws JMException
+	 *             if the index cannot be registered
+	 */
+	public void register(MBeanServer server) throws JMException {
+		server.registerMBean(this, new ObjectName("telephone:type=MessageIndex"));
+	}
+
+	@Override
+	public void messageAdded(Mailbox mailbox, Message message) {
+		add(mailbox, message);
+	}
+
+	@Override
+	public void messageSaved(Mailbox mailbox, Message message) {
+		add(mailbox, message);
+	}
+
+	@Override
+	public synchronized void messageDeleted(Mailbox mailbox, Message message) {
+		if (messages.remove(message.getId())) {
+			deletedSinceCompaction++;
+			if (deletedSinceCompaction > messages.size()) {
+				compact();
+			}
+		}
+	}
+
+	/***
+	 * method which finds the messages of every mailbox that contain every word of
+	 * a query
+	 * 
+	 * @param query
+	 *            the words that are searched for
+	 * @param limit
+	 *            the most messages that are returned
+	 * @return the ids of the newest messages that match, newest first
+	 */
+	public long[] search(String query, int limit) {
+		return search(words(query), limit);
+	}
+
+	/***
+	 * method which finds the messages of a mailbox that contain every word of a
+	 * query
+	 * 
+	 * @param mailbox
+	 *            the mailbox that is searched
+	 * @param query
+	 *            the words that are searched for
+	 * @param limit
+	 *            the most messages that are returned
+	 * @return the ids of the newest messages that match, newest first
+	 */
+	public long[] search(Mailbox mailbox, String query, int limit) {
+		String[] words = words(query);
+		String[] all = Arrays.copyOf(words, words.length + 1);
+		all[words.length] = MAILBOX_PREFIX + Integer.toString(mailbox.getExtension());
+		return search(all, limit);
+	}
+
+	@Override
+	public List<String> findMessages(String query, int limit) {
+		return read(search(query, limit));
+	}
+
+	@Override
+	public List<String> findMailboxMessages(int extension, String query, int limit) {
+		Mailbox mailbox = extension > 0 ? mailSystem.findMailbox(extension) : null;
+		if (mailbox == null) {
+			return new ArrayList<String>();
+		}
+		return read(search(mailbox, query, limit));
+	}
+
+	/***
+	 * method which returns the extension of the mailbox that holds a message
+	 * 
+	 * @param id
+	 *            the id of the message
+	 * @return the extension, or -1 if the message is not indexed
+	 */
+	public synchronized int getExtension(long id) {
+		return messages.get(id);
+	}
+
+	@Override
+	public synchronized int getMessageCount() {
+		return messages.size();
+	}
+
+	@Override
+	public synchronized int getTermCount() {
+		return postings.size();
+	}
+
+	/***
+	 * method which adds a message to the posting lists of its words and its
+	 * mailbox, unless it is already indexed. The words of the last text are kept,
+	 * so an announcement sent to many mailboxes is only cut into words once.
+	 * 
+	 * @param mailbox
+	 *            the mailbox of the message
+	 * @param message
+	 *            the message
+	 */
+	private void add(Mailbox mailbox, Message message) {
+		String text = message.getText();
+		Words last = lastWords;
+		if (last == null || !last.text.equals(text)) {
+			last = new Words(text);
+			lastWords = last;
+		}
+		String[] words = last.words;
+		long id = message.getId();
+		synchronized (this) {
+			if (!messages.put(id, mailbox.getExtension())) {
+				return;
+			}
+			for (String word : words) {
+				postings.computeIfAbsent(word, key -> new PostingList()).add(id);
+			}
+			postings.computeIfAbsent(MAILBOX_PREFIX + Integer.toString(mailbox.getExtension()),
+					key -> new PostingList()).add(id);
+		}
+	}
+
+	/***
+	 * method which finds the messages that are in every posting list of some words.
+	 * The shortest list is read first, and only its ids are looked up in the
+	 * others.
+	 * 
+	 * @param words
+	 *            the words
+	 * @param limit
+	 *            the most messages that are returned
+	 * @return the ids of the newest messages that match, newest first
+	 */
+	private synchronized long[] search(String[] words, int limit) {
+		if (words.length == 0 || limit <= 0) {
+			return new long[0];
+		}
+		PostingList[] lists = new PostingList[words.length];
+		for (int i = 0; i < words.length; i++) {
+			lists[i] = postings.get(words[i]);
+			if (lists[i] == null) {
+				return new long[0];
+			}
+		}
+		Arrays.sort(lists, (list1, list2) -> Integer.compare(list1.size(), list2.size()));
+		long[] candidates = lists[0].toArray();
+		int count = candidates.length;
+		for (int i = 1; i < lists.length && count > 0; i++) {
+			count = lists[i].retainAll(candidates, count);
+		}
+		long[] found = new long[Math.min(limit, count)];
+		int size = 0;
+		for (int i = count - 1; i >= 0 && size < found.length; i--) {
+			if (messages.get(candidates[i]) >= 0) {
+				found[size++] = candidates[i];
+			}
+		}
+		return size == found.length ? found : Arrays.copyOf(found, size);
+	}
+
+	/***
+	 * method which reads the text of messages that were found. A message that was
+	 * deleted since it was found is left out.
+	 * 
+	 * @param ids
+	 *            the ids of the messages
+	 * @return the extension of the mailbox and the text of each message
+	 */
+	private List<String> read(long[] ids) {
+		List<String> found = new ArrayList<String>(ids.length);
+		for (long id : ids) {
+			int extension = getExtension(id);
+			Mailbox mailbox = extension > 0 ? mailSystem.findMailbox(extension) : null;
+			if (mailbox == null) {
+				continue;
+			}
+			synchronized (mailbox) {
+				Message message = mailbox.findMessage(id);
+				if (message != null) {
+					found.add(extension + ": " + message.getText());
+				}
+			}
+		}
+		return found;
+	}
+
+	/***
+	 * method which takes every deleted message out of the posting lists, and drops
+	 * the lists that are left empty
+	 */
+	private void compact() {
+		postings.values().removeIf(list -> list.removeDeleted(messages) == 0);
+		deletedSinceCompaction = 0;
+	}
+
+	/***
+	 * method which cuts text into its words. A word is a run of letters and
+	 * digits, in lower case, and every word is only returned once.
+	 * 
+	 * @param text
+	 *            the text
+	 * @return the words of the text
+	 */
+	static String[] words(String text) {
+		List<String> words = new ArrayList<String>();
+		int length = text.length();
+		int start = -1;
+		for (int i = 0; i <= length; i++) {
+			boolean inWord = i < length && Character.isLetterOrDigit(text.charAt(i));
+			if (inWord && start < 0) {
+				start = i;
+			} else if (!inWord && start >= 0) {
+				String word = text.substring(start, i).toLowerCase();
+				if (!words.contains(word)) {
+					words.add(word);
+				}
+				start = -1;
+			}
+		}
+		return words.toArray(new String[words.size()]);
+	}
+
+	/***
+	 * Class which holds a text and its words
+	 */
+	private static class Words {
+		private final String text;// the text
+		private final String[] words;// the words of the text
+
+		/***
+		 * constructor which cuts a text into its words
+		 * 
+		 * @param text
+		 *            the text
+		 */
+		Words(String text) {
+			this.text = text;
+			this.words = words(text);
+		}
+	}
+
+	/***
+	 * Class which is a posting list, the sorted ids of the messages that contain a
+	 * word. Each id is kept as the difference from the id before it in an int
+	 * array. About every 64th id is also kept with its position, so that an id can
+	 * be found by reading only the ids after the skip entry before it. Ids nearly
+	 * always arrive in order and are added to the end; an id that arrives late is
+	 * put in its place by moving the differences after it along by one, which
+	 * moves the skip entries after it along too.
+	 */
+	private static class PostingList {
+		private static final int SKIP = 64;// the number of ids between skip entries
+		private int[] deltas;// the differences between each id and the id before it
+		private int size;// the number of ids in the list
+		private long last;// the largest id in the list
+		private long[] skipIds;// the ids that have skip entries
+		private int[] skipPositions;// the position of the id of each skip entry
+		private int skipCount;// the number of skip entries
+
+		/***
+		 * constructor which creates an empty list
+		 */
+		PostingList() {
+			deltas = new int[4];
+			skipIds = new long[1];
+			skipPositions = new int[1];
+		}
+
+		/***
+		 * method which returns the number of ids in the list
+		 * 
+		 * @return the size of the list
+		 */
+		int size() {
+			return size;
+		}
+
+		/***
+		 * method which adds an id to the list
+		 * 
+		 * @param id
+		 *            the id
+		 */
+		void add(long id) {
+			if (size == deltas.length) {
+				deltas = Arrays.copyOf(deltas, size * 2);
+			}
+			if (id > last) {
+				if (skipCount == 0 || size - skipPositions[skipCount - 1] >= SKIP) {
+					addSkip(id, size);
+				}
+				deltas[size++] = Math.toIntExact(id - last);
+				last = id;
+				return;
+			}
+			int skip = findSkip(id);
+			if (skip < 0) {
+				deltas[0] -= Math.toIntExact(id);
+				insert(0, id, 1);
+				skipIds[0] = id;
+				return;
+			}
+			int position = skipPositions[skip];
+			long before = skipIds[skip];
+			while (before < id) {
+				position++;
+				long next = before + deltas[position];
+				if (next > id) {
+					break;
+				}
+				before = next;
+			}
+			if (before == id) {
+				return;
+			}
+			deltas[position] -= Math.toIntExact(id - before);
+			insert(position, id - before, skip + 1);
+		}
+
+		/***
+		 * method which decodes the whole list
+		 * 
+		 * @return the ids, in order
+		 */
+		long[] toArray() {
+			long[] ids = new long[size];
+			long id = 0;
+			for (int i = 0; i < size; i++) {
+				id += deltas[i];
+				ids[i] = id;
+			}
+			return ids;
+		}
+
+		/***
+		 * method which keeps only the candidates that are also in the list. The skip
+		 * entries are used to jump to the part of the list a candidate would be in.
+		 * 
+		 * @param candidates
+		 *            the sorted candidates, which are overwritten with the ones kept
+		 * @param count
+		 *            the number of candidates
+		 * @return the number of candidates kept
+		 */
+		int retainAll(long[] candidates, int count) {
+			int kept = 0;
+			int position = 0;
+			int skip = 0;
+			long id = 0;
+			for (int c = 0; c < count; c++) {
+				long wanted = candidates[c];
+				while (skip + 1 < skipCount && skipIds[skip + 1] <= wanted) {
+					skip++;
+				}
+				if (skipPositions[skip] >= position) {
+					position = skipPositions[skip] + 1;
+					id = skipIds[skip];
+				}
+				while (id < wanted && position < size) {
+					id += deltas[position++];
+				}
+				if (id == wanted) {
+					candidates[kept++] = wanted;
+				}
+			}
+			return kept;
+		}
+
+		/***
+		 * method which takes the ids of deleted messages out of the list
+		 * 
+		 * @param messages
+		 *            the messages that are still indexed
+		 * @return the number of ids left
+		 */
+		int removeDeleted(IdTable messages) {
+			long id = 0;
+			long kept = 0;
+			int count = 0;
+			skipCount = 0;
+			for (int i = 0; i < size; i++) {
+				id += deltas[i];
+				if (messages.get(id) < 0) {
+					continue;
+				}
+				if (count % SKIP == 0) {
+					addSkip(id, count);
+				}
+				deltas[count++] = Math.toIntExact(id - kept);
+				kept = id;
+			}
+			size = count;
+			last = kept;
+			if (deltas.length > 16 && size < deltas.length / 4) {
+				deltas = Arrays.copyOf(deltas, Math.max(4, size * 2));
+			}
+			return size;
+		}
+
+		/***
+		 * method which finds the last skip entry before an id
+		 * 
+		 * @param id
+		 *            the id
+		 * @return the index of the skip entry, or -1 if the id is before every entry
+		 */
+		private int findSkip(long id) {
+			int low = 0;
+			int high = skipCount - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (skipIds[middle] <= id) {
+					low = middle + 1;
+				} else {
+					high = middle - 1;
+				}
+			}
+			return high;
+		}
+
+		/***
+		 * method which puts a difference into the list, moving the differences after
+		 * it and the positions of the skip entries after it along by one
+		 * 
+		 * @param position
+		 *            the position of the difference
+		 * @param delta
+		 *            the difference
+		 * @param firstSkip
+		 *            the first skip entry that is moved along
+		 */
+		private void insert(int position, long delta, int firstSkip) {
+			System.arraycopy(deltas, position, deltas, position + 1, size - position);
+			deltas[position] = Math.toIntExact(delta);
+			size++;
+			for (int i = firstSkip; i < skipCount; i++) {
+				skipPositions[i]++;
+			}
+		}
+
+		/***
+		 * method which adds a skip entry
+		 * 
+		 * @param id
+		 *            the id of the entry
+		 * @param position
+		 *            the position of the id
+		 */
+		private void addSkip(long id, int position) {
+			if (skipCount == skipIds.length) {
+				skipIds = Arrays.copyOf(skipIds, skipCount * 2);
+				skipPositions = Arrays.copyOf(skipPositions, skipCount * 2);
+			}
+			skipIds[skipCount] = id;
+			skipPositions[skipCount++] = position;
+		}
+	}
+
+	/***
+	 * Class which maps the id of every indexed message to the extension of its
+	 * mailbox, in open addressed arrays so that no id is boxed
+	 */
+	private static class IdTable {
+		private long[] ids;// the ids, or 0 for an empty slot
+		private int[] extensions;// the extension of the mailbox of each id
+		private int size;// the number of ids in the table
+
+		/***
+		 * constructor which creates an empty table
+		 */
+		IdTable() {
+			ids = new long[64];
+			extensions = new int[64];
+		}
+
+		/***
+		 * method which returns the number of ids in the table
+		 * 
+		 * @return the size of the table
+		 */
+		int size() {
+			return size;
+		}
+
+		/***
+		 * method which finds the extension of an id
+		 * 
+		 * @param id
+		 *            the id
+		 * @return the extension, or -1 if the id is not in the table
+		 */
+		int get(long id) {
+			int mask = ids.length - 1;
+			for (int slot = slot(id, mask); ids[slot] != 0; slot = (slot + 1) & mask) {
+				if (ids[slot] == id) {
+					return extensions[slot];
+				}
+			}
+			return -1;
+		}
+
+		/***
+		 * method which adds an id with its extension
+		 * 
+		 * @param id
+		 *            the id, which is never 0
+		 * @param extension
+		 *            the extension of the mailbox of the id
+		 * @return true if the id was added, or false if it was already there
+		 */
+		boolean put(long id, int extension) {
+			if (size * 2 >= ids.length) {
+				grow();
+			}
+			int mask = ids.length - 1;
+			int slot = slot(id, mask);
+			while (ids[slot] != 0) {
+				if (ids[slot] == id) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			ids[slot] = id;
+			extensions[slot] = extension;
+			size++;
+			return true;
+		}
+
+		/***
+		 * method which removes an id, moving back the ids that were pushed past it
+		 * 
+		 * @param id
+		 *            the id
+		 * @return true if the id was removed
+		 */
+		boolean remove(long id) {
+			int mask = ids.length - 1;
+			int slot = slot(id, mask);
+			while (ids[slot] != id) {
+				if (ids[slot] == 0) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			ids[slot] = 0;
+			size--;
+			for (int next = (slot + 1) & mask; ids[next] != 0; next = (next + 1) & mask) {
+				int home = slot(ids[next], mask);
+				if (((next - home) & mask) >= ((next - slot) & mask)) {
+					ids[slot] = ids[next];
+					extensions[slot] = extensions[next];
+					ids[next] = 0;
+					slot = next;
+				}
+			}
+			return true;
+		}
+
+		/***
+		 * method which doubles the number of slots
+		 */
+		private void grow() {
+			long[] oldIds = ids;
+			int[] oldExtensions = extensions;
+			ids = new long[oldIds.length * 2];
+			extensions = new int[oldIds.length * 2];
+			size = 0;
+			for (int i = 0; i < oldIds.length; i++) {
+				if (oldIds[i] != 0) {
+					put(oldIds[i], oldExtensions[i]);
+				}
+			}
+		}
+
+		/***
+		 * method which finds the first slot an id may be in
+		 * 
+		 * @param id
+		 *            the id
+		 * @param mask
+		 *            the number of slots minus 1
+		 * @return the slot
+		 */
+		private static int slot(long id, int mask) {
+			long hash = id * 0x9E3779B97F4A7C15L;
+			return (int) (hash >>> 32) & mask;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package telephone;
+
+import java.util.List;
+
+/***
+ * Message index MXBean interface creates the requirements for searching the
+ * text of the messages of every mailbox
+ *
+ * @author James Nguyen
+ *
+ */
+public interface MessageIndexMXBean {
+	/***
+	 * method which finds the messages of every mailbox that contain every word of
+	 * a query
+	 * 
+	 * @param query
+	 *            the words that are searched for
+	 * @param limit
+	 *            the most messages that are returned
+	 * @return the extension of the mailbox and the text of the newest messages
+	 *         that match, newest first
+	 */
+	public List<String> findMessages(String query, int limit);
+
+	/***
+	 * method which finds the messages of one mailbox that contain every word of a
+	 * query
+	 * 
+	 * @param extension
+	 *            the extension of the mailbox
+	 * @param query
+	 *            the words that are searched for
+	 * @param limit
+	 *            the most messages that are returned
+	 * @return the extension of the mailbox and the text of the newest messages
+	 *         that match, newest first
+	 */
+	public List<String> findMailboxMessages(int extension, String query, int limit);
+
+	/***
+	 * method which returns the number of messages in the index
+	 * 
+	 * @return the number of indexed messages
+	 */
+	public int getMessageCount();
+
+	/***
+	 * method which returns the number of words and mailboxes in the index
+	 * 
+	 * @return the number of posting lists
+	 */
+	public int getTermCount();
+}
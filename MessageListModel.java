@@ -0,0 +1,198 @@
+package telephone;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+
+/***
+ * Class which is the list of the new and then the saved messages of a mailbox,
+ * for a list in a window. The messages are only read when the list shows them,
+ * a page of rows at a time, and the last pages read are kept so scrolling back
+ * does not read them again. Opening the list of a mailbox therefore only reads
+ * the number of messages, however many there are. The list does not hear of
+ * changes to the mailbox by itself; it is refreshed from time to time, and a
+ * refresh that finds a change only tells the list what was added or removed,
+ * so only the rows that are shown are read again. The mailbox is only read on
+ * the threads of an executor, never on the event thread, so a call holding the
+ * lock of the mailbox cannot freeze the window; what was read is handed to the
+ * list on the event thread, and a row shows empty until its page has been
+ * read. Everything else of the list is only used on the event thread.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageListModel extends AbstractListModel<String> {
+	private static final long serialVersionUID = 1L;
+	private static final int PAGE_SIZE = 128;// the rows that are read from the mailbox at once
+	private static final int CACHED_PAGES = 8;// the pages that are kept after they are read
+	private final Mailbox mailbox;// the mailbox whose messages are listed
+	private final Executor executor;// the executor that reads the mailbox
+	private final Map<Integer, String[]> pages;// the pages read so far, the least recently used first
+	private final Set<Integer> reading;// the pages being read for the current sizes
+	private boolean refreshing;// whether the sizes are being read
+	private int generation;// the number of refreshes that found a change, so older pages are dropped
+	private int newSize;// the number of new messages when the list was last refreshed
+	private int savedSize;// the number of saved messages when the list was last refreshed
+	private long newestNew;// the id of the newest new message when the list was last refreshed
+	private long newestSaved;// the id of the newest saved message when the list was last refreshed
+
+	/***
+	 * Constructor which creates the list of the messages of a mailbox. The list
+	 * is empty until the first refresh, which it starts itself, has read the
+	 * mailbox. It must be called on the event thread.
+	 * 
+	 * @param mailbox
+	 *            the mailbox whose messages are listed
+	 * @param executor
+	 *            the executor that reads the mailbox
+	 */
+	public MessageListModel(Mailbox mailbox, Executor executor) {
+		this.mailbox = mailbox;
+		this.executor = executor;
+		pages = new LinkedHashMap<Integer, String[]>(CACHED_PAGES * 2, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+				return size() > CACHED_PAGES;
+			}
+		};
+		reading = new HashSet<Integer>();
+		refresh();
+	}
+
+	@Override
+	public int getSize() {
+		return newSize + savedSize;
+	}
+
+	@Override
+	public String getElementAt(int index) {
+		int page = index / PAGE_SIZE;
+		String[] rows = pages.get(page);
+		if (rows == null) {
+			if (reading.add(page)) {
+				readPage(page);
+			}
+			return "";
+		}
+		String row = rows[index % PAGE_SIZE];
+		return row != null ? row : "";
+	}
+
+	/***
+	 * method which starts checking whether the messages of the mailbox changed
+	 * since the last refresh, unless a check is still running. When the check
+	 * finds a change it tells the list what changed on the event thread. New
+	 * messages are put at the top, so more messages are shown as rows added at
+	 * the top and fewer as rows removed from the bottom; the rows left are then
+	 * read again when shown. It must be called on the event thread.
+	 */
+	public void refresh() {
+		if (refreshing) {
+			return;
+		}
+		refreshing = true;
+		executor.execute(() -> {
+			long[] counts;
+			synchronized (mailbox) {
+				counts = read();
+			}
+			SwingUtilities.invokeLater(() -> changed(counts));
+		});
+	}
+
+	/***
+	 * method which takes the numbers of messages a refresh read, and tells the
+	 * list what changed if they differ from the last ones
+	 * 
+	 * @param counts
+	 *            the numbers of new and saved messages and the ids of the newest
+	 *            ones
+	 */
+	private void changed(long[] counts) {
+		refreshing = false;
+		if (counts[0] == newSize && counts[1] == savedSize && counts[2] == newestNew && counts[3] == newestSaved) {
+			return;
+		}
+		int oldSize = getSize();
+		newSize = (int) counts[0];
+		savedSize = (int) counts[1];
+		newestNew = counts[2];
+		newestSaved = counts[3];
+		generation++;
+		pages.clear();
+		reading.clear();
+		int size = getSize();
+		if (size > oldSize) {
+			fireIntervalAdded(this, 0, size - oldSize - 1);
+		} else if (size < oldSize) {
+			fireIntervalRemoved(this, size, oldSize - 1);
+		}
+		if (size > 0) {
+			fireContentsChanged(this, 0, size - 1);
+		}
+	}
+
+	/***
+	 * method which reads the numbers of messages and the ids of the newest ones,
+	 * which change whenever a message is added, saved or deleted. It must be called
+	 * while holding the lock of the mailbox.
+	 * 
+	 * @return the numbers of new and saved messages and the ids of the newest ones
+	 */
+	private long[] read() {
+		int currentNew = mailbox.getNewSize();
+		int currentSaved = mailbox.getSavedSize();
+		return new long[] { currentNew, currentSaved, currentNew > 0 ? mailbox.getNewMessage(0).getId() : 0,
+				currentSaved > 0 ? mailbox.getSavedMessage(0).getId() : 0 };
+	}
+
+	/***
+	 * method which starts reading one page of rows from the mailbox, and puts it
+	 * in the list on the event thread unless the list was refreshed meanwhile.
+	 * Rows past the messages the mailbox holds now are left empty until the next
+	 * refresh.
+	 * 
+	 * @param page
+	 *            the number of the page
+	 */
+	private void readPage(int page) {
+		int first = page * PAGE_SIZE;
+		int end = Math.min(getSize(), first + PAGE_SIZE);
+		int readFor = generation;
+		executor.execute(() -> {
+			String[] rows = new String[PAGE_SIZE];
+			synchronized (mailbox) {
+				int currentNew = mailbox.getNewSize();
+				int currentSaved = mailbox.getSavedSize();
+				for (int i = first; i < end; i++) {
+					Message message;
+					if (i < currentNew) {
+						message = mailbox.getNewMessage(i);
+					} else if (i - currentNew < currentSaved) {
+						message = mailbox.getSavedMessage(i - currentNew);
+					} else {
+						break;
+					}
+					rows[i - first] = (i + 1) + ". " + message.getText();
+				}
+			}
+			SwingUtilities.invokeLater(() -> {
+				if (readFor != generation) {
+					return;
+				}
+				reading.remove(page);
+				pages.put(page, rows);
+				if (end > first) {
+					fireContentsChanged(this, first, end - 1);
+				}
+			});
+		});
+	}
+}
@@ -1,95 +1,171 @@
-package telephone;
-
-import java.util.LinkedList;
-
-/***
- * Class which will be used by the user to hold the different messages
- * 
- * @author James Nguyen
- *
- */
-public class MessageQueue {
-	private LinkedList<Message> queue; // the linked list which will hold the different messages
-
-	/***
-	 * constructor which will intialize the queue that holds the messages
-	 */
-	public MessageQueue() {
-		queue = new LinkedList<Message>();
-	}
-
-	/**
-	 * method which will add the message to the queue
-	 * 
-	 * @param message
-	 *            the message that will be added
-	 * 
-	 */
-	public void addMessage(Message message) {
-
-		queue.push(message);
-	}
-
-	/***
-	 * method which will remove the newest message that was added to the queue
-	 * 
-	 * @return the newest message
-	 * @precondition !isEmpty()
-	 */
-	public Message remove() {
-		assert !isEmpty() : "The queue is empty";
-		return queue.pop();
-	}
-
-	/***
-	 * method which remove the message based on the index
-	 * 
-	 * @param i
-	 * @precondition i>=0 && i<queue.size()
-	 */
-	public void remove(int i) {
-		assert i >= 0 && i < queue.size();
-		queue.remove(i);
-	}
-
-	/**
-	 * method which finds the size of the queue
-	 * 
-	 * @return the size of the queue
-	 */
-	public int getSize() {
-		return queue.size();
-	}
-
-	/***
-	 * method which peeks at the Message at the top of the queue
-	 * 
-	 * @return the message at the top of the queue
-	 */
-	public Message peek() {
-		return queue.peek();
-	}
-
-	/***
-	 * method which checks if the queue is empty
-	 * 
-	 * @return true if the queue is empty
-	 */
-	public boolean isEmpty() {
-		return queue.isEmpty();
-	}
-
-	/**
-	 * method which gets the message at the specified index
-	 * 
-	 * @param i
-	 *            the index of the message
-	 * @return the message at the specified index
-	 * @precondition i>=0 && i<queue.size()
-	 */
-	public Message getMessage(int i) {
-		assert i>=0 && i<queue.size(): "Index is out of bounds";
-		return queue.get(i);
-	}
-
-}
+package telephone;
+
+/***
+ * Class which will be used by the user to hold the different messages. The
+ * newest message is at index 0. The messages are kept in a ring of array slots
+ * that grows when it is full, so reading any index and adding or removing the
+ * newest message take constant time, and removing from the middle only moves
+ * the messages on the shorter side of the index.
+ * 
+ * @author James Nguyen
+ *
+ */
+public class MessageQueue {
+	private static final Message[] EMPTY = new Message[0];// slots shared by every queue that is still empty
+	private static final int INITIAL_CAPACITY = 8;// the number of slots allocated for the first message
+	private Message[] queue; // the ring of slots which will hold the different messages
+	private int head;// the slot of the newest message
+	private int size;// the number of messages in the queue
+
+	/***
+	 * constructor which will intialize the queue that holds the messages
+	 */
+	public MessageQueue() {
+		queue = EMPTY;
+	}
+
+	/**
+	 * method which will add the message to the queue
+	 * 
+	 * @param message
+	 *            the message that will be added
+	 * 
+	 */
+	public void addMessage(Message message) {
+		if (size == queue.length) {
+			grow();
+		}
+		head = (head - 1) & (queue.length - 1);
+		queue[head] = message;
+		size++;
+	}
+
+	/***
+	 * method which will remove the newest message that was added to the queue
+	 * 
+	 * @return the newest message
+	 * @throws IllegalStateException
+	 *             if the queue is empty
+	 */
+	public Message remove() {
+		if (isEmpty()) {
+			throw new IllegalStateException("The queue is empty");
+		}
+		Message message = queue[head];
+		queue[head] = null;
+		head = (head + 1) & (queue.length - 1);
+		size--;
+		return message;
+	}
+
+	/***
+	 * method which remove the message based on the index
+	 * 
+	 * @param i
+	 *            the index of the message
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no message at the index
+	 */
+	public void remove(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index " + i + " of a queue of " + size + " messages");
+		}
+		if (i < size / 2) {
+			for (int j = i; j > 0; j--) {
+				queue[slot(j)] = queue[slot(j - 1)];
+			}
+			queue[head] = null;
+			head = (head + 1) & (queue.length - 1);
+		} else {
+			for (int j = i; j < size - 1; j++) {
+				queue[slot(j)] = queue[slot(j + 1)];
+			}
+			queue[slot(size - 1)] = null;
+		}
+		size--;
+	}
+
+	/**
+	 * method which finds the size of the queue
+	 * 
+	 * @return the size of the queue
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/***
+	 * method which peeks at the Message at the top of the queue
+	 * 
+	 * @return the message at the top of the queue
+	 */
+	public Message peek() {
+		return size == 0 ? null : queue[head];
+	}
+
+	/***
+	 * method which checks if the queue is empty
+	 * 
+	 * @return true if the queue is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * method which gets the message at the specified index
+	 * 
+	 * @param i
+	 *            the index of the message
+	 * @return the message at the specified index
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no message at the index
+	 */
+	public Message getMessage(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index " + i + " of a queue of " + size + " messages");
+		}
+		return queue[slot(i)];
+	}
+
+	/***
+	 * method which finds the index of the message with the id
+	 * 
+	 * @param id
+	 *            the id of the message
+	 * @return the index of the message, or -1 if it is not in the queue
+	 */
+	public int indexOf(long id) {
+		for (int i = 0; i < size; i++) {
+			if (queue[slot(i)].getId() == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/***
+	 * method which finds the slot that holds the message at the index
+	 * 
+	 * @param i
+	 *            the index of the message
+	 * @return the slot of the message
+	 */
+	private int slot(int i) {
+		return (head + i) & (queue.length - 1);
+	}
+
+	/***
+	 * method which doubles the number of slots and moves the newest message to the
+	 * first slot
+	 */
+	private void grow() {
+		Message[] grown = new Message[queue.length == 0 ? INITIAL_CAPACITY : queue.length * 2];
+		for (int i = 0; i < size; i++) {
+			grown[i] = queue[slot(i)];
+		}
+		queue = grown;
+		head = 0;
+	}
+
+}
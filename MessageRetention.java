@@ -0,0 +1,237 @@
+package telephone;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Class which deletes messages once they are older than the retention of new
+ * or saved messages. Every mailbox with messages has one timer in a timing
+ * wheel, due when its oldest message expires. When a timer is due only that
+ * mailbox is looked at: its expired messages are deleted and its timer is set
+ * for the next message that will expire. Expiring messages therefore never
+ * needs to look at every mailbox. The age of a message is counted from the time
+ * it was left. The retention listens to the mail system, so a mailbox gets its
+ * timer when its first message arrives. A mailbox whose messages cannot be
+ * deleted, because the mail log failed, is counted as a failure and looked at
+ * again a little later, and the other mailboxes and later sweeps go on.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageRetention implements MailboxListener {
+	public static final long FOREVER = Long.MAX_VALUE;// the retention of messages that never expire
+	private static final long TICK_MILLIS = 1000;// the milliseconds of a tick of the wheel
+	private static final int LEVELS = 4;// the levels of the wheel, which reach about 194 days
+	private static final long RETRY_MILLIS = 10 * TICK_MILLIS;// the milliseconds before a failed mailbox is looked at again
+	private final long newRetention;// the milliseconds new messages are kept
+	private final long savedRetention;// the milliseconds saved messages are kept
+	private final TimingWheel<Mailbox> wheel;// the timers of the mailboxes
+	private final ConcurrentHashMap<Mailbox, TimingWheel.Timer<Mailbox>> timers;// the timer of each mailbox
+	private final LongAdder expired;// the number of messages that were deleted
+	private final LongAdder failures;// the number of times the messages of a mailbox could not be deleted
+	private volatile RuntimeException lastFailure;// why a mailbox last failed, or null if none has
+	private ScheduledExecutorService sweeper;// the thread that moves the wheel on
+
+	/***
+	 * Constructor which creates the retention of new and saved messages
+	 * 
+	 * @param newRetention
+	 *            the milliseconds new messages are kept, or FOREVER
+	 * @param savedRetention
+	 *            the milliseconds saved messages are kept, or FOREVER
+	 * @precondition newRetention > 0 && savedRetention > 0
+	 */
+	public MessageRetention(long newRetention, long savedRetention) {
+		assert newRetention > 0 && savedRetention > 0 : "Messages must be kept for a while";
+		this.newRetention = newRetention;
+		this.savedRetention = savedRetention;
+		wheel = new TimingWheel<Mailbox>(TICK_MILLIS, LEVELS, System.currentTimeMillis());
+		timers = new ConcurrentHashMap<Mailbox, TimingWheel.Timer<Mailbox>>();
+		expired = new LongAdder();
+		failures = new LongAdder();
+	}
+
+	/***
+	 * method which sets the timer of every mailbox that already has messages,
+	 * such as after the mail system was read back from storage. It looks at every
+	 * mailbox once.
+	 * 
+	 * @param mailSystem
+	 *            the mail system
+	 */
+	public void scheduleAll(MailSystem mailSystem) {
+		int lastExtension = mailSystem.getLastMailboxNumber();
+		for (int extension = 1; extension <= lastExtension; extension++) {
+			Mailbox mailbox = mailSystem.findMailbox(extension);
+			if (mailbox != null) {
+				schedule(mailbox, mailbox.getNextExpiry(newRetention, savedRetention));
+			}
+		}
+	}
+
+	@Override
+	public void messageAdded(Mailbox mailbox, Message message) {
+		schedule(mailbox, expiry(message.getTime(), newRetention));
+	}
+
+	@Override
+	public void messageSaved(Mailbox mailbox, Message message) {
+		schedule(mailbox, expiry(message.getTime(), savedRetention));
+	}
+
+	/***
+	 * method which deletes the expired messages of every mailbox whose timer is
+	 * due, and sets their timers again. A mailbox that fails is counted and set to
+	 * be looked at again after a while.
+	 * 
+	 * @param now
+	 *            the current time in milliseconds
+	 * @return the number of messages that were deleted
+	 */
+	public int sweep(long now) {
+		List<Mailbox> due = new ArrayList<Mailbox>();
+		synchronized (this) {
+			wheel.advance(now, due::add);
+			for (Mailbox mailbox : due) {
+				timers.remove(mailbox);
+			}
+		}
+		int deleted = 0;
+		for (Mailbox mailbox : due) {
+			try {
+				deleted += mailbox.expireMessages(before(now, newRetention), before(now, savedRetention));
+				schedule(mailbox, mailbox.getNextExpiry(newRetention, savedRetention));
+			} catch (RuntimeException e) {
+				lastFailure = e;
+				failures.increment();
+				schedule(mailbox, now + RETRY_MILLIS);
+			}
+		}
+		expired.add(deleted);
+		return deleted;
+	}
+
+	/***
+	 * method which moves the wheel on in the background once every tick
+	 */
+	public synchronized void start() {
+		assert sweeper == null : "The retention has already been started";
+		sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "message-retention");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sweeper.scheduleWithFixedDelay(() -> sweep(System.currentTimeMillis()), TICK_MILLIS, TICK_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/***
+	 * method which stops moving the wheel on in the background
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a sweep to finish
+	 */
+	public void close() throws InterruptedException {
+		ScheduledExecutorService stopping;
+		synchronized (this) {
+			stopping = sweeper;
+			sweeper = null;
+		}
+		if (stopping != null) {
+			stopping.shutdown();
+			stopping.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	/***
+	 * method which returns the number of messages that were deleted because they
+	 * expired
+	 * 
+	 * @return the number of expired messages
+	 */
+	public long getExpiredCount() {
+		return expired.sum();
+	}
+
+	/***
+	 * method which returns the number of times the expired messages of a mailbox
+	 * could not be deleted
+	 * 
+	 * @return the number of failures
+	 */
+	public long getFailureCount() {
+		return failures.sum();
+	}
+
+	/***
+	 * method which returns why the messages of a mailbox last could not be deleted
+	 * 
+	 * @return the last failure, or null if there was none
+	 */
+	public RuntimeException getLastFailure() {
+		return lastFailure;
+	}
+
+	/***
+	 * method which returns the number of mailboxes that have a timer
+	 * 
+	 * @return the number of timers
+	 */
+	public synchronized int getTimerCount() {
+		return wheel.size();
+	}
+
+	/***
+	 * method which sets the timer of a mailbox, unless it already has a timer that
+	 * is due sooner
+	 * 
+	 * @param mailbox
+	 *            the mailbox
+	 * @param deadline
+	 *            the time the next message of the mailbox expires, or FOREVER
+	 */
+	private synchronized void schedule(Mailbox mailbox, long deadline) {
+		if (deadline == FOREVER) {
+			return;
+		}
+		TimingWheel.Timer<Mailbox> timer = timers.get(mailbox);
+		if (timer != null) {
+			if (timer.getDeadline() <= deadline) {
+				return;
+			}
+			wheel.cancel(timer);
+		}
+		timers.put(mailbox, wheel.schedule(mailbox, deadline));
+	}
+
+	/***
+	 * method which finds the time a message expires
+	 * 
+	 * @param time
+	 *            the time the message was left
+	 * @param retention
+	 *            the milliseconds the message is kept
+	 * @return the time the message expires, or FOREVER
+	 */
+	static long expiry(long time, long retention) {
+		return retention == FOREVER || time > FOREVER - retention ? FOREVER : time + retention;
+	}
+
+	/***
+	 * method which finds the time before which messages have expired
+	 * 
+	 * @param now
+	 *            the current time
+	 * @param retention
+	 *            the milliseconds messages are kept
+	 * @return the time messages must have been left after to be kept
+	 */
+	private static long before(long now, long retention) {
+		return retention == FOREVER ? Long.MIN_VALUE : now - retention;
+	}
+}
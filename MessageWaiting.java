@@ -0,0 +1,106 @@
+package telephone;
+
+/***
+ * Class which tells a subscriber how many messages a mailbox holds after it
+ * changed, and how many changes were folded into this one update
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageWaiting {
+	private final int extension;// the extension number of the mailbox
+	private final int newMessages;// the number of new messages
+	private final int savedMessages;// the number of saved messages
+	private final int added;// the number of messages left since the last update
+	private final int saved;// the number of messages saved since the last update
+	private final int deleted;// the number of messages deleted since the last update
+
+	/***
+	 * Constructor which creates an update of a mailbox
+	 * 
+	 * @param extension
+	 *            the extension number of the mailbox
+	 * @param newMessages
+	 *            the number of new messages
+	 * @param savedMessages
+	 *            the number of saved messages
+	 * @param added
+	 *            the number of messages left since the last update
+	 * @param saved
+	 *            the number of messages saved since the last update
+	 * @param deleted
+	 *            the number of messages deleted since the last update
+	 */
+	public MessageWaiting(int extension, int newMessages, int savedMessages, int added, int saved, int deleted) {
+		this.extension = extension;
+		this.newMessages = newMessages;
+		this.savedMessages = savedMessages;
+		this.added = added;
+		this.saved = saved;
+		this.deleted = deleted;
+	}
+
+	/***
+	 * method which returns the extension number of the mailbox
+	 * 
+	 * @return the extension number
+	 */
+	public int getExtension() {
+		return extension;
+	}
+
+	/***
+	 * method which returns the number of new messages
+	 * 
+	 * @return the number of new messages
+	 */
+	public int getNewMessages() {
+		return newMessages;
+	}
+
+	/***
+	 * method which returns the number of saved messages
+	 * 
+	 * @return the number of saved messages
+	 */
+	public int getSavedMessages() {
+		return savedMessages;
+	}
+
+	/***
+	 * method which returns whether the mailbox has new messages, which is what a
+	 * message waiting light shows
+	 * 
+	 * @return true if there are new messages
+	 */
+	public boolean isWaiting() {
+		return newMessages > 0;
+	}
+
+	/***
+	 * method which returns the number of messages left since the last update
+	 * 
+	 * @return the number of messages left
+	 */
+	public int getAdded() {
+		return added;
+	}
+
+	/***
+	 * method which returns the number of messages saved since the last update
+	 * 
+	 * @return the number of messages saved
+	 */
+	public int getSaved() {
+		return saved;
+	}
+
+	/***
+	 * method which returns the number of messages deleted since the last update
+	 * 
+	 * @return the number of messages deleted
+	 */
+	public int getDeleted() {
+		return deleted;
+	}
+}
@@ -0,0 +1,208 @@
+package telephone;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Class which tells message waiting listeners when the messages of a mailbox
+ * change. It listens to the mail system, and every change only marks the
+ * mailbox as changed for each subscriber, so a call leaving a message never
+ * waits for a subscriber. Every subscriber has a thread of its own that sends
+ * it one update for each changed mailbox once every window, however many
+ * messages came in during the window. A subscriber that is slow only delays
+ * its own updates, and the changes that come in meanwhile are folded into its
+ * next ones.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageWaitingBus implements MailboxListener {
+	private final long window;// the milliseconds changes are gathered before they are sent
+	private final CopyOnWriteArrayList<Subscription> subscriptions;// the subscribers
+	private final LongAdder published;// the number of changes of mailboxes
+	private final LongAdder delivered;// the number of updates sent to subscribers
+	private final LongAdder failed;// the number of updates a subscriber threw an exception on
+
+	/***
+	 * Constructor which creates a bus with no subscribers
+	 * 
+	 * @param window
+	 *            the milliseconds changes are gathered before they are sent
+	 * @precondition window > 0
+	 */
+	public MessageWaitingBus(long window) {
+		assert window > 0 : "The window is empty";
+		this.window = window;
+		subscriptions = new CopyOnWriteArrayList<Subscription>();
+		published = new LongAdder();
+		delivered = new LongAdder();
+		failed = new LongAdder();
+	}
+
+	/***
+	 * method which adds a subscriber and starts the thread that sends it updates
+	 * 
+	 * @param listener
+	 *            the subscriber
+	 */
+	public void subscribe(MessageWaitingListener listener) {
+		subscriptions.add(new Subscription(listener));
+	}
+
+	/***
+	 * method which removes a subscriber and stops its thread. Changes that were not
+	 * sent yet are dropped.
+	 * 
+	 * @param listener
+	 *            the subscriber
+	 */
+	public void unsubscribe(MessageWaitingListener listener) {
+		for (Subscription subscription : subscriptions) {
+			if (subscription.listener == listener && subscriptions.remove(subscription)) {
+				subscription.sender.shutdown();
+			}
+		}
+	}
+
+	@Override
+	public void messageAdded(Mailbox mailbox, Message message) {
+		publish(mailbox, Change.ADDED);
+	}
+
+	@Override
+	public void messageSaved(Mailbox mailbox, Message message) {
+		publish(mailbox, Change.SAVED);
+	}
+
+	@Override
+	public void messageDeleted(Mailbox mailbox, Message message) {
+		publish(mailbox, Change.DELETED);
+	}
+
+	/***
+	 * method which sends the changes of every subscriber that have been gathered
+	 * so far and stops the threads of the subscribers
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the updates to be sent
+	 */
+	public void close() throws InterruptedException {
+		for (Subscription subscription : subscriptions) {
+			subscriptions.remove(subscription);
+			subscription.sender.shutdown();
+			subscription.sender.awaitTermination(1, TimeUnit.MINUTES);
+			subscription.send();
+		}
+	}
+
+	/***
+	 * method which returns the number of changes of mailboxes that were published
+	 * 
+	 * @return the number of changes
+	 */
+	public long getPublishedCount() {
+		return published.sum();
+	}
+
+	/***
+	 * method which returns the number of updates that were sent to subscribers
+	 * 
+	 * @return the number of updates
+	 */
+	public long getDeliveredCount() {
+		return delivered.sum();
+	}
+
+	/***
+	 * method which returns the number of updates a subscriber threw an exception
+	 * on
+	 * 
+	 * @return the number of failed updates
+	 */
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/***
+	 * method which marks a mailbox as changed for every subscriber
+	 * 
+	 * @param mailbox
+	 *            the mailbox that changed
+	 * @param change
+	 *            what changed
+	 */
+	private void publish(Mailbox mailbox, Change change) {
+		published.increment();
+		for (Subscription subscription : subscriptions) {
+			subscription.pending.compute(mailbox, (key, changes) -> {
+				int[] counts = changes == null ? new int[Change.values().length] : changes;
+				counts[change.ordinal()]++;
+				return counts;
+			});
+		}
+	}
+
+	/***
+	 * Enum which is what changed in a mailbox
+	 */
+	private enum Change {
+		ADDED, SAVED, DELETED
+	}
+
+	/***
+	 * Class which is a subscriber with the mailboxes that changed since it was
+	 * last sent updates, and the thread that sends them
+	 */
+	private class Subscription {
+		private final MessageWaitingListener listener;// the subscriber
+		private final ConcurrentHashMap<Mailbox, int[]> pending;// the changes of each mailbox not sent yet
+		private final ScheduledExecutorService sender;// the thread that sends the updates
+
+		/***
+		 * constructor which creates a subscription and starts its thread
+		 * 
+		 * @param listener
+		 *            the subscriber
+		 */
+		Subscription(MessageWaitingListener listener) {
+			this.listener = listener;
+			pending = new ConcurrentHashMap<Mailbox, int[]>();
+			sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "message-waiting");
+				thread.setDaemon(true);
+				return thread;
+			});
+			sender.scheduleWithFixedDelay(this::send, window, window, TimeUnit.MILLISECONDS);
+		}
+
+		/***
+		 * method which sends one update for every mailbox that changed. The numbers of
+		 * messages are read when the update is sent, so they are never older than the
+		 * changes.
+		 */
+		void send() {
+			for (Mailbox mailbox : pending.keySet()) {
+				int[] changes = pending.remove(mailbox);
+				if (changes == null) {
+					continue;
+				}
+				MessageWaiting update;
+				synchronized (mailbox) {
+					update = new MessageWaiting(mailbox.getExtension(), mailbox.getNewSize(), mailbox.getSavedSize(),
+							changes[Change.ADDED.ordinal()], changes[Change.SAVED.ordinal()],
+							changes[Change.DELETED.ordinal()]);
+				}
+				try {
+					listener.messageWaiting(update);
+					delivered.increment();
+				} catch (RuntimeException e) {
+					failed.increment();
+				}
+			}
+		}
+	}
+}
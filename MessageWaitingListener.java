@@ -0,0 +1,20 @@
+package telephone;
+
+/***
+ * Message waiting listener interface creates the requirements for anything
+ * that would like to be told, some time later, that the messages of a mailbox
+ * changed, such as a message waiting light, a pager or an archiver
+ *
+ * @author James Nguyen
+ *
+ */
+public interface MessageWaitingListener {
+	/***
+	 * method which is called on the thread of the listener with the changes of a
+	 * mailbox since the last update
+	 * 
+	 * @param update
+	 *            the messages the mailbox holds and how they changed
+	 */
+	public void messageWaiting(MessageWaiting update);
+}
@@ -0,0 +1,153 @@
+package telephone;
+
+import java.awt.GridLayout;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+/***
+ * Class which shows the notices of a call inside its window instead of in new
+ * windows. It has a fixed number of rows that are made once and used again for
+ * every notice, the newest notice on top. A notice that is the same as one
+ * already shown is not shown twice; the shown one is counted and moved to the
+ * top. When there are more notices than rows the oldest is dropped, and every
+ * notice is dismissed after a few seconds. However long a call lasts, the area
+ * therefore never holds more than its rows. It must only be used on the event
+ * thread.
+ *
+ * @author James Nguyen
+ *
+ */
+public class NotificationArea extends JPanel {
+	private static final long serialVersionUID = 1L;
+	private static final int ROWS = 3;// the most notices shown at once
+	private static final int ROW_HEIGHT = 20;// the height of a row
+	private static final int DISMISS_MILLIS = 8000;// the milliseconds a notice is shown
+	private static final int CHECK_MILLIS = 1000;// the milliseconds between checks for old notices
+	private final JLabel[] rows;// the rows the notices are shown in
+	private final ArrayDeque<Notice> notices;// the notices shown, the newest first
+	private final Timer dismisser;// the timer that dismisses old notices
+
+	/***
+	 * Constructor which creates an empty notification area
+	 */
+	public NotificationArea() {
+		super(new GridLayout(ROWS, 1));
+		rows = new JLabel[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			rows[i] = new JLabel(" ", JLabel.CENTER);
+			add(rows[i]);
+		}
+		notices = new ArrayDeque<Notice>(ROWS + 1);
+		dismisser = new Timer(CHECK_MILLIS, event -> dismiss(System.currentTimeMillis()));
+	}
+
+	/***
+	 * method which returns the height the area needs in its window
+	 * 
+	 * @return the height of the area
+	 */
+	public static int getAreaHeight() {
+		return ROWS * ROW_HEIGHT;
+	}
+
+	/***
+	 * method which shows a notice, or counts it again if the same notice is
+	 * already shown
+	 * 
+	 * @param title
+	 *            the title of the notice
+	 * @param text
+	 *            the text of the notice
+	 */
+	public void show(String title, String text) {
+		Notice notice = null;
+		for (Iterator<Notice> shown = notices.iterator(); shown.hasNext();) {
+			Notice old = shown.next();
+			if (old.title.equals(title) && old.text.equals(text)) {
+				shown.remove();
+				notice = old;
+				notice.count++;
+				break;
+			}
+		}
+		if (notice == null) {
+			notice = new Notice(title, text);
+		}
+		notice.shownAt = System.currentTimeMillis();
+		notices.addFirst(notice);
+		if (notices.size() > ROWS) {
+			notices.removeLast();
+		}
+		update();
+		if (!dismisser.isRunning()) {
+			dismisser.start();
+		}
+	}
+
+	/***
+	 * method which returns the number of notices shown
+	 * 
+	 * @return the number of notices
+	 */
+	public int getShownCount() {
+		return notices.size();
+	}
+
+	/***
+	 * method which dismisses the notices that have been shown long enough
+	 * 
+	 * @param now
+	 *            the current time in milliseconds
+	 */
+	void dismiss(long now) {
+		while (!notices.isEmpty() && now - notices.peekLast().shownAt >= DISMISS_MILLIS) {
+			notices.removeLast();
+		}
+		update();
+		if (notices.isEmpty()) {
+			dismisser.stop();
+		}
+	}
+
+	/***
+	 * method which puts the text of the notices in the rows and clears the rest
+	 */
+	private void update() {
+		int i = 0;
+		for (Notice notice : notices) {
+			String text = notice.title + ": " + notice.text;
+			rows[i++].setText(notice.count > 1 ? text + " (x" + notice.count + ")" : text);
+		}
+		for (; i < ROWS; i++) {
+			rows[i].setText(" ");
+		}
+	}
+
+	/***
+	 * Class which is a notice that is shown
+	 */
+	private static class Notice {
+		private final String title;// the title of the notice
+		private final String text;// the text of the notice
+		private int count;// the number of times the notice was shown
+		private long shownAt;// the time the notice was last shown, in milliseconds
+
+		/***
+		 * constructor which creates a notice that was shown once
+		 * 
+		 * @param title
+		 *            the title of the notice
+		 * @param text
+		 *            the text of the notice
+		 */
+		Notice(String title, String text) {
+			this.title = title;
+			this.text = text;
+			count = 1;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package telephone;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/***
+ * Class which runs the tasks of one call in the order they were given, one at
+ * a time, on the threads of an executor that many calls share. Only one task
+ * of the call is waiting for or using a thread at once, so a call never holds
+ * more than one thread and a busy call cannot keep the other calls waiting for
+ * long: after a few tasks it gives its thread back and queues again. A task
+ * that throws an exception is handed to the handler of its thread, and the
+ * next task still runs.
+ *
+ * @author James Nguyen
+ *
+ */
+public class OrderedExecutor implements Executor {
+	private static final int BATCH = 16;// the most tasks run before the thread is given back
+	private final Executor executor;// the executor whose threads run the tasks
+	private final ConcurrentLinkedQueue<Runnable> tasks;// the tasks waiting to run, oldest first
+	private final AtomicBoolean running;// whether a thread is running or about to run the tasks
+
+	/***
+	 * Constructor which creates an ordered executor for one call
+	 * 
+	 * @param executor
+	 *            the executor whose threads run the tasks
+	 */
+	public OrderedExecutor(Executor executor) {
+		this.executor = executor;
+		tasks = new ConcurrentLinkedQueue<Runnable>();
+		running = new AtomicBoolean();
+	}
+
+	/***
+	 * method which runs a task after every task that was given before it
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	@Override
+	public void execute(Runnable task) {
+		tasks.add(task);
+		schedule();
+	}
+
+	/***
+	 * method which returns the number of tasks waiting to run
+	 * 
+	 * @return the number of waiting tasks
+	 */
+	public int getQueued() {
+		return tasks.size();
+	}
+
+	/***
+	 * method which asks the executor for a thread, unless one is already running
+	 * the tasks or there are none
+	 */
+	private void schedule() {
+		if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+			executor.execute(this::drain);
+		}
+	}
+
+	/***
+	 * method which runs the waiting tasks in order, and then gives the thread back
+	 */
+	private void drain() {
+		try {
+			for (int i = 0; i < BATCH; i++) {
+				Runnable task = tasks.poll();
+				if (task == null) {
+					break;
+				}
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+				}
+			}
+		} finally {
+			running.set(false);
+			schedule();
+		}
+	}
+}
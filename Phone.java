@@ -1,81 +1,314 @@
-package telephone;
-
-import java.awt.FlowLayout;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-
-import javax.swing.JButton;
-import javax.swing.JFrame;
-import javax.swing.JLabel;
-import javax.swing.JTextField;
-
-/***
- * Class which allows users to create a phone that has access to the voice mail
- * system. The user will be able to enter different strings into the phone and
- * perform different actions
- * 
- * @author James Nguyen
- *
- */
-public class Phone extends JFrame {
-	private JTextField textField; // the text field in the interface type
-	private JLabel text; // the text that is used to speak to the users
-	private String enteredText;// the text enterd by the user
-	private static final int FIELD_WIDTH = 20;
-	private ControlSystem controlSystem;// control system that will be used
-
-	/***
-	 * Constructor which initializes the phone and adds different buttons and fields
-	 * within the phone in order for the user to interact with the phone
-	 */
-	public Phone() {
-		super("Voice Mail System");
-		textField = new JTextField(FIELD_WIDTH);
-		JButton button = new JButton("Enter to Machine");
-		button.addActionListener(new ActionListener() {
-			public void actionPerformed(ActionEvent event) {// action that occurs if the Enter to Machine button is
-															// clicked
-				enteredText = textField.getText();
-				textField.setText("");
-				run();
-
-			}
-		});
-		text = new JLabel("Enter numbers followed by the '#' sign to go to a specific Mailbox Number");
-		JLabel hangUpText = new JLabel("To end the phone call, send 'H' to the machine.");
-		this.setLayout(new FlowLayout());
-		this.add(text);
-		this.add(hangUpText);
-		this.add(textField);
-		this.add(button);
-		this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		this.setSize(500, 150);
-		this.setVisible(true);
-		controlSystem = new ControlSystem(this);
-	}
-
-	/**
-	 * changes the text of the window to speak to the user
-	 * 
-	 * @param text
-	 */
-	public void speak(String text) {
-		this.text.setText(text);
-	}
-
-	/***
-	 * method which will be called every time the button is clicked and will send
-	 * the entered text into the control system
-	 */
-	public void run() {
-		if (enteredText == null) {
-			// do nothing
-		} else if (enteredText.equalsIgnoreCase("H")) {// hangs up if the text is equal to h
-			controlSystem.hangUp();
-		} else {
-			controlSystem.dial(enteredText);
-		}
-	}
-
-	
-}
+package telephone;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/***
+ * Class which allows users to create a phone that has access to the voice mail
+ * system. The user will be able to enter different strings into the phone and
+ * perform different actions. The phone is one output of the control system, so
+ * many phones can be connected to the same control system. What the user enters
+ * is handed to the control system on a background thread, in the order it was
+ * entered, so the window never waits for a mailbox. Whatever the control system
+ * shows is passed back to the event thread of the window, and the window says
+ * it is busy while the control system takes a while. Notices are shown in the
+ * window itself, and the phone has at most one message window and one window
+ * for the text of a message open, so a long call does not open more and more
+ * windows.
+ * 
+ * @author James Nguyen
+ *
+ */
+public class Phone extends JFrame implements CallOutput {
+	private static final long serialVersionUID = 1L;
+	private JTextField textField; // the text field in the interface type
+	private JLabel text; // the text that is used to speak to the users
+	private String enteredText;// the text enterd by the user
+	private static final int FIELD_WIDTH = 20;
+	private static final int VISIBLE_MESSAGES = 20;// the messages the message window shows at once
+	private static final int REFRESH_MILLIS = 1000;// the milliseconds between refreshes of the message window
+	private static final String PROTOTYPE_MESSAGE = "00000. Hello, this is a message left in the mailbox";// the width of a row
+	private static final int TEXT_ROWS = 12;// the rows of text the window for the text of a message shows at once
+	private static final int TEXT_COLUMNS = 40;// the columns of that window
+	private static final int BUSY_DELAY = 300;// the milliseconds before the phone says it is busy
+	private static final ExecutorService CALLS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "phone-call");
+		thread.setDaemon(true);
+		return thread;
+	});// the threads that run the calls of every phone
+	private final ControlSystem controlSystem;// control system that will be used
+	private CallSession session;// the call of the phone, only used by the tasks of the call
+	private final OrderedExecutor call;// the tasks of the call, run in the order they were entered
+	private final JLabel busy;// the text that shows while the control system is busy
+	private final Timer busyTimer;// the timer that shows the busy text if an entry takes a while
+	private int pending;// the entries that were not finished yet, only used on the event thread
+	private final NotificationArea notifications;// the notices shown at the bottom of the window
+	private JFrame messageWindow;// the open message window, or null, only used on the event thread
+	private JFrame textWindow;// the open window for the text of a message, or null, only used on the event thread
+	private JTextArea messageText;// the text shown in that window, only used on the event thread
+
+	/***
+	 * Constructor which initializes the phone with its own control system
+	 */
+	public Phone() {
+		this(new ControlSystem());
+	}
+
+	/***
+	 * Constructor which initializes the phone and adds different buttons and fields
+	 * within the phone in order for the user to interact with the phone
+	 * 
+	 * @param controlSystem
+	 *            the control system the phone is connected to
+	 */
+	public Phone(ControlSystem controlSystem) {
+		super("Voice Mail System");
+		this.controlSystem = controlSystem;
+		call = new OrderedExecutor(CALLS);
+		textField = new JTextField(FIELD_WIDTH);
+		JButton button = new JButton("Enter to Machine");
+		button.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent event) {// action that occurs if the Enter to Machine button is
+															// clicked
+				enteredText = textField.getText();
+				textField.setText("");
+				run();
+
+			}
+		});
+		text = new JLabel("Enter numbers followed by the '#' sign to go to a specific Mailbox Number");
+		JLabel hangUpText = new JLabel("To end the phone call, send 'H' to the machine.");
+		busy = new JLabel("Please wait...");
+		busy.setVisible(false);
+		busyTimer = new Timer(BUSY_DELAY, event -> busy.setVisible(true));
+		busyTimer.setRepeats(false);
+		notifications = new NotificationArea();
+		JPanel controls = new JPanel(new FlowLayout());
+		controls.add(text);
+		controls.add(hangUpText);
+		controls.add(textField);
+		controls.add(button);
+		controls.add(busy);
+		this.setLayout(new BorderLayout());
+		this.add(controls, BorderLayout.CENTER);
+		this.add(notifications, BorderLayout.SOUTH);
+		this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		this.setSize(500, 150);
+		this.setVisible(true);
+		call.execute(() -> session = controlSystem.openSession(this));
+	}
+
+	/**
+	 * changes the text of the window to speak to the user
+	 * 
+	 * @param text
+	 */
+	@Override
+	public void speak(String text) {
+		onEventThread(() -> this.text.setText(text));
+	}
+
+	/***
+	 * method which changes the size of the window on its event thread, leaving
+	 * room below for the notices
+	 * 
+	 * @param width
+	 *            the width of the window
+	 * @param height
+	 *            the height of the window
+	 */
+	@Override
+	public void setSize(int width, int height) {
+		onEventThread(() -> super.setSize(width, height + NotificationArea.getAreaHeight()));
+	}
+
+	/***
+	 * method which shows a notice with a title and message at the bottom of the
+	 * window
+	 * 
+	 * @param title
+	 *            the title of the notice
+	 * @param text
+	 *            the text of the notice
+	 */
+	@Override
+	public void showPopUp(String title, String text) {
+		onEventThread(() -> notifications.show(title, text));
+	}
+
+	/***
+	 * method which shows the text of a message in a window of its own that scrolls
+	 * and stays open until the user closes it, since a message may be far longer
+	 * than a notice. The window is used again for the next message.
+	 * 
+	 * @param text
+	 *            the text of the message
+	 */
+	@Override
+	public void showMessage(String text) {
+		onEventThread(() -> textWindow(text));
+	}
+
+	/***
+	 * method which shows the text of a message on the event thread, opening the
+	 * window for it if it is not open
+	 * 
+	 * @param text
+	 *            the text of the message
+	 */
+	private void textWindow(String text) {
+		if (textWindow == null) {
+			JFrame window = new JFrame("Message");
+			JTextArea area = new JTextArea(TEXT_ROWS, TEXT_COLUMNS);
+			area.setEditable(false);
+			area.setLineWrap(true);
+			area.setWrapStyleWord(true);
+			window.add(new JScrollPane(area));
+			window.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+			window.addWindowListener(new WindowAdapter() {
+				@Override
+				public void windowClosed(WindowEvent event) {
+					if (textWindow == window) {
+						textWindow = null;
+						messageText = null;
+					}
+				}
+			});
+			window.pack();
+			textWindow = window;
+			messageText = area;
+		}
+		messageText.setText(text);
+		messageText.setCaretPosition(0);
+		textWindow.setVisible(true);
+		textWindow.toFront();
+	}
+
+	/***
+	 * Method which creates a window containing all the messages. The list only
+	 * reads the messages it shows, on a thread of the call rather than the event
+	 * thread, and every row has the same size so the list never measures the rows
+	 * it does not show. The window is refreshed every second while it is open, so
+	 * messages that arrive or are deleted show up.
+	 * 
+	 * @param mailbox
+	 *            the mailbox whose messages will be shown
+	 */
+	@Override
+	public void showMessages(Mailbox mailbox) {
+		onEventThread(() -> messageWindow(mailbox));
+	}
+
+	/***
+	 * method which creates the message window on the event thread, closing the
+	 * one that was open
+	 * 
+	 * @param mailbox
+	 *            the mailbox whose messages will be shown
+	 */
+	private void messageWindow(Mailbox mailbox) {
+		if (messageWindow != null) {
+			messageWindow.dispose();
+		}
+		JFrame window = new JFrame("Your Messages");
+		MessageListModel model = new MessageListModel(mailbox, call);
+		JList<String> messages = new JList<String>(model);
+		messages.setPrototypeCellValue(PROTOTYPE_MESSAGE);
+		messages.setVisibleRowCount(VISIBLE_MESSAGES);
+		window.add(new JScrollPane(messages));
+		Timer refresh = new Timer(REFRESH_MILLIS, event -> model.refresh());
+		window.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		window.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosed(WindowEvent event) {
+				refresh.stop();
+				if (messageWindow == window) {
+					messageWindow = null;
+				}
+			}
+		});
+		window.pack();
+		window.setVisible(true);
+		refresh.start();
+		messageWindow = window;
+	}
+
+	/***
+	 * method which tells the user that the message is recorded audio, since the
+	 * window cannot play it
+	 * 
+	 * @param clip
+	 *            the audio of the message
+	 */
+	@Override
+	public void play(AudioClip clip) {
+		showPopUp("Message", "This message is " + clip.getLength() + " bytes of recorded audio.");
+	}
+
+	/***
+	 * method which will be called every time the button is clicked and will send
+	 * the entered text into the control system. The text is dialed after every
+	 * text entered before it, on a thread of the call, and the phone says it is
+	 * busy if that takes a while.
+	 */
+	public void run() {
+		if (enteredText == null) {
+			// do nothing
+		} else {
+			String entered = enteredText;
+			if (pending++ == 0) {
+				busyTimer.restart();
+			}
+			call.execute(() -> {
+				try {
+					controlSystem.dial(session, entered);// hangs up if the text is equal to h
+				} finally {
+					SwingUtilities.invokeLater(this::finished);
+				}
+			});
+		}
+	}
+
+	/***
+	 * method which is called on the event thread when an entry is finished, and
+	 * hides the busy text once every entry is
+	 */
+	private void finished() {
+		if (--pending == 0) {
+			busyTimer.stop();
+			busy.setVisible(false);
+		}
+	}
+
+	/***
+	 * method which runs a change of the window on its event thread, right away if
+	 * it is already on it
+	 * 
+	 * @param change
+	 *            the change of the window
+	 */
+	private void onEventThread(Runnable change) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			change.run();
+		} else {
+			SwingUtilities.invokeLater(change);
+		}
+	}
+}
@@ -1,13 +1,13 @@
-package telephone;
-
-/*
- * Class which will run the voice mail system
- */
-public class PhoneRunner {
-	/***
-	 * main method to run the phone
-	 */
-	public static void main(String[] args) {
-		Phone runner = new Phone();
-	}
-}
+package telephone;
+
+/*
+ * Class which will run the voice mail system
+ */
+public class PhoneRunner {
+	/***
+	 * main method to run the phone
+	 */
+	public static void main(String[] args) {
+		Phone runner = new Phone();
+	}
+}
@@ -0,0 +1,123 @@
+package telephone;
+
+import java.util.ArrayList;
+
+/***
+ * Class which is a prompt with places that are filled in when it is spoken,
+ * written as {0}, {1} and so on. The prompt is cut into its fixed text and its
+ * places once, when it is created, so filling it in only appends the parts in
+ * order into a builder of the right size. Unlike MessageFormat, quotes and
+ * other characters in the prompt or in the values are left as they are.
+ *
+ * @author James Nguyen
+ *
+ */
+public class PromptTemplate {
+	private final String[] texts;// the fixed text before each place, and the text after the last place
+	private final int[] places;// the number of the value that fills each place
+	private final int fixedLength;// the number of characters of the fixed text
+
+	/***
+	 * Constructor which reads a prompt
+	 * 
+	 * @param pattern
+	 *            the prompt, with {0}, {1} and so on where values are filled in
+	 * @throws IllegalArgumentException
+	 *             if a place is not closed or has no number
+	 */
+	public PromptTemplate(String pattern) {
+		ArrayList<String> texts = new ArrayList<>();
+		ArrayList<Integer> places = new ArrayList<>();
+		int start = 0;
+		int open = pattern.indexOf('{');
+		while (open >= 0) {
+			int close = pattern.indexOf('}', open);
+			if (close < 0) {
+				throw new IllegalArgumentException("The place at " + open + " is not closed");
+			}
+			try {
+				places.add(Integer.parseInt(pattern.substring(open + 1, close)));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("The place at " + open + " has no number", e);
+			}
+			texts.add(pattern.substring(start, open));
+			start = close + 1;
+			open = pattern.indexOf('{', start);
+		}
+		texts.add(pattern.substring(start));
+		this.texts = texts.toArray(new String[0]);
+		this.places = new int[places.size()];
+		int length = 0;
+		for (int i = 0; i < this.places.length; i++) {
+			this.places[i] = places.get(i);
+		}
+		for (String text : this.texts) {
+			length += text.length();
+		}
+		this.fixedLength = length;
+	}
+
+	/***
+	 * method which fills in the places of the prompt
+	 * 
+	 * @param values
+	 *            the values of the places, by their number
+	 * @return the prompt with its places filled in
+	 * @precondition every place has a value
+	 */
+	public String render(String... values) {
+		int length = fixedLength;
+		for (int place : places) {
+			length += values[place].length();
+		}
+		StringBuilder prompt = new StringBuilder(length);
+		appendTo(prompt, values);
+		return prompt.toString();
+	}
+
+	/***
+	 * method which fills in the places of the prompt at the end of a builder, so
+	 * that a prompt which repeats, such as a row of a list, can be added many
+	 * times to one builder
+	 * 
+	 * @param prompt
+	 *            the builder the prompt is added to
+	 * @param values
+	 *            the values of the places, by their number
+	 * @precondition every place has a value
+	 */
+	public void appendTo(StringBuilder prompt, String... values) {
+		assert places.length == 0 || values.length > max(places) : "A place has no value";
+		for (int i = 0; i < places.length; i++) {
+			prompt.append(texts[i]).append(values[places[i]]);
+		}
+		prompt.append(texts[places.length]);
+	}
+
+	/***
+	 * method which creates the HTML of a menu that shows each line of a prompt on
+	 * its own line
+	 * 
+	 * @param lines
+	 *            the lines of the menu
+	 * @return the HTML of the menu
+	 */
+	public static String page(String... lines) {
+		return "<html><body>" + String.join("<br>", lines) + "</body></html>";
+	}
+
+	/***
+	 * method which finds the largest number of a place
+	 * 
+	 * @param places
+	 *            the numbers of the places
+	 * @return the largest number
+	 */
+	private static int max(int[] places) {
+		int max = 0;
+		for (int place : places) {
+			max = Math.max(max, place);
+		}
+		return max;
+	}
+}
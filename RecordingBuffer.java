@@ -0,0 +1,259 @@
+package telephone;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/***
+ * Class which holds the text of a message while it is being recorded. The text
+ * is kept as UTF-8 in chunks of a fixed size, so adding to it only copies what
+ * was added, however long the message already is. Once the message grows past
+ * a threshold the chunks are written to a temporary file and the rest of the
+ * message is added to the end of that file, so a long message is not kept on
+ * the heap. A message may not grow past a largest length or be recorded for
+ * longer than a largest time. The text is copied once, straight into the
+ * message arena, when the message is left, and the buffer can then be cleared
+ * and used for the next message.
+ *
+ * @author James Nguyen
+ *
+ */
+public class RecordingBuffer {
+	public static final int MAX_BYTES = 1 << 20;// the default largest length of a message
+	public static final int SPILL_BYTES = 1 << 16;// the default length past which a message is written to a file
+	public static final long MAX_MILLIS = 10 * 60 * 1000;// the default longest time a message may be recorded for
+	private static final int CHUNK_SIZE = 1 << 12;// the size of a chunk
+	private final int maxBytes;// the largest length of a message
+	private final int spillBytes;// the length past which a message is written to a file
+	private final long maxMillis;// the longest time a message may be recorded for
+	private final ArrayList<byte[]> chunks;// the chunks of the text, the last one partly filled
+	private int length;// the number of bytes of the text
+	private long started;// the time the first text was added, in milliseconds
+	private boolean hasText;// whether the text has a character that is not a space
+	private boolean full;// whether text was refused, so nothing more is added
+	private FileChannel spill;// the file the text was written to, or null if it is on the heap
+
+	/***
+	 * Constructor which creates an empty buffer with the default limits
+	 */
+	public RecordingBuffer() {
+		this(MAX_BYTES, SPILL_BYTES, MAX_MILLIS);
+	}
+
+	/***
+	 * Constructor which creates an empty buffer
+	 * 
+	 * @param maxBytes
+	 *            the largest length of a message in bytes
+	 * @param spillBytes
+	 *            the length in bytes past which a message is written to a file
+	 * @param maxMillis
+	 *            the longest time a message may be recorded for, in milliseconds
+	 * @precondition maxBytes > 0 && spillBytes > 0 && maxMillis > 0
+	 */
+	public RecordingBuffer(int maxBytes, int spillBytes, long maxMillis) {
+		assert maxBytes > 0 && spillBytes > 0 && maxMillis > 0 : "The limits must be positive";
+		this.maxBytes = maxBytes;
+		this.spillBytes = spillBytes;
+		this.maxMillis = maxMillis;
+		this.chunks = new ArrayList<>();
+	}
+
+	/***
+	 * method which adds text to the end of the message. Nothing is added if the
+	 * message would grow past its largest length or has been recorded for too
+	 * long, and once text has been refused the message is full and nothing more
+	 * is added until it is cleared.
+	 * 
+	 * @param text
+	 *            the text that is added
+	 * @return true if the text was added, false if the message is full
+	 * @throws UncheckedIOException
+	 *             if the message cannot be written to its file
+	 */
+	public boolean append(String text) {
+		if (full) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		if (length == 0) {
+			started = now;
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		if (now - started > maxMillis || bytes.length > maxBytes - length) {
+			full = true;
+			return false;
+		}
+		if (!hasText) {
+			hasText = !text.isBlank();
+		}
+		try {
+			if (spill == null && length + bytes.length > spillBytes) {
+				spill();
+			}
+			if (spill != null) {
+				ByteBuffer source = ByteBuffer.wrap(bytes);
+				while (source.hasRemaining()) {
+					length += spill.write(source, length);
+				}
+				return true;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the message", e);
+		}
+		int offset = 0;
+		while (offset < bytes.length) {
+			int used = length % CHUNK_SIZE;
+			if (used == 0 && length / CHUNK_SIZE == chunks.size()) {
+				chunks.add(new byte[CHUNK_SIZE]);
+			}
+			int count = Math.min(CHUNK_SIZE - used, bytes.length - offset);
+			System.arraycopy(bytes, offset, chunks.get(length / CHUNK_SIZE), used, count);
+			offset += count;
+			length += count;
+		}
+		return true;
+	}
+
+	/***
+	 * method which returns the number of bytes of the message
+	 * 
+	 * @return the length of the message
+	 */
+	public int length() {
+		return length;
+	}
+
+	/***
+	 * method which returns whether the message has a character that is not a
+	 * space
+	 * 
+	 * @return true if the message has text
+	 */
+	public boolean hasText() {
+		return hasText;
+	}
+
+	/***
+	 * method which returns whether text was refused because the message is full
+	 * 
+	 * @return true if nothing more is added to the message
+	 */
+	public boolean isFull() {
+		return full;
+	}
+
+	/***
+	 * method which returns whether the message was written to a file
+	 * 
+	 * @return true if the message is not on the heap
+	 */
+	public boolean isSpilled() {
+		return spill != null;
+	}
+
+	/***
+	 * method which copies the message to a buffer, starting at its position. The
+	 * position of the buffer is moved past the message.
+	 * 
+	 * @param target
+	 *            the buffer the message is copied to
+	 * @precondition target.remaining() >= length()
+	 * @throws UncheckedIOException
+	 *             if the message cannot be read back from its file
+	 */
+	public void copyTo(ByteBuffer target) {
+		assert target.remaining() >= length : "The buffer is too small";
+		if (spill != null) {
+			int end = target.position() + length;
+			int saved = target.limit();
+			target.limit(end);
+			try {
+				long position = 0;
+				while (target.hasRemaining()) {
+					int read = spill.read(target, position);
+					if (read < 0) {
+						throw new IOException("The message file is shorter than the message");
+					}
+					position += read;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot read the message", e);
+			} finally {
+				target.limit(saved);
+			}
+			return;
+		}
+		for (int i = 0, left = length; left > 0; i++) {
+			int count = Math.min(CHUNK_SIZE, left);
+			target.put(chunks.get(i), 0, count);
+			left -= count;
+		}
+	}
+
+	/***
+	 * method which empties the buffer for the next message. The first chunk is
+	 * kept to be used again, and the file of a long message is deleted.
+	 */
+	public void clear() {
+		if (spill != null) {
+			try {
+				spill.close();
+			} catch (IOException e) {
+				// a file that cannot be closed is left for the temporary directory to clean up
+			}
+			spill = null;
+		}
+		while (chunks.size() > 1) {
+			chunks.remove(chunks.size() - 1);
+		}
+		length = 0;
+		hasText = false;
+		full = false;
+	}
+
+	/***
+	 * method which returns the message as text
+	 * 
+	 * @return the text of the message
+	 */
+	@Override
+	public String toString() {
+		ByteBuffer bytes = ByteBuffer.allocate(length);
+		copyTo(bytes);
+		return new String(bytes.array(), 0, length, StandardCharsets.UTF_8);
+	}
+
+	/***
+	 * method which moves the message from the heap to a temporary file that is
+	 * deleted when it is closed
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be created or written
+	 */
+	private void spill() throws IOException {
+		FileChannel channel = FileChannel.open(Files.createTempFile("message-", ".txt"), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		try {
+			long position = 0;
+			for (int i = 0; position < length; i++) {
+				ByteBuffer source = ByteBuffer.wrap(chunks.get(i), 0, (int) Math.min(CHUNK_SIZE, length - position));
+				while (source.hasRemaining()) {
+					position += channel.write(source, position);
+				}
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		spill = channel;
+		while (chunks.size() > 1) {
+			chunks.remove(chunks.size() - 1);
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package telephone;
+
+import java.util.function.Consumer;
+
+/***
+ * Class which is a hierarchical timing wheel. Time is cut into ticks, and every
+ * level of the wheel has 64 slots. The first level holds the timers due in the
+ * next 64 ticks, one slot per tick, and every further level holds timers 64
+ * times further away in slots 64 times wider. When the first level has gone all
+ * the way round, the next slot of the level above is spread out over the levels
+ * below it. Scheduling and cancelling a timer take constant time, and moving
+ * the wheel on only touches the timers that are due or are spread out, however
+ * many timers there are. Timers further away than the wheel reaches are kept in
+ * its last slot until they come into reach. The wheel is not thread safe.
+ *
+ * @param <T>
+ *            the type of the values of the timers
+ * @author James Nguyen
+ *
+ */
+public class TimingWheel<T> {
+	private static final int SLOT_BITS = 6;// the number of bits of a tick used by each level
+	private static final int SLOTS = 1 << SLOT_BITS;// the number of slots of each level
+	private final long tickMillis;// the milliseconds of a tick
+	private final int levels;// the number of levels
+	private final Timer<T>[][] slots;// the first timer of every slot of every level
+	private long currentTick;// the last tick the wheel was moved on to
+	private int size;// the number of timers in the wheel
+
+	/***
+	 * Class which is a timer of the wheel. The timers of a slot are linked to each
+	 * other, so a timer can be taken out of its slot without searching it.
+	 *
+	 * @param <T>
+	 *            the type of the value of the timer
+	 */
+	public static class Timer<T> {
+		private final T value;// the value of the timer
+		private final long deadline;// the time the timer is due, in milliseconds
+		private final long tick;// the tick the timer is due
+		private Timer<T> previous;// the timer before this one in its slot
+		private Timer<T> next;// the timer after this one in its slot
+		private Timer<T>[] slot;// the level the timer is in, or null if it is not in the wheel
+		private int index;// the slot of the level the timer is in
+
+		/***
+		 * Constructor which creates a timer
+		 * 
+		 * @param value
+		 *            the value of the timer
+		 * @param deadline
+		 *            the time the timer is due, in milliseconds
+		 * @param tick
+		 *            the tick the timer is due
+		 */
+		private Timer(T value, long deadline, long tick) {
+			this.value = value;
+			this.deadline = deadline;
+			this.tick = tick;
+		}
+
+		/***
+		 * method which returns the value of the timer
+		 * 
+		 * @return the value
+		 */
+		public T getValue() {
+			return value;
+		}
+
+		/***
+		 * method which returns the time the timer is due
+		 * 
+		 * @return the deadline in milliseconds
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+	}
+
+	/***
+	 * Constructor which creates an empty wheel
+	 * 
+	 * @param tickMillis
+	 *            the milliseconds of a tick
+	 * @param levels
+	 *            the number of levels, each reaching 64 times further
+	 * @param now
+	 *            the current time in milliseconds
+	 * @precondition tickMillis > 0 && levels > 0 && levels <= 10
+	 */
+	@SuppressWarnings("unchecked")// an array of Timer<T> cannot be created, and the slots only ever hold Timer<T>
+	public TimingWheel(long tickMillis, int levels, long now) {
+		assert tickMillis > 0 && levels > 0 && levels <= 10 : "Invalid wheel";
+		this.tickMillis = tickMillis;
+		this.levels = levels;
+		slots = (Timer<T>[][]) new Timer<?>[levels][SLOTS];
+		currentTick = now / tickMillis;
+	}
+
+	/***
+	 * method which adds a timer to the wheel. A timer that is already due is due
+	 * at the next tick.
+	 * 
+	 * @param value
+	 *            the value of the timer
+	 * @param deadline
+	 *            the time the timer is due, in milliseconds
+	 * @return the timer, which can be cancelled
+	 */
+	public Timer<T> schedule(T value, long deadline) {
+		long tick = deadline / tickMillis + (deadline % tickMillis == 0 ? 0 : 1);
+		Timer<T> timer = new Timer<T>(value, deadline, Math.max(tick, currentTick + 1));
+		insert(timer);
+		size++;
+		return timer;
+	}
+
+	/***
+	 * method which takes a timer out of the wheel. A timer that is no longer in
+	 * the wheel is left alone.
+	 * 
+	 * @param timer
+	 *            the timer
+	 */
+	public void cancel(Timer<T> timer) {
+		if (timer.slot != null) {
+			unlink(timer);
+			size--;
+		}
+	}
+
+	/***
+	 * method which moves the wheel on to the current time and takes out every
+	 * timer that became due
+	 * 
+	 * @param now
+	 *            the current time in milliseconds
+	 * @param due
+	 *            what is given the value of every timer that became due
+	 */
+	public void advance(long now, Consumer<T> due) {
+		long target = now / tickMillis;
+		while (currentTick < target) {
+			currentTick++;
+			for (int level = 1; level < levels; level++) {
+				if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+					break;
+				}
+				cascade(level, (int) (currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+			}
+			Timer<T>[] first = slots[0];
+			int index = (int) currentTick & (SLOTS - 1);
+			Timer<T> timer;
+			while ((timer = first[index]) != null) {
+				unlink(timer);
+				if (timer.tick > currentTick) {
+					// kept in the last slot of a wheel with one level, and still out of reach
+					insert(timer);
+					continue;
+				}
+				size--;
+				due.accept(timer.value);
+			}
+		}
+	}
+
+	/***
+	 * method which returns the number of timers in the wheel
+	 * 
+	 * @return the number of timers
+	 */
+	public int size() {
+		return size;
+	}
+
+	/***
+	 * method which spreads the timers of a slot out over the levels below it
+	 * 
+	 * @param level
+	 *            the level of the slot
+	 * @param index
+	 *            the slot
+	 */
+	private void cascade(int level, int index) {
+		Timer<T> timer = slots[level][index];
+		slots[level][index] = null;
+		while (timer != null) {
+			Timer<T> next = timer.next;
+			timer.previous = null;
+			timer.next = null;
+			insert(timer);
+			timer = next;
+		}
+	}
+
+	/***
+	 * method which puts a timer in the slot of the level that reaches its tick
+	 * 
+	 * @param timer
+	 *            the timer
+	 */
+	private void insert(Timer<T> timer) {
+		long ticks = timer.tick - currentTick;
+		int level = 0;
+		while (level < levels - 1 && ticks >= 1L << (SLOT_BITS * (level + 1))) {
+			level++;
+		}
+		long tick = timer.tick;
+		long reach = 1L << (SLOT_BITS * levels);
+		if (ticks >= reach) {
+			tick = currentTick + reach - 1;
+		}
+		int index = (int) (tick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+		Timer<T>[] slot = slots[level];
+		timer.slot = slot;
+		timer.index = index;
+		timer.next = slot[index];
+		if (slot[index] != null) {
+			slot[index].previous = timer;
+		}
+		slot[index] = timer;
+	}
+
+	/***
+	 * method which takes a timer out of its slot
+	 * 
+	 * @param timer
+	 *            the timer
+	 */
+	private void unlink(Timer<T> timer) {
+		if (timer.previous != null) {
+			timer.previous.next = timer.next;
+		} else {
+			timer.slot[timer.index] = timer.next;
+		}
+		if (timer.next != null) {
+			timer.next.previous = timer.previous;
+		}
+		timer.previous = null;
+		timer.next = null;
+		timer.slot = null;
+	}
+}
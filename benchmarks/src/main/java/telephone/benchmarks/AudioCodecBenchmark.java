@@ -0,0 +1,117 @@
+package telephone.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import telephone.ImaAdpcmCodec;
+
+/***
+ * Class which measures how many samples of audio one core can compress to IMA
+ * ADPCM and expand again each second. The audio is ten seconds of 8 kHz tones
+ * with noise, which is about what a caller sends. The bytes of PCM and ADPCM
+ * are counted next to the score of the encoder, so the compression ratio can be
+ * read from them.
+ *
+ * @author James Nguyen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioCodecBenchmark {
+	private static final int SAMPLES = 80000;// the number of samples in the audio
+	private final ImaAdpcmCodec codec = new ImaAdpcmCodec();// the codec that is measured
+	private ByteBuffer pcm;// the audio as 16 bit little endian PCM
+	private ByteBuffer adpcm;// the audio compressed to IMA ADPCM
+	private ByteBuffer output;// the buffer every benchmark writes to
+
+	/***
+	 * Class which counts the bytes that went into the codec and came out of it
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Sizes {
+		public long pcmBytes;// the bytes of PCM that were compressed
+		public long adpcmBytes;// the bytes of ADPCM that came out
+
+		/***
+		 * method which clears the counters before every iteration
+		 */
+		@Setup(Level.Iteration)
+		public void clear() {
+			pcmBytes = 0;
+			adpcmBytes = 0;
+		}
+	}
+
+	/***
+	 * method which creates the audio and compresses it once
+	 */
+	@Setup
+	public void setUp() {
+		SplittableRandom random = new SplittableRandom(42);
+		pcm = ByteBuffer.allocateDirect(SAMPLES * 2).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < SAMPLES; i++) {
+			double tone = 8000 * Math.sin(i * 0.05) + 3000 * Math.sin(i * 0.31);
+			pcm.putShort((short) (tone + (random.nextDouble() - 0.5) * 1000));
+		}
+		pcm.flip();
+		adpcm = ByteBuffer.allocateDirect(SAMPLES / 2);
+		codec.reset();
+		codec.encode(pcm.duplicate(), adpcm);
+		adpcm.flip();
+		output = ByteBuffer.allocateDirect(SAMPLES * 2).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/***
+	 * method which compresses the audio
+	 * 
+	 * @param sizes
+	 *            the counters of the bytes that went in and came out
+	 * @return the buffer of compressed audio
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public ByteBuffer encode(Sizes sizes) {
+		ByteBuffer in = pcm.duplicate();
+		output.clear();
+		codec.reset();
+		codec.encode(in, output);
+		sizes.pcmBytes += pcm.remaining();
+		sizes.adpcmBytes += output.position();
+		return output;
+	}
+
+	/***
+	 * method which expands the compressed audio
+	 * 
+	 * @return the buffer of expanded audio
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public ByteBuffer decode() {
+		output.clear();
+		codec.reset();
+		codec.decode(adpcm.duplicate(), output);
+		return output;
+	}
+}
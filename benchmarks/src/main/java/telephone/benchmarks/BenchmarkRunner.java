@@ -0,0 +1,48 @@
+package telephone.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/***
+ * Class which runs the benchmarks of the telephone package. It takes the same
+ * arguments as the JMH runner, but writes the results as JSON to
+ * jmh-result.json unless another format or file is given, so that the results
+ * of two releases can be compared. Asking for help or for the lists of
+ * benchmarks, profilers or result formats is answered by JMH itself and runs
+ * nothing.
+ *
+ * @author James Nguyen
+ *
+ */
+public class BenchmarkRunner {
+	private static final String RESULT_FILE = "jmh-result.json";// the file the results are written to
+
+	/***
+	 * method which runs the benchmarks
+	 * 
+	 * @param args
+	 *            the arguments of the JMH runner
+	 * @throws Exception
+	 *             if the arguments are wrong or the benchmarks cannot run
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+				|| commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+			Main.main(args);
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			options.result(RESULT_FILE);
+		}
+		new Runner(options.build()).run();
+	}
+}
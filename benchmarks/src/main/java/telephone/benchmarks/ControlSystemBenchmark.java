@@ -0,0 +1,133 @@
+package telephone.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import telephone.AudioClip;
+import telephone.CallOutput;
+import telephone.CallSession;
+import telephone.ControlSystem;
+import telephone.Mailbox;
+
+/***
+ * Class which measures whole calls through the control system without a
+ * window. Callers leave messages, and the owner logs in, listens to, saves and
+ * deletes them, so the mailbox is empty again after every call.
+ *
+ * @author James Nguyen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlSystemBenchmark {
+	// what a caller dials to leave a message
+	private static final String[] DEPOSIT = { "1#", "Hello, please call me back about the meeting", "H" };
+	// what the owner dials to log in, listen, save, delete and then delete the saved message
+	private static final String[] REVIEW = { "1#", "0000", "1", "1", "2", "3", "4", "1", "H" };
+	private ControlSystem controlSystem;// the control system that is measured
+	private CallSession caller;// the call that leaves messages
+	private CallSession owner;// the call of the owner of the mailbox
+	private CallSession menus;// a call that stays logged in and moves between menus
+	private Output output;// the output of every call
+
+	/***
+	 * Class which is the output of a call without a window. It only counts what it
+	 * is sent, so that nothing sent to it can be left out.
+	 */
+	public static class Output implements CallOutput {
+		private long characters;// the number of characters sent to the output
+
+		@Override
+		public void speak(String text) {
+			characters += text.length();
+		}
+
+		@Override
+		public void setSize(int width, int height) {
+			characters += width + height;
+		}
+
+		@Override
+		public void showPopUp(String title, String text) {
+			characters += title.length() + text.length();
+		}
+
+		@Override
+		public void showMessages(Mailbox mailbox) {
+			characters += mailbox.getNewSize() + mailbox.getSavedSize();
+		}
+
+		@Override
+		public void play(AudioClip clip) {
+			characters += clip.getLength();
+		}
+	}
+
+	/***
+	 * method which creates a mailbox and the calls
+	 */
+	@Setup
+	public void setUp() {
+		controlSystem = new ControlSystem();
+		controlSystem.getMailSystem().addNewMailbox();
+		output = new Output();
+		caller = controlSystem.openSession(output);
+		owner = controlSystem.openSession(output);
+		menus = controlSystem.openSession(output);
+		controlSystem.dial(menus, "1#");
+		controlSystem.dial(menus, "0000");
+	}
+
+	/***
+	 * method which leaves two messages and then reviews them as the owner
+	 * 
+	 * @return the number of characters sent to the output so far
+	 */
+	@Benchmark
+	public long depositAndReview() {
+		dial(caller, DEPOSIT);
+		dial(caller, DEPOSIT);
+		dial(owner, REVIEW);
+		return output.characters;
+	}
+
+	/***
+	 * method which goes from the mailbox menu to the greeting menu and back
+	 * 
+	 * @return the number of characters sent to the output so far
+	 */
+	@Benchmark
+	public long menuRoundTrip() {
+		controlSystem.dial(menus, "3");
+		controlSystem.dial(menus, "4");
+		return output.characters;
+	}
+
+	/***
+	 * method which dials every entry on a call
+	 * 
+	 * @param session
+	 *            the call
+	 * @param entries
+	 *            the entries that are dialed
+	 */
+	private void dial(CallSession session, String[] entries) {
+		for (String entered : entries) {
+			controlSystem.dial(session, entered);
+		}
+	}
+}
@@ -0,0 +1,434 @@
+package telephone.benchmarks;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import telephone.AudioClip;
+import telephone.CallOutput;
+import telephone.CallSession;
+import telephone.ControlSystem;
+import telephone.Mailbox;
+
+/***
+ * Class which finds out how many callers one control system can take before it
+ * answers them slower. Calls arrive at a fixed rate whether or not the earlier
+ * calls have been answered, so a stall makes every call behind it late instead
+ * of holding back the calls that would have shown it. The first entry of a call
+ * is timed from when the call should have arrived and every later entry from
+ * when it was dialed. Each caller follows the script of a persona:
+ *
+ * <pre>
+ * depositor  dials a mailbox, leaves a message and hangs up
+ * owner      logs in to a mailbox, listens to the current message and saves or deletes it
+ * admin      creates a new mailbox
+ * </pre>
+ *
+ * The rate is raised step by step. For every step the latencies of each kind of
+ * entry are printed as percentiles and written as HdrHistogram percentile
+ * distributions, and the last table shows how the answered calls per second
+ * follow the offered rate. The options are given as name=value:
+ *
+ * <pre>
+ * rates=500,1000,2000,4000,8000,16000   calls per second of each step
+ * duration=10                          seconds of each step
+ * warmup=5                             seconds at the first rate that are not reported
+ * threads=8                            threads that run the calls
+ * mailboxes=1000                       mailboxes created before the first call
+ * mix=70,25,5                          percent of depositors, owners and admins
+ * report=load-report                   directory of the percentile distributions
+ * </pre>
+ *
+ * @author James Nguyen
+ *
+ */
+public class LoadGenerator {
+	private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(1);// the largest latency that is kept
+	private static final double NANOS_PER_MICRO = 1000.0;// the scale of the reported latencies
+	// an output that ignores everything the calls are sent
+	private static final CallOutput OUTPUT = new CallOutput() {
+		@Override
+		public void speak(String text) {
+		}
+
+		@Override
+		public void setSize(int width, int height) {
+		}
+
+		@Override
+		public void showPopUp(String title, String text) {
+		}
+
+		@Override
+		public void showMessages(Mailbox mailbox) {
+		}
+
+		@Override
+		public void play(AudioClip clip) {
+		}
+	};
+	private final ControlSystem controlSystem;// the control system the calls are made to
+	private final int mailboxes;// the number of mailboxes callers dial
+	private final int[] mix;// the percent of depositors, owners and admins
+	private final ExecutorService workers;// the threads that run the calls
+	private final AtomicInteger inFlight;// the calls that have arrived but not finished
+
+	/***
+	 * Enum of the scripts callers follow
+	 */
+	private enum Persona {
+		DEPOSITOR, OWNER, ADMIN
+	}
+
+	/***
+	 * Enum of the kinds of entries that are timed
+	 */
+	private enum Operation {
+		CONNECT, RECORD, LOGIN, MESSAGE_MENU, LISTEN, SAVE, DELETE, PROVISION, HANG_UP, CALL
+	}
+
+	/***
+	 * Class which holds what was measured at one rate
+	 */
+	private static class Step {
+		private final int rate;// the calls per second that were offered
+		private final Histogram[] latencies;// the latencies of each kind of entry, in nanoseconds
+		private final LongAdder completed;// the number of calls that finished
+		private final AtomicInteger maxInFlight;// the most calls that were in flight at once
+		private long start;// the time the first call should have arrived
+		private final LongAccumulator lastCompletion;// the time the last call finished, whichever thread finished it
+
+		/***
+		 * Constructor which creates an empty step
+		 * 
+		 * @param rate
+		 *            the calls per second that are offered
+		 */
+		Step(int rate) {
+			this.rate = rate;
+			latencies = new Histogram[Operation.values().length];
+			for (int i = 0; i < latencies.length; i++) {
+				latencies[i] = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+			}
+			completed = new LongAdder();
+			maxInFlight = new AtomicInteger();
+			lastCompletion = new LongAccumulator(Math::max, Long.MIN_VALUE);
+		}
+
+		/***
+		 * method which records the latency of an entry
+		 * 
+		 * @param operation
+		 *            the kind of entry
+		 * @param nanos
+		 *            the latency in nanoseconds
+		 */
+		void record(Operation operation, long nanos) {
+			latencies[operation.ordinal()].recordValue(Math.min(Math.max(nanos, 0), HIGHEST_LATENCY));
+		}
+
+		/***
+		 * method which returns the calls that finished per second, from the time the
+		 * first call should have arrived until the last call finished
+		 * 
+		 * @return the finished calls per second
+		 */
+		double getThroughput() {
+			return completed.sum() / ((lastCompletion.get() - start) / 1e9);
+		}
+	}
+
+	/***
+	 * Constructor which creates a load generator and the mailboxes it dials
+	 * 
+	 * @param threads
+	 *            the number of threads that run the calls
+	 * @param mailboxes
+	 *            the number of mailboxes to create
+	 * @param mix
+	 *            the percent of depositors, owners and admins
+	 */
+	public LoadGenerator(int threads, int mailboxes, int[] mix) {
+		this.controlSystem = new ControlSystem();
+		this.mailboxes = mailboxes;
+		this.mix = mix;
+		for (int i = 0; i < mailboxes; i++) {
+			controlSystem.getMailSystem().addNewMailbox();
+		}
+		AtomicInteger count = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "load-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		inFlight = new AtomicInteger();
+	}
+
+	/***
+	 * method which runs the load generator
+	 * 
+	 * @param args
+	 *            the options as name=value
+	 * @throws Exception
+	 *             if the report cannot be written
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (equals < 0) {
+				throw new IllegalArgumentException("Options are given as name=value: " + arg);
+			}
+			options.put(arg.substring(0, equals).replaceFirst("^--", ""), arg.substring(equals + 1));
+		}
+		int[] rates = parseList(options.getOrDefault("rates", "500,1000,2000,4000,8000,16000"));
+		int duration = Integer.parseInt(options.getOrDefault("duration", "10"));
+		int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+		int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+		int mailboxes = Integer.parseInt(options.getOrDefault("mailboxes", "1000"));
+		int[] mix = parseList(options.getOrDefault("mix", "70,25,5"));
+		File report = new File(options.getOrDefault("report", "load-report"));
+		if (mix.length != 3 || mix[0] + mix[1] + mix[2] != 100) {
+			throw new IllegalArgumentException("The mix must be three percents that add up to 100");
+		}
+		if (!report.isDirectory() && !report.mkdirs()) {
+			throw new FileNotFoundException("Cannot create " + report);
+		}
+
+		LoadGenerator generator = new LoadGenerator(threads, mailboxes, mix);
+		if (warmup > 0) {
+			generator.run(new Step(rates[0]), warmup);
+		}
+		List<Step> steps = new ArrayList<Step>();
+		for (int rate : rates) {
+			Step step = new Step(rate);
+			generator.run(step, duration);
+			steps.add(step);
+			printStep(System.out, step);
+			writeDistributions(report, step);
+		}
+		printCurve(System.out, steps);
+	}
+
+	/***
+	 * method which offers calls at the rate of a step for some seconds and waits
+	 * for them all to finish
+	 * 
+	 * @param step
+	 *            the step that is measured
+	 * @param seconds
+	 *            how long calls are offered
+	 * @throws InterruptedException
+	 *             if interrupted while offering calls
+	 */
+	private void run(Step step, int seconds) throws InterruptedException {
+		long interval = TimeUnit.SECONDS.toNanos(1) / step.rate;
+		long calls = (long) step.rate * seconds;
+		SplittableRandom random = new SplittableRandom();
+		step.start = System.nanoTime();
+		for (long i = 0; i < calls; i++) {
+			long intended = step.start + i * interval;
+			long wait = intended - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			Persona persona = choose(random.nextInt(100));
+			SplittableRandom callRandom = random.split();
+			int now = inFlight.incrementAndGet();
+			step.maxInFlight.accumulateAndGet(now, Math::max);
+			workers.execute(() -> {
+				try {
+					call(step, persona, intended, callRandom);
+				} finally {
+					inFlight.decrementAndGet();
+				}
+			});
+		}
+		while (inFlight.get() > 0) {
+			Thread.sleep(1);
+		}
+	}
+
+	/***
+	 * method which makes one call by following the script of a persona, and ends
+	 * the call once it is hung up, as a line does when it disconnects
+	 * 
+	 * @param step
+	 *            the step the latencies are recorded in
+	 * @param persona
+	 *            the script of the caller
+	 * @param intended
+	 *            the time the call should have arrived
+	 * @param random
+	 *            the random numbers of the call
+	 */
+	private void call(Step step, Persona persona, long intended, SplittableRandom random) {
+		CallSession session = controlSystem.openSession(OUTPUT);
+		try {
+			int extension = 1 + random.nextInt(mailboxes);
+			if (persona == Persona.DEPOSITOR) {
+				dial(step, Operation.CONNECT, session, extension + "#", intended);
+				dial(step, Operation.RECORD, session, "Hello, please call me back about order " + random.nextInt(),
+						System.nanoTime());
+			} else if (persona == Persona.OWNER) {
+				dial(step, Operation.CONNECT, session, extension + "#", intended);
+				dial(step, Operation.LOGIN, session, "0000", System.nanoTime());
+				dial(step, Operation.MESSAGE_MENU, session, "1", System.nanoTime());
+				dial(step, Operation.LISTEN, session, "1", System.nanoTime());
+				if (random.nextInt(3) == 0) {
+					dial(step, Operation.SAVE, session, "2", System.nanoTime());
+				} else {
+					dial(step, Operation.DELETE, session, "3", System.nanoTime());
+				}
+			} else {
+				dial(step, Operation.CONNECT, session, "0#", intended);
+				dial(step, Operation.PROVISION, session, "1", System.nanoTime());
+			}
+			long hangUp = System.nanoTime();
+			controlSystem.hangUp(session);
+			long end = System.nanoTime();
+			step.record(Operation.HANG_UP, end - hangUp);
+			step.record(Operation.CALL, end - intended);
+			step.completed.increment();
+			step.lastCompletion.accumulate(end);
+		} finally {
+			controlSystem.closeSession(session);
+		}
+	}
+
+	/***
+	 * method which dials one entry and records how long it took
+	 * 
+	 * @param step
+	 *            the step the latency is recorded in
+	 * @param operation
+	 *            the kind of entry
+	 * @param session
+	 *            the call
+	 * @param entered
+	 *            the entry
+	 * @param from
+	 *            the time the latency is measured from
+	 */
+	private void dial(Step step, Operation operation, CallSession session, String entered, long from) {
+		controlSystem.dial(session, entered);
+		step.record(operation, System.nanoTime() - from);
+	}
+
+	/***
+	 * method which chooses a persona from the mix
+	 * 
+	 * @param percent
+	 *            a random number from 0 to 99
+	 * @return the persona
+	 */
+	private Persona choose(int percent) {
+		if (percent < mix[0]) {
+			return Persona.DEPOSITOR;
+		} else if (percent < mix[0] + mix[1]) {
+			return Persona.OWNER;
+		} else {
+			return Persona.ADMIN;
+		}
+	}
+
+	/***
+	 * method which prints the percentiles of every kind of entry of a step
+	 * 
+	 * @param out
+	 *            the stream that is printed to
+	 * @param step
+	 *            the step
+	 */
+	private static void printStep(PrintStream out, Step step) {
+		out.printf("%nrate %d calls/s: completed %.1f calls/s, at most %d calls in flight%n", step.rate,
+				step.getThroughput(), step.maxInFlight.get());
+		out.printf("%-14s %10s %12s %12s %12s %12s%n", "operation", "count", "p50 us", "p99 us", "p99.9 us",
+				"max us");
+		for (Operation operation : Operation.values()) {
+			Histogram latencies = step.latencies[operation.ordinal()];
+			if (latencies.getTotalCount() == 0) {
+				continue;
+			}
+			out.printf("%-14s %10d %12.1f %12.1f %12.1f %12.1f%n", operation, latencies.getTotalCount(),
+					latencies.getValueAtPercentile(50) / NANOS_PER_MICRO,
+					latencies.getValueAtPercentile(99) / NANOS_PER_MICRO,
+					latencies.getValueAtPercentile(99.9) / NANOS_PER_MICRO, latencies.getMaxValue() / NANOS_PER_MICRO);
+		}
+	}
+
+	/***
+	 * method which prints how the finished calls and their latencies follow the
+	 * offered rate
+	 * 
+	 * @param out
+	 *            the stream that is printed to
+	 * @param steps
+	 *            the steps, by rising rate
+	 */
+	private static void printCurve(PrintStream out, List<Step> steps) {
+		out.printf("%n%12s %12s %10s %12s %12s %12s%n", "offered/s", "completed/s", "in flight", "call p50 us",
+				"call p99 us", "call p99.9 us");
+		for (Step step : steps) {
+			Histogram calls = step.latencies[Operation.CALL.ordinal()];
+			out.printf("%12d %12.1f %10d %12.1f %12.1f %12.1f%n", step.rate, step.getThroughput(), step.maxInFlight.get(),
+					calls.getValueAtPercentile(50) / NANOS_PER_MICRO, calls.getValueAtPercentile(99) / NANOS_PER_MICRO,
+					calls.getValueAtPercentile(99.9) / NANOS_PER_MICRO);
+		}
+	}
+
+	/***
+	 * method which writes the percentile distribution of every kind of entry of a
+	 * step in the HdrHistogram format, in microseconds
+	 * 
+	 * @param report
+	 *            the directory the distributions are written to
+	 * @param step
+	 *            the step
+	 * @throws FileNotFoundException
+	 *             if a distribution cannot be written
+	 */
+	private static void writeDistributions(File report, Step step) throws FileNotFoundException {
+		for (Operation operation : Operation.values()) {
+			Histogram latencies = step.latencies[operation.ordinal()];
+			if (latencies.getTotalCount() == 0) {
+				continue;
+			}
+			File file = new File(report, step.rate + "-" + operation.name().toLowerCase() + ".hgrm");
+			try (PrintStream out = new PrintStream(file)) {
+				latencies.outputPercentileDistribution(out, NANOS_PER_MICRO);
+			}
+		}
+	}
+
+	/***
+	 * method which reads a list of numbers separated by commas
+	 * 
+	 * @param list
+	 *            the list
+	 * @return the numbers
+	 */
+	private static int[] parseList(String list) {
+		String[] parts = list.split(",");
+		int[] numbers = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			numbers[i] = Integer.parseInt(parts[i].trim());
+		}
+		return numbers;
+	}
+}
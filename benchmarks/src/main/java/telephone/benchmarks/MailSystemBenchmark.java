@@ -0,0 +1,87 @@
+package telephone.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import telephone.MailSystem;
+import telephone.Mailbox;
+
+/***
+ * Class which measures finding and adding mailboxes in a mail system that
+ * already has many mailboxes.
+ *
+ * @author James Nguyen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MailSystemBenchmark {
+	private static final int ADDED = 10000;// the number of mailboxes added by one invocation
+	@Param({ "100000", "1000000" })
+	private int mailboxes;// the number of mailboxes in the mail system
+	private MailSystem mailSystem;// the mail system that is measured
+
+	/***
+	 * Class which is the extension each thread looks up next
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int extension;// the extension that is looked up next
+	}
+
+	/***
+	 * method which fills the mail system with mailboxes
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() {
+		mailSystem = new MailSystem();
+		for (int i = 0; i < mailboxes; i++) {
+			mailSystem.addNewMailbox();
+		}
+	}
+
+	/***
+	 * method which finds mailboxes all through the mail system
+	 * 
+	 * @param cursor
+	 *            the extension this thread looks up next
+	 * @return the mailbox that was found
+	 */
+	@Benchmark
+	public Mailbox findMailbox(Cursor cursor) {
+		cursor.extension = (cursor.extension + 7919) % mailboxes;
+		return mailSystem.findMailbox(cursor.extension + 1);
+	}
+
+	/***
+	 * method which adds mailboxes to the mail system
+	 * 
+	 * @return the extension of the last mailbox that was added
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ADDED)
+	public int addNewMailbox() {
+		int extension = 0;
+		for (int i = 0; i < ADDED; i++) {
+			extension = mailSystem.addNewMailbox();
+		}
+		return extension;
+	}
+}
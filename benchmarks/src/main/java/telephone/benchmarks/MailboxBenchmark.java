@@ -0,0 +1,87 @@
+package telephone.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import telephone.Mailbox;
+import telephone.Message;
+
+/***
+ * Class which measures the ways the owner of a mailbox saves and deletes
+ * messages when the mailbox already holds many new messages. Every benchmark
+ * leaves the mailbox with as many messages as it found it.
+ *
+ * @author James Nguyen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MailboxBenchmark {
+	@Param({ "10", "10000" })
+	private int depth;// the number of new messages in the mailbox
+	private Mailbox mailbox;// the mailbox that is measured
+
+	/***
+	 * method which fills the mailbox with new messages
+	 */
+	@Setup
+	public void setUp() {
+		mailbox = new Mailbox("0000");
+		for (int i = 0; i < depth; i++) {
+			mailbox.addMessage(new Message("Message " + i));
+		}
+	}
+
+	/***
+	 * method which leaves a message, saves it and then deletes it from the saved
+	 * messages
+	 * 
+	 * @return the number of saved messages
+	 */
+	@Benchmark
+	public int saveAndDelete() {
+		mailbox.addMessage(new Message("Please call me back"));
+		mailbox.saveCurrentMessage();
+		mailbox.removeSavedMessage(0);
+		return mailbox.getSavedSize();
+	}
+
+	/***
+	 * method which leaves a message and deletes it as the current message
+	 * 
+	 * @return the message that was deleted
+	 */
+	@Benchmark
+	public Message deleteCurrent() {
+		mailbox.addMessage(new Message("Please call me back"));
+		return mailbox.deleteCurrentMessage();
+	}
+
+	/***
+	 * method which deletes a message from the middle of the new messages and leaves
+	 * another one
+	 * 
+	 * @return the number of new messages
+	 */
+	@Benchmark
+	public int deleteMiddle() {
+		mailbox.removeNewMessage(depth / 2);
+		mailbox.addMessage(new Message("Please call me back"));
+		return mailbox.getNewSize();
+	}
+}
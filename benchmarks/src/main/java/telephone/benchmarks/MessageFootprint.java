@@ -0,0 +1,123 @@
+package telephone.benchmarks;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import telephone.Message;
+
+/***
+ * Class which compares the memory that message bodies take as Strings on the
+ * heap with the memory they take as messages whose bodies are in the message
+ * arena. The same bodies are created both ways, and the heap and the direct
+ * memory in use are measured after a full collection before and after each.
+ * The options are given as name=value:
+ *
+ * <pre>
+ * messages=1000000   bodies created each way
+ * length=80          characters of each body
+ * </pre>
+ *
+ * Run it with a heap large enough for the Strings and with the collector in
+ * its default settings, for example java -Xmx2g -cp benchmarks.jar
+ * telephone.benchmarks.MessageFootprint.
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageFootprint {
+	private static final String WORDS = "abcdefghijklmnopqrstuvwxyz      ";// the characters bodies are made of
+
+	/***
+	 * method which measures both ways of keeping the bodies and prints the bytes
+	 * per message
+	 *
+	 * @param args
+	 *            the options, as name=value
+	 */
+	public static void main(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (equals < 0) {
+				throw new IllegalArgumentException("Options are given as name=value: " + arg);
+			}
+			options.put(arg.substring(0, equals).replaceFirst("^--", ""), arg.substring(equals + 1));
+		}
+		int messages = Integer.parseInt(options.getOrDefault("messages", "1000000"));
+		int length = Integer.parseInt(options.getOrDefault("length", "80"));
+
+		long heap = usedHeap();
+		String[] strings = new String[messages];
+		SplittableRandom random = new SplittableRandom(1);
+		for (int i = 0; i < messages; i++) {
+			strings[i] = body(random, length);
+		}
+		long stringHeap = usedHeap() - heap;
+		Reference.reachabilityFence(strings);
+		strings = null;
+
+		heap = usedHeap();
+		long direct = usedDirect();
+		Message[] arena = new Message[messages];
+		random = new SplittableRandom(1);
+		for (int i = 0; i < messages; i++) {
+			arena[i] = new Message(body(random, length));
+		}
+		long arenaHeap = usedHeap() - heap;
+		long arenaDirect = usedDirect() - direct;
+		Reference.reachabilityFence(arena);
+
+		System.out.printf("%,d bodies of %d characters%n", messages, length);
+		System.out.printf("%-10s %16s %16s%n", "", "heap B/body", "direct B/body");
+		System.out.printf("%-10s %16.1f %16.1f%n", "String", (double) stringHeap / messages, 0.0);
+		System.out.printf("%-10s %16.1f %16.1f%n", "Message", (double) arenaHeap / messages,
+				(double) arenaDirect / messages);
+	}
+
+	/***
+	 * method which creates a random body
+	 *
+	 * @param random
+	 *            the random numbers the body is made from
+	 * @param length
+	 *            the characters of the body
+	 * @return the body
+	 */
+	private static String body(SplittableRandom random, int length) {
+		char[] body = new char[length];
+		for (int i = 0; i < length; i++) {
+			body[i] = WORDS.charAt(random.nextInt(WORDS.length()));
+		}
+		return new String(body);
+	}
+
+	/***
+	 * method which collects the garbage and returns the bytes of heap still in use
+	 *
+	 * @return the used heap
+	 */
+	private static long usedHeap() {
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/***
+	 * method which returns the bytes of direct memory in use
+	 *
+	 * @return the used direct memory
+	 */
+	private static long usedDirect() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,125 @@
+package telephone.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import telephone.MailSystem;
+import telephone.MailboxQuota;
+import telephone.Message;
+import telephone.MessageIndex;
+
+/***
+ * Class which measures searching the index of a mail system that holds many
+ * messages, for a common word, for two words and for words in one mailbox. The
+ * words of the messages are picked so that a few are in many messages and most
+ * are in few.
+ *
+ * @author James Nguyen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MessageIndexBenchmark {
+	private static final int MAILBOXES = 10000;// the number of mailboxes the messages are left in
+	private static final int WORDS = 5000;// the number of different words in the messages
+	private static final int LIMIT = 20;// the most messages a search returns
+	@Param({ "100000", "1000000" })
+	private int messages;// the number of messages in the mail system
+	private MailSystem mailSystem;// the mail system whose messages are searched
+	private MessageIndex index;// the index that is measured
+
+	/***
+	 * Class which is the mailbox each thread searches next
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int extension;// the extension that is searched next
+	}
+
+	/***
+	 * method which fills the mail system with messages and indexes them as they
+	 * are left
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		mailSystem = new MailSystem();
+		mailSystem.setQuota(MailboxQuota.UNLIMITED);
+		index = new MessageIndex(mailSystem);
+		mailSystem.addMailboxListener(index);
+		for (int i = 0; i < MAILBOXES; i++) {
+			mailSystem.addNewMailbox();
+		}
+		Random random = new Random(42);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < messages; i++) {
+			text.setLength(0);
+			int words = 4 + random.nextInt(12);
+			for (int w = 0; w < words; w++) {
+				text.append("word").append(word(random)).append(' ');
+			}
+			mailSystem.findMailbox(1 + random.nextInt(MAILBOXES)).addMessage(new Message(text.toString()));
+		}
+	}
+
+	/***
+	 * method which searches every mailbox for the most common word
+	 * 
+	 * @return the ids of the messages that were found
+	 */
+	@Benchmark
+	public long[] searchCommonWord() {
+		return index.search("word0", LIMIT);
+	}
+
+	/***
+	 * method which searches every mailbox for two common words
+	 * 
+	 * @return the ids of the messages that were found
+	 */
+	@Benchmark
+	public long[] searchTwoWords() {
+		return index.search("word1 word2", LIMIT);
+	}
+
+	/***
+	 * method which searches mailboxes all through the mail system for a common
+	 * word
+	 * 
+	 * @param cursor
+	 *            the mailbox this thread searches next
+	 * @return the ids of the messages that were found
+	 */
+	@Benchmark
+	public long[] searchMailbox(Cursor cursor) {
+		cursor.extension = (cursor.extension + 7919) % MAILBOXES;
+		return index.search(mailSystem.findMailbox(cursor.extension + 1), "word0", LIMIT);
+	}
+
+	/***
+	 * method which picks a word, the first words far more often than the last
+	 * 
+	 * @param random
+	 *            the source of random numbers
+	 * @return the number of the word
+	 */
+	private static int word(Random random) {
+		return (int) Math.min(WORDS - 1, Math.abs(random.nextGaussian()) * WORDS / 8);
+	}
+}
@@ -0,0 +1,97 @@
+package telephone.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import telephone.Message;
+import telephone.MessageQueue;
+
+/***
+ * Class which measures the message queue when it already holds many messages.
+ * Every benchmark leaves the queue as deep as it found it.
+ *
+ * @author James Nguyen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageQueueBenchmark {
+	@Param({ "10000", "100000" })
+	private int depth;// the number of messages in the queue
+	private MessageQueue queue;// the queue that is measured
+	private Message message;// the message that is added and removed
+	private int index;// the index that is read next
+
+	/***
+	 * method which fills the queue
+	 */
+	@Setup
+	public void setUp() {
+		queue = new MessageQueue();
+		for (int i = 0; i < depth; i++) {
+			queue.addMessage(new Message("Message " + i));
+		}
+		message = new Message("Please call me back");
+	}
+
+	/***
+	 * method which adds the newest message and removes it again
+	 * 
+	 * @return the message that was removed
+	 */
+	@Benchmark
+	public Message addAndRemove() {
+		queue.addMessage(message);
+		return queue.remove();
+	}
+
+	/***
+	 * method which looks at the newest message
+	 * 
+	 * @return the newest message
+	 */
+	@Benchmark
+	public Message peek() {
+		return queue.peek();
+	}
+
+	/***
+	 * method which reads messages all through the queue
+	 * 
+	 * @return the message that was read
+	 */
+	@Benchmark
+	public Message getMessage() {
+		index = (index + 7919) % depth;
+		return queue.getMessage(index);
+	}
+
+	/***
+	 * method which removes a message from the middle of the queue and adds it back
+	 * as the newest message
+	 * 
+	 * @return the message that was moved
+	 */
+	@Benchmark
+	public Message removeMiddle() {
+		Message middle = queue.getMessage(depth / 2);
+		queue.remove(depth / 2);
+		queue.addMessage(middle);
+		return middle;
+	}
+}
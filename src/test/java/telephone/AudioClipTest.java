@@ -0,0 +1,70 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/***
+ * Class which checks that the file of a clip deleted by its owner is kept until
+ * the last call playing it lets go, and that a clip can no longer be held once
+ * its file is gone
+ *
+ * @author James Nguyen
+ *
+ */
+public class AudioClipTest {
+	private static final byte[] AUDIO = { 1, 2, 3, 4, 5, 6, 7, 8 };// the bytes of the clips under test
+	@TempDir
+	File directory;// the directory of the audio files, emptied after every test
+
+	@Test
+	public void unheldClipIsDeletedAtOnce() throws IOException {
+		AudioClip clip = clip("unheld.pcm");
+		clip.delete();
+		assertFalse(clip.getFile().exists());
+		assertFalse(clip.retain());
+		clip.delete();
+	}
+
+	@Test
+	public void heldClipIsDeletedByTheLastRelease() throws IOException {
+		AudioClip clip = clip("held.pcm");
+		assertTrue(clip.retain());
+		assertTrue(clip.retain());
+		clip.delete();
+		clip.delete();
+		assertTrue(clip.getFile().exists());
+		ByteArrayOutputStream played = new ByteArrayOutputStream();
+		clip.transferTo(Channels.newChannel(played));
+		assertArrayEquals(AUDIO, played.toByteArray());
+		clip.release();
+		assertTrue(clip.getFile().exists());
+		clip.release();
+		assertFalse(clip.getFile().exists());
+		assertFalse(clip.retain());
+	}
+
+	/***
+	 * method which writes the audio to a file and creates its clip
+	 *
+	 * @param name
+	 *            the name of the file
+	 * @return the clip
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	private AudioClip clip(String name) throws IOException {
+		File file = new File(directory, name);
+		Files.write(file.toPath(), AUDIO);
+		return new AudioClip(file, AUDIO.length);
+	}
+}
@@ -0,0 +1,178 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that several calls logged in to the same mailbox at once
+ * cannot save or delete one new message more than once, and that a message
+ * chosen by a number another call made stale is not deleted
+ *
+ * @author James Nguyen
+ *
+ */
+public class ControlSystemTest {
+	private static final int SESSIONS = 4;// the calls logged in to the mailbox at once
+	private static final int ROUNDS = 200;// the messages the calls race for
+
+	@Test
+	public void concurrentSavesTakeTheMessageOnce() throws Exception {
+		ControlSystem controlSystem = new ControlSystem();
+		Mailbox mailbox = controlSystem.getMailSystem().findMailbox(controlSystem.getMailSystem().addNewMailbox());
+		List<CallSession> owners = loggedIn(controlSystem, SESSIONS);
+		for (int round = 1; round <= ROUNDS; round++) {
+			leaveMessage(controlSystem, "message " + round);
+			race(controlSystem, owners, "2");
+			assertEquals(0, mailbox.getNewSize());
+			assertEquals(round, mailbox.getSavedSize());
+			assertEquals(round, mailbox.getMessageCount());
+		}
+	}
+
+	@Test
+	public void concurrentDeletesTakeTheMessageOnce() throws Exception {
+		ControlSystem controlSystem = new ControlSystem();
+		Mailbox mailbox = controlSystem.getMailSystem().findMailbox(controlSystem.getMailSystem().addNewMailbox());
+		List<CallSession> owners = loggedIn(controlSystem, SESSIONS);
+		for (int round = 1; round <= ROUNDS; round++) {
+			leaveMessage(controlSystem, "message " + round);
+			race(controlSystem, owners, "3");
+			assertEquals(0, mailbox.getNewSize());
+			assertEquals(0, mailbox.getSavedSize());
+			assertEquals(0, mailbox.getMessageCount());
+			assertEquals(0, mailbox.getByteCount());
+		}
+	}
+
+	@Test
+	public void staleNumberIsRejected() {
+		ControlSystem controlSystem = new ControlSystem();
+		Mailbox mailbox = controlSystem.getMailSystem().findMailbox(controlSystem.getMailSystem().addNewMailbox());
+		leaveMessage(controlSystem, "first");
+		leaveMessage(controlSystem, "second");
+		List<CallSession> owners = loggedIn(controlSystem, 2);
+		// both calls list the two messages, and the first call deletes the second one
+		for (CallSession owner : owners) {
+			controlSystem.dial(owner, "4");
+		}
+		controlSystem.dial(owners.get(0), "2");
+		assertEquals(1, mailbox.getMessageCount());
+		// the second call still chooses number 2, which no longer exists
+		controlSystem.dial(owners.get(1), "2");
+		assertEquals(1, mailbox.getNewSize());
+		assertEquals(1, mailbox.getMessageCount());
+		assertEquals("second", mailbox.getNewMessage(0).getText());
+		controlSystem.dial(owners.get(1), "1");
+		assertEquals(0, mailbox.getNewSize());
+		assertEquals(0, mailbox.getMessageCount());
+		assertEquals(0, mailbox.getByteCount());
+	}
+
+	/***
+	 * method which opens calls that are logged in to mailbox 1 and are at its
+	 * message menu
+	 * 
+	 * @param controlSystem
+	 *            the control system
+	 * @param count
+	 *            the number of calls
+	 * @return the calls
+	 */
+	private static List<CallSession> loggedIn(ControlSystem controlSystem, int count) {
+		List<CallSession> sessions = new ArrayList<CallSession>();
+		for (int i = 0; i < count; i++) {
+			CallSession session = controlSystem.openSession(new Silent());
+			for (String entered : new String[] { "1#", "0000", "1" }) {
+				controlSystem.dial(session, entered);
+			}
+			sessions.add(session);
+		}
+		return sessions;
+	}
+
+	/***
+	 * method which leaves a message in mailbox 1 on a call of its own
+	 * 
+	 * @param controlSystem
+	 *            the control system
+	 * @param text
+	 *            the text of the message
+	 */
+	private static void leaveMessage(ControlSystem controlSystem, String text) {
+		CallSession caller = controlSystem.openSession(new Silent());
+		for (String entered : new String[] { "1#", text, "H" }) {
+			controlSystem.dial(caller, entered);
+		}
+		controlSystem.closeSession(caller);
+	}
+
+	/***
+	 * method which dials the same entry on every call at once
+	 * 
+	 * @param controlSystem
+	 *            the control system
+	 * @param sessions
+	 *            the calls
+	 * @param entered
+	 *            the entry
+	 * @throws Exception
+	 *             if a call failed
+	 */
+	private static void race(ControlSystem controlSystem, List<CallSession> sessions, String entered)
+			throws Exception {
+		CyclicBarrier start = new CyclicBarrier(sessions.size());
+		List<Throwable> failures = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (CallSession session : sessions) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					controlSystem.dial(session, entered);
+				} catch (Throwable e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (!failures.isEmpty()) {
+			throw new AssertionError("A call failed", failures.get(0));
+		}
+	}
+
+	/***
+	 * Class which is the output of a call that shows nothing
+	 */
+	static class Silent implements CallOutput {
+
+		@Override
+		public void speak(String text) {
+		}
+
+		@Override
+		public void setSize(int width, int height) {
+		}
+
+		@Override
+		public void showPopUp(String title, String text) {
+		}
+
+		@Override
+		public void showMessages(Mailbox mailbox) {
+		}
+
+		@Override
+		public void play(AudioClip clip) {
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that waiting on a deposit fence waits for the callers
+ * inside it, and not for the callers that enter after the wait started
+ *
+ * @author James Nguyen
+ *
+ */
+public class DepositFenceTest {
+
+	@Test
+	public void emptyFenceDoesNotWait() {
+		DepositFence fence = new DepositFence();
+		fence.exit(fence.enter());
+		fence.await();
+		fence.await();
+	}
+
+	@Test
+	public void waitsForCallersInside() throws InterruptedException {
+		DepositFence fence = new DepositFence();
+		long epoch = fence.enter();
+		CountDownLatch done = new CountDownLatch(1);
+		Thread waiter = new Thread(() -> {
+			fence.await();
+			done.countDown();
+		});
+		waiter.start();
+		assertFalse(done.await(100, TimeUnit.MILLISECONDS), "The fence did not wait for its caller");
+		// a caller entering now is in the new epoch and is not waited for
+		long later = fence.enter();
+		fence.exit(epoch);
+		assertTrue(done.await(10, TimeUnit.SECONDS), "The fence kept waiting after its caller left");
+		waiter.join();
+		fence.exit(later);
+		fence.await();
+	}
+}
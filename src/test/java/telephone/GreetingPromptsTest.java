@@ -0,0 +1,56 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that the greeting prompts of a mailbox are built once,
+ * built again after its greetings change, and that the cache keeps no more
+ * mailboxes than its slots however many mailboxes are reached
+ *
+ * @author James Nguyen
+ *
+ */
+public class GreetingPromptsTest {
+
+	@Test
+	public void promptsAreKeptUntilGreetingsChange() {
+		MailSystem mailSystem = new MailSystem();
+		Mailbox mailbox = mailSystem.findMailbox(mailSystem.addNewMailbox());
+		GreetingPrompts prompts = new GreetingPrompts(16);
+		String arrival = prompts.getArrival(mailbox);
+		assertSame(arrival, prompts.getArrival(mailbox));
+		mailbox.changeCurrentGreeting("Hello from the test.");
+		prompts.greetingsChanged(mailbox);
+		assertTrue(prompts.getArrival(mailbox).contains("Hello from the test."));
+	}
+
+	@Test
+	public void cacheHoldsNoMoreThanItsSlots() {
+		MailSystem mailSystem = new MailSystem();
+		GreetingPrompts prompts = new GreetingPrompts(16);
+		for (int i = 0; i < 100; i++) {
+			prompts.getArrival(mailSystem.findMailbox(mailSystem.addNewMailbox()));
+		}
+		assertEquals(16, prompts.size());
+	}
+
+	@Test
+	public void mailboxesSharingASlotGetTheirOwnPrompts() {
+		MailSystem mailSystem = new MailSystem();
+		GreetingPrompts prompts = new GreetingPrompts(1);
+		Mailbox first = mailSystem.findMailbox(mailSystem.addNewMailbox());
+		Mailbox second = mailSystem.findMailbox(mailSystem.addNewMailbox());
+		first.changeCurrentGreeting("First greeting.");
+		second.changeCurrentGreeting("Second greeting.");
+		assertTrue(prompts.getArrival(first).contains("First greeting."));
+		assertTrue(prompts.getArrival(second).contains("Second greeting."));
+		// the second mailbox took the slot, so changing the first one leaves it alone
+		prompts.greetingsChanged(first);
+		assertEquals(1, prompts.size());
+		assertTrue(prompts.getArrival(first).contains("First greeting."));
+	}
+}
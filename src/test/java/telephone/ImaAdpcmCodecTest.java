@@ -0,0 +1,140 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that the codec packs two samples into a byte, keeps its
+ * prediction between chunks, and decodes what it encoded closely enough to be
+ * heard as the same audio
+ *
+ * @author James Nguyen
+ *
+ */
+public class ImaAdpcmCodecTest {
+	private static final int SAMPLES = 8000;// one second of audio at 8 kHz
+
+	@Test
+	public void packsTwoSamplesPerByte() {
+		ByteBuffer pcm = pcm(new short[] { 1, 2, 3, 4, 5 });
+		ByteBuffer adpcm = ByteBuffer.allocate(8);
+		new ImaAdpcmCodec().encode(pcm, adpcm);
+		assertEquals(2, adpcm.position());
+		// the fifth sample is left over for the next chunk or for finish
+		assertEquals(2, pcm.remaining());
+	}
+
+	@Test
+	public void finishRepeatsTheLastSample() {
+		ImaAdpcmCodec codec = new ImaAdpcmCodec();
+		ByteBuffer pcm = pcm(new short[] { 1000, 2000, 3000 });
+		ByteBuffer adpcm = ByteBuffer.allocate(8);
+		codec.encode(pcm, adpcm);
+		codec.finish(pcm, adpcm);
+		assertEquals(2, adpcm.position());
+		assertEquals(0, pcm.remaining());
+		codec.finish(pcm, adpcm);
+		assertEquals(2, adpcm.position());
+	}
+
+	@Test
+	public void silenceStaysSilent() {
+		short[] decoded = roundTrip(new short[SAMPLES]);
+		assertArrayEquals(new short[SAMPLES], decoded);
+	}
+
+	@Test
+	public void chunksEncodeLikeOneBuffer() {
+		short[] samples = tone(SAMPLES, 440, 8000);
+		ByteBuffer whole = ByteBuffer.allocate(SAMPLES / 2);
+		new ImaAdpcmCodec().encode(pcm(samples), whole);
+
+		ImaAdpcmCodec codec = new ImaAdpcmCodec();
+		ByteBuffer chunked = ByteBuffer.allocate(SAMPLES / 2);
+		ByteBuffer source = pcm(samples);
+		ByteBuffer pcm = ByteBuffer.allocate(256);
+		// chunks of 51 samples leave one behind every other time, as reads from a file do
+		while (source.hasRemaining()) {
+			int length = Math.min(102, source.remaining());
+			pcm.put(source.slice(source.position(), length));
+			source.position(source.position() + length);
+			pcm.flip();
+			codec.encode(pcm, chunked);
+			pcm.compact();
+		}
+		assertEquals(0, pcm.position());
+		assertArrayEquals(whole.array(), chunked.array());
+	}
+
+	@Test
+	public void decodesCloseToTheOriginal() {
+		short[] samples = tone(SAMPLES, 440, 8000);
+		short[] decoded = roundTrip(samples);
+		double signal = 0;
+		double noise = 0;
+		// the first samples are skipped while the step adapts to the level
+		for (int i = 200; i < SAMPLES; i++) {
+			signal += (double) samples[i] * samples[i];
+			noise += (double) (samples[i] - decoded[i]) * (samples[i] - decoded[i]);
+		}
+		double snr = 10 * Math.log10(signal / noise);
+		assertTrue(snr > 20, "The decoded audio is too noisy: " + snr + " dB");
+	}
+
+	/***
+	 * method which encodes samples and decodes them again with new codecs
+	 *
+	 * @param samples
+	 *            the samples, an even number of them
+	 * @return the decoded samples
+	 */
+	private static short[] roundTrip(short[] samples) {
+		ByteBuffer adpcm = ByteBuffer.allocate(samples.length / 2);
+		new ImaAdpcmCodec().encode(pcm(samples), adpcm);
+		adpcm.flip();
+		ByteBuffer pcm = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+		new ImaAdpcmCodec().decode(adpcm, pcm);
+		pcm.flip();
+		short[] decoded = new short[samples.length];
+		pcm.asShortBuffer().get(decoded);
+		return decoded;
+	}
+
+	/***
+	 * method which writes samples as 16 bit little endian PCM
+	 *
+	 * @param samples
+	 *            the samples
+	 * @return the PCM, ready to be read
+	 */
+	private static ByteBuffer pcm(short[] samples) {
+		ByteBuffer pcm = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+		pcm.asShortBuffer().put(samples);
+		return pcm;
+	}
+
+	/***
+	 * method which creates a sine tone
+	 *
+	 * @param count
+	 *            the number of samples
+	 * @param frequency
+	 *            the frequency of the tone in Hz
+	 * @param amplitude
+	 *            the largest sample
+	 * @return the samples at 8 kHz
+	 */
+	private static short[] tone(int count, double frequency, int amplitude) {
+		short[] samples = new short[count];
+		for (int i = 0; i < count; i++) {
+			samples[i] = (short) Math.round(amplitude * Math.sin(2 * Math.PI * frequency * i / 8000));
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,262 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks a line server on a free local port: several lines leave
+ * messages at once and every call is ended when its line hangs up, a line whose
+ * calls are stuck is no longer read, and a line whose call fails is
+ * disconnected while the other lines carry on
+ *
+ * @author James Nguyen
+ *
+ */
+public class LineServerTest {
+	private static final int LINES = 8;// the lines connected at once
+	private static final long TIMEOUT_MILLIS = 10_000;// the longest a line waits for the server
+	private static final int MAX_FLOODED = 64 << 20;// the most bytes a line sends to a server that stopped reading
+	private ControlSystem controlSystem;// the control system the lines call
+	private LineServer server;// the server under test
+
+	@BeforeEach
+	public void start() throws IOException {
+		controlSystem = new ControlSystem();
+		for (int i = 0; i < LINES; i++) {
+			controlSystem.getMailSystem().addNewMailbox();
+		}
+		server = new LineServer(controlSystem, 2);
+		server.start(0);
+	}
+
+	@AfterEach
+	public void stop() throws InterruptedException {
+		server.close();
+	}
+
+	@Test
+	public void concurrentLinesLeaveMessages() throws Exception {
+		List<Socket> sockets = new ArrayList<Socket>();
+		for (int i = 0; i < LINES; i++) {
+			sockets.add(connect());
+		}
+		CyclicBarrier start = new CyclicBarrier(LINES);
+		List<Throwable> failures = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < LINES; i++) {
+			Socket socket = sockets.get(i);
+			int extension = i + 1;
+			Thread thread = new Thread(() -> {
+				try (socket) {
+					start.await();
+					send(socket, extension + "#\nmessage " + extension + "\nH\n");
+					// hang up the line, and wait for the server to end the call
+					socket.shutdownOutput();
+					assertEquals(-1, readToEnd(socket));
+				} catch (Throwable e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(List.of(), failures);
+		await(() -> server.getOpenLines() == 0);
+		assertEquals(0, callsInProgress());
+		for (int extension = 1; extension <= LINES; extension++) {
+			Mailbox mailbox = controlSystem.getMailSystem().findMailbox(extension);
+			assertEquals(1, mailbox.getNewSize());
+			assertEquals("message " + extension, mailbox.getNewMessage(0).getText());
+		}
+	}
+
+	@Test
+	public void stuckLineIsNoLongerRead() throws Exception {
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		controlSystem.getMailSystem().addMailboxListener(new MailboxListener() {
+			@Override
+			public void messageAdded(Mailbox mailbox, Message message) {
+				if (message.getText().equals("stuck")) {
+					entered.countDown();
+					try {
+						release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		});
+		try (SocketChannel channel = SocketChannel.open(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+			channel.write(ByteBuffer.wrap("1#\nstuck\nH\n".getBytes(StandardCharsets.UTF_8)));
+			assertTrue(entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+			// entries that cannot run while the call is stuck, until the socket takes no more
+			channel.configureBlocking(false);
+			ByteBuffer flood = ByteBuffer.wrap(("x".repeat(4000) + "\n").repeat(256).getBytes(StandardCharsets.UTF_8));
+			long sent = 0;
+			int written;
+			while ((written = channel.write(flood)) > 0 || sent == 0) {
+				sent += written;
+				assertTrue(sent < MAX_FLOODED, "The server kept reading a line whose call is stuck");
+				if (!flood.hasRemaining()) {
+					flood.rewind();
+				}
+			}
+			// the socket may still take a little as its window opens, but not what a reader would drain
+			long stalled = sent;
+			long end = System.currentTimeMillis() + 500;
+			while (System.currentTimeMillis() < end) {
+				written = channel.write(flood);
+				sent += written;
+				if (!flood.hasRemaining()) {
+					flood.rewind();
+				} else if (written == 0) {
+					Thread.sleep(10);
+				}
+			}
+			assertTrue(sent - stalled < stalled, "The server read a line whose call is stuck");
+			release.countDown();
+			channel.configureBlocking(true);
+			while (flood.hasRemaining()) {
+				channel.write(flood);
+			}
+			channel.write(ByteBuffer.wrap("1#\nafter\nH\n".getBytes(StandardCharsets.UTF_8)));
+			Mailbox mailbox = controlSystem.getMailSystem().findMailbox(1);
+			await(() -> mailbox.getMessageCount() == 2);
+			assertEquals("after", mailbox.getNewMessage(0).getText());
+		}
+		await(() -> server.getOpenLines() == 0);
+		assertEquals(0, callsInProgress());
+	}
+
+	@Test
+	public void failedLineIsDisconnectedAlone() throws Exception {
+		controlSystem.getMailSystem().addMailboxListener(new MailboxListener() {
+			@Override
+			public void messageAdded(Mailbox mailbox, Message message) {
+				if (message.getText().equals("fail")) {
+					throw new IllegalStateException("The mailbox is broken");
+				}
+			}
+		});
+		try (Socket failing = connect(); Socket working = connect()) {
+			send(working, "2#\nfirst\n");
+			send(failing, "1#\nfail\nH\n");
+			assertEquals(-1, readToEnd(failing), "The line whose call failed was not disconnected");
+			send(working, "H\n2#\nsecond\nH\n");
+			Mailbox mailbox = controlSystem.getMailSystem().findMailbox(2);
+			await(() -> mailbox.getMessageCount() == 2);
+			assertEquals(1, server.getOpenLines());
+			assertEquals(0, controlSystem.getMailSystem().findMailbox(1).getMessageCount());
+		}
+		await(() -> server.getOpenLines() == 0);
+		assertEquals(0, callsInProgress());
+	}
+
+	/***
+	 * method which connects a line to the server, giving up on reads after the
+	 * timeout
+	 *
+	 * @return the socket of the line
+	 * @throws IOException
+	 *             if the line cannot connect
+	 */
+	private Socket connect() throws IOException {
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+		socket.setSoTimeout((int) TIMEOUT_MILLIS);
+		return socket;
+	}
+
+	/***
+	 * method which sends entries on a line
+	 *
+	 * @param socket
+	 *            the socket of the line
+	 * @param entries
+	 *            the entries, each ended by a line break
+	 * @throws IOException
+	 *             if the line fails
+	 */
+	private static void send(Socket socket, String entries) throws IOException {
+		OutputStream out = socket.getOutputStream();
+		out.write(entries.getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+
+	/***
+	 * method which skips what the server sends on a line until it disconnects
+	 *
+	 * @param socket
+	 *            the socket of the line
+	 * @return -1 once the server disconnected, or 0 if it did not before the
+	 *         timeout
+	 * @throws IOException
+	 *             if the line fails
+	 */
+	private static int readToEnd(Socket socket) throws IOException {
+		try {
+			while (socket.getInputStream().read() >= 0) {
+				// skip the prompts
+			}
+			return -1;
+		} catch (SocketTimeoutException e) {
+			return 0;
+		}
+	}
+
+	/***
+	 * method which counts the calls that were started and not yet ended
+	 *
+	 * @return the number of calls in progress
+	 */
+	private long callsInProgress() {
+		long calls = 0;
+		for (CallState state : CallState.values()) {
+			calls += controlSystem.getStateTable().getCallCount(state);
+		}
+		return calls;
+	}
+
+	/***
+	 * method which waits until a condition holds, and fails if it does not
+	 * within the timeout
+	 *
+	 * @param condition
+	 *            the condition
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < end, "The server did not catch up in time");
+			Thread.sleep(10);
+		}
+	}
+}
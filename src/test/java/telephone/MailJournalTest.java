@@ -0,0 +1,140 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/***
+ * Class which checks that an announcement sent to a distribution list writes
+ * its text once to the mail log and to a mail snapshot, however many mailboxes
+ * it is left in, and that the copies read back share one text again, also when
+ * the segments written before them were deleted
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailJournalTest {
+	private static final int MAILBOXES = 300;// the members of the distribution list
+	private static final String TEXT = "announcement ".repeat(80);// the text, about a kilobyte
+	private static final int MOST_BYTES = MAILBOXES * TEXT.length() / 4;// far less than a copy of the text per mailbox
+	@TempDir
+	File directory;// the directory of the log and snapshots, emptied after every test
+
+	@Test
+	public void broadcastTextIsLoggedOnce() throws IOException {
+		MailLog log = open(1 << 20);
+		MailSystem mailSystem = new MailSystem(log);
+		assertEquals(MAILBOXES, mailSystem.broadcast(addList(mailSystem), TEXT));
+		log.close();
+		AtomicLong written = new AtomicLong();
+		log = open(1 << 20);
+		log.read(record -> written.addAndGet(record.remaining()));
+		log.close();
+		assertTrue(written.get() < MOST_BYTES, written.get() + " bytes were logged");
+		log = open(1 << 20);
+		assertShared(new MailSystem(log), 1, MAILBOXES);
+		log.close();
+	}
+
+	@Test
+	public void broadcastIsRecoveredFromLaterSegments() throws IOException {
+		MailLog log = open(4096);
+		MailSystem mailSystem = new MailSystem(log);
+		assertEquals(MAILBOXES, mailSystem.broadcast(addList(mailSystem), TEXT));
+		// as a snapshot would, drop every segment but the last one with records
+		long last = log.roll() - 1;
+		log.deleteSegmentsBefore(last);
+		log.close();
+		log = open(4096);
+		MailSystem recovered = new MailSystem();
+		new MailJournal(recovered, log).recover(last, 0);
+		log.close();
+		int first = MAILBOXES;
+		while (first > 1 && recovered.findMailbox(first - 1) != null
+				&& recovered.findMailbox(first - 1).getNewSize() == 1) {
+			first--;
+		}
+		assertTrue(first > 1, "Every segment was kept");
+		assertShared(recovered, first, MAILBOXES);
+	}
+
+	@Test
+	public void snapshotWritesBroadcastTextOnce() throws IOException {
+		File snapshots = new File(directory, "snapshots");
+		MailLog log = open(1 << 20);
+		MailSnapshot snapshot = new MailSnapshot(snapshots);
+		MailSystem mailSystem = new MailSystem(log, snapshot);
+		assertEquals(MAILBOXES, mailSystem.broadcast(addList(mailSystem), TEXT));
+		snapshot.write(mailSystem, log);
+		log.close();
+		File[] files = snapshots.listFiles();
+		assertEquals(1, files.length);
+		assertTrue(files[0].length() < MOST_BYTES, files[0].length() + " bytes were written");
+		log = open(1 << 20);
+		assertShared(new MailSystem(log, new MailSnapshot(snapshots)), 1, MAILBOXES);
+		log.close();
+	}
+
+	/***
+	 * method which opens the log in the test directory
+	 *
+	 * @param segmentSize
+	 *            the size of every segment file in bytes
+	 * @return the log
+	 * @throws IOException
+	 *             if the log cannot be opened
+	 */
+	private MailLog open(int segmentSize) throws IOException {
+		return new MailLog(new File(directory, "log"), segmentSize, 1000, 0);
+	}
+
+	/***
+	 * method which adds the mailboxes and a distribution list of all of them
+	 *
+	 * @param mailSystem
+	 *            the empty mail system
+	 * @return the distribution list
+	 */
+	private static DistributionList addList(MailSystem mailSystem) {
+		int[] extensions = new int[MAILBOXES];
+		for (int i = 0; i < MAILBOXES; i++) {
+			extensions[i] = mailSystem.addNewMailbox();
+		}
+		return new DistributionList("everyone", extensions);
+	}
+
+	/***
+	 * method which checks that every mailbox in a range holds the announcement,
+	 * and that all of them share the same text
+	 *
+	 * @param mailSystem
+	 *            the mail system that was read back
+	 * @param first
+	 *            the first extension of the range
+	 * @param last
+	 *            the last extension of the range
+	 */
+	private static void assertShared(MailSystem mailSystem, int first, int last) {
+		Message origin = null;
+		for (int extension = first; extension <= last; extension++) {
+			Mailbox mailbox = mailSystem.findMailbox(extension);
+			assertNotNull(mailbox);
+			assertEquals(1, mailbox.getNewSize());
+			Message message = mailbox.getNewMessage(0);
+			assertEquals(TEXT, message.getText());
+			assertNotNull(message.getOrigin());
+			if (origin == null) {
+				origin = message.getOrigin();
+			}
+			assertSame(origin, message.getOrigin());
+		}
+	}
+}
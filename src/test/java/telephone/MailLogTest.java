@@ -0,0 +1,189 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/***
+ * Class which checks that a mail log reads back what was appended across
+ * segments and reopening, drops a torn record at the end of the last segment,
+ * and refuses to read past a damaged record in an earlier segment
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailLogTest {
+	private static final int SEGMENT_SIZE = 64;// small enough that a few records fill a segment
+	@TempDir
+	File directory;// the directory of the log, emptied after every test
+
+	@Test
+	public void readsRecordsAcrossSegmentsAfterReopening() throws IOException {
+		MailLog log = open(1);
+		List<String> written = append(log, 0, 20);
+		log.close();
+		assertEquals(written, read(open(1)));
+		assertTrue(segments().length > 1);
+	}
+
+	@Test
+	public void appendsAfterRecovery() throws IOException {
+		MailLog log = open(4);
+		List<String> written = append(log, 0, 5);
+		log.close();
+		log = open(4);
+		written.addAll(append(log, 5, 5));
+		log.close();
+		assertEquals(written, read(open(4)));
+	}
+
+	@Test
+	public void dropsTornTailOfLastSegment() throws IOException {
+		MailLog log = open(1);
+		List<String> written = append(log, 0, 20);
+		log.close();
+		File[] segments = segments();
+		File last = segments[segments.length - 1];
+		// damage the last record that was written, as a crash while writing it would
+		int end = endOfRecords(last);
+		damage(last, end - 1);
+		written.remove(written.size() - 1);
+		assertEquals(written, read(open(1)));
+		log = open(1);
+		written.addAll(append(log, 20, 1));
+		log.close();
+		assertEquals(written, read(open(1)));
+	}
+
+	@Test
+	public void failsOnDamagedEarlierSegment() throws IOException {
+		MailLog log = open(1);
+		append(log, 0, 20);
+		log.close();
+		File first = segments()[0];
+		damage(first, 10);
+		MailLog reopened = open(1);
+		assertThrows(IOException.class, () -> read(reopened));
+	}
+
+	/***
+	 * method which opens the log in the test directory
+	 *
+	 * @param syncBatch
+	 *            the number of records appended before they are forced to disk
+	 * @return the log
+	 * @throws IOException
+	 *             if the log cannot be opened
+	 */
+	private MailLog open(int syncBatch) throws IOException {
+		return new MailLog(directory, SEGMENT_SIZE, syncBatch, 0);
+	}
+
+	/***
+	 * method which appends numbered records to a log
+	 *
+	 * @param log
+	 *            the log
+	 * @param first
+	 *            the number of the first record
+	 * @param count
+	 *            the number of records
+	 * @return the records that were appended
+	 * @throws IOException
+	 *             if the log cannot be written
+	 */
+	private static List<String> append(MailLog log, int first, int count) throws IOException {
+		List<String> records = new ArrayList<String>();
+		for (int i = first; i < first + count; i++) {
+			String record = "record " + i;
+			log.append(record.getBytes(StandardCharsets.UTF_8));
+			records.add(record);
+		}
+		return records;
+	}
+
+	/***
+	 * method which reads every record of a log and closes it
+	 *
+	 * @param log
+	 *            the log
+	 * @return the records, in the order they were appended
+	 * @throws IOException
+	 *             if the log cannot be read
+	 */
+	private static List<String> read(MailLog log) throws IOException {
+		List<String> records = new ArrayList<String>();
+		try {
+			log.read(record -> records.add(StandardCharsets.UTF_8.decode(record).toString()));
+		} finally {
+			log.close();
+		}
+		return records;
+	}
+
+	/***
+	 * method which finds the segment files of the log
+	 *
+	 * @return the segment files from oldest to newest
+	 */
+	private File[] segments() {
+		File[] segments = directory.listFiles();
+		Arrays.sort(segments);
+		return segments;
+	}
+
+	/***
+	 * method which finds where the records of a segment end, which is where its
+	 * zeroed space starts
+	 *
+	 * @param segment
+	 *            the segment file
+	 * @return the length of the records
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	private static int endOfRecords(File segment) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+			int position = 0;
+			while (position + 8 <= file.length()) {
+				file.seek(position);
+				int length = file.readInt();
+				if (length == 0) {
+					break;
+				}
+				position += 8 + length;
+			}
+			return position;
+		}
+	}
+
+	/***
+	 * method which flips the bits of one byte of a segment file
+	 *
+	 * @param segment
+	 *            the segment file
+	 * @param position
+	 *            the position of the byte
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	private static void damage(File segment, int position) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(position);
+			int b = file.read();
+			file.seek(position);
+			file.write(~b);
+		}
+	}
+}
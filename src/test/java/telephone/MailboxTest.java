@@ -0,0 +1,110 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that a change of a mailbox that its listener fails to take
+ * leaves the messages, counts and bytes of the mailbox as they were
+ *
+ * @author James Nguyen
+ *
+ */
+public class MailboxTest {
+
+	@Test
+	public void failedDeletesKeepTheMessage() {
+		Failing failing = new Failing();
+		Mailbox mailbox = new Mailbox(1, "0000", failing, new DepositFence());
+		Message saved = new Message("saved");
+		Message waiting = new Message("waiting");
+		mailbox.addMessage(saved);
+		mailbox.saveCurrentMessage();
+		mailbox.addMessage(waiting);
+		long bytes = mailbox.getByteCount();
+		failing.failing = true;
+		assertThrows(UncheckedIOException.class, mailbox::deleteCurrentMessage);
+		assertThrows(UncheckedIOException.class, mailbox::removeCurrentMessage);
+		assertThrows(UncheckedIOException.class, () -> mailbox.removeNewMessage(0));
+		assertThrows(UncheckedIOException.class, () -> mailbox.removeSavedMessage(0));
+		assertThrows(UncheckedIOException.class, () -> mailbox.removeMessage(2));
+		assertThrows(UncheckedIOException.class, () -> mailbox.expireMessages(Long.MAX_VALUE, Long.MAX_VALUE));
+		assertEquals(2, mailbox.getMessageCount());
+		assertEquals(bytes, mailbox.getByteCount());
+		assertSame(waiting, mailbox.getNewMessage(0));
+		assertSame(saved, mailbox.getSavedMessage(0));
+		assertEquals("waiting", waiting.getText());
+		assertEquals("saved", saved.getText());
+		failing.failing = false;
+		assertEquals(2, mailbox.expireMessages(Long.MAX_VALUE, Long.MAX_VALUE));
+		assertEquals(0, mailbox.getMessageCount());
+		assertEquals(0, mailbox.getByteCount());
+	}
+
+	@Test
+	public void failedSavesAreUndone() {
+		Failing failing = new Failing();
+		Mailbox mailbox = new Mailbox(1, "0000", failing, new DepositFence());
+		Message first = new Message("first");
+		Message second = new Message("second");
+		mailbox.addMessage(first);
+		mailbox.addMessage(second);
+		failing.failing = true;
+		assertThrows(UncheckedIOException.class, mailbox::saveCurrentMessage);
+		assertEquals(2, mailbox.getNewSize());
+		assertSame(second, mailbox.getNewMessage(0));
+		assertEquals(0, mailbox.getSavedSize());
+		Message outside = new Message("outside");
+		assertThrows(UncheckedIOException.class, () -> mailbox.saveMessage(outside));
+		assertEquals(0, mailbox.getSavedSize());
+		assertEquals(2, mailbox.getMessageCount());
+		failing.failing = false;
+		assertSame(second, mailbox.saveCurrentMessage());
+		assertEquals(1, mailbox.getSavedSize());
+	}
+
+	@Test
+	public void emptyMailboxHasNothingToTake() {
+		Mailbox mailbox = new Mailbox("0000");
+		assertNull(mailbox.saveCurrentMessage());
+		assertNull(mailbox.deleteCurrentMessage());
+		assertNull(mailbox.removeCurrentMessage());
+		assertFalse(mailbox.removeMessage(1));
+		assertEquals(0, mailbox.getMessageCount());
+	}
+
+	/***
+	 * Class which is a mail log that cannot write saves and deletes while it is
+	 * failing
+	 */
+	private static class Failing implements MailboxListener {
+		private boolean failing;// whether saves and deletes fail
+
+		@Override
+		public void messageSaved(Mailbox mailbox, Message message) {
+			fail();
+		}
+
+		@Override
+		public void messageDeleted(Mailbox mailbox, Message message) {
+			fail();
+		}
+
+		/***
+		 * method which fails if the log is failing
+		 */
+		private void fail() {
+			if (failing) {
+				throw new UncheckedIOException(new IOException("The log is full"));
+			}
+		}
+	}
+}
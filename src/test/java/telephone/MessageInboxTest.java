@@ -0,0 +1,135 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that an inbox hands every offered message to its owner
+ * exactly once and in the order each producer offered them, and that a mailbox
+ * counts and logs every message left through its inbox while many callers
+ * leave messages at once and the owner keeps reading it
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageInboxTest {
+	private static final int PRODUCERS = 64;// the threads that offer messages at once
+	private static final int MESSAGES = 2000;// the messages each producer offers
+
+	@Test
+	public void drainIsOldestFirst() {
+		MessageInbox inbox = new MessageInbox();
+		MessageQueue queue = new MessageQueue();
+		assertTrue(inbox.isEmpty());
+		Message first = new Message("first");
+		Message second = new Message("second");
+		inbox.offer(first);
+		inbox.offer(second);
+		inbox.drainTo(queue);
+		assertTrue(inbox.isEmpty());
+		assertEquals(2, queue.getSize());
+		assertEquals(second, queue.getMessage(0));
+		assertEquals(first, queue.getMessage(1));
+	}
+
+	@Test
+	public void concurrentProducersLoseNothing() throws InterruptedException {
+		// the ids of the messages in the order the mailbox told its journal of them
+		ConcurrentLinkedQueue<Long> journal = new ConcurrentLinkedQueue<Long>();
+		Mailbox mailbox = new Mailbox(1, "0000", new MailboxListener() {
+			@Override
+			public void messageAdded(Mailbox mailbox, Message message) {
+				journal.add(message.getId());
+			}
+		}, new DepositFence());
+		// the producer and sequence number of every message, by its id
+		Map<Long, int[]> sent = new HashMap<Long, int[]>();
+		List<List<Message>> messages = new ArrayList<List<Message>>(PRODUCERS);
+		long bytes = 0;
+		for (int producer = 0; producer < PRODUCERS; producer++) {
+			List<Message> own = new ArrayList<Message>(MESSAGES);
+			for (int i = 0; i < MESSAGES; i++) {
+				Message message = new Message("message " + producer + "." + i);
+				own.add(message);
+				sent.put(message.getId(), new int[] { producer, i });
+				bytes += message.getSize();
+			}
+			messages.add(own);
+		}
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> producers = new ArrayList<Thread>(PRODUCERS);
+		List<Message> rejected = new ArrayList<Message>();
+		for (List<Message> own : messages) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (Message message : own) {
+					if (!mailbox.addMessage(message)) {
+						synchronized (rejected) {
+							rejected.add(message);
+						}
+					}
+				}
+			});
+			thread.start();
+			producers.add(thread);
+		}
+		start.countDown();
+		// read the mailbox while the producers are still leaving messages, as its owner does
+		while (producers.stream().anyMatch(Thread::isAlive)) {
+			mailbox.getNewSize();
+			Thread.yield();
+		}
+		for (Thread thread : producers) {
+			thread.join();
+		}
+		assertEquals(List.of(), rejected);
+		assertEquals(PRODUCERS * MESSAGES, mailbox.getNewSize());
+		assertEquals(PRODUCERS * MESSAGES, mailbox.getMessageCount());
+		assertEquals(bytes, mailbox.getByteCount());
+		assertEachOnceInOrder(new ArrayList<Long>(journal), sent);
+		// the new messages are newest first, so walk them from the oldest message
+		List<Long> received = new ArrayList<Long>();
+		for (int i = mailbox.getNewSize() - 1; i >= 0; i--) {
+			received.add(mailbox.getNewMessage(i).getId());
+		}
+		assertEachOnceInOrder(received, sent);
+	}
+
+	/***
+	 * method which checks that every message that was sent is in a list once, and
+	 * that the messages of each producer are in the order it sent them
+	 *
+	 * @param ids
+	 *            the ids of the messages, oldest first
+	 * @param sent
+	 *            the producer and sequence number of every message, by its id
+	 */
+	private static void assertEachOnceInOrder(List<Long> ids, Map<Long, int[]> sent) {
+		Map<Long, int[]> left = new HashMap<Long, int[]>(sent);
+		int[] next = new int[PRODUCERS];
+		for (long id : ids) {
+			int[] origin = left.remove(id);
+			assertNotNull(origin, "A message was there twice");
+			assertEquals(next[origin[0]], origin[1], "A producer's messages were reordered");
+			next[origin[0]]++;
+		}
+		assertTrue(left.isEmpty(), "A message was lost");
+		for (int producer = 0; producer < PRODUCERS; producer++) {
+			assertEquals(MESSAGES, next[producer]);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that the ring of a message queue keeps the newest message
+ * at index 0 while it wraps around, grows and has messages removed from both
+ * sides of the middle
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageQueueTest {
+
+	@Test
+	public void emptyQueue() {
+		MessageQueue queue = new MessageQueue();
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.getSize());
+		assertNull(queue.peek());
+		assertEquals(-1, queue.indexOf(1));
+	}
+
+	@Test
+	public void newestMessageIsFirst() {
+		MessageQueue queue = new MessageQueue();
+		List<Message> messages = messages(100);
+		for (Message message : messages) {
+			queue.addMessage(message);
+		}
+		assertEquals(100, queue.getSize());
+		for (int i = 0; i < 100; i++) {
+			assertSame(messages.get(99 - i), queue.getMessage(i));
+			assertEquals(i, queue.indexOf(messages.get(99 - i).getId()));
+		}
+		assertSame(messages.get(99), queue.peek());
+	}
+
+	@Test
+	public void removeNewestWrapsAround() {
+		MessageQueue queue = new MessageQueue();
+		List<Message> messages = messages(8);
+		// fill and empty the ring more than once, so the head wraps past slot 0
+		for (int round = 0; round < 3; round++) {
+			for (Message message : messages) {
+				queue.addMessage(message);
+			}
+			for (int i = 7; i >= 0; i--) {
+				assertSame(messages.get(i), queue.remove());
+			}
+			assertTrue(queue.isEmpty());
+		}
+	}
+
+	@Test
+	public void growKeepsOrderAfterWrapping() {
+		MessageQueue queue = new MessageQueue();
+		List<Message> messages = messages(20);
+		for (int i = 0; i < 6; i++) {
+			queue.addMessage(messages.get(i));
+		}
+		queue.remove();
+		queue.remove();
+		// the ring is wrapped now; adding more makes it grow twice
+		for (int i = 6; i < 20; i++) {
+			queue.addMessage(messages.get(i));
+		}
+		List<Message> expected = new ArrayList<Message>();
+		for (int i = 19; i >= 6; i--) {
+			expected.add(messages.get(i));
+		}
+		expected.addAll(List.of(messages.get(3), messages.get(2), messages.get(1), messages.get(0)));
+		assertContents(expected, queue);
+	}
+
+	@Test
+	public void removeByIndexMatchesList() {
+		Random random = new Random(42);
+		MessageQueue queue = new MessageQueue();
+		List<Message> expected = new ArrayList<Message>();
+		for (Message message : messages(2000)) {
+			if (!expected.isEmpty() && random.nextInt(3) == 0) {
+				int index = random.nextInt(expected.size());
+				queue.remove(index);
+				expected.remove(index);
+			} else {
+				queue.addMessage(message);
+				expected.add(0, message);
+			}
+		}
+		assertContents(expected, queue);
+	}
+
+	@Test
+	public void removeFromEmptyQueueThrows() {
+		MessageQueue queue = new MessageQueue();
+		assertThrows(IllegalStateException.class, queue::remove);
+		assertThrows(IndexOutOfBoundsException.class, () -> queue.remove(0));
+		queue.addMessage(new Message("only"));
+		assertThrows(IndexOutOfBoundsException.class, () -> queue.remove(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> queue.remove(-1));
+		queue.remove();
+		assertThrows(IllegalStateException.class, queue::remove);
+		assertEquals(0, queue.getSize());
+	}
+
+	/***
+	 * method which checks that a queue holds the messages in the order of a list
+	 *
+	 * @param expected
+	 *            the messages the queue should hold, the newest first
+	 * @param queue
+	 *            the queue
+	 */
+	private static void assertContents(List<Message> expected, MessageQueue queue) {
+		assertEquals(expected.size(), queue.getSize());
+		for (int i = 0; i < expected.size(); i++) {
+			assertSame(expected.get(i), queue.getMessage(i));
+		}
+	}
+
+	/***
+	 * method which creates messages with distinct texts
+	 *
+	 * @param count
+	 *            the number of messages
+	 * @return the messages, oldest first
+	 */
+	private static List<Message> messages(int count) {
+		List<Message> messages = new ArrayList<Message>(count);
+		for (int i = 0; i < count; i++) {
+			messages.add(new Message("message " + i));
+		}
+		return messages;
+	}
+}
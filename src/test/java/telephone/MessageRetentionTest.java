@@ -0,0 +1,80 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that the retention deletes expired messages when the
+ * timer of their mailbox is due, and that a mailbox whose messages cannot be
+ * deleted is counted and tried again instead of being forgotten
+ *
+ * @author James Nguyen
+ *
+ */
+public class MessageRetentionTest {
+	private static final long RETENTION = 60_000;// the milliseconds new messages are kept
+
+	@Test
+	public void expiredMessagesAreDeleted() {
+		MessageRetention retention = new MessageRetention(RETENTION, MessageRetention.FOREVER);
+		MailboxListeners listeners = new MailboxListeners();
+		listeners.add(retention);
+		Mailbox mailbox = new Mailbox(1, "0000", listeners, new DepositFence());
+		long now = System.currentTimeMillis();
+		mailbox.addMessage(new Message(Message.getLastId() + 1, "old", null, now));
+		assertEquals(0, retention.sweep(now + RETENTION - 1000));
+		assertEquals(1, retention.sweep(now + RETENTION + 2000));
+		assertEquals(0, mailbox.getMessageCount());
+		assertEquals(0, retention.getTimerCount());
+		assertNull(retention.getLastFailure());
+	}
+
+	@Test
+	public void failedMailboxIsTriedAgain() {
+		MessageRetention retention = new MessageRetention(RETENTION, MessageRetention.FOREVER);
+		Failing failing = new Failing();
+		MailboxListeners listeners = new MailboxListeners();
+		listeners.add(failing);
+		listeners.add(retention);
+		Mailbox broken = new Mailbox(1, "0000", listeners, new DepositFence());
+		Mailbox working = new Mailbox(2, "0000", listeners, new DepositFence());
+		long now = System.currentTimeMillis();
+		broken.addMessage(new Message(Message.getLastId() + 1, "broken", null, now));
+		working.addMessage(new Message(Message.getLastId() + 1, "working", null, now));
+		failing.mailbox = broken;
+		long due = now + RETENTION + 2000;
+		assertEquals(1, retention.sweep(due));
+		assertEquals(1, retention.getFailureCount());
+		assertNotNull(retention.getLastFailure());
+		assertEquals(0, working.getMessageCount());
+		// the broken mailbox kept its message and its timer, so it is looked at again
+		assertEquals(1, broken.getMessageCount());
+		assertEquals(1, broken.getNewSize());
+		assertEquals(1, retention.getTimerCount());
+		failing.mailbox = null;
+		assertEquals(1, retention.sweep(due + 60_000));
+		assertEquals(0, broken.getMessageCount());
+		assertEquals(0, retention.getTimerCount());
+		assertEquals(1, retention.getFailureCount());
+	}
+
+	/***
+	 * Class which is a mail log that cannot write the deletes of one mailbox
+	 */
+	private static class Failing implements MailboxListener {
+		private volatile Mailbox mailbox;// the mailbox whose deletes fail, or null
+
+		@Override
+		public void messageDeleted(Mailbox deleted, Message message) {
+			if (deleted == mailbox) {
+				throw new UncheckedIOException(new IOException("The log is full"));
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package telephone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/***
+ * Class which checks that a timing wheel hands out every timer at the tick it
+ * is due, neither earlier nor later, while timers are spread out from the
+ * levels above and while they are further away than the wheel reaches
+ *
+ * @author James Nguyen
+ *
+ */
+public class TimingWheelTest {
+	private static final long TICK = 10;// the milliseconds of a tick of the wheels under test
+
+	@Test
+	public void timersAreDueInOrder() {
+		TimingWheel<Integer> wheel = new TimingWheel<Integer>(TICK, 3, 0);
+		wheel.schedule(3, 30);
+		wheel.schedule(1, 5);
+		wheel.schedule(2, 20);
+		assertEquals(3, wheel.size());
+		List<Integer> due = new ArrayList<Integer>();
+		wheel.advance(9, due::add);
+		assertEquals(List.of(), due);
+		wheel.advance(10, due::add);
+		assertEquals(List.of(1), due);
+		wheel.advance(1000, due::add);
+		assertEquals(List.of(1, 2, 3), due);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void timerAlreadyDueIsDueAtNextTick() {
+		TimingWheel<String> wheel = new TimingWheel<String>(TICK, 2, 1000);
+		wheel.schedule("late", 500);
+		List<String> due = new ArrayList<String>();
+		wheel.advance(1009, due::add);
+		assertEquals(List.of(), due);
+		wheel.advance(1010, due::add);
+		assertEquals(List.of("late"), due);
+	}
+
+	@Test
+	public void cancelledTimerIsNotDue() {
+		TimingWheel<String> wheel = new TimingWheel<String>(TICK, 2, 0);
+		TimingWheel.Timer<String> near = wheel.schedule("near", 50);
+		TimingWheel.Timer<String> far = wheel.schedule("far", 5000);
+		wheel.schedule("kept", 5000);
+		wheel.cancel(near);
+		wheel.cancel(far);
+		wheel.cancel(far);
+		assertEquals(1, wheel.size());
+		List<String> due = new ArrayList<String>();
+		wheel.advance(10000, due::add);
+		assertEquals(List.of("kept"), due);
+		wheel.cancel(near);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void timersCascadeAtTheirTick() {
+		// ticks either side of where the first and the second level go round
+		long[] ticks = { 63, 64, 65, 127, 128, 4095, 4096, 4097, 5000, 262143, 262144 };
+		assertExact(new TimingWheel<Long>(1, 4, 0), ticks, 1);
+		assertExact(new TimingWheel<Long>(1, 4, 0), ticks, 61);
+	}
+
+	@Test
+	public void timersBeyondReachWaitUntilTheirTick() {
+		// a wheel of one level reaches 64 ticks, and one of two levels 4096
+		long[] ticks = { 10, 63, 64, 100, 1000, 4095, 4096, 4097, 10000, 100000 };
+		assertExact(new TimingWheel<Long>(1, 1, 0), ticks, 1);
+		assertExact(new TimingWheel<Long>(1, 1, 0), ticks, 7);
+		assertExact(new TimingWheel<Long>(1, 2, 0), ticks, 1);
+		assertExact(new TimingWheel<Long>(1, 2, 0), ticks, 333);
+	}
+
+	@Test
+	public void randomTimersAreDueAtTheirTick() {
+		Random random = new Random(7);
+		for (int levels = 1; levels <= 3; levels++) {
+			TimingWheel<Long> wheel = new TimingWheel<Long>(TICK, levels, 0);
+			Map<Long, Long> scheduled = new HashMap<Long, Long>();
+			long now = 0;
+			for (int round = 0; round < 200; round++) {
+				for (int i = 0; i < 20; i++) {
+					long deadline = now + 1 + random.nextInt(random.nextBoolean() ? 1000 : 3000000);
+					long key = (long) round * 20 + i;
+					scheduled.put(key, deadline);
+					wheel.schedule(key, deadline);
+				}
+				long next = now + random.nextInt(20000);
+				long previous = now;
+				wheel.advance(next, key -> {
+					long deadline = scheduled.remove(key);
+					assertTrue(deadline <= next - next % TICK, "A timer was due too early");
+					assertTrue(deadline > previous - previous % TICK, "A timer was due too late");
+				});
+				now = next;
+			}
+			long end = now + 10000000;
+			wheel.advance(end, key -> assertTrue(scheduled.remove(key) <= end));
+			assertTrue(scheduled.isEmpty(), "A timer was never due");
+			assertEquals(0, wheel.size());
+		}
+	}
+
+	/***
+	 * method which schedules a timer for each tick and checks that every timer is
+	 * due exactly when the wheel reaches its tick
+	 *
+	 * @param wheel
+	 *            the wheel, at time 0 with ticks of a millisecond
+	 * @param ticks
+	 *            the ticks the timers are due
+	 * @param step
+	 *            the ticks the wheel is moved on at a time
+	 */
+	private static void assertExact(TimingWheel<Long> wheel, long[] ticks, long step) {
+		for (long tick : ticks) {
+			wheel.schedule(tick, tick);
+		}
+		long last = ticks[ticks.length - 1];
+		List<Long> due = new ArrayList<Long>();
+		for (long now = step; now < last + step; now += step) {
+			long from = now - step;
+			long to = now;
+			wheel.advance(now, tick -> {
+				assertTrue(tick > from && tick <= to, "Timer " + tick + " was due between " + from + " and " + to);
+				due.add(tick);
+			});
+		}
+		assertEquals(ticks.length, due.size());
+		assertEquals(0, wheel.size());
+	}
+}